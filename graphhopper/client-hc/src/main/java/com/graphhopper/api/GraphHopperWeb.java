@@ -27,6 +27,8 @@ import com.graphhopper.GHResponse;
 import com.graphhopper.ResponsePath;
 import com.graphhopper.jackson.Jackson;
 import com.graphhopper.jackson.ResponsePathDeserializerHelper;
+import com.graphhopper.protobuf.ResponsePathProtobufDeserializer;
+import com.graphhopper.protobuf.ResponsePathProtobufSerializer;
 import com.graphhopper.util.CustomModel;
 import com.graphhopper.util.Helper;
 import com.graphhopper.util.Parameters;
@@ -54,6 +56,8 @@ import static com.graphhopper.util.Parameters.Routing.INSTRUCTIONS;
 public class GraphHopperWeb {
 
     public static final String X_GH_CLIENT_VERSION = "X-GH-Client-Version";
+    // servers without support for the binary format respond with JSON
+    private static final String ACCEPT_PROTOBUF = ResponsePathProtobufSerializer.MEDIA_TYPE + ", application/json;q=0.9";
     private final ObjectMapper objectMapper;
     private final String routeServiceUrl;
     private OkHttpClient downloader;
@@ -63,6 +67,7 @@ public class GraphHopperWeb {
     private boolean elevation = false;
     private String optimize = "false";
     private boolean postRequest = true;
+    private boolean protobuf = false;
     private int maxUnzippedLength = 1000;
     private final Set<String> ignoreSetForGet;
     private final Set<String> ignoreSetForPost;
@@ -145,6 +150,15 @@ public class GraphHopperWeb {
         return this;
     }
 
+    /**
+     * If true the binary response format is requested instead of JSON, which is smaller and faster to read for long
+     * routes. Servers that do not support it still respond with JSON. The default is false.
+     */
+    public GraphHopperWeb setProtobuf(boolean protobuf) {
+        this.protobuf = protobuf;
+        return this;
+    }
+
     /**
      * Enable or disable calculating points for the way. The default is true.
      */
@@ -192,6 +206,14 @@ public class GraphHopperWeb {
             Request okRequest = postRequest ? createPostRequest(ghRequest) : createGetRequest(ghRequest);
             Response rsp = getClientForRequest(ghRequest).newCall(okRequest).execute();
             rspBody = rsp.body();
+            MediaType contentType = rspBody.contentType();
+            if (contentType != null && ResponsePathProtobufSerializer.MEDIA_TYPE.equals(contentType.type() + "/" + contentType.subtype())) {
+                GHResponse res = ResponsePathProtobufDeserializer.readFrom(rspBody.byteStream(), tmpElevation, tmpTurnDescription);
+                for (Map.Entry<String, List<String>> entry : rsp.headers().toMultimap().entrySet()) {
+                    res.getHints().putObject(entry.getKey(), entry.getValue());
+                }
+                return res;
+            }
             JsonNode json = objectMapper.reader().readTree(rspBody.byteStream());
 
             GHResponse res = new GHResponse();
@@ -248,6 +270,8 @@ public class GraphHopperWeb {
         }
         Request.Builder builder = new Request.Builder().url(url).post(RequestBody.create(MT_JSON, body));
         builder.header(X_GH_CLIENT_VERSION, GH_VERSION_FROM_MAVEN);
+        if (protobuf)
+            builder.header("Accept", ACCEPT_PROTOBUF);
         // force avoiding our GzipRequestInterceptor for smaller requests ~30 locations
         if (body.length() < maxUnzippedLength)
             builder.header("Content-Encoding", "identity");
@@ -382,9 +406,11 @@ public class GraphHopperWeb {
             }
         }
 
-        return new Request.Builder().url(url)
-                .header(X_GH_CLIENT_VERSION, GH_VERSION_FROM_MAVEN)
-                .build();
+        Request.Builder builder = new Request.Builder().url(url)
+                .header(X_GH_CLIENT_VERSION, GH_VERSION_FROM_MAVEN);
+        if (protobuf)
+            builder.header("Accept", ACCEPT_PROTOBUF);
+        return builder.build();
     }
 
     public String export(GHRequest ghRequest) {
@@ -45,6 +45,7 @@ import com.graphhopper.routing.util.parsers.TagParser;
 import com.graphhopper.routing.weighting.Weighting;
 import com.graphhopper.routing.weighting.custom.CustomModelParser;
 import com.graphhopper.routing.weighting.custom.CustomWeighting;
+import com.graphhopper.routing.weighting.custom.EdgeWeightCache;
 import com.graphhopper.routing.weighting.custom.NameValidator;
 import com.graphhopper.storage.*;
 import com.graphhopper.storage.index.LocationIndex;
@@ -64,6 +65,7 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.text.DateFormat;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
 import java.util.function.BiFunction;
 import java.util.function.Function;
 import java.util.stream.Collectors;
@@ -107,6 +109,8 @@ public class GraphHopper {
     private final OSMReaderConfig osmReaderConfig = new OSMReaderConfig();
     // for routing
     private final RouterConfig routerConfig = new RouterConfig();
+    private ForkJoinPool viaRoutingPool;
+    private RouteResponseCache responseCache;
     // for index
     private LocationIndex locationIndex;
     private int preciseIndexResolution = 300;
@@ -124,8 +128,14 @@ public class GraphHopper {
     // preparation handlers
     private final LMPreparationHandler lmPreparationHandler = new LMPreparationHandler();
     private final CHPreparationHandler chPreparationHandler = new CHPreparationHandler();
+    // runs the CH and LM preparations with a shared pool of threads, disabled for 0 threads
+    private int preparationSchedulerThreads = 0;
+    private long preparationSchedulerMaxMemory = 0;
     private Map<String, RoutingCHGraph> chGraphs = Collections.emptyMap();
     private Map<String, LandmarkStorage> landmarks = Collections.emptyMap();
+    // edge weight caches
+    private List<String> edgeWeightCacheProfiles = Collections.emptyList();
+    private Map<String, EdgeWeightCache> edgeWeightCaches = Collections.emptyMap();
 
     // for data reader
     private String osmFile;
@@ -190,6 +200,30 @@ public class GraphHopper {
         return this;
     }
 
+    /**
+     * The weights of the edges are calculated once for these profiles and stored, so the flexible and landmark
+     * routing does not evaluate their custom models for every edge. Requests can still change the distance
+     * influence and multiply the priority, other changes of the custom model fall back to the uncached weighting.
+     */
+    public GraphHopper setEdgeWeightCacheProfiles(List<String> profiles) {
+        ensureNotLoaded();
+        this.edgeWeightCacheProfiles = profiles;
+        return this;
+    }
+
+    /**
+     * Runs the checksums and the CH and LM preparations with a shared {@link PreparationScheduler}.
+     *
+     * @param threads     the number of threads, 0 disables the scheduler
+     * @param maxMemoryMB the memory budget of the preparations, 0 uses the memory that is available to the JVM
+     */
+    public GraphHopper setPreparationScheduler(int threads, long maxMemoryMB) {
+        ensureNotLoaded();
+        this.preparationSchedulerThreads = threads;
+        this.preparationSchedulerMaxMemory = maxMemoryMB * MB;
+        return this;
+    }
+
     public GraphHopper setMinNetworkSize(int minNetworkSize) {
         ensureNotLoaded();
         this.minNetworkSize = minNetworkSize;
@@ -533,6 +567,7 @@ public class GraphHopper {
         osmReaderConfig.setElevationSmoothingRamerMax(ghConfig.getInt("graph.elevation.edge_smoothing.ramer.max_elevation", osmReaderConfig.getElevationSmoothingRamerMax()));
         osmReaderConfig.setLongEdgeSamplingDistance(ghConfig.getDouble("graph.elevation.long_edge_sampling_distance", osmReaderConfig.getLongEdgeSamplingDistance()));
         osmReaderConfig.setElevationMaxWayPointDistance(ghConfig.getDouble("graph.elevation.way_point_max_distance", osmReaderConfig.getElevationMaxWayPointDistance()));
+        osmReaderConfig.setElevationThreads(ghConfig.getInt("graph.elevation.threads", osmReaderConfig.getElevationThreads()));
         routerConfig.setElevationWayPointMaxDistance(ghConfig.getDouble("graph.elevation.way_point_max_distance", routerConfig.getElevationWayPointMaxDistance()));
         ElevationProvider elevationProvider = createElevationProvider(ghConfig);
         setElevationProvider(elevationProvider);
@@ -544,9 +579,15 @@ public class GraphHopper {
         minNetworkSize = ghConfig.getInt("prepare.min_network_size", minNetworkSize);
         subnetworksThreads = ghConfig.getInt("prepare.subnetworks.threads", subnetworksThreads);
 
+        // edge weight cache
+        setEdgeWeightCacheProfiles(Arrays.stream(ghConfig.getString("graph.edge_weight_cache.profiles", "").split(","))
+                .map(String::trim).filter(p -> !p.isEmpty()).collect(Collectors.toList()));
+
         // prepare CH&LM
         chPreparationHandler.init(ghConfig);
         lmPreparationHandler.init(ghConfig);
+        preparationSchedulerThreads = ghConfig.getInt("prepare.scheduler.threads", preparationSchedulerThreads);
+        preparationSchedulerMaxMemory = ghConfig.getLong("prepare.scheduler.max_memory_mb", preparationSchedulerMaxMemory / MB) * MB;
 
         // osm import
         // We do a few checks for import.osm.ignored_highways to prevent configuration errors when migrating from an older
@@ -583,6 +624,10 @@ public class GraphHopper {
         routerConfig.setMaxRoundTripRetries(ghConfig.getInt(RoundTrip.INIT_MAX_RETRIES, routerConfig.getMaxRoundTripRetries()));
         routerConfig.setNonChMaxWaypointDistance(ghConfig.getInt(Parameters.NON_CH.MAX_NON_CH_POINT_DISTANCE, routerConfig.getNonChMaxWaypointDistance()));
         routerConfig.setInstructionsEnabled(ghConfig.getBool(Routing.INIT_INSTRUCTIONS, routerConfig.isInstructionsEnabled()));
+        routerConfig.setViaRoutingThreads(ghConfig.getInt("routing.via_threads", routerConfig.getViaRoutingThreads()));
+        routerConfig.setResponseCacheSize(ghConfig.getInt("routing.response_cache.size", routerConfig.getResponseCacheSize()));
+        routerConfig.setResponseCacheTTLMillis(ghConfig.getLong("routing.response_cache.ttl_ms", routerConfig.getResponseCacheTTLMillis()));
+        routerConfig.setLazyResponsePaths(ghConfig.getBool("routing.lazy_response_paths", routerConfig.isLazyResponsePaths()));
         int activeLandmarkCount = ghConfig.getInt(Landmark.ACTIVE_COUNT_DEFAULT, Math.min(8, lmPreparationHandler.getLandmarks()));
         if (activeLandmarkCount > lmPreparationHandler.getLandmarks())
             throw new IllegalArgumentException("Default value for active landmarks " + activeLandmarkCount
@@ -682,7 +727,10 @@ public class GraphHopper {
         return result;
     }
 
-    private static ElevationProvider createElevationProvider(GraphHopperConfig ghConfig) {
+    /**
+     * Creates the elevation provider configured via the graph.elevation.* properties.
+     */
+    public static ElevationProvider createElevationProvider(GraphHopperConfig ghConfig) {
         String eleProviderStr = toLowerCase(ghConfig.getString("graph.elevation.provider", "noop"));
 
         if (ghConfig.has("graph.elevation.calcmean"))
@@ -707,6 +755,8 @@ public class GraphHopper {
             elevationProvider = new MultiSourceElevationProvider(cacheDirStr);
         } else if (eleProviderStr.equalsIgnoreCase("skadi")) {
             elevationProvider = new SkadiProvider(cacheDirStr);
+        } else if (eleProviderStr.equalsIgnoreCase("tile_store")) {
+            elevationProvider = new TileStoreElevationProvider(cacheDirStr);
         }
 
         if (elevationProvider instanceof TileBasedElevationProvider) {
@@ -886,6 +936,9 @@ public class GraphHopper {
         // the artificial edges in sync with their real counterparts. So if an edge attribute shall be changed this change
         // must also be applied to the corresponding artificial edge.
 
+        if (hasElevation() && osmReaderConfig.getElevationThreads() > 0)
+            enrichElevation();
+
         calculateUrbanDensity();
 
         if (maxSpeedCalculator != null) {
@@ -1100,6 +1153,15 @@ public class GraphHopper {
                 throw new IllegalArgumentException("CH profile references unknown profile '" + chProfile.getProfile() + "'");
             }
         }
+        Map<String, CHProfile> chProfileMap = chPreparationHandler.getCHProfiles().stream().collect(Collectors.toMap(CHProfile::getProfile, p -> p));
+        for (CHProfile chProfile : chPreparationHandler.getCHProfiles()) {
+            if (chProfile.usesOtherNodeOrdering() && !chProfileMap.containsKey(chProfile.getNodeOrderingProfile())) {
+                throw new IllegalArgumentException("Unknown CH profile '" + chProfile.getNodeOrderingProfile() + "' in CH profile '" + chProfile.getProfile() + "' cannot be used as node_ordering_profile");
+            }
+            if (chProfile.usesOtherNodeOrdering() && chProfileMap.get(chProfile.getNodeOrderingProfile()).usesOtherNodeOrdering()) {
+                throw new IllegalArgumentException("Cannot use '" + chProfile.getNodeOrderingProfile() + "' as node_ordering_profile for CH profile '" + chProfile.getProfile() + "', because it uses another node ordering itself.");
+            }
+        }
         Map<String, LMProfile> lmProfileMap = new LinkedHashMap<>(lmPreparationHandler.getLMProfiles().size());
         for (LMProfile lmProfile : lmPreparationHandler.getLMProfiles()) {
             LMProfile previous = lmProfileMap.put(lmProfile.getProfile(), lmProfile);
@@ -1167,17 +1229,19 @@ public class GraphHopper {
      * @param closeEarly release resources as early as possible
      */
     protected void postProcessing(boolean closeEarly) {
+        if (preparationSchedulerThreads > 0) {
+            postProcessingWithScheduler(closeEarly);
+            return;
+        }
         calcChecksums();
         initLocationIndex();
         importPublicTransit();
 
-        if (closeEarly) {
-            boolean includesCustomProfiles = profilesByName.values().stream().anyMatch(p -> CustomWeighting.NAME.equals(p.getWeighting()));
-            if (!includesCustomProfiles)
-                // when there are custom profiles we must not close way geometry or KVStorage, because
-                // they might be needed to evaluate the custom weightings for the following preparations
-                baseGraph.flushAndCloseGeometryAndNameStorage();
-        }
+        if (closeEarly)
+            closeGeometryIfPossible();
+
+        if (!edgeWeightCacheProfiles.isEmpty())
+            loadOrCreateEdgeWeightCaches();
 
         if (lmPreparationHandler.isEnabled())
             loadOrPrepareLM(closeEarly);
@@ -1190,9 +1254,103 @@ public class GraphHopper {
             loadOrPrepareCH(closeEarly);
     }
 
+    /**
+     * Like the serial post processing, but the checksums and all CH and LM preparations are run by a
+     * {@link PreparationScheduler}, i.e. they share the same threads and memory budget and a CH preparation does not
+     * have to wait for the LM preparations.
+     */
+    private void postProcessingWithScheduler(boolean closeEarly) {
+        // the weightings must be created before the edge weight caches exist, otherwise the checksums would change
+        List<Weighting> checksumWeightings = calcChecksums ? createChecksumWeightings() : null;
+        initLocationIndex();
+        importPublicTransit();
+
+        if (closeEarly)
+            closeGeometryIfPossible();
+
+        if (!edgeWeightCacheProfiles.isEmpty())
+            loadOrCreateEdgeWeightCaches();
+
+        long maxMemory = preparationSchedulerMaxMemory > 0 ? preparationSchedulerMaxMemory : getAvailableMemory();
+        PreparationScheduler scheduler = new PreparationScheduler(preparationSchedulerThreads, maxMemory);
+        if (checksumWeightings != null)
+            scheduler.add("checksums", 0, () -> calcChecksums(checksumWeightings));
+
+        List<LandmarkStorage> loadedLM = Collections.emptyList();
+        List<PrepareLandmarks> preparedLM = Collections.emptyList();
+        if (lmPreparationHandler.isEnabled()) {
+            checkLMProfileVersions();
+            List<LMConfig> lmConfigs = createLMConfigs(lmPreparationHandler.getLMProfiles());
+            loadedLM = lmPreparationHandler.load(lmConfigs, baseGraph, encodingManager);
+            List<LMConfig> configsToPrepare = getLMConfigsToPrepare(lmConfigs, loadedLM);
+            prepareForPreparations(configsToPrepare);
+            preparedLM = lmPreparationHandler.schedule(scheduler, configsToPrepare, baseGraph, encodingManager, properties, locationIndex, closeEarly);
+        }
+
+        Map<String, RoutingCHGraph> loadedCH = Collections.emptyMap();
+        Map<String, PrepareContractionHierarchies.Result> preparedCH = Collections.emptyMap();
+        if (chPreparationHandler.isEnabled()) {
+            checkCHProfileVersions();
+            List<CHConfig> chConfigs = createCHConfigs(chPreparationHandler.getCHProfiles());
+            loadedCH = chPreparationHandler.load(baseGraph.getBaseGraph(), chConfigs);
+            List<CHConfig> configsToPrepare = getCHConfigsToPrepare(chConfigs, loadedCH);
+            prepareForPreparations(configsToPrepare);
+            preparedCH = chPreparationHandler.schedule(scheduler, baseGraph, properties, configsToPrepare, loadedCH, closeEarly);
+        }
+
+        scheduler.run();
+
+        if (closeEarly)
+            locationIndex.close();
+        if (lmPreparationHandler.isEnabled())
+            initLandmarks(loadedLM, preparedLM);
+        if (chPreparationHandler.isEnabled())
+            initCHGraphs(loadedCH, preparedCH);
+    }
+
+    private static long getAvailableMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.maxMemory() - (runtime.totalMemory() - runtime.freeMemory());
+    }
+
+    private void closeGeometryIfPossible() {
+        boolean includesCustomProfiles = profilesByName.values().stream().anyMatch(p -> CustomWeighting.NAME.equals(p.getWeighting()));
+        if (!includesCustomProfiles)
+            // when there are custom profiles we must not close way geometry or KVStorage, because
+            // they might be needed to evaluate the custom weightings for the following preparations
+            baseGraph.flushAndCloseGeometryAndNameStorage();
+    }
+
     protected void importPublicTransit() {
     }
 
+    /**
+     * Adds the elevation to the graph in parallel if it was not looked up while reading the OSM file.
+     */
+    private void enrichElevation() {
+        EdgeElevationEnrichment enrichment = new EdgeElevationEnrichment(baseGraph.getBaseGraph(), eleProvider, osmReaderConfig.getElevationThreads())
+                .setDefaultElevation(osmReaderConfig.getDefaultElevation())
+                .setSmoothing(osmReaderConfig.getElevationSmoothing(), osmReaderConfig.getSmoothElevationAverageWindowSize(),
+                        osmReaderConfig.getElevationSmoothingRamerMax());
+        if (osmReaderConfig.getMaxWayPointDistance() > 0 && osmReaderConfig.getElevationMaxWayPointDistance() < Double.MAX_VALUE)
+            // the OSMReader skipped the simplification, because it depends on the elevation
+            enrichment.setSimplification(osmReaderConfig.getMaxWayPointDistance(), osmReaderConfig.getElevationMaxWayPointDistance());
+        if (encodingManager.hasEncodedValue(AverageSlope.KEY) || encodingManager.hasEncodedValue(MaxSlope.KEY)) {
+            SlopeCalculator slopeCalculator = new SlopeCalculator(
+                    encodingManager.hasEncodedValue(MaxSlope.KEY) ? encodingManager.getDecimalEncodedValue(MaxSlope.KEY) : null,
+                    encodingManager.hasEncodedValue(AverageSlope.KEY) ? encodingManager.getDecimalEncodedValue(AverageSlope.KEY) : null);
+            // the OSM tags are no longer available, so we use the encoded values to identify tunnels, bridges and steps
+            EnumEncodedValue<RoadEnvironment> roadEnvEnc = encodingManager.hasEncodedValue(RoadEnvironment.KEY)
+                    ? encodingManager.getEnumEncodedValue(RoadEnvironment.KEY, RoadEnvironment.class) : null;
+            EnumEncodedValue<RoadClass> roadClassEnc = encodingManager.hasEncodedValue(RoadClass.KEY)
+                    ? encodingManager.getEnumEncodedValue(RoadClass.KEY, RoadClass.class) : null;
+            enrichment.setSlopeCalculator(slopeCalculator, edge ->
+                    roadEnvEnc != null && (edge.get(roadEnvEnc) == RoadEnvironment.TUNNEL || edge.get(roadEnvEnc) == RoadEnvironment.BRIDGE)
+                            || roadClassEnc != null && edge.get(roadClassEnc) == RoadClass.STEPS);
+        }
+        enrichment.execute();
+    }
+
     void interpolateBridgesTunnelsAndFerries() {
         if (encodingManager.hasEncodedValue(RoadEnvironment.KEY)) {
             EnumEncodedValue<RoadEnvironment> roadEnvEnc = encodingManager.getEnumEncodedValue(RoadEnvironment.KEY, RoadEnvironment.class);
@@ -1219,7 +1377,7 @@ public class GraphHopper {
     }
 
     protected WeightingFactory createWeightingFactory() {
-        return new DefaultWeightingFactory(baseGraph.getBaseGraph(), getEncodingManager());
+        return new DefaultWeightingFactory(baseGraph.getBaseGraph(), getEncodingManager(), edgeWeightCaches);
     }
 
     public GHResponse route(GHRequest request) {
@@ -1235,7 +1393,33 @@ public class GraphHopper {
             throw new IllegalStateException("Location index not initialized");
 
         return doCreateRouter(baseGraph, encodingManager, locationIndex, profilesByName, pathBuilderFactory,
-                trMap, routerConfig, createWeightingFactory(), chGraphs, landmarks);
+                trMap, routerConfig, createWeightingFactory(), chGraphs, landmarks)
+                .setViaRoutingPool(getViaRoutingPool())
+                .setResponseCache(getResponseCache());
+    }
+
+    /**
+     * @return the cache for the responses of all requests or null if it is disabled, see
+     * {@link RouterConfig#setResponseCacheSize(int)}. Clear it if you change the graph after it was loaded.
+     */
+    public synchronized RouteResponseCache getResponseCache() {
+        if (routerConfig.getResponseCacheSize() == 0)
+            return null;
+        if (responseCache == null)
+            responseCache = new RouteResponseCache(routerConfig.getResponseCacheSize(), routerConfig.getResponseCacheTTLMillis());
+        return responseCache;
+    }
+
+    private synchronized ForkJoinPool getViaRoutingPool() {
+        // shared by all requests
+        if (routerConfig.getViaRoutingThreads() <= 1)
+            return null;
+        if (viaRoutingPool == null || viaRoutingPool.getParallelism() != routerConfig.getViaRoutingThreads()) {
+            if (viaRoutingPool != null)
+                viaRoutingPool.shutdown();
+            viaRoutingPool = new ForkJoinPool(routerConfig.getViaRoutingThreads());
+        }
+        return viaRoutingPool;
     }
 
     protected Router doCreateRouter(BaseGraph baseGraph, EncodingManager encodingManager, LocationIndex locationIndex, Map<String, Profile> profilesByName,
@@ -1260,11 +1444,18 @@ public class GraphHopper {
 
     private void calcChecksums() {
         if (!calcChecksums) return;
+        calcChecksums(createChecksumWeightings());
+    }
+
+    private List<Weighting> createChecksumWeightings() {
+        return profilesByName.values().stream().map(profile -> createWeighting(profile, new PMap())).toList();
+    }
+
+    private void calcChecksums(List<Weighting> weightings) {
         logger.info("Calculating checksums for {} profiles", profilesByName.size());
         StopWatch sw = StopWatch.started();
         double[] checksums_fwd = new double[profilesByName.size()];
         double[] checksums_bwd = new double[profilesByName.size()];
-        List<Weighting> weightings = profilesByName.values().stream().map(profile -> createWeighting(profile, new PMap())).toList();
         AllEdgesIterator edge = baseGraph.getAllEdges();
         while (edge.next()) {
             for (int i = 0; i < profilesByName.size(); i++) {
@@ -1316,17 +1507,27 @@ public class GraphHopper {
     }
 
     protected void loadOrPrepareCH(boolean closeEarly) {
+        checkCHProfileVersions();
+
+        // we load ch graphs that already exist and prepare the other ones
+        List<CHConfig> chConfigs = createCHConfigs(chPreparationHandler.getCHProfiles());
+        Map<String, RoutingCHGraph> loaded = chPreparationHandler.load(baseGraph.getBaseGraph(), chConfigs);
+        Map<String, PrepareContractionHierarchies.Result> prepared = prepareCH(closeEarly, getCHConfigsToPrepare(chConfigs, loaded), loaded);
+        initCHGraphs(loaded, prepared);
+    }
+
+    private void checkCHProfileVersions() {
         for (CHProfile profile : chPreparationHandler.getCHProfiles())
             if (!getCHProfileVersion(profile.getProfile()).isEmpty()
                     && !getCHProfileVersion(profile.getProfile()).equals("" + profilesByName.get(profile.getProfile()).getVersion()))
                 throw new IllegalArgumentException("CH preparation of " + profile.getProfile() + " already exists in storage and doesn't match configuration");
+    }
 
-        // we load ch graphs that already exist and prepare the other ones
-        List<CHConfig> chConfigs = createCHConfigs(chPreparationHandler.getCHProfiles());
-        Map<String, RoutingCHGraph> loaded = chPreparationHandler.load(baseGraph.getBaseGraph(), chConfigs);
-        List<CHConfig> configsToPrepare = chConfigs.stream().filter(c -> !loaded.containsKey(c.getName())).collect(Collectors.toList());
-        Map<String, PrepareContractionHierarchies.Result> prepared = prepareCH(closeEarly, configsToPrepare);
+    private static List<CHConfig> getCHConfigsToPrepare(List<CHConfig> chConfigs, Map<String, RoutingCHGraph> loaded) {
+        return chConfigs.stream().filter(c -> !loaded.containsKey(c.getName())).collect(Collectors.toList());
+    }
 
+    private void initCHGraphs(Map<String, RoutingCHGraph> loaded, Map<String, PrepareContractionHierarchies.Result> prepared) {
         // we map all profile names for which there is CH support to the according CH graphs
         chGraphs = new LinkedHashMap<>();
         for (CHProfile profile : chPreparationHandler.getCHProfiles()) {
@@ -1343,30 +1544,75 @@ public class GraphHopper {
         }
     }
 
-    protected Map<String, PrepareContractionHierarchies.Result> prepareCH(boolean closeEarly, List<CHConfig> configsToPrepare) {
-        if (!configsToPrepare.isEmpty())
-            ensureWriteAccess();
-        if (!baseGraph.isFrozen())
-            baseGraph.freeze();
-        return chPreparationHandler.prepare(baseGraph, properties, configsToPrepare, closeEarly);
+    protected Map<String, PrepareContractionHierarchies.Result> prepareCH(boolean closeEarly, List<CHConfig> configsToPrepare,
+                                                                         Map<String, RoutingCHGraph> loaded) {
+        prepareForPreparations(configsToPrepare);
+        return chPreparationHandler.prepare(baseGraph, properties, configsToPrepare, loaded, closeEarly);
+    }
+
+    private String getEdgeWeightCacheProfileVersion(String profile) {
+        return properties.get("graph.profiles.edge_weight_cache." + profile + ".version");
+    }
+
+    private void setEdgeWeightCacheProfileVersion(String profile, int version) {
+        properties.put("graph.profiles.edge_weight_cache." + profile + ".version", version);
+    }
+
+    protected void loadOrCreateEdgeWeightCaches() {
+        for (String profileName : edgeWeightCacheProfiles) {
+            Profile profile = profilesByName.get(profileName);
+            if (profile == null)
+                throw new IllegalArgumentException("Edge weight cache profile '" + profileName + "' does not exist. Available profiles: " + profilesByName.keySet());
+            if (!CustomWeighting.NAME.equals(profile.getWeighting()))
+                throw new IllegalArgumentException("Edge weight cache profile '" + profileName + "' must use weighting '" + CustomWeighting.NAME + "'");
+            if (!getEdgeWeightCacheProfileVersion(profileName).isEmpty()
+                    && !getEdgeWeightCacheProfileVersion(profileName).equals("" + profile.getVersion()))
+                throw new IllegalArgumentException("Edge weight cache of " + profileName + " already exists in storage and doesn't match configuration");
+        }
+
+        Map<String, EdgeWeightCache> caches = new LinkedHashMap<>();
+        for (String profileName : edgeWeightCacheProfiles) {
+            Profile profile = profilesByName.get(profileName);
+            EdgeWeightCache cache = new EdgeWeightCache(baseGraph.getDirectory(), profileName);
+            if (!cache.loadExisting(baseGraph.getBaseGraph(), profile.getVersion())) {
+                ensureWriteAccess();
+                StopWatch sw = new StopWatch().start();
+                cache.build(baseGraph.getBaseGraph(), encodingManager, profile);
+                cache.flush();
+                setEdgeWeightCacheProfileVersion(profileName, profile.getVersion());
+                logger.info("Calculated edge weights of " + profileName + " in " + sw.stop().getSeconds() + "s");
+            }
+            caches.put(profileName, cache);
+        }
+        edgeWeightCaches = caches;
     }
 
     /**
      * For landmarks it is required to always call this method: either it creates the landmark data or it loads it.
      */
     protected void loadOrPrepareLM(boolean closeEarly) {
+        checkLMProfileVersions();
+
+        // we load landmark storages that already exist and prepare the other ones
+        List<LMConfig> lmConfigs = createLMConfigs(lmPreparationHandler.getLMProfiles());
+        List<LandmarkStorage> loaded = lmPreparationHandler.load(lmConfigs, baseGraph, encodingManager);
+        List<PrepareLandmarks> prepared = prepareLM(closeEarly, getLMConfigsToPrepare(lmConfigs, loaded));
+        initLandmarks(loaded, prepared);
+    }
+
+    private void checkLMProfileVersions() {
         for (LMProfile profile : lmPreparationHandler.getLMProfiles())
             if (!getLMProfileVersion(profile.getProfile()).isEmpty()
                     && !getLMProfileVersion(profile.getProfile()).equals("" + profilesByName.get(profile.getProfile()).getVersion()))
                 throw new IllegalArgumentException("LM preparation of " + profile.getProfile() + " already exists in storage and doesn't match configuration");
+    }
 
-        // we load landmark storages that already exist and prepare the other ones
-        List<LMConfig> lmConfigs = createLMConfigs(lmPreparationHandler.getLMProfiles());
-        List<LandmarkStorage> loaded = lmPreparationHandler.load(lmConfigs, baseGraph, encodingManager);
+    private static List<LMConfig> getLMConfigsToPrepare(List<LMConfig> lmConfigs, List<LandmarkStorage> loaded) {
         List<LMConfig> loadedConfigs = loaded.stream().map(LandmarkStorage::getLMConfig).collect(Collectors.toList());
-        List<LMConfig> configsToPrepare = lmConfigs.stream().filter(c -> !loadedConfigs.contains(c)).collect(Collectors.toList());
-        List<PrepareLandmarks> prepared = prepareLM(closeEarly, configsToPrepare);
+        return lmConfigs.stream().filter(c -> !loadedConfigs.contains(c)).collect(Collectors.toList());
+    }
 
+    private void initLandmarks(List<LandmarkStorage> loaded, List<PrepareLandmarks> prepared) {
         // we map all profile names for which there is LM support to the according LM storages
         landmarks = new LinkedHashMap<>();
         for (LMProfile lmp : lmPreparationHandler.getLMProfiles()) {
@@ -1385,11 +1631,15 @@ public class GraphHopper {
     }
 
     protected List<PrepareLandmarks> prepareLM(boolean closeEarly, List<LMConfig> configsToPrepare) {
+        prepareForPreparations(configsToPrepare);
+        return lmPreparationHandler.prepare(configsToPrepare, baseGraph, encodingManager, properties, locationIndex, closeEarly);
+    }
+
+    private void prepareForPreparations(List<?> configsToPrepare) {
         if (!configsToPrepare.isEmpty())
             ensureWriteAccess();
         if (!baseGraph.isFrozen())
             baseGraph.freeze();
-        return lmPreparationHandler.prepare(configsToPrepare, baseGraph, encodingManager, properties, locationIndex, closeEarly);
     }
 
     /**
@@ -1434,10 +1684,18 @@ public class GraphHopper {
 
         chGraphs.values().forEach(RoutingCHGraph::close);
         landmarks.values().forEach(LandmarkStorage::close);
+        edgeWeightCaches.values().forEach(EdgeWeightCache::close);
 
         if (locationIndex != null)
             locationIndex.close();
 
+        synchronized (this) {
+            if (viaRoutingPool != null)
+                viaRoutingPool.shutdown();
+            if (responseCache != null)
+                responseCache.clear();
+        }
+
         try {
             lockFactory.forceRemove(fileLockName, true);
         } catch (Exception ex) {
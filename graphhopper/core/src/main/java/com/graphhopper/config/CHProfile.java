@@ -30,6 +30,7 @@ import static com.graphhopper.config.Profile.validateProfileName;
  */
 public class CHProfile {
     private String profile = "";
+    private String nodeOrderingProfile = "this";
 
     private CHProfile() {
         // default constructor needed for jackson
@@ -37,6 +38,7 @@ public class CHProfile {
 
     public CHProfile(CHProfile profile) {
         this.profile = profile.profile;
+        this.nodeOrderingProfile = profile.nodeOrderingProfile;
     }
 
     public CHProfile(String profile) {
@@ -52,9 +54,28 @@ public class CHProfile {
         this.profile = profile;
     }
 
+    public boolean usesOtherNodeOrdering() {
+        return !nodeOrderingProfile.equals("this");
+    }
+
+    public String getNodeOrderingProfile() {
+        return nodeOrderingProfile;
+    }
+
+    /**
+     * Contracts the nodes in the order that was determined for the CH preparation of the given profile instead of
+     * determining a new node ordering. This is a lot faster and gives correct results for any weighting, but the
+     * queries can become slower the more the two weightings differ.
+     */
+    public CHProfile setNodeOrderingProfile(String nodeOrderingProfile) {
+        validateProfileName(nodeOrderingProfile);
+        this.nodeOrderingProfile = nodeOrderingProfile;
+        return this;
+    }
+
     @Override
     public String toString() {
-        return profile;
+        return usesOtherNodeOrdering() ? profile + "|node_ordering_profile=" + nodeOrderingProfile : profile;
     }
 
     @Override
@@ -62,11 +83,11 @@ public class CHProfile {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         CHProfile that = (CHProfile) o;
-        return Objects.equals(profile, that.profile);
+        return Objects.equals(profile, that.profile) && Objects.equals(nodeOrderingProfile, that.nodeOrderingProfile);
     }
 
     @Override
     public int hashCode() {
-        return profile.hashCode();
+        return Objects.hash(profile, nodeOrderingProfile);
     }
 }
@@ -17,7 +17,6 @@
  */
 package com.graphhopper.reader.dem;
 
-import com.graphhopper.coll.GHIntObjectHashMap;
 import com.graphhopper.storage.DataAccess;
 import com.graphhopper.util.Downloader;
 import com.graphhopper.util.Helper;
@@ -26,9 +25,12 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.net.SocketTimeoutException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
- * Common functionality used when working with SRTM hgt data.
+ * Common functionality used when working with SRTM hgt data. The tiles are loaded while holding a lock, but once
+ * loaded they can be read from several threads at the same time.
  *
  * @author Robin Boldt
  */
@@ -39,7 +41,7 @@ public abstract class AbstractSRTMElevationProvider extends TileBasedElevationPr
     private final int WIDTH_BYTE_INDEX = 0;
     private final int DEGREE = 1;
     // use a map as an array is not quite useful if we want to hold only parts of the world
-    private final GHIntObjectHashMap<HeightTile> cacheData = new GHIntObjectHashMap<>();
+    private final Map<Integer, HeightTile> cacheData = new ConcurrentHashMap<>();
     private final double precision = 1e7;
     private final double invPrecision = 1 / precision;
 
@@ -59,7 +61,7 @@ public abstract class AbstractSRTMElevationProvider extends TileBasedElevationPr
     }
 
     @Override
-    public void release() {
+    public synchronized void release() {
         cacheData.clear();
         if (dir != null) {
             // for memory mapped type we remove temporary files
@@ -86,56 +88,73 @@ public abstract class AbstractSRTMElevationProvider extends TileBasedElevationPr
 
         lat = (int) (lat * precision) / precision;
         lon = (int) (lon * precision) / precision;
-        int intKey = calcIntKey(lat, lon);
-        HeightTile demProvider = cacheData.get(intKey);
+        HeightTile demProvider = cacheData.get(calcIntKey(lat, lon));
         if (demProvider == null) {
-            if (!cacheDir.exists())
-                cacheDir.mkdirs();
+            demProvider = loadTile(lat, lon);
+            if (demProvider == null)
+                return 0;
+        }
 
-            int minLat = down(lat);
-            int minLon = down(lon);
+        if (demProvider.isSeaLevel())
+            return 0;
 
-            String fileName = getFileName(lat, lon);
-            if (fileName == null || (Helper.isEmpty(baseUrl) && !new File(fileName).exists()))
-                return 0;
+        return demProvider.getHeight(lat, lon);
+    }
 
-            DataAccess heights = getDirectory().create("dem" + intKey);
-            boolean loadExisting = false;
-            try {
-                loadExisting = heights.loadExisting();
-            } catch (Exception ex) {
-                logger.warn("cannot load dem" + intKey + ", error:" + ex.getMessage());
-            }
+    /**
+     * Loads the tile for the specified coordinates and puts it into the cache once it is completely initialized.
+     *
+     * @return the tile or null if there is no file for it
+     */
+    private synchronized HeightTile loadTile(double lat, double lon) {
+        int intKey = calcIntKey(lat, lon);
+        // another thread might have loaded the tile in the meantime
+        HeightTile demProvider = cacheData.get(intKey);
+        if (demProvider != null)
+            return demProvider;
 
-            if (!loadExisting) {
-                try {
-                    updateHeightsFromFile(lat, lon, heights);
-                } catch (FileNotFoundException ex) {
-                    demProvider = new HeightTile(minLat, minLon, DEFAULT_WIDTH, DEFAULT_WIDTH, precision, DEGREE, DEGREE);
-                    cacheData.put(intKey, demProvider);
-                    demProvider.setHeights(heights);
-                    demProvider.setSeaLevel(true);
-                    // use small size on disc and in-memory
-                    heights.create(10)
-                            .flush();
-                    return 0;
-                }
-            }
+        if (!cacheDir.exists())
+            cacheDir.mkdirs();
+
+        int minLat = down(lat);
+        int minLon = down(lon);
 
-            int width = (int) (Math.sqrt(heights.getHeader(WIDTH_BYTE_INDEX)) + 0.5);
-            if (width == 0)
-                width = DEFAULT_WIDTH;
+        String fileName = getFileName(lat, lon);
+        if (fileName == null || (Helper.isEmpty(baseUrl) && !new File(fileName).exists()))
+            return null;
 
-            demProvider = new HeightTile(minLat, minLon, width, width, precision, DEGREE, DEGREE);
-            cacheData.put(intKey, demProvider);
-            demProvider.setInterpolate(interpolate);
-            demProvider.setHeights(heights);
+        DataAccess heights = getDirectory().create("dem" + intKey);
+        boolean loadExisting = false;
+        try {
+            loadExisting = heights.loadExisting();
+        } catch (Exception ex) {
+            logger.warn("cannot load dem" + intKey + ", error:" + ex.getMessage());
         }
 
-        if (demProvider.isSeaLevel())
-            return 0;
+        if (!loadExisting) {
+            try {
+                updateHeightsFromFile(lat, lon, heights);
+            } catch (FileNotFoundException ex) {
+                demProvider = new HeightTile(minLat, minLon, DEFAULT_WIDTH, DEFAULT_WIDTH, precision, DEGREE, DEGREE);
+                demProvider.setHeights(heights);
+                demProvider.setSeaLevel(true);
+                // use small size on disc and in-memory
+                heights.create(10)
+                        .flush();
+                cacheData.put(intKey, demProvider);
+                return demProvider;
+            }
+        }
 
-        return demProvider.getHeight(lat, lon);
+        int width = (int) (Math.sqrt(heights.getHeader(WIDTH_BYTE_INDEX)) + 0.5);
+        if (width == 0)
+            width = DEFAULT_WIDTH;
+
+        demProvider = new HeightTile(minLat, minLon, width, width, precision, DEGREE, DEGREE);
+        demProvider.setInterpolate(interpolate);
+        demProvider.setHeights(heights);
+        cacheData.put(intKey, demProvider);
+        return demProvider;
     }
 
     private void updateHeightsFromFile(double lat, double lon, DataAccess heights) throws FileNotFoundException {
@@ -25,16 +25,17 @@ import java.awt.image.Raster;
 import java.io.File;
 import java.io.IOException;
 import java.net.SocketTimeoutException;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
- * Provides basic methods that are usually used in an ElevationProvider that reads tiff files.
+ * Provides basic methods that are usually used in an ElevationProvider that reads tiff files. The tiles are loaded
+ * while holding a lock, but once loaded they can be read from several threads at the same time.
  *
  * @author Robin Boldt
  */
 public abstract class AbstractTiffElevationProvider extends TileBasedElevationProvider {
-    private final Map<String, HeightTile> cacheData = new HashMap<>();
+    private final Map<String, HeightTile> cacheData = new ConcurrentHashMap<>();
     final double precision = 1e7;
 
     private final int WIDTH;
@@ -56,7 +57,7 @@ public abstract class AbstractTiffElevationProvider extends TileBasedElevationPr
     }
 
     @Override
-    public void release() {
+    public synchronized void release() {
         cacheData.clear();
         if (dir != null) {
             // for memory mapped type we remove temporary files
@@ -105,56 +106,69 @@ public abstract class AbstractTiffElevationProvider extends TileBasedElevationPr
 
         lat = (int) (lat * precision) / precision;
         lon = (int) (lon * precision) / precision;
+        HeightTile demProvider = cacheData.get(getFileName(lat, lon));
+        if (demProvider == null)
+            demProvider = loadTile(lat, lon);
+
+        if (demProvider.isSeaLevel())
+            return 0;
+
+        return demProvider.getHeight(lat, lon);
+    }
+
+    /**
+     * Loads the tile for the specified coordinates and puts it into the cache once it is completely initialized.
+     */
+    private synchronized HeightTile loadTile(double lat, double lon) {
         String name = getFileName(lat, lon);
+        // another thread might have loaded the tile in the meantime
         HeightTile demProvider = cacheData.get(name);
-        if (demProvider == null) {
-            if (!cacheDir.exists())
-                cacheDir.mkdirs();
-
-            int minLat = getMinLatForTile(lat);
-            int minLon = getMinLonForTile(lon);
-            // less restrictive against boundary checking
-            demProvider = new HeightTile(minLat, minLon, WIDTH, HEIGHT, LON_DEGREE * precision, LON_DEGREE, LAT_DEGREE);
-            demProvider.setInterpolate(interpolate);
-
-            cacheData.put(name, demProvider);
-            DataAccess heights = getDirectory().create(name + ".gh");
-            demProvider.setHeights(heights);
-            boolean loadExisting = false;
-            try {
-                loadExisting = heights.loadExisting();
-            } catch (Exception ex) {
-                logger.warn("cannot load " + name + ", error: " + ex.getMessage());
-            }
-
-            if (!loadExisting) {
-                File zipFile = new File(cacheDir, new File(getFileNameOfLocalFile(lat, lon)).getName());
-                if (!zipFile.exists())
-                    try {
-                        String zippedURL = getDownloadURL(lat, lon);
-                        downloadToFile(zipFile, zippedURL);
-                    } catch (SSLException ex) {
-                        throw new IllegalStateException("SSL problem with elevation provider " + getClass().getSimpleName(), ex);
-                    } catch (IOException ex) {
-                        demProvider.setSeaLevel(true);
-                        // use small size on disc and in-memory
-                        heights.create(10).flush();
-                        return 0;
-                    }
+        if (demProvider != null)
+            return demProvider;
 
-                // short == 2 bytes
-                heights.create(2L * WIDTH * HEIGHT);
+        if (!cacheDir.exists())
+            cacheDir.mkdirs();
 
-                Raster raster = readFile(zipFile, name + ".tif");
-                fillDataAccessWithElevationData(raster, heights, WIDTH);
+        int minLat = getMinLatForTile(lat);
+        int minLon = getMinLonForTile(lon);
+        // less restrictive against boundary checking
+        demProvider = new HeightTile(minLat, minLon, WIDTH, HEIGHT, LON_DEGREE * precision, LON_DEGREE, LAT_DEGREE);
+        demProvider.setInterpolate(interpolate);
 
-            } // loadExisting
+        DataAccess heights = getDirectory().create(name + ".gh");
+        demProvider.setHeights(heights);
+        boolean loadExisting = false;
+        try {
+            loadExisting = heights.loadExisting();
+        } catch (Exception ex) {
+            logger.warn("cannot load " + name + ", error: " + ex.getMessage());
         }
 
-        if (demProvider.isSeaLevel())
-            return 0;
+        if (!loadExisting) {
+            File zipFile = new File(cacheDir, new File(getFileNameOfLocalFile(lat, lon)).getName());
+            if (!zipFile.exists())
+                try {
+                    String zippedURL = getDownloadURL(lat, lon);
+                    downloadToFile(zipFile, zippedURL);
+                } catch (SSLException ex) {
+                    throw new IllegalStateException("SSL problem with elevation provider " + getClass().getSimpleName(), ex);
+                } catch (IOException ex) {
+                    demProvider.setSeaLevel(true);
+                    // use small size on disc and in-memory
+                    heights.create(10).flush();
+                    cacheData.put(name, demProvider);
+                    return demProvider;
+                }
 
-        return demProvider.getHeight(lat, lon);
+            // short == 2 bytes
+            heights.create(2L * WIDTH * HEIGHT);
+
+            Raster raster = readFile(zipFile, name + ".tif");
+            fillDataAccessWithElevationData(raster, heights, WIDTH);
+
+        } // loadExisting
+        cacheData.put(name, demProvider);
+        return demProvider;
     }
 
     abstract Raster readFile(File file, String tifName);
@@ -0,0 +1,253 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.reader.dem;
+
+import com.carrotsearch.hppc.IntArrayList;
+import com.carrotsearch.hppc.IntHashSet;
+import com.graphhopper.routing.util.SlopeCalculator;
+import com.graphhopper.storage.BaseGraph;
+import com.graphhopper.storage.NodeAccess;
+import com.graphhopper.util.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static com.graphhopper.util.Helper.nf;
+
+/**
+ * Adds the elevation to a graph that was imported without it. Instead of looking up the elevation for every node while
+ * reading the OSM file this runs after the import and splits the nodes and edges into chunks that are processed by
+ * several threads. All threads share the tile cache of the given {@link ElevationProvider}, which therefore has to
+ * support concurrent calls of getEle like the tile based providers.
+ * <p>
+ * For every edge the elevation of the pillar nodes is looked up, the geometry is smoothed (optional), and the distance
+ * and the slopes are recalculated. The number of pillar nodes can only be reduced by the elevation-aware
+ * simplification, so the geometries can be updated in place. This means that long edges have to be sampled already
+ * while reading the OSM file.
+ */
+public class EdgeElevationEnrichment {
+    private static final Logger LOGGER = LoggerFactory.getLogger(EdgeElevationEnrichment.class);
+    private static final int CHUNK_SIZE = 10_000;
+    private final BaseGraph graph;
+    private final ElevationProvider elevationProvider;
+    private final int threads;
+    private final DistanceCalc distCalc = DistanceCalcEarth.DIST_EARTH;
+    private double defaultElevation = 0;
+    private String smoothing = "";
+    private double movingAverageWindowSize = 150;
+    private int ramerMaxElevation = 5;
+    private SlopeCalculator slopeCalculator;
+    private Predicate<EdgeIteratorState> ignorePillarElevation = edge -> false;
+    private RamerDouglasPeucker simplifyAlgo;
+
+    public EdgeElevationEnrichment(BaseGraph graph, ElevationProvider elevationProvider, int threads) {
+        if (!graph.getNodeAccess().is3D())
+            throw new IllegalArgumentException("The graph must support elevation");
+        if (threads < 1)
+            throw new IllegalArgumentException("threads must be positive but was " + threads);
+        this.graph = graph;
+        this.elevationProvider = elevationProvider;
+        this.threads = threads;
+    }
+
+    /**
+     * Sets the elevation in meters that shall be used if the elevation data source is missing a value
+     */
+    public EdgeElevationEnrichment setDefaultElevation(double defaultElevation) {
+        this.defaultElevation = defaultElevation;
+        return this;
+    }
+
+    /**
+     * @param smoothing               either "ramer", "moving_average" or empty to disable smoothing
+     * @param movingAverageWindowSize window size in meters used for moving_average
+     * @param ramerMaxElevation       maximum elevation change in meters that is removed by ramer
+     */
+    public EdgeElevationEnrichment setSmoothing(String smoothing, double movingAverageWindowSize, int ramerMaxElevation) {
+        if (!smoothing.isEmpty() && !smoothing.equals("ramer") && !smoothing.equals("moving_average"))
+            throw new IllegalArgumentException("Unsupported elevation smoothing algorithm: '" + smoothing + "'");
+        this.smoothing = smoothing;
+        this.movingAverageWindowSize = movingAverageWindowSize;
+        this.ramerMaxElevation = ramerMaxElevation;
+        return this;
+    }
+
+    /**
+     * The slopes are calculated during the import, so they have to be recalculated once the elevation is known.
+     *
+     * @param ignorePillarElevation returns true for edges like tunnels and bridges for which the max_slope shall only
+     *                              depend on the tower nodes
+     */
+    public EdgeElevationEnrichment setSlopeCalculator(SlopeCalculator slopeCalculator, Predicate<EdgeIteratorState> ignorePillarElevation) {
+        this.slopeCalculator = slopeCalculator;
+        this.ignorePillarElevation = ignorePillarElevation;
+        return this;
+    }
+
+    /**
+     * The elevation-aware simplification removes points depending on their elevation, so unlike the simplification
+     * without elevation it cannot run while reading the OSM file. It runs after the smoothing, like in OSMReader.
+     */
+    public EdgeElevationEnrichment setSimplification(double maxDistance, double elevationMaxDistance) {
+        simplifyAlgo = new RamerDouglasPeucker().setMaxDistance(maxDistance).setElevationMaxDistance(elevationMaxDistance);
+        return this;
+    }
+
+    public void execute() {
+        StopWatch sw = StopWatch.started();
+        enrichTowerNodes();
+        float towerSeconds = sw.stop().getSeconds();
+        LOGGER.info("Elevation of " + nf(graph.getNodes()) + " tower nodes took " + towerSeconds + "s, "
+                + nf((long) (graph.getNodes() / Math.max(towerSeconds, 1e-3))) + " nodes/s, threads: " + threads);
+
+        sw = StopWatch.started();
+        AtomicLong pillarNodes = new AtomicLong();
+        Queue<Integer> copiedEdges = new ConcurrentLinkedQueue<>();
+        Stream<Runnable> runnables = IntStream.range(0, chunks(graph.getEdges()))
+                .mapToObj(chunk -> () -> pillarNodes.addAndGet(enrichEdges(chunk * CHUNK_SIZE, Math.min(graph.getEdges(), (chunk + 1) * CHUNK_SIZE), copiedEdges)));
+        GHUtility.runConcurrently(runnables, threads);
+        pillarNodes.addAndGet(enrichCopiedEdges(copiedEdges));
+        float edgeSeconds = sw.stop().getSeconds();
+        LOGGER.info("Elevation of " + nf(graph.getEdges()) + " edges and " + nf(pillarNodes.get()) + " pillar nodes took "
+                + edgeSeconds + "s, " + nf((long) (graph.getEdges() / Math.max(edgeSeconds, 1e-3))) + " edges/s, "
+                + nf((long) (pillarNodes.get() / Math.max(edgeSeconds, 1e-3))) + " pillar nodes/s, smoothing: '" + smoothing + "'");
+    }
+
+    private void enrichTowerNodes() {
+        NodeAccess nodeAccess = graph.getNodeAccess();
+        Stream<Runnable> runnables = IntStream.range(0, chunks(graph.getNodes())).mapToObj(chunk -> () -> {
+            int from = chunk * CHUNK_SIZE, to = Math.min(graph.getNodes(), (chunk + 1) * CHUNK_SIZE);
+            double[] elevations = new double[to - from];
+            for (int node = from; node < to; node++)
+                elevations[node - from] = getEle(nodeAccess.getLat(node), nodeAccess.getLon(node));
+            // setNode also updates the bounds of the graph, which is not thread-safe
+            synchronized (nodeAccess) {
+                for (int node = from; node < to; node++)
+                    nodeAccess.setNode(node, nodeAccess.getLat(node), nodeAccess.getLon(node), elevations[node - from]);
+            }
+        });
+        GHUtility.runConcurrently(runnables, threads);
+    }
+
+    /**
+     * Enriches the edges in [from, to) except the edges that share their geometry with a copy, which are added to
+     * copiedEdges instead.
+     *
+     * @return the number of pillar nodes of the enriched edges
+     */
+    private long enrichEdges(int from, int to, Queue<Integer> copiedEdges) {
+        EdgeExplorer explorer = graph.createEdgeExplorer();
+        IntArrayList copies = new IntArrayList();
+        long pillarNodes = 0;
+        for (int edgeId = from; edgeId < to; edgeId++) {
+            EdgeIteratorState edge = graph.getEdgeIteratorState(edgeId, Integer.MIN_VALUE);
+            copies.clear();
+            graph.forEdgeAndCopiesOfEdge(explorer, edge.getBaseNode(), edgeId, copies::add);
+            if (copies.size() > 1) {
+                copiedEdges.add(edgeId);
+                continue;
+            }
+            PointList pointList = calcPointList(edge);
+            setWayGeometry(explorer, edge, pointList);
+            setDistanceAndSlopes(edge, pointList);
+            pillarNodes += pointList.size() - 2;
+        }
+        return pillarNodes;
+    }
+
+    /**
+     * The geometry of an edge and its copies is shared, so it is calculated only once and all copies get the same
+     * distance, like when the edge is copied after the elevation was added. Processing them on a single thread also
+     * prevents that the shared geometry is read while it is written.
+     */
+    private long enrichCopiedEdges(Queue<Integer> copiedEdges) {
+        EdgeExplorer explorer = graph.createEdgeExplorer();
+        IntHashSet done = new IntHashSet();
+        IntArrayList copies = new IntArrayList();
+        long pillarNodes = 0;
+        for (int edgeId : copiedEdges) {
+            if (done.contains(edgeId))
+                continue;
+            EdgeIteratorState edge = graph.getEdgeIteratorState(edgeId, Integer.MIN_VALUE);
+            copies.clear();
+            graph.forEdgeAndCopiesOfEdge(explorer, edge.getBaseNode(), edgeId, copies::add);
+            PointList pointList = calcPointList(edge);
+            setWayGeometry(explorer, edge, pointList);
+            for (int i = 0; i < copies.size(); i++) {
+                int copy = copies.get(i);
+                done.add(copy);
+                setDistanceAndSlopes(graph.getEdgeIteratorState(copy, Integer.MIN_VALUE), pointList);
+                pillarNodes += pointList.size() - 2;
+            }
+        }
+        return pillarNodes;
+    }
+
+    private PointList calcPointList(EdgeIteratorState edge) {
+        PointList pointList = edge.fetchWayGeometry(FetchMode.ALL);
+        for (int i = 1; i < pointList.size() - 1; i++)
+            pointList.setElevation(i, getEle(pointList.getLat(i), pointList.getLon(i)));
+
+        if (smoothing.equals("ramer"))
+            EdgeElevationSmoothingRamer.smooth(pointList, ramerMaxElevation);
+        else if (smoothing.equals("moving_average"))
+            EdgeElevationSmoothingMovingAverage.smooth(pointList, movingAverageWindowSize);
+
+        if (simplifyAlgo != null && pointList.size() > 2)
+            simplifyAlgo.simplify(pointList);
+        return pointList;
+    }
+
+    private void setWayGeometry(EdgeExplorer explorer, EdgeIteratorState edge, PointList pointList) {
+        if (pointList.size() > 2)
+            edge.setWayGeometry(pointList.shallowCopy(1, pointList.size() - 1, false));
+        else if (edge.fetchWayGeometry(FetchMode.PILLAR_ONLY).size() > 0)
+            // the simplification removed all pillar nodes
+            graph.removeWayGeometryOfEdgeAndCopies(explorer, edge);
+    }
+
+    private void setDistanceAndSlopes(EdgeIteratorState edge, PointList pointList) {
+        edge.setDistance(calcDistance(pointList, edge.getDistance()));
+        if (slopeCalculator != null)
+            slopeCalculator.setSlopes(edge.getEdge(), graph.getEdgeAccess(), pointList, ignorePillarElevation.test(edge));
+    }
+
+    private double calcDistance(PointList pointList, double prevDistance) {
+        double distance = distCalc.calcDistance(pointList);
+        // keep the limits that were applied while reading the OSM file, see OSMReader#addEdge
+        double maxDistance = (Integer.MAX_VALUE - 1) / 1000d;
+        if (Double.isNaN(distance))
+            return prevDistance;
+        return Math.min(maxDistance, Math.max(0.001, distance));
+    }
+
+    private double getEle(double lat, double lon) {
+        double ele = elevationProvider.getEle(lat, lon);
+        return Double.isNaN(ele) ? defaultElevation : ele;
+    }
+
+    private static int chunks(int count) {
+        return (count + CHUNK_SIZE - 1) / CHUNK_SIZE;
+    }
+}
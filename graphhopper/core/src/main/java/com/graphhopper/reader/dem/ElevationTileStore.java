@@ -0,0 +1,216 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.reader.dem;
+
+import com.graphhopper.storage.DataAccess;
+import com.graphhopper.storage.Directory;
+import com.graphhopper.util.Constants;
+import com.graphhopper.util.GHUtility;
+
+/**
+ * A single file that contains the elevation grid of many one degree tiles. In contrast to the tile based providers no
+ * tile needs to be decoded at import time and all tiles share one {@link DataAccess}, so for MMAP the data is kept in
+ * the page cache of the operating system and can be shared between several imports. Reading is lock-free and can be
+ * done from many threads at the same time.
+ * <p>
+ * The file starts with an index that maps every one degree cell of the world to its tile (or to no tile at all) which
+ * is followed by the height samples of all tiles. Every tile stores (samplesPerDegree + 1)^2 samples as shorts and the
+ * first row is the northernmost one like for the hgt files. Tiles without data are not stored and are treated as sea
+ * level.
+ *
+ * @see TileStoreElevationProvider
+ */
+public class ElevationTileStore {
+    static final short MISSING = Short.MIN_VALUE;
+    private static final int LAT_CELLS = 180;
+    private static final int LON_CELLS = 360;
+    private static final long INDEX_BYTES = 4L * LAT_CELLS * LON_CELLS;
+    private final DataAccess da;
+    private int samplesPerDegree;
+    private int width;
+    private int tiles;
+    // the index is small and read for every lookup, so we keep a copy on the heap
+    private int[] index;
+
+    public ElevationTileStore(Directory dir) {
+        this.da = dir.create("elevation_tile_store");
+    }
+
+    /**
+     * @param samplesPerDegree the resolution of the grid, e.g. 1200 for three arc seconds like SRTM or 3600 for one
+     *                         arc second
+     */
+    public ElevationTileStore create(int samplesPerDegree) {
+        if (samplesPerDegree < 1 || samplesPerDegree > 3600)
+            throw new IllegalArgumentException("samplesPerDegree must be in [1, 3600] but was " + samplesPerDegree);
+        this.samplesPerDegree = samplesPerDegree;
+        this.width = samplesPerDegree + 1;
+        this.index = new int[LAT_CELLS * LON_CELLS];
+        da.create(INDEX_BYTES);
+        return this;
+    }
+
+    public boolean loadExisting() {
+        if (!da.loadExisting())
+            return false;
+        GHUtility.checkDAVersion(da.getName(), Constants.VERSION_ELEVATION_TILE_STORE, da.getHeader(0));
+        samplesPerDegree = da.getHeader(4);
+        width = samplesPerDegree + 1;
+        tiles = da.getHeader(2 * 4);
+        index = new int[LAT_CELLS * LON_CELLS];
+        for (int i = 0; i < index.length; i++) {
+            index[i] = da.getInt(4L * i);
+        }
+        return true;
+    }
+
+    public int getSamplesPerDegree() {
+        return samplesPerDegree;
+    }
+
+    public int getTiles() {
+        return tiles;
+    }
+
+    /**
+     * Stores the samples of the one degree cell with the given south-west corner. The samples have to be ordered
+     * row by row starting with the northernmost row and in every row from west to east. Invalid samples are expected
+     * as {@link Short#MIN_VALUE}.
+     */
+    public void setTile(int minLat, int minLon, short[] samples) {
+        if (samples.length != width * width)
+            throw new IllegalArgumentException("Tile " + minLat + "," + minLon + " needs " + width * width + " samples but got " + samples.length);
+        int cell = getCell(minLat, minLon);
+        if (index[cell] == 0) {
+            tiles++;
+            index[cell] = tiles;
+            da.setInt(4L * cell, tiles);
+        }
+        long pointer = getTilePointer(index[cell]);
+        da.ensureCapacity(pointer + 2L * samples.length);
+        for (int i = 0; i < samples.length; i++) {
+            da.setShort(pointer + 2L * i, samples[i]);
+        }
+    }
+
+    /**
+     * Samples the one degree cell with the given south-west corner from the specified provider and stores it, unless
+     * the provider has no data for this cell, i.e. only returns 0 like for a missing tile.
+     *
+     * @return true if the tile was stored
+     */
+    public boolean importTile(ElevationProvider source, int minLat, int minLon) {
+        short[] samples = new short[width * width];
+        boolean hasData = false;
+        // the tile based providers assign the northern and eastern border to the neighbouring tiles, so we sample
+        // slightly inside and do not need these tiles
+        double maxLat = minLat + 1 - 1e-6, maxLon = minLon + 1 - 1e-6;
+        for (int y = 0; y < width; y++) {
+            double lat = Math.min(maxLat, minLat + 1 - (double) y / samplesPerDegree);
+            for (int x = 0; x < width; x++) {
+                double ele = source.getEle(lat, Math.min(maxLon, minLon + (double) x / samplesPerDegree));
+                if (Double.isNaN(ele)) {
+                    samples[y * width + x] = MISSING;
+                } else {
+                    samples[y * width + x] = (short) Math.round(ele);
+                    hasData |= samples[y * width + x] != 0;
+                }
+            }
+        }
+        if (hasData)
+            setTile(minLat, minLon, samples);
+        return hasData;
+    }
+
+    public boolean hasTile(int minLat, int minLon) {
+        return index[getCell(minLat, minLon)] != 0;
+    }
+
+    /**
+     * @return the elevation in meters, 0 if there is no tile for the location or Double.NaN if the tile has no
+     * valid sample for it
+     */
+    public double getEle(double lat, double lon, boolean interpolate) {
+        int minLat = clamp((int) Math.floor(lat), -90, 89);
+        int minLon = clamp((int) Math.floor(lon), -180, 179);
+        int tile = index[getCell(minLat, minLon)];
+        if (tile == 0)
+            return 0;
+
+        long pointer = getTilePointer(tile);
+        double x = (lon - minLon) * samplesPerDegree;
+        double y = (minLat + 1 - lat) * samplesPerDegree;
+        double elevation;
+        if (interpolate) {
+            int left = clamp((int) x, 0, samplesPerDegree - 1);
+            int top = clamp((int) y, 0, samplesPerDegree - 1);
+            double w00 = getSample(pointer, left, top);
+            double w10 = getSample(pointer, left + 1, top);
+            double w01 = getSample(pointer, left, top + 1);
+            double w11 = getSample(pointer, left + 1, top + 1);
+            double topEle = linearInterpolate(w00, w10, x - left);
+            double bottomEle = linearInterpolate(w01, w11, x - left);
+            elevation = linearInterpolate(topEle, bottomEle, y - top);
+        } else {
+            elevation = getSample(pointer, clamp((int) Math.round(x), 0, samplesPerDegree), clamp((int) Math.round(y), 0, samplesPerDegree));
+        }
+        return isValid(elevation) ? elevation : Double.NaN;
+    }
+
+    private double getSample(long tilePointer, int x, int y) {
+        return da.getShort(tilePointer + 2L * ((long) y * width + x));
+    }
+
+    private static double linearInterpolate(double a, double b, double f) {
+        // interpolate between a and b but if either are invalid, return the other
+        return !isValid(a) ? b : !isValid(b) ? a : (a + (b - a) * f);
+    }
+
+    private static boolean isValid(double elevation) {
+        return elevation != MISSING;
+    }
+
+    private long getTilePointer(int tile) {
+        return INDEX_BYTES + (tile - 1) * 2L * width * width;
+    }
+
+    private static int getCell(int minLat, int minLon) {
+        if (minLat < -90 || minLat > 89 || minLon < -180 || minLon > 179)
+            throw new IllegalArgumentException("Invalid tile " + minLat + "," + minLon);
+        return (minLat + 90) * LON_CELLS + minLon + 180;
+    }
+
+    private static int clamp(int value, int min, int max) {
+        return Math.max(min, Math.min(max, value));
+    }
+
+    public void flush() {
+        da.setHeader(0, Constants.VERSION_ELEVATION_TILE_STORE);
+        da.setHeader(4, samplesPerDegree);
+        da.setHeader(2 * 4, tiles);
+        da.flush();
+    }
+
+    public void close() {
+        da.close();
+    }
+
+    public long getCapacity() {
+        return da.getCapacity();
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.reader.dem;
+
+/**
+ * Reads elevation data from a pre-built {@link ElevationTileStore}, which can be created from local hgt or tiff files
+ * with the ElevationTileStoreImport tool. Nothing is downloaded or decoded at import time and unlike the other
+ * providers this one can be used from several threads at the same time.
+ */
+public class TileStoreElevationProvider extends TileBasedElevationProvider {
+    private volatile ElevationTileStore store;
+
+    public TileStoreElevationProvider(String storeDir) {
+        super(storeDir);
+    }
+
+    @Override
+    public double getEle(double lat, double lon) {
+        return getStore().getEle(lat, lon, interpolate);
+    }
+
+    ElevationTileStore getStore() {
+        ElevationTileStore result = store;
+        if (result == null) {
+            synchronized (this) {
+                result = store;
+                if (result == null) {
+                    result = new ElevationTileStore(getDirectory());
+                    if (!result.loadExisting())
+                        throw new IllegalStateException("No elevation tile store found in " + getCacheDir());
+                    store = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public synchronized void release() {
+        // the store is not temporary, so unlike for the other providers we never remove the files
+        if (store != null)
+            store.close();
+        store = null;
+        if (dir != null)
+            dir.close();
+        dir = null;
+    }
+
+    @Override
+    public String toString() {
+        return "tile_store";
+    }
+}
@@ -86,6 +86,22 @@ public class OSMReader {
     private final DistanceCalc distCalc = DistanceCalcEarth.DIST_EARTH;
     private final RestrictionSetter restrictionSetter;
     private ElevationProvider eleProvider = ElevationProvider.NOOP;
+    // used to sample long edges when the elevation is only added after the import
+    private final ElevationProvider defaultElevationProvider = new ElevationProvider() {
+        @Override
+        public double getEle(double lat, double lon) {
+            return config.getDefaultElevation();
+        }
+
+        @Override
+        public boolean canInterpolate() {
+            return false;
+        }
+
+        @Override
+        public void release() {
+        }
+    };
     private AreaIndex<CustomArea> areaIndex;
     private CountryRuleFactory countryRuleFactory = null;
     private File osmFile;
@@ -163,7 +179,7 @@ public class OSMReader {
             throw new IllegalStateException("BaseGraph must be initialize before we can read OSM");
 
         WaySegmentParser waySegmentParser = new WaySegmentParser.Builder(baseGraph.getNodeAccess(), baseGraph.getDirectory())
-                .setElevationProvider(this::getElevation)
+                .setElevationProvider(isPostImportElevation() ? node -> config.getDefaultElevation() : this::getElevation)
                 .setWayFilter(this::acceptWay)
                 .setSplitNodeFilter(this::isBarrierNode)
                 .setWayPreprocessor(this::preprocessWay)
@@ -190,6 +206,14 @@ public class OSMReader {
         return osmDataDate;
     }
 
+    /**
+     * @return true if the elevation is not looked up while reading the OSM file, but added afterwards using
+     * {@link com.graphhopper.reader.dem.EdgeElevationEnrichment}
+     */
+    private boolean isPostImportElevation() {
+        return config.getElevationThreads() > 0 && eleProvider != ElevationProvider.NOOP;
+    }
+
     protected double getElevation(ReaderNode node) {
         double ele = eleProvider.getEle(node);
         return Double.isNaN(ele) ? config.getDefaultElevation() : ele;
@@ -329,7 +353,12 @@ public class OSMReader {
         // to do some kind of elevation processing (bridge+tunnel interpolation in GraphHopper class, maybe this can
         // go together
 
-        if (pointList.is3D()) {
+        if (pointList.is3D() && isPostImportElevation()) {
+            // the geometry cannot grow after the import, so we already need to add the points along long edges here,
+            // but their elevation will be added later just like the smoothing
+            if (config.getLongEdgeSamplingDistance() < Double.MAX_VALUE)
+                pointList = EdgeSampling.sample(pointList, config.getLongEdgeSamplingDistance(), distCalc, defaultElevationProvider);
+        } else if (pointList.is3D()) {
             // sample points along long edges
             if (config.getLongEdgeSamplingDistance() < Double.MAX_VALUE)
                 pointList = EdgeSampling.sample(pointList, config.getLongEdgeSamplingDistance(), distCalc, eleProvider);
@@ -343,7 +372,10 @@ public class OSMReader {
                 throw new AssertionError("Unsupported elevation smoothing algorithm: '" + config.getElevationSmoothing() + "'");
         }
 
-        if (config.getMaxWayPointDistance() > 0 && pointList.size() > 2)
+        // the elevation-aware simplification has to wait until the elevation is known, otherwise it would remove the
+        // points that are only kept for their elevation, see EdgeElevationEnrichment#setSimplification
+        boolean simplifyLater = pointList.is3D() && isPostImportElevation() && config.getElevationMaxWayPointDistance() < Double.MAX_VALUE;
+        if (config.getMaxWayPointDistance() > 0 && pointList.size() > 2 && !simplifyLater)
             simplifyAlgo.simplify(pointList);
 
         double distance = distCalc.calcDistance(pointList);
@@ -18,23 +18,29 @@
 
 package com.graphhopper.routing;
 
+import com.carrotsearch.hppc.IntHashSet;
 import com.carrotsearch.hppc.IntIndexedContainer;
+import com.carrotsearch.hppc.IntObjectMap;
 import com.carrotsearch.hppc.predicates.IntObjectPredicate;
+import com.graphhopper.coll.GHIntObjectHashMap;
 import com.graphhopper.storage.Graph;
+import com.graphhopper.storage.RoutingCHEdgeExplorer;
+import com.graphhopper.storage.RoutingCHEdgeIterator;
 import com.graphhopper.storage.RoutingCHGraph;
 import com.graphhopper.util.EdgeIteratorState;
 import com.graphhopper.util.PMap;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
-import java.util.List;
+import java.util.*;
 
 /**
  * Minimum number-of-moving-parts implementation of alternative route search with
  * contraction hierarchies.
  * <p>
  * "Alternative Routes in Road Networks" (Abraham et al.)
+ * <p>
+ * The shortest path s -> v -> t of a via-node candidate v is not calculated with two additional bidirectional
+ * searches. Instead only the (small) upward searches of v are run and connected with the shortest path trees of s and
+ * t from the main search, which cover all nodes that can be on an admissible alternative.
  *
  * @author michaz
  */
@@ -44,6 +50,8 @@ public class AlternativeRouteCH extends DijkstraBidirectionCHNoSOD {
     private final double localOptimalityFactor;
     private final int maxPaths;
     private final List<AlternativeInfo> alternatives = new ArrayList<>();
+    // all nodes of the current alternatives
+    private final IntHashSet alternativeNodes = new IntHashSet();
     private int extraVisitedNodes = 0;
 
     public AlternativeRouteCH(RoutingCHGraph graph, PMap hints) {
@@ -78,7 +86,7 @@ public class AlternativeRouteCH extends DijkstraBidirectionCHNoSOD {
             return Collections.emptyList();
         }
 
-        alternatives.add(new AlternativeInfo(bestPath, 0));
+        addAlternative(new AlternativeInfo(bestPath, 0));
 
         final ArrayList<PotentialAlternativeInfo> potentialAlternativeInfos = new ArrayList<>();
 
@@ -95,7 +103,7 @@ public class AlternativeRouteCH extends DijkstraBidirectionCHNoSOD {
             // We still use this preliminary path to filter for shared path length with other alternatives,
             // so we don't have to work so much.
             Path preliminaryRoute = createPathExtractor().extract(fromSPTEntry, toSPTEntry, fromSPTEntry.getWeightOfVisitedPath() + toSPTEntry.getWeightOfVisitedPath());
-            double preliminaryShare = calculateShare(preliminaryRoute);
+            double preliminaryShare = calculateShare(preliminaryRoute, preliminaryRoute.calcEdges());
             if (preliminaryShare > maxShareFactor) {
                 return true;
             }
@@ -113,25 +121,21 @@ public class AlternativeRouteCH extends DijkstraBidirectionCHNoSOD {
 
             // Okay, now we want the s -> v -> t shortest via-path, so we route s -> v and v -> t
             // and glue them together.
-            DijkstraBidirectionCH svRouter = new DijkstraBidirectionCH(graph);
-            svRouter.setPathExtractorSupplier(this::createPathExtractor);
-            final Path svPath = svRouter.calcPath(s, v);
-            extraVisitedNodes += svRouter.getVisitedNodes();
-
-            DijkstraBidirectionCH vtRouter = new DijkstraBidirectionCH(graph);
-            vtRouter.setPathExtractorSupplier(this::createPathExtractor);
-            final Path vtPath = vtRouter.calcPath(v, t);
+            final Path svPath = calcPathViaTree(v, bestWeightMapFrom, true);
+            final Path vtPath = calcPathViaTree(v, bestWeightMapTo, false);
+            if (!svPath.isFound() || !vtPath.isFound())
+                continue;
             Path path = concat(graph.getBaseGraph(), svPath, vtPath);
-            extraVisitedNodes += vtRouter.getVisitedNodes();
+            List<EdgeIteratorState> edges = path.calcEdges();
 
-            double sharedDistanceWithShortest = sharedDistanceWithShortest(path);
+            double sharedDistanceWithShortest = sharedDistanceWithShortest(edges);
             double detourLength = path.getDistance() - sharedDistanceWithShortest;
             double directLength = bestPath.getDistance() - sharedDistanceWithShortest;
             if (detourLength > directLength * maxWeightFactor) {
                 continue;
             }
 
-            double share = calculateShare(path);
+            double share = calculateShare(path, edges);
             if (share > maxShareFactor) {
                 continue;
             }
@@ -139,75 +143,112 @@ public class AlternativeRouteCH extends DijkstraBidirectionCHNoSOD {
             // This is the final test we need: Discard paths that are not "locally shortest" around v.
             // So move a couple of nodes to the left and right from v on our path,
             // route, and check if v is on the shortest path.
-            final IntIndexedContainer svNodes = svPath.calcNodes();
-            int vIndex = svNodes.size() - 1;
-            if (!tTest(path, vIndex))
+            int vIndex = svPath.getEdgeCount();
+            if (!tTest(path, edges, v, vIndex, detourLength))
                 continue;
 
-            alternatives.add(new AlternativeInfo(path, share));
+            addAlternative(new AlternativeInfo(path, share));
             if (alternatives.size() >= maxPaths)
                 break;
         }
         return alternatives;
     }
 
-    private double calculateShare(final Path path) {
-        double sharedDistance = sharedDistance(path);
-        return sharedDistance / path.getDistance();
+    /**
+     * Calculates the shortest path between v and the root of the given shortest path tree. The tree is only used where
+     * it is complete, i.e. the weight of the resulting path must not exceed maxWeightFactor * bestWeight, which is
+     * guaranteed for all via-node candidates.
+     *
+     * @param reverse true if the tree is the forward tree of s, i.e. the upward search from v runs backward
+     */
+    private Path calcPathViaTree(int v, IntObjectMap<SPTEntry> tree, boolean reverse) {
+        RoutingCHEdgeExplorer explorer = reverse ? inEdgeExplorer : outEdgeExplorer;
+        IntObjectMap<SPTEntry> bestWeightMap = new GHIntObjectHashMap<>();
+        PriorityQueue<SPTEntry> queue = new PriorityQueue<>();
+        SPTEntry startEntry = new SPTEntry(v, 0);
+        bestWeightMap.put(v, startEntry);
+        queue.add(startEntry);
+        SPTEntry bestEntry = null, bestTreeEntry = null;
+        double bestViaWeight = Double.POSITIVE_INFINITY;
+        while (!queue.isEmpty()) {
+            SPTEntry curr = queue.poll();
+            if (curr.isDeleted())
+                continue;
+            // all weights in the tree are non-negative, so we cannot find a better meeting point
+            if (curr.weight >= bestViaWeight)
+                break;
+            extraVisitedNodes++;
+            SPTEntry treeEntry = tree.get(curr.adjNode);
+            if (treeEntry != null && curr.weight + treeEntry.weight < bestViaWeight) {
+                bestViaWeight = curr.weight + treeEntry.weight;
+                bestEntry = curr;
+                bestTreeEntry = treeEntry;
+            }
+            RoutingCHEdgeIterator iter = explorer.setBaseNode(curr.adjNode);
+            while (iter.next()) {
+                if (iter.getEdge() == curr.edge || !levelEdgeFilter.accept(iter))
+                    continue;
+                double weight = curr.weight + iter.getWeight(reverse);
+                if (Double.isInfinite(weight))
+                    continue;
+                SPTEntry entry = bestWeightMap.get(iter.getAdjNode());
+                if (entry != null) {
+                    if (entry.weight <= weight)
+                        continue;
+                    entry.setDeleted();
+                }
+                entry = new SPTEntry(iter.getEdge(), iter.getAdjNode(), weight, curr);
+                bestWeightMap.put(iter.getAdjNode(), entry);
+                queue.add(entry);
+            }
+        }
+        if (bestEntry == null)
+            return createEmptyPath();
+        return reverse
+                ? createPathExtractor().extract(bestTreeEntry, bestEntry, bestViaWeight)
+                : createPathExtractor().extract(bestEntry, bestTreeEntry, bestViaWeight);
+    }
+
+    private void addAlternative(AlternativeInfo alternative) {
+        alternatives.add(alternative);
+        alternativeNodes.addAll(alternative.nodes);
     }
 
-    private double sharedDistance(Path path) {
+    private double calculateShare(Path path, List<EdgeIteratorState> edges) {
         double sharedDistance = 0.0;
-        List<EdgeIteratorState> edges = path.calcEdges();
         for (EdgeIteratorState edge : edges) {
-            if (nodesInCurrentAlternativeSetContains(edge.getBaseNode()) && nodesInCurrentAlternativeSetContains(edge.getAdjNode())) {
+            if (alternativeNodes.contains(edge.getBaseNode()) && alternativeNodes.contains(edge.getAdjNode())) {
                 sharedDistance += edge.getDistance();
             }
         }
-        return sharedDistance;
+        return sharedDistance / path.getDistance();
     }
 
-    private double sharedDistanceWithShortest(Path path) {
+    private double sharedDistanceWithShortest(List<EdgeIteratorState> edges) {
         double sharedDistance = 0.0;
-        List<EdgeIteratorState> edges = path.calcEdges();
+        IntHashSet shortestNodes = alternatives.get(0).nodes;
         for (EdgeIteratorState edge : edges) {
-            if (alternatives.get(0).nodes.contains(edge.getBaseNode()) && alternatives.get(0).nodes.contains(edge.getAdjNode())) {
+            if (shortestNodes.contains(edge.getBaseNode()) && shortestNodes.contains(edge.getAdjNode())) {
                 sharedDistance += edge.getDistance();
             }
         }
         return sharedDistance;
     }
 
-    private boolean nodesInCurrentAlternativeSetContains(int v) {
-        for (AlternativeInfo alternative : alternatives) {
-            if (alternative.nodes.contains(v)) {
-                return true;
-            }
-        }
-        return false;
-    }
-
-    private boolean tTest(Path path, int vIndex) {
+    private boolean tTest(Path path, List<EdgeIteratorState> edges, int v, int vIndex, double detourDistance) {
         if (path.getEdgeCount() == 0) return true;
-        double detourDistance = detourDistance(path);
         double T = 0.5 * localOptimalityFactor * detourDistance;
-        int fromNode = getPreviousNodeTMetersAway(path, vIndex, T);
-        int toNode = getNextNodeTMetersAway(path, vIndex, T);
+        int fromNode = getPreviousNodeTMetersAway(edges, vIndex, T);
+        int toNode = getNextNodeTMetersAway(edges, vIndex, T);
         DijkstraBidirectionCH tRouter = new DijkstraBidirectionCH(graph);
         tRouter.setPathExtractorSupplier(this::createPathExtractor);
         Path tPath = tRouter.calcPath(fromNode, toNode);
         extraVisitedNodes += tRouter.getVisitedNodes();
         IntIndexedContainer tNodes = tPath.calcNodes();
-        int v = path.calcNodes().get(vIndex);
         return tNodes.contains(v);
     }
 
-    private double detourDistance(Path path) {
-        return path.getDistance() - sharedDistanceWithShortest(path);
-    }
-
-    private int getPreviousNodeTMetersAway(Path path, int vIndex, double T) {
-        List<EdgeIteratorState> edges = path.calcEdges();
+    private int getPreviousNodeTMetersAway(List<EdgeIteratorState> edges, int vIndex, double T) {
         double distance = 0.0;
         int i = vIndex;
         while (i > 0 && distance < T) {
@@ -217,8 +258,7 @@ public class AlternativeRouteCH extends DijkstraBidirectionCHNoSOD {
         return edges.get(i).getBaseNode();
     }
 
-    private int getNextNodeTMetersAway(Path path, int vIndex, double T) {
-        List<EdgeIteratorState> edges = path.calcEdges();
+    private int getNextNodeTMetersAway(List<EdgeIteratorState> edges, int vIndex, double T) {
         double distance = 0.0;
         int i = vIndex;
         while (i < edges.size() - 1 && distance < T) {
@@ -262,12 +302,13 @@ public class AlternativeRouteCH extends DijkstraBidirectionCHNoSOD {
     public static class AlternativeInfo {
         final double shareWeight;
         final Path path;
-        final IntIndexedContainer nodes;
+        final IntHashSet nodes;
 
         AlternativeInfo(Path path, double shareWeight) {
             this.path = path;
             this.shareWeight = shareWeight;
-            this.nodes = path.calcNodes();
+            this.nodes = new IntHashSet();
+            this.nodes.addAll(path.calcNodes());
         }
 
         @Override
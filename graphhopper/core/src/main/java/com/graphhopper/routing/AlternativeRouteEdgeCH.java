@@ -18,6 +18,7 @@
 
 package com.graphhopper.routing;
 
+import com.carrotsearch.hppc.IntHashSet;
 import com.carrotsearch.hppc.IntIndexedContainer;
 import com.carrotsearch.hppc.cursors.IntCursor;
 import com.carrotsearch.hppc.predicates.IntObjectPredicate;
@@ -45,6 +46,8 @@ public class AlternativeRouteEdgeCH extends DijkstraBidirectionEdgeCHNoSOD {
     private final double localOptimalityFactor;
     private final int maxPaths;
     private final List<AlternativeInfo> alternatives = new ArrayList<>();
+    // all nodes of the current alternatives
+    private final IntHashSet alternativeNodes = new IntHashSet();
     private int extraVisitedNodes = 0;
 
     public AlternativeRouteEdgeCH(RoutingCHGraph graph, PMap hints) {
@@ -79,7 +82,7 @@ public class AlternativeRouteEdgeCH extends DijkstraBidirectionEdgeCHNoSOD {
             return Collections.emptyList();
         }
 
-        alternatives.add(new AlternativeInfo(bestPath, 0));
+        addAlternative(new AlternativeInfo(bestPath, 0));
 
         final ArrayList<PotentialAlternativeInfo> potentialAlternativeInfos = new ArrayList<>();
 
@@ -102,7 +105,7 @@ public class AlternativeRouteEdgeCH extends DijkstraBidirectionEdgeCHNoSOD {
             // We still use this preliminary path to filter for shared path length with other alternatives,
             // so we don't have to work so much.
             Path preliminaryRoute = createPathExtractor().extract(fromSPTEntry, toSPTEntry, fromSPTEntry.getWeightOfVisitedPath() + toSPTEntry.getWeightOfVisitedPath());
-            double preliminaryShare = calculateShare(preliminaryRoute);
+            double preliminaryShare = calculateShare(preliminaryRoute, preliminaryRoute.calcEdges());
             if (preliminaryShare > maxShareFactor) {
                 return true;
             }
@@ -133,15 +136,16 @@ public class AlternativeRouteEdgeCH extends DijkstraBidirectionEdgeCHNoSOD {
             final Path uvtPath = vtRouter.calcPath(u, t, tailSv, ANY_EDGE);
             Path path = concat(graph.getBaseGraph(), suvPath, uvtPath);
             extraVisitedNodes += vtRouter.getVisitedNodes();
+            List<EdgeIteratorState> edges = path.calcEdges();
 
-            double sharedDistanceWithShortest = sharedDistanceWithShortest(path);
+            double sharedDistanceWithShortest = sharedDistanceWithShortest(edges);
             double detourLength = path.getDistance() - sharedDistanceWithShortest;
             double directLength = bestPath.getDistance() - sharedDistanceWithShortest;
             if (detourLength > directLength * maxWeightFactor) {
                 continue;
             }
 
-            double share = calculateShare(path);
+            double share = calculateShare(path, edges);
             if (share > maxShareFactor) {
                 continue;
             }
@@ -149,60 +153,48 @@ public class AlternativeRouteEdgeCH extends DijkstraBidirectionEdgeCHNoSOD {
             // This is the final test we need: Discard paths that are not "locally shortest" around v.
             // So move a couple of nodes to the left and right from v on our path,
             // route, and check if v is on the shortest path.
-            final IntIndexedContainer svNodes = suvPath.calcNodes();
-            int vIndex = svNodes.size() - 1;
-            if (!tTest(path, vIndex))
+            int vIndex = suvPath.getEdgeCount();
+            if (!tTest(path, edges, vIndex, detourLength))
                 continue;
 
-            alternatives.add(new AlternativeInfo(path, share));
+            addAlternative(new AlternativeInfo(path, share));
             if (alternatives.size() >= maxPaths)
                 break;
         }
         return alternatives;
     }
 
-    private double calculateShare(final Path path) {
-        double sharedDistance = sharedDistance(path);
-        return sharedDistance / path.getDistance();
+    private void addAlternative(AlternativeInfo alternative) {
+        alternatives.add(alternative);
+        alternativeNodes.addAll(alternative.nodes);
     }
 
-    private double sharedDistance(Path path) {
+    private double calculateShare(Path path, List<EdgeIteratorState> edges) {
         double sharedDistance = 0.0;
-        List<EdgeIteratorState> edges = path.calcEdges();
         for (EdgeIteratorState edge : edges) {
-            if (nodesInCurrentAlternativeSetContains(edge.getBaseNode()) && nodesInCurrentAlternativeSetContains(edge.getAdjNode())) {
+            if (alternativeNodes.contains(edge.getBaseNode()) && alternativeNodes.contains(edge.getAdjNode())) {
                 sharedDistance += edge.getDistance();
             }
         }
-        return sharedDistance;
+        return sharedDistance / path.getDistance();
     }
 
-    private double sharedDistanceWithShortest(Path path) {
+    private double sharedDistanceWithShortest(List<EdgeIteratorState> edges) {
         double sharedDistance = 0.0;
-        List<EdgeIteratorState> edges = path.calcEdges();
+        IntHashSet shortestNodes = alternatives.get(0).nodes;
         for (EdgeIteratorState edge : edges) {
-            if (alternatives.get(0).nodes.contains(edge.getBaseNode()) && alternatives.get(0).nodes.contains(edge.getAdjNode())) {
+            if (shortestNodes.contains(edge.getBaseNode()) && shortestNodes.contains(edge.getAdjNode())) {
                 sharedDistance += edge.getDistance();
             }
         }
         return sharedDistance;
     }
 
-    private boolean nodesInCurrentAlternativeSetContains(int v) {
-        for (AlternativeInfo alternative : alternatives) {
-            if (alternative.nodes.contains(v)) {
-                return true;
-            }
-        }
-        return false;
-    }
-
-    private boolean tTest(Path path, int vIndex) {
+    private boolean tTest(Path path, List<EdgeIteratorState> edges, int vIndex, double detourDistance) {
         if (path.getEdgeCount() == 0) return true;
-        double detourDistance = detourDistance(path);
         double T = 0.5 * localOptimalityFactor * detourDistance;
-        EdgeIteratorState fromNode = getPreviousNodeTMetersAway(path, vIndex, T);
-        EdgeIteratorState toNode = getNextNodeTMetersAway(path, vIndex, T);
+        EdgeIteratorState fromNode = getPreviousNodeTMetersAway(edges, vIndex, T);
+        EdgeIteratorState toNode = getNextNodeTMetersAway(edges, vIndex, T);
         DijkstraBidirectionEdgeCHNoSOD tRouter = new DijkstraBidirectionEdgeCHNoSOD(graph);
         Path tPath = tRouter.calcPath(fromNode.getBaseNode(), toNode.getAdjNode(), fromNode.getEdge(), toNode.getEdge());
         extraVisitedNodes += tRouter.getVisitedNodes();
@@ -211,12 +203,7 @@ public class AlternativeRouteEdgeCH extends DijkstraBidirectionEdgeCHNoSOD {
         return tNodes.contains(v);
     }
 
-    private double detourDistance(Path path) {
-        return path.getDistance() - sharedDistanceWithShortest(path);
-    }
-
-    private EdgeIteratorState getPreviousNodeTMetersAway(Path path, int vIndex, double T) {
-        List<EdgeIteratorState> edges = path.calcEdges();
+    private EdgeIteratorState getPreviousNodeTMetersAway(List<EdgeIteratorState> edges, int vIndex, double T) {
         double distance = 0.0;
         int i = vIndex;
         while (i > 0 && distance < T) {
@@ -226,8 +213,7 @@ public class AlternativeRouteEdgeCH extends DijkstraBidirectionEdgeCHNoSOD {
         return edges.get(i);
     }
 
-    private EdgeIteratorState getNextNodeTMetersAway(Path path, int vIndex, double T) {
-        List<EdgeIteratorState> edges = path.calcEdges();
+    private EdgeIteratorState getNextNodeTMetersAway(List<EdgeIteratorState> edges, int vIndex, double T) {
         double distance = 0.0;
         int i = vIndex;
         while (i < edges.size() - 1 && distance < T) {
@@ -279,12 +265,13 @@ public class AlternativeRouteEdgeCH extends DijkstraBidirectionEdgeCHNoSOD {
     public static class AlternativeInfo {
         final double shareWeight;
         final Path path;
-        final IntIndexedContainer nodes;
+        final IntHashSet nodes;
 
         AlternativeInfo(Path path, double shareWeight) {
             this.path = path;
             this.shareWeight = shareWeight;
-            this.nodes = path.calcNodes();
+            this.nodes = new IntHashSet();
+            this.nodes.addAll(path.calcNodes());
         }
 
         @Override
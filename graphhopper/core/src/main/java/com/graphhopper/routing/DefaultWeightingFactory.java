@@ -19,6 +19,7 @@
 package com.graphhopper.routing;
 
 import com.graphhopper.config.Profile;
+import com.graphhopper.json.Statement;
 import com.graphhopper.routing.ev.BooleanEncodedValue;
 import com.graphhopper.routing.ev.DecimalEncodedValue;
 import com.graphhopper.routing.ev.Orientation;
@@ -27,14 +28,20 @@ import com.graphhopper.routing.util.EncodingManager;
 import com.graphhopper.routing.weighting.DefaultTurnCostProvider;
 import com.graphhopper.routing.weighting.TurnCostProvider;
 import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.routing.weighting.custom.CachedCustomWeighting;
+import com.graphhopper.routing.weighting.custom.CustomModelMetrics;
 import com.graphhopper.routing.weighting.custom.CustomModelParser;
 import com.graphhopper.routing.weighting.custom.CustomWeighting;
+import com.graphhopper.routing.weighting.custom.EdgeWeightCache;
 import com.graphhopper.storage.BaseGraph;
 import com.graphhopper.util.CustomModel;
 import com.graphhopper.util.PMap;
 import com.graphhopper.util.Parameters;
 import com.graphhopper.util.TurnCostsConfig;
 
+import java.util.Collections;
+import java.util.Map;
+
 import static com.graphhopper.routing.weighting.TurnCostProvider.NO_TURN_COST_PROVIDER;
 import static com.graphhopper.util.Helper.toLowerCase;
 
@@ -42,10 +49,20 @@ public class DefaultWeightingFactory implements WeightingFactory {
 
     private final BaseGraph graph;
     private final EncodingManager encodingManager;
+    private final Map<String, EdgeWeightCache> edgeWeightCaches;
 
     public DefaultWeightingFactory(BaseGraph graph, EncodingManager encodingManager) {
+        this(graph, encodingManager, Collections.emptyMap());
+    }
+
+    /**
+     * @param edgeWeightCaches the cached edge weights by profile name, the custom weightings of these profiles read
+     *                         the weights from the cache if the custom model of the request allows it
+     */
+    public DefaultWeightingFactory(BaseGraph graph, EncodingManager encodingManager, Map<String, EdgeWeightCache> edgeWeightCaches) {
         this.graph = graph;
         this.encodingManager = encodingManager;
+        this.edgeWeightCaches = edgeWeightCaches;
     }
 
     @Override
@@ -82,12 +99,19 @@ public class DefaultWeightingFactory implements WeightingFactory {
             final CustomModel mergedCustomModel = CustomModel.merge(profile.getCustomModel(), queryCustomModel);
             if (requestHints.has(Parameters.Routing.HEADING_PENALTY))
                 mergedCustomModel.setHeadingPenalty(requestHints.getDouble(Parameters.Routing.HEADING_PENALTY, Parameters.Routing.DEFAULT_HEADING_PENALTY));
+            EdgeWeightCache cache = edgeWeightCaches.get(profile.getName());
             if (hints.has("cm_version")) {
                 if (!hints.getString("cm_version", "").equals("2"))
                     throw new IllegalArgumentException("cm_version: \"2\" is required");
                 weighting = CustomModelParser.createWeighting2(encodingManager, turnCostProvider, mergedCustomModel);
-            } else
+                CustomModelMetrics.recordWeighting(mergedCustomModel, cache == null ? null : false);
+            } else if (cache != null && CachedCustomWeighting.isLayerable(queryCustomModel)) {
+                weighting = createCachedWeighting(cache, turnCostProvider, profile.getCustomModel(), queryCustomModel, mergedCustomModel);
+                CustomModelMetrics.recordWeighting(queryCustomModel == null ? new CustomModel() : queryCustomModel, true);
+            } else {
                 weighting = CustomModelParser.createWeighting(encodingManager, turnCostProvider, mergedCustomModel);
+                CustomModelMetrics.recordWeighting(mergedCustomModel, cache == null ? null : false);
+            }
 
         } else if ("shortest".equalsIgnoreCase(weightingStr)) {
             throw new IllegalArgumentException("Instead of weighting=shortest use weighting=custom with a high distance_influence");
@@ -106,4 +130,53 @@ public class DefaultWeightingFactory implements WeightingFactory {
         return weighting;
     }
 
+    /**
+     * Creates a weighting that layers the speed and priority factors of the request's custom model on top of the
+     * cached weights of the profile. Only the statements of the request are compiled and evaluated for every edge.
+     * The compiled class of the profile's custom model comes from the class cache and is only evaluated for the
+     * virtual edges and the time.
+     */
+    private Weighting createCachedWeighting(EdgeWeightCache cache, TurnCostProvider turnCostProvider, CustomModel profileCustomModel,
+                                            CustomModel queryCustomModel, CustomModel mergedCustomModel) {
+        CustomWeighting.Parameters base = CustomModelParser.createWeightingParameters(profileCustomModel, encodingManager);
+        CustomWeighting.EdgeToDoubleMapping speedMapping = base.getEdgeToSpeedMapping();
+        CustomWeighting.MaxCalc maxSpeedCalc = base.getMaxSpeedCalc();
+        CustomWeighting.EdgeToDoubleMapping priorityMapping = base.getEdgeToPriorityMapping();
+        CustomWeighting.MaxCalc maxPrioCalc = base.getMaxPrioCalc();
+        CustomWeighting.EdgeToDoubleMapping requestSpeedMapping = null;
+        CustomWeighting.EdgeToDoubleMapping requestPriorityMapping = null;
+        if (queryCustomModel != null && (!queryCustomModel.getSpeed().isEmpty() || !queryCustomModel.getPriority().isEmpty())) {
+            // a custom model cannot be compiled without an initial speed statement, the factor 1 keeps the speed of the profile
+            CustomModel deltaModel = new CustomModel().setAreas(mergedCustomModel.getAreas());
+            deltaModel.addToSpeed(Statement.If("true", Statement.Op.LIMIT, "1"));
+            queryCustomModel.getSpeed().forEach(deltaModel::addToSpeed);
+            queryCustomModel.getPriority().forEach(deltaModel::addToPriority);
+            CustomWeighting.Parameters delta = CustomModelParser.createWeightingParameters(deltaModel, encodingManager);
+            if (!queryCustomModel.getSpeed().isEmpty()) {
+                requestSpeedMapping = delta.getEdgeToSpeedMapping();
+                speedMapping = multiply(speedMapping, requestSpeedMapping);
+                maxSpeedCalc = multiply(maxSpeedCalc, delta.getMaxSpeedCalc());
+            }
+            if (!queryCustomModel.getPriority().isEmpty()) {
+                requestPriorityMapping = delta.getEdgeToPriorityMapping();
+                priorityMapping = multiply(priorityMapping, requestPriorityMapping);
+                maxPrioCalc = multiply(maxPrioCalc, delta.getMaxPrioCalc());
+            }
+        }
+        double distanceInfluence = mergedCustomModel.getDistanceInfluence() == null ? 0 : mergedCustomModel.getDistanceInfluence();
+        double headingPenalty = mergedCustomModel.getHeadingPenalty() == null ? Parameters.Routing.DEFAULT_HEADING_PENALTY : mergedCustomModel.getHeadingPenalty();
+        CustomWeighting weighting = new CustomWeighting(turnCostProvider, new CustomWeighting.Parameters(
+                speedMapping, maxSpeedCalc, priorityMapping, maxPrioCalc, distanceInfluence, headingPenalty));
+        return new CachedCustomWeighting(cache, weighting, requestSpeedMapping, requestPriorityMapping, distanceInfluence);
+    }
+
+    private static CustomWeighting.EdgeToDoubleMapping multiply(CustomWeighting.EdgeToDoubleMapping base, CustomWeighting.EdgeToDoubleMapping factor) {
+        return (edge, reverse) -> base.get(edge, reverse) * factor.get(edge, reverse);
+    }
+
+    private static CustomWeighting.MaxCalc multiply(CustomWeighting.MaxCalc base, CustomWeighting.MaxCalc factor) {
+        // the product of the maxima is not smaller than the maximum of the product, so the weight per distance is not overestimated
+        return () -> base.calcMax() * factor.calcMax();
+    }
+
 }
@@ -0,0 +1,122 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing;
+
+import com.graphhopper.routing.util.TraversalMode;
+import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.util.EdgeIterator;
+import com.graphhopper.util.EdgeIteratorState;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.graphhopper.util.EdgeIterator.ANY_EDGE;
+
+/**
+ * A forward {@link Dijkstra} that calculates the shortest paths from one source to several targets with a single
+ * search. The search stops as soon as all targets are settled (or the visited nodes or the timeout limit is reached).
+ * Like {@link AbstractBidirAlgo#calcPath(int, int, int, int)} it supports restricting the edge leaving the source and
+ * the edges entering the targets for edge-based traversal. This is useful when many candidates need to be connected
+ * like in map matching, where one bidirectional search per pair would explore the same area again and again.
+ */
+public class DijkstraMultiTarget extends Dijkstra {
+    private int fromOutEdge = ANY_EDGE;
+    private int[] toNodes;
+    private int[] toInEdges;
+    private SPTEntry[] targetEntries;
+    private int remainingTargets;
+
+    public DijkstraMultiTarget(Graph graph, Weighting weighting, TraversalMode tMode) {
+        super(graph, weighting, tMode);
+    }
+
+    @Override
+    public Path calcPath(int from, int to) {
+        return calcPaths(from, ANY_EDGE, new int[]{to}, new int[]{ANY_EDGE}).get(0);
+    }
+
+    /**
+     * @param fromOutEdge the edge the paths have to start with or {@link EdgeIterator#ANY_EDGE}
+     * @param toInEdges   for every target node the edge the path has to end with or {@link EdgeIterator#ANY_EDGE}
+     * @return one path per target node in the same order as toNodes. Paths to targets that were not reached are not
+     * found.
+     */
+    public List<Path> calcPaths(int from, int fromOutEdge, int[] toNodes, int[] toInEdges) {
+        if (toNodes.length != toInEdges.length)
+            throw new IllegalArgumentException("toNodes and toInEdges must have the same length, " + toNodes.length + " vs. " + toInEdges.length);
+        if (!traversalMode.isEdgeBased() && (fromOutEdge != ANY_EDGE || containsRestriction(toInEdges)))
+            throw new IllegalArgumentException("Restricting the start/target edges is only possible for edge-based graph traversal");
+        checkAlreadyRun();
+        setupFinishTime();
+        this.fromOutEdge = fromOutEdge;
+        this.toNodes = toNodes;
+        this.toInEdges = toInEdges;
+        targetEntries = new SPTEntry[toNodes.length];
+        remainingTargets = toNodes.length;
+        if (remainingTargets > 0) {
+            SPTEntry startEntry = new SPTEntry(from, 0);
+            fromHeap.add(startEntry);
+            if (!traversalMode.isEdgeBased())
+                fromMap.put(from, startEntry);
+            runAlgo();
+        }
+
+        List<Path> result = new ArrayList<>(toNodes.length);
+        for (SPTEntry entry : targetEntries) {
+            result.add(entry == null ? createEmptyPath() : PathExtractor.extractPath(graph, weighting, entry));
+        }
+        return result;
+    }
+
+    @Override
+    protected boolean accept(EdgeIteratorState iter, int prevOrNextEdgeId) {
+        // only the start entry has no edge, so this restricts the first edge of all paths
+        if (prevOrNextEdgeId == EdgeIterator.NO_EDGE && fromOutEdge != ANY_EDGE && iter.getEdge() != fromOutEdge)
+            return false;
+        return super.accept(iter, prevOrNextEdgeId);
+    }
+
+    @Override
+    protected boolean finished() {
+        for (int i = 0; i < toNodes.length; i++) {
+            if (targetEntries[i] == null && isTarget(currEdge, i)) {
+                targetEntries[i] = currEdge;
+                remainingTargets--;
+            }
+        }
+        return remainingTargets == 0;
+    }
+
+    private boolean isTarget(SPTEntry entry, int targetIndex) {
+        if (entry.adjNode != toNodes[targetIndex])
+            return false;
+        if (toInEdges[targetIndex] != ANY_EDGE)
+            return entry.edge == toInEdges[targetIndex];
+        // the empty path is only valid if the start edge is not restricted, see AbstractBidirAlgo#postInit
+        return entry.edge != EdgeIterator.NO_EDGE || fromOutEdge == ANY_EDGE;
+    }
+
+    private static boolean containsRestriction(int[] edges) {
+        for (int edge : edges) {
+            if (edge != ANY_EDGE)
+                return true;
+        }
+        return false;
+    }
+}
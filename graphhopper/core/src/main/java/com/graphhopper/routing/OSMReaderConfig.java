@@ -34,6 +34,7 @@ public class OSMReaderConfig {
     private double longEdgeSamplingDistance = Double.MAX_VALUE;
     private int workerThreads = 2;
     private double defaultElevation = 0;
+    private int elevationThreads = 0;
 
     public List<String> getIgnoredHighways() {
         return ignoredHighways;
@@ -168,4 +169,17 @@ public class OSMReaderConfig {
         this.defaultElevation = defaultElevation;
         return this;
     }
+
+    public int getElevationThreads() {
+        return elevationThreads;
+    }
+
+    /**
+     * Sets the number of threads used to add the elevation after the OSM file was read, see EdgeElevationEnrichment.
+     * The default is 0, which means that the elevation is looked up while reading the OSM file.
+     */
+    public OSMReaderConfig setElevationThreads(int elevationThreads) {
+        this.elevationThreads = elevationThreads;
+        return this;
+    }
 }
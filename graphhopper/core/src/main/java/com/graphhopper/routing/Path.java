@@ -267,6 +267,21 @@ public class Path {
         return nodes;
     }
 
+    /**
+     * @return a found path that consists of the first edges of this path. Its distance, time and weight are not set.
+     */
+    public Path calcSubPath(int edgeCount) {
+        if (edgeCount > edgeIds.size())
+            throw new IllegalArgumentException("The path has only " + edgeIds.size() + " edges, cannot use " + edgeCount);
+        Path subPath = new Path(graph).setFromNode(getFromNode()).setFound(true);
+        int tmpNode = getFromNode();
+        for (int i = 0; i < edgeCount; i++) {
+            subPath.addEdge(edgeIds.get(i));
+            tmpNode = graph.getEdgeIteratorState(edgeIds.get(i), tmpNode).getBaseNode();
+        }
+        return subPath.setEndNode(tmpNode);
+    }
+
     /**
      * This method calculated a list of points for this path
      * <p>
@@ -27,15 +27,17 @@ import com.graphhopper.routing.weighting.AvoidEdgesWeighting;
 import com.graphhopper.storage.index.LocationIndex;
 import com.graphhopper.storage.index.Snap;
 import com.graphhopper.util.DistanceCalcEarth;
+import com.graphhopper.util.EdgeIteratorState;
 import com.graphhopper.util.PMap;
 import com.graphhopper.util.Parameters.Algorithms.RoundTrip;
 import com.graphhopper.util.PointList;
 import com.graphhopper.util.exceptions.PointNotFoundException;
 import com.graphhopper.util.shapes.GHPoint;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Random;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
 
 
 /**
@@ -52,6 +54,8 @@ public class RoundTripRouting {
         final double initialHeading;
         final int roundTripPointCount;
         final int maxRetries;
+        final int candidates;
+        final int maxPaths;
 
         public Params() {
             this(new PMap(), 0, 3);
@@ -63,22 +67,61 @@ public class RoundTripRouting {
             roundTripPointCount = Math.min(20, hints.getInt(RoundTrip.POINTS, 2 + (int) (distanceInMeter / 50000)));
             this.initialHeading = initialHeading;
             this.maxRetries = maxRetries;
+            candidates = hints.getInt(RoundTrip.CANDIDATES, 1);
+            maxPaths = hints.getInt(RoundTrip.MAX_PATHS, 1);
+            if (candidates < 1 || candidates > 20)
+                throw new IllegalArgumentException(RoundTrip.CANDIDATES + " must be between 1 and 20 but was " + candidates);
+            if (maxPaths < 1 || maxPaths > candidates)
+                throw new IllegalArgumentException(RoundTrip.MAX_PATHS + " must be between 1 and " + RoundTrip.CANDIDATES + " but was " + maxPaths);
         }
     }
 
     public static List<Snap> lookup(List<GHPoint> points, EdgeFilter edgeFilter, LocationIndex locationIndex, Params params) {
+        GHPoint start = getStart(points);
+        Snap startSnap = findStart(start, edgeFilter, locationIndex);
+        return generateTour(start, startSnap, params.seed, edgeFilter, locationIndex, params);
+    }
+
+    /**
+     * Like {@link #lookup} but generates the snaps of {@link Params#candidates} tours, each with another seed. The
+     * first tour is the one {@link #lookup} generates. Tours for which no valid point is found are skipped.
+     */
+    public static List<List<Snap>> lookupCandidates(List<GHPoint> points, EdgeFilter edgeFilter, LocationIndex locationIndex, Params params) {
+        GHPoint start = getStart(points);
+        Snap startSnap = findStart(start, edgeFilter, locationIndex);
+        List<List<Snap>> candidates = new ArrayList<>(params.candidates);
+        IllegalArgumentException firstException = null;
+        for (int i = 0; i < params.candidates; i++) {
+            try {
+                candidates.add(generateTour(start, startSnap, params.seed + i, edgeFilter, locationIndex, params));
+            } catch (IllegalArgumentException e) {
+                if (firstException == null)
+                    firstException = e;
+            }
+        }
+        if (candidates.isEmpty())
+            throw firstException;
+        return candidates;
+    }
+
+    private static GHPoint getStart(List<GHPoint> points) {
         // todo: no snap preventions for round trip so far
         if (points.size() != 1)
             throw new IllegalArgumentException("For round trip calculation exactly one point is required");
+        return points.get(0);
+    }
 
-        final GHPoint start = points.get(0);
-
-        TourStrategy strategy = new MultiPointTour(new Random(params.seed), params.distanceInMeter, params.roundTripPointCount, params.initialHeading);
-        List<Snap> snaps = new ArrayList<>(2 + strategy.getNumberOfGeneratedPoints());
+    private static Snap findStart(GHPoint start, EdgeFilter edgeFilter, LocationIndex locationIndex) {
         Snap startSnap = locationIndex.findClosest(start.lat, start.lon, edgeFilter);
         if (!startSnap.isValid())
             throw new PointNotFoundException("Cannot find point 0: " + start, 0);
+        return startSnap;
+    }
 
+    private static List<Snap> generateTour(GHPoint start, Snap startSnap, long seed, EdgeFilter edgeFilter,
+                                           LocationIndex locationIndex, Params params) {
+        TourStrategy strategy = new MultiPointTour(new Random(seed), params.distanceInMeter, params.roundTripPointCount, params.initialHeading);
+        List<Snap> snaps = new ArrayList<>(2 + strategy.getNumberOfGeneratedPoints());
         snaps.add(startSnap);
 
         GHPoint last = start;
@@ -136,10 +179,70 @@ public class RoundTripRouting {
         return result;
     }
 
+    /**
+     * Calculates the tours of all candidates, see {@link #lookupCandidates}. Every tour needs a path calculator of its
+     * own, because the calculator avoids the edges of the previous legs. If a pool is given the tours are calculated
+     * concurrently on the same query graph.
+     */
+    public static List<Result> calcCandidates(List<List<Snap>> candidates, Supplier<FlexiblePathCalculator> pathCalculatorFactory,
+                                              ForkJoinPool pool) {
+        Result[] results = new Result[candidates.size()];
+        if (pool == null || candidates.size() < 2) {
+            for (int i = 0; i < candidates.size(); i++)
+                results[i] = calcPaths(candidates.get(i), pathCalculatorFactory.get());
+            return Arrays.asList(results);
+        }
+        RuntimeException[] exceptions = new RuntimeException[candidates.size()];
+        pool.submit(() -> IntStream.range(0, candidates.size()).parallel().forEach(i -> {
+            try {
+                results[i] = calcPaths(candidates.get(i), pathCalculatorFactory.get());
+            } catch (RuntimeException e) {
+                exceptions[i] = e;
+            }
+        })).join();
+        // like the sequential calculation we fail at the first candidate that fails
+        for (RuntimeException e : exceptions)
+            if (e != null)
+                throw e;
+        return Arrays.asList(results);
+    }
+
+    /**
+     * @return the given number of tours with the lowest score, the best first, see {@link Result#score}
+     */
+    public static List<Result> selectBest(List<Result> results, double distanceInMeter, int maxPaths) {
+        List<Result> sorted = new ArrayList<>(results);
+        for (Result result : sorted)
+            result.score = calcScore(result, distanceInMeter);
+        sorted.sort(Comparator.comparingDouble(r -> r.score));
+        return sorted.subList(0, Math.min(maxPaths, sorted.size()));
+    }
+
+    private static double calcScore(Result result, double distanceInMeter) {
+        double distance = 0;
+        double overlap = 0;
+        IntSet edges = new IntHashSet();
+        for (Path path : result.paths) {
+            if (!path.isFound())
+                return Double.POSITIVE_INFINITY;
+            for (EdgeIteratorState edge : path.calcEdges()) {
+                distance += edge.getDistance();
+                if (!edges.add(edge.getEdge()))
+                    overlap += edge.getDistance();
+            }
+        }
+        return Math.abs(distance - distanceInMeter) / distanceInMeter + (distance > 0 ? overlap / distance : 0);
+    }
+
     public static class Result {
         public List<Path> paths;
         public PointList wayPoints;
         public long visitedNodes;
+        /**
+         * the relative difference between the distance of the tour and the requested distance plus the share of the
+         * distance that is travelled twice. Lower is better.
+         */
+        public double score;
 
         Result(int legs) {
             paths = new ArrayList<>(legs);
@@ -0,0 +1,151 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing;
+
+import com.graphhopper.GHRequest;
+import com.graphhopper.GHResponse;
+import com.graphhopper.ResponsePath;
+import com.graphhopper.storage.index.Snap;
+import com.graphhopper.util.PMap;
+import com.graphhopper.util.shapes.GHPoint3D;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps the responses of {@link Router} for requests that snap to the same locations of the graph, e.g. for
+ * clients that request the same origins and destinations again and again. The key contains the profile, the
+ * snapped locations and all parameters of the request that influence the response, but not the query points
+ * themselves. So a hit skips the creation of the query graph, the search and the path merging.
+ * <p>
+ * The least recently used responses are evicted when the cache is full and every response expires after the
+ * configured time to live. The cache needs to be cleared when the graph or the custom areas change. The
+ * {@link ResponsePath}s of a cached response are shared by all requests and must not be modified.
+ */
+public class RouteResponseCache {
+    private final int maxSize;
+    private final long ttlNanos;
+    private final LinkedHashMap<Key, Entry> entries;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    record Key(String profile, String algorithm, String locale, List<String> pathDetails, List<Double> headings,
+               List<String> curbsides, String customModel, Map<String, Object> hints, List<Number> snaps) {
+    }
+
+    private record Entry(List<ResponsePath> paths, PMap hints, long expiresAt) {
+    }
+
+    public RouteResponseCache(int maxSize, long ttlMillis) {
+        if (maxSize <= 0)
+            throw new IllegalArgumentException("The size of the response cache must be positive, was: " + maxSize);
+        if (ttlMillis <= 0)
+            throw new IllegalArgumentException("The time to live of cached responses must be positive, was: " + ttlMillis);
+        this.maxSize = maxSize;
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+                return size() > RouteResponseCache.this.maxSize;
+            }
+        };
+    }
+
+    static Key createKey(GHRequest request, List<Snap> snaps) {
+        List<Number> snapKeys = new ArrayList<>(snaps.size() * 5);
+        for (Snap snap : snaps) {
+            snapKeys.add(snap.getSnappedPosition().ordinal());
+            snapKeys.add(snap.getClosestNode());
+            // a snap to a tower node always leads to the same query graph, otherwise the position on the edge matters
+            if (snap.getSnappedPosition() != Snap.Position.TOWER) {
+                GHPoint3D point = snap.getSnappedPoint();
+                snapKeys.add(snap.getClosestEdge().getEdgeKey());
+                snapKeys.add(snap.getWayIndex());
+                snapKeys.add(point.getLat());
+                snapKeys.add(point.getLon());
+            }
+        }
+        return new Key(request.getProfile(), request.getAlgorithm(), request.getLocale().toString(),
+                new ArrayList<>(request.getPathDetails()), new ArrayList<>(request.getHeadings()),
+                new ArrayList<>(request.getCurbsides()),
+                request.getCustomModel() == null ? null : request.getCustomModel().toString(),
+                new HashMap<>(request.getHints().toMap()), snapKeys);
+    }
+
+    /**
+     * @return a new response with the cached paths or null if there is no response for the key or it expired
+     */
+    GHResponse get(Key key) {
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(key);
+            if (entry != null && entry.expiresAt - System.nanoTime() < 0) {
+                entries.remove(key);
+                entry = null;
+            }
+        }
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        GHResponse rsp = new GHResponse();
+        entry.paths.forEach(rsp::add);
+        rsp.getHints().putAll(entry.hints);
+        return rsp;
+    }
+
+    void put(Key key, GHResponse rsp) {
+        if (rsp.hasErrors())
+            return;
+        Entry entry = new Entry(new ArrayList<>(rsp.getAll()), new PMap(rsp.getHints()), System.nanoTime() + ttlNanos);
+        synchronized (entries) {
+            entries.put(key, entry);
+        }
+    }
+
+    /**
+     * Removes all responses, e.g. after the graph was changed.
+     */
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    public int getSize() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public double getHitRatio() {
+        long hits = getHits();
+        long requests = hits + getMisses();
+        return requests == 0 ? 0 : (double) hits / requests;
+    }
+}
@@ -48,6 +48,7 @@ import com.graphhopper.util.shapes.BBox;
 import com.graphhopper.util.shapes.GHPoint;
 
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
 
 import static com.graphhopper.util.DistanceCalcEarth.DIST_EARTH;
 import static com.graphhopper.util.Parameters.Algorithms.ALT_ROUTE;
@@ -68,6 +69,8 @@ public class Router {
     protected final Map<String, LandmarkStorage> landmarks;
     protected final boolean chEnabled;
     protected final boolean lmEnabled;
+    private ForkJoinPool viaRoutingPool;
+    private RouteResponseCache responseCache;
 
     public Router(BaseGraph graph, EncodingManager encodingManager, LocationIndex locationIndex,
                   Map<String, Profile> profilesByName, PathDetailsBuilderFactory pathDetailsBuilderFactory,
@@ -94,6 +97,24 @@ public class Router {
         }
     }
 
+    /**
+     * The legs of routes with via points are calculated concurrently in this pool, or one after the other if it is
+     * null. The pool is not owned by this router.
+     */
+    public Router setViaRoutingPool(ForkJoinPool viaRoutingPool) {
+        this.viaRoutingPool = viaRoutingPool;
+        return this;
+    }
+
+    /**
+     * Routes with the default algorithm are looked up in this cache after the points were snapped and stored there
+     * afterwards. No cache is used if it is null. The cache is not owned by this router.
+     */
+    public Router setResponseCache(RouteResponseCache responseCache) {
+        this.responseCache = responseCache;
+        return this;
+    }
+
     public GHResponse route(GHRequest request) {
         try {
             checkNoLegacyParameters(request);
@@ -221,20 +242,29 @@ public class Router {
         StopWatch sw = new StopWatch().start();
         double startHeading = request.getHeadings().isEmpty() ? Double.NaN : request.getHeadings().get(0);
         RoundTripRouting.Params params = new RoundTripRouting.Params(request.getHints(), startHeading, routerConfig.getMaxRoundTripRetries());
-        List<Snap> snaps = RoundTripRouting.lookup(request.getPoints(), solver.createSnapFilter(), locationIndex, params);
+        List<List<Snap>> candidates = RoundTripRouting.lookupCandidates(request.getPoints(), solver.createSnapFilter(), locationIndex, params);
         ghRsp.addDebugInfo("idLookup:" + sw.stop().getSeconds() + "s");
 
+        // all candidates share one query graph, so their tours can be calculated concurrently
+        List<Snap> snaps = new ArrayList<>();
+        candidates.forEach(snaps::addAll);
         QueryGraph queryGraph = QueryGraph.create(graph, snaps);
-        FlexiblePathCalculator pathCalculator = solver.createPathCalculator(queryGraph);
-
-        RoundTripRouting.Result result = RoundTripRouting.calcPaths(snaps, pathCalculator);
-        // we merge the different legs of the roundtrip into one response path
-        // note that the waypoints are not just the snapped points of the snaps, as usual, because we do some kind of tweak
-        // to avoid 'unnecessary tails' in the roundtrip algo
-        ResponsePath responsePath = concatenatePaths(request, solver.weighting, queryGraph, result.paths, result.wayPoints);
-        ghRsp.add(responsePath);
-        ghRsp.getHints().putObject("visited_nodes.sum", result.visitedNodes);
-        ghRsp.getHints().putObject("visited_nodes.average", (float) result.visitedNodes / (snaps.size() - 1));
+        List<RoundTripRouting.Result> results = RoundTripRouting.calcCandidates(candidates,
+                () -> solver.createPathCalculator(queryGraph), viaRoutingPool);
+        long visitedNodes = 0;
+        for (RoundTripRouting.Result result : results)
+            visitedNodes += result.visitedNodes;
+        for (RoundTripRouting.Result result : RoundTripRouting.selectBest(results, params.distanceInMeter, params.maxPaths)) {
+            // we merge the different legs of the roundtrip into one response path
+            // note that the waypoints are not just the snapped points of the snaps, as usual, because we do some kind of tweak
+            // to avoid 'unnecessary tails' in the roundtrip algo
+            ResponsePath responsePath = concatenatePaths(request, solver.weighting, queryGraph, result.paths, result.wayPoints);
+            if (candidates.size() > 1)
+                responsePath.addDebugInfo("round_trip.score:" + result.score);
+            ghRsp.add(responsePath);
+        }
+        ghRsp.getHints().putObject("visited_nodes.sum", visitedNodes);
+        ghRsp.getHints().putObject("visited_nodes.average", (float) visitedNodes / (snaps.size() - candidates.size()));
         return ghRsp;
     }
 
@@ -280,14 +310,26 @@ public class Router {
         List<Snap> snaps = ViaRouting.lookup(encodingManager, request.getPoints(), solver.createSnapFilter(), locationIndex,
                 request.getSnapPreventions(), request.getPointHints(), directedEdgeFilter, request.getHeadings());
         ghRsp.addDebugInfo("idLookup:" + sw.stop().getSeconds() + "s");
+        RouteResponseCache.Key cacheKey = null;
+        if (responseCache != null) {
+            cacheKey = RouteResponseCache.createKey(request, snaps);
+            GHResponse cachedRsp = responseCache.get(cacheKey);
+            if (cachedRsp != null) {
+                cachedRsp.addDebugInfo(ghRsp.getDebugInfo());
+                cachedRsp.addDebugInfo("responseCache:hit");
+                return cachedRsp;
+            }
+        }
         // (base) query graph used to resolve headings, curbsides etc. this is not necessarily the same thing as
         // the (possibly implementation specific) query graph used by PathCalculator
         QueryGraph queryGraph = QueryGraph.create(graph, snaps);
-        PathCalculator pathCalculator = solver.createPathCalculator(queryGraph);
         boolean passThrough = getPassThrough(request.getHints());
         String curbsideStrictness = getCurbsideStrictness(request.getHints());
-        ViaRouting.Result result = ViaRouting.calcPaths(request.getPoints(), queryGraph, snaps, directedEdgeFilter,
-                pathCalculator, request.getCurbsides(), curbsideStrictness, request.getHeadings(), passThrough);
+        ViaRouting.Result result = viaRoutingPool == null
+                ? ViaRouting.calcPaths(request.getPoints(), queryGraph, snaps, directedEdgeFilter,
+                solver.createPathCalculator(queryGraph), request.getCurbsides(), curbsideStrictness, request.getHeadings(), passThrough)
+                : ViaRouting.calcPaths(request.getPoints(), queryGraph, snaps, directedEdgeFilter,
+                () -> solver.createPathCalculator(queryGraph), request.getCurbsides(), curbsideStrictness, request.getHeadings(), passThrough, viaRoutingPool);
 
         if (request.getPoints().size() != result.paths.size() + 1)
             throw new RuntimeException("There should be exactly one more point than paths. points:" + request.getPoints().size() + ", paths:" + result.paths.size());
@@ -298,6 +340,8 @@ public class Router {
         ghRsp.add(responsePath);
         ghRsp.getHints().putObject("visited_nodes.sum", result.visitedNodes);
         ghRsp.getHints().putObject("visited_nodes.average", (float) result.visitedNodes / (snaps.size() - 1));
+        if (cacheKey != null)
+            responseCache.put(cacheKey, ghRsp);
         return ghRsp;
     }
 
@@ -315,7 +359,10 @@ public class Router {
                 setRamerDouglasPeucker(peucker).
                 setEnableInstructions(enableInstructions).
                 setPathDetailsBuilders(pathDetailsBuilderFactory, request.getPathDetails()).
-                setSimplifyResponse(routerConfig.isSimplifyResponse() && wayPointMaxDistance > 0);
+                setSimplifyResponse(routerConfig.isSimplifyResponse() && wayPointMaxDistance > 0).
+                setOutputWindow(request.getHints().getDouble(OUTPUT_MAX_DISTANCE, Double.POSITIVE_INFINITY),
+                        request.getHints().getLong(OUTPUT_MAX_TIME, Long.MAX_VALUE)).
+                setLazy(routerConfig.isLazyResponsePaths());
 
         if (!request.getHeadings().isEmpty())
             pathMerger.setFavoredHeading(request.getHeadings().get(0));
@@ -31,6 +31,10 @@ public class RouterConfig {
     private boolean simplifyResponse = true;
     private double elevationWayPointMaxDistance = Double.MAX_VALUE;
     private int activeLandmarkCount = 8;
+    private int viaRoutingThreads = 1;
+    private int responseCacheSize = 0;
+    private long responseCacheTTLMillis = 10 * 60 * 1000;
+    private boolean lazyResponsePaths = false;
 
     public int getMaxVisitedNodes() {
         return maxVisitedNodes;
@@ -119,4 +123,57 @@ public class RouterConfig {
     public void setElevationWayPointMaxDistance(double elevationWayPointMaxDistance) {
         this.elevationWayPointMaxDistance = elevationWayPointMaxDistance;
     }
+
+    public int getViaRoutingThreads() {
+        return viaRoutingThreads;
+    }
+
+    /**
+     * The number of threads the legs of a route with via points are calculated with. With one thread they are
+     * calculated one after the other on the thread of the request.
+     */
+    public void setViaRoutingThreads(int viaRoutingThreads) {
+        if (viaRoutingThreads < 1)
+            throw new IllegalArgumentException("The number of via routing threads must be at least 1, was: " + viaRoutingThreads);
+        this.viaRoutingThreads = viaRoutingThreads;
+    }
+
+    public int getResponseCacheSize() {
+        return responseCacheSize;
+    }
+
+    /**
+     * The maximum number of responses the {@link RouteResponseCache} keeps. The cache is disabled for 0.
+     */
+    public void setResponseCacheSize(int responseCacheSize) {
+        if (responseCacheSize < 0)
+            throw new IllegalArgumentException("The size of the response cache cannot be negative, was: " + responseCacheSize);
+        this.responseCacheSize = responseCacheSize;
+    }
+
+    public long getResponseCacheTTLMillis() {
+        return responseCacheTTLMillis;
+    }
+
+    /**
+     * The time after which a cached response is no longer returned.
+     */
+    public void setResponseCacheTTLMillis(long responseCacheTTLMillis) {
+        if (responseCacheTTLMillis <= 0)
+            throw new IllegalArgumentException("The time to live of cached responses must be positive, was: " + responseCacheTTLMillis);
+        this.responseCacheTTLMillis = responseCacheTTLMillis;
+    }
+
+    public boolean isLazyResponsePaths() {
+        return lazyResponsePaths;
+    }
+
+    /**
+     * If true the points, instructions and path details of a route are calculated when they are accessed the first
+     * time and not while routing, e.g. they are never calculated if only the distance and time are used. The
+     * GraphHopper instance must not be closed before they are accessed.
+     */
+    public void setLazyResponsePaths(boolean lazyResponsePaths) {
+        this.lazyResponsePaths = lazyResponsePaths;
+    }
 }
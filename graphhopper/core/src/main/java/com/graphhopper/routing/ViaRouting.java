@@ -34,6 +34,11 @@ import com.graphhopper.util.shapes.GHPoint;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
 
 import static com.graphhopper.util.EdgeIterator.ANY_EDGE;
 import static com.graphhopper.util.EdgeIterator.NO_EDGE;
@@ -72,7 +77,8 @@ public class ViaRouting {
                 if (!pointHints.isEmpty() && !Helper.isEmpty(pointHints.get(placeIndex)))
                     throw new IllegalArgumentException("Cannot specify heading and point_hint at the same time. " +
                             "Make sure you specify either an empty point_hint (String) or a NaN heading (double) for point " + placeIndex);
-                snap = locationIndex.findClosest(point.lat, point.lon, new HeadingEdgeFilter(directedSnapFilter, headings.get(placeIndex), point));
+                snap = locationIndex.findClosest(point.lat, point.lon, snapFilter, directedSnapFilter, headings.get(placeIndex),
+                        HeadingEdgeFilter.DEFAULT_TOLERANCE, HeadingEdgeFilter.DEFAULT_MAX_DISTANCE);
             } else if (!pointHints.isEmpty()) {
                 snap = locationIndex.findClosest(point.lat, point.lon, new NameSimilarityEdgeFilter(strictEdgeFilter,
                         pointHints.get(placeIndex), point, 170));
@@ -97,25 +103,11 @@ public class ViaRouting {
     public static Result calcPaths(List<GHPoint> points, QueryGraph queryGraph, List<Snap> snaps,
                                    DirectedEdgeFilter directedEdgeFilter, PathCalculator pathCalculator,
                                    List<String> curbsides, String curbsideStrictness, List<Double> headings, boolean passThrough) {
-        if (!curbsides.isEmpty() && curbsides.size() != points.size())
-            throw new IllegalArgumentException("If you pass " + CURBSIDE + ", you need to pass exactly one curbside for every point, empty curbsides will be ignored");
-        if (!curbsides.isEmpty() && !headings.isEmpty())
-            throw new IllegalArgumentException("You cannot use curbsides and headings or pass_through at the same time");
+        checkCurbsidesAndHeadings(points, curbsides, headings);
 
         final int legs = snaps.size() - 1;
         Result result = new Result(legs);
         for (int leg = 0; leg < legs; ++leg) {
-            Snap fromSnap = snaps.get(leg);
-            Snap toSnap = snaps.get(leg + 1);
-
-            // enforce headings
-            // at via-nodes and the target node the heading parameter is interpreted as the direction we want
-            // to enforce for arriving (not starting) at this node. the starting direction is not enforced at
-            // all for these points (unless using pass through). see this forum discussion:
-            // https://discuss.graphhopper.com/t/meaning-of-heading-parameter-for-via-routing/5643/6
-            double fromHeading = (leg == 0 && !headings.isEmpty()) ? headings.get(0) : Double.NaN;
-            double toHeading = (snaps.size() == headings.size() && !Double.isNaN(headings.get(leg + 1))) ? headings.get(leg + 1) : Double.NaN;
-
             // enforce pass-through
             int incomingEdge = NO_EDGE;
             if (leg != 0) {
@@ -124,39 +116,107 @@ public class ViaRouting {
                 if (prevRoute.getEdgeCount() > 0)
                     incomingEdge = prevRoute.getFinalEdge().getEdge();
             }
+            result.add(calcLeg(leg, queryGraph, snaps, directedEdgeFilter, pathCalculator, curbsides, curbsideStrictness, headings, incomingEdge, passThrough));
+        }
+        return result;
+    }
 
-            // enforce curbsides
-            final String fromCurbside = curbsides.isEmpty() ? CURBSIDE_ANY : curbsides.get(leg);
-            final String toCurbside = curbsides.isEmpty() ? CURBSIDE_ANY : curbsides.get(leg + 1);
-
-            EdgeRestrictions edgeRestrictions = buildEdgeRestrictions(queryGraph, fromSnap, toSnap,
-                    fromHeading, toHeading, incomingEdge, passThrough,
-                    fromCurbside, toCurbside, directedEdgeFilter);
+    /**
+     * Like {@link #calcPaths(List, QueryGraph, List, DirectedEdgeFilter, PathCalculator, List, String, List, boolean)},
+     * but calculates the legs concurrently in the given pool, each with a path calculator of its own. Path calculators
+     * are re-used by the next leg once a leg is done, so there are at most as many as there are threads. The result
+     * is the same as the sequential one.
+     * <p>
+     * With pass_through a leg depends on the previous one, and with headings the legs would mark unfavored edges on
+     * the same query graph, so these requests are calculated sequentially.
+     */
+    public static Result calcPaths(List<GHPoint> points, QueryGraph queryGraph, List<Snap> snaps,
+                                   DirectedEdgeFilter directedEdgeFilter, Supplier<PathCalculator> pathCalculatorFactory,
+                                   List<String> curbsides, String curbsideStrictness, List<Double> headings, boolean passThrough,
+                                   ForkJoinPool pool) {
+        final int legs = snaps.size() - 1;
+        if (legs < 2 || passThrough || headings.stream().anyMatch(h -> !Double.isNaN(h)))
+            return calcPaths(points, queryGraph, snaps, directedEdgeFilter, pathCalculatorFactory.get(), curbsides, curbsideStrictness, headings, passThrough);
+        checkCurbsidesAndHeadings(points, curbsides, headings);
+
+        Queue<PathCalculator> pathCalculators = new ConcurrentLinkedQueue<>();
+        LegResult[] legResults = new LegResult[legs];
+        RuntimeException[] exceptions = new RuntimeException[legs];
+        pool.submit(() -> IntStream.range(0, legs).parallel().forEach(leg -> {
+            PathCalculator pathCalculator = pathCalculators.poll();
+            if (pathCalculator == null)
+                pathCalculator = pathCalculatorFactory.get();
+            try {
+                legResults[leg] = calcLeg(leg, queryGraph, snaps, directedEdgeFilter, pathCalculator, curbsides, curbsideStrictness, headings, NO_EDGE, false);
+            } catch (RuntimeException e) {
+                exceptions[leg] = e;
+            } finally {
+                pathCalculators.add(pathCalculator);
+            }
+        })).join();
 
-            edgeRestrictions.setSourceOutEdge(ignoreThrowOrAcceptImpossibleCurbsides(curbsides, edgeRestrictions.getSourceOutEdge(), leg, curbsideStrictness));
-            edgeRestrictions.setTargetInEdge(ignoreThrowOrAcceptImpossibleCurbsides(curbsides, edgeRestrictions.getTargetInEdge(), leg + 1, curbsideStrictness));
+        // the sequential calculation fails at the first leg that fails
+        for (RuntimeException e : exceptions)
+            if (e != null)
+                throw e;
+        Result result = new Result(legs);
+        for (LegResult legResult : legResults)
+            result.add(legResult);
+        return result;
+    }
 
-            // calculate paths
-            List<Path> paths = pathCalculator.calcPaths(fromSnap.getClosestNode(), toSnap.getClosestNode(), edgeRestrictions);
-            result.debug += pathCalculator.getDebugString();
+    private static void checkCurbsidesAndHeadings(List<GHPoint> points, List<String> curbsides, List<Double> headings) {
+        if (!curbsides.isEmpty() && curbsides.size() != points.size())
+            throw new IllegalArgumentException("If you pass " + CURBSIDE + ", you need to pass exactly one curbside for every point, empty curbsides will be ignored");
+        if (!curbsides.isEmpty() && !headings.isEmpty())
+            throw new IllegalArgumentException("You cannot use curbsides and headings or pass_through at the same time");
+    }
 
-            // for alternative routing we get multiple paths and add all of them (which is ok, because we do not allow
-            // via-points for alternatives at the moment). otherwise we would have to return a list<list<path>> and find
-            // a good method to decide how to combine the different legs
-            for (int i = 0; i < paths.size(); i++) {
-                Path path = paths.get(i);
-                if (path.getTime() < 0)
-                    throw new RuntimeException("Time was negative " + path.getTime() + " for index " + i);
+    private static LegResult calcLeg(int leg, QueryGraph queryGraph, List<Snap> snaps, DirectedEdgeFilter directedEdgeFilter,
+                                     PathCalculator pathCalculator, List<String> curbsides, String curbsideStrictness,
+                                     List<Double> headings, int incomingEdge, boolean passThrough) {
+        Snap fromSnap = snaps.get(leg);
+        Snap toSnap = snaps.get(leg + 1);
+
+        // enforce headings
+        // at via-nodes and the target node the heading parameter is interpreted as the direction we want
+        // to enforce for arriving (not starting) at this node. the starting direction is not enforced at
+        // all for these points (unless using pass through). see this forum discussion:
+        // https://discuss.graphhopper.com/t/meaning-of-heading-parameter-for-via-routing/5643/6
+        double fromHeading = (leg == 0 && !headings.isEmpty()) ? headings.get(0) : Double.NaN;
+        double toHeading = (snaps.size() == headings.size() && !Double.isNaN(headings.get(leg + 1))) ? headings.get(leg + 1) : Double.NaN;
+
+        // enforce curbsides
+        final String fromCurbside = curbsides.isEmpty() ? CURBSIDE_ANY : curbsides.get(leg);
+        final String toCurbside = curbsides.isEmpty() ? CURBSIDE_ANY : curbsides.get(leg + 1);
+
+        EdgeRestrictions edgeRestrictions = buildEdgeRestrictions(queryGraph, fromSnap, toSnap,
+                fromHeading, toHeading, incomingEdge, passThrough,
+                fromCurbside, toCurbside, directedEdgeFilter);
+
+        edgeRestrictions.setSourceOutEdge(ignoreThrowOrAcceptImpossibleCurbsides(curbsides, edgeRestrictions.getSourceOutEdge(), leg, curbsideStrictness));
+        edgeRestrictions.setTargetInEdge(ignoreThrowOrAcceptImpossibleCurbsides(curbsides, edgeRestrictions.getTargetInEdge(), leg + 1, curbsideStrictness));
+
+        // calculate paths
+        List<Path> paths = pathCalculator.calcPaths(fromSnap.getClosestNode(), toSnap.getClosestNode(), edgeRestrictions);
+        for (int i = 0; i < paths.size(); i++) {
+            Path path = paths.get(i);
+            if (path.getTime() < 0)
+                throw new RuntimeException("Time was negative " + path.getTime() + " for index " + i);
+        }
+        return new LegResult(paths, pathCalculator.getDebugString(), pathCalculator.getVisitedNodes());
+    }
 
-                result.paths.add(path);
-                result.debug += ", " + path.getDebugInfo();
-            }
+    private static class LegResult {
+        final List<Path> paths;
+        final String debug;
+        final int visitedNodes;
 
-            result.visitedNodes += pathCalculator.getVisitedNodes();
-            result.debug += ", visited nodes sum: " + result.visitedNodes;
+        LegResult(List<Path> paths, String debug, int visitedNodes) {
+            this.paths = paths;
+            this.debug = debug;
+            this.visitedNodes = visitedNodes;
         }
-
-        return result;
     }
 
     public static class Result {
@@ -167,6 +227,19 @@ public class ViaRouting {
         Result(int legs) {
             paths = new ArrayList<>(legs);
         }
+
+        private void add(LegResult legResult) {
+            debug += legResult.debug;
+            // for alternative routing we get multiple paths and add all of them (which is ok, because we do not allow
+            // via-points for alternatives at the moment). otherwise we would have to return a list<list<path>> and find
+            // a good method to decide how to combine the different legs
+            for (Path path : legResult.paths) {
+                paths.add(path);
+                debug += ", " + path.getDebugInfo();
+            }
+            visitedNodes += legResult.visitedNodes;
+            debug += ", visited nodes sum: " + visitedNodes;
+        }
     }
 
     /**
@@ -19,6 +19,7 @@ package com.graphhopper.routing.ch;
 
 import com.graphhopper.GraphHopperConfig;
 import com.graphhopper.config.CHProfile;
+import com.graphhopper.routing.util.PreparationScheduler;
 import com.graphhopper.storage.*;
 import com.graphhopper.util.GHUtility;
 import com.graphhopper.util.PMap;
@@ -27,6 +28,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Stream;
 
 import static com.graphhopper.util.Helper.createFormatter;
@@ -113,36 +115,130 @@ public class CHPreparationHandler {
     }
 
     public Map<String, PrepareContractionHierarchies.Result> prepare(BaseGraph baseGraph, StorableProperties properties, List<CHConfig> chConfigs, final boolean closeEarly) {
+        return prepare(baseGraph, properties, chConfigs, Collections.emptyMap(), closeEarly);
+    }
+
+    /**
+     * @param loaded the CH graphs that were loaded, their node ordering can be used for the preparations of the
+     *               profiles that use another node ordering, see {@link CHProfile#setNodeOrderingProfile}
+     */
+    public Map<String, PrepareContractionHierarchies.Result> prepare(BaseGraph baseGraph, StorableProperties properties, List<CHConfig> chConfigs,
+                                                                     Map<String, RoutingCHGraph> loaded, final boolean closeEarly) {
         if (chConfigs.isEmpty()) {
             LOGGER.info("There are no CHs to prepare");
             return Collections.emptyMap();
         }
         LOGGER.info("Creating CH preparations, {}", getMemInfo());
         Map<String, PrepareContractionHierarchies.Result> results = Collections.synchronizedMap(new LinkedHashMap<>());
+        Map<String, NodeOrderingProvider> nodeOrderings = createNodeOrderings(loaded);
+        // the profiles that use the node ordering of another profile are prepared once the other profile is prepared
         List<Runnable> runnables = new ArrayList<>(chConfigs.size());
+        List<Runnable> secondRunnables = new ArrayList<>();
         for (int i = 0; i < chConfigs.size(); ++i) {
             CHConfig chConfig = chConfigs.get(i);
             LOGGER.info((i + 1) + "/" + chConfigs.size() + " Setting up CH preparation for profile " +
                     "'" + chConfig.getName() + "' " + chConfig.getTraversalMode() + " ... (" + getMemInfo() + ")");
-            runnables.add(() -> {
-                final String name = chConfig.getName();
-                // toString is not taken into account so we need to cheat, see http://stackoverflow.com/q/6113746/194609 for other options
-                Thread.currentThread().setName(name);
-                PrepareContractionHierarchies prepare = PrepareContractionHierarchies.fromGraph(baseGraph, chConfig);
-                prepare.setParams(pMap);
-                PrepareContractionHierarchies.Result result = prepare.doWork();
-                results.put(name, result);
-                prepare.flush();
-                if (closeEarly)
-                    prepare.close();
-                properties.put(CH.PREPARE + "date." + name, createFormatter().format(new Date()));
-            });
+            Runnable runnable = createPreparationRunnable(baseGraph, properties, chConfig, closeEarly, results, chConfigs, nodeOrderings);
+            if (getNodeOrderingProfile(chConfig) == null)
+                runnables.add(runnable);
+            else
+                secondRunnables.add(runnable);
         }
         GHUtility.runConcurrently(runnables.stream(), preparationThreads);
+        GHUtility.runConcurrently(secondRunnables.stream(), preparationThreads);
         LOGGER.info("Finished CH preparation, {}", getMemInfo());
         return results;
     }
 
+    /**
+     * Adds the preparations of the given configs to the scheduler instead of running them with the preparation
+     * threads of this handler.
+     *
+     * @return the results, which are available once the scheduler ran
+     */
+    public Map<String, PrepareContractionHierarchies.Result> schedule(PreparationScheduler scheduler, BaseGraph baseGraph, StorableProperties properties,
+                                                                      List<CHConfig> chConfigs, Map<String, RoutingCHGraph> loaded,
+                                                                      final boolean closeEarly, PreparationScheduler.Task... dependencies) {
+        Map<String, PrepareContractionHierarchies.Result> results = Collections.synchronizedMap(new LinkedHashMap<>());
+        Map<String, NodeOrderingProvider> nodeOrderings = createNodeOrderings(loaded);
+        Map<String, PreparationScheduler.Task> tasks = new HashMap<>();
+        // the profiles that use the node ordering of another profile have to be added after the other profile
+        List<CHConfig> sorted = new ArrayList<>(chConfigs);
+        sorted.sort(Comparator.comparing(c -> getNodeOrderingProfile(c) != null));
+        for (CHConfig chConfig : sorted) {
+            List<PreparationScheduler.Task> taskDependencies = new ArrayList<>(Arrays.asList(dependencies));
+            String nodeOrderingProfile = getNodeOrderingProfile(chConfig);
+            if (tasks.containsKey(nodeOrderingProfile))
+                taskDependencies.add(tasks.get(nodeOrderingProfile));
+            tasks.put(chConfig.getName(), scheduler.add("CH " + chConfig.getName(), estimateMemory(baseGraph, chConfig),
+                    createPreparationRunnable(baseGraph, properties, chConfig, closeEarly, results, chConfigs, nodeOrderings), taskDependencies));
+        }
+        return results;
+    }
+
+    /**
+     * @return the name of the profile whose node ordering is used for the given config or null if the preparation
+     * determines its own node ordering
+     */
+    private String getNodeOrderingProfile(CHConfig chConfig) {
+        for (CHProfile chProfile : chProfiles)
+            if (chProfile.getProfile().equals(chConfig.getName()))
+                return chProfile.usesOtherNodeOrdering() ? chProfile.getNodeOrderingProfile() : null;
+        return null;
+    }
+
+    private Map<String, NodeOrderingProvider> createNodeOrderings(Map<String, RoutingCHGraph> loaded) {
+        Map<String, NodeOrderingProvider> nodeOrderings = new ConcurrentHashMap<>();
+        for (CHProfile chProfile : chProfiles)
+            if (chProfile.usesOtherNodeOrdering() && loaded.containsKey(chProfile.getNodeOrderingProfile()))
+                nodeOrderings.computeIfAbsent(chProfile.getNodeOrderingProfile(), p -> {
+                    RoutingCHGraph chGraph = loaded.get(p);
+                    return NodeOrderingProvider.fromLevels(chGraph.getNodes(), chGraph::getLevel);
+                });
+        return nodeOrderings;
+    }
+
+    private Runnable createPreparationRunnable(BaseGraph baseGraph, StorableProperties properties, CHConfig chConfig, boolean closeEarly,
+                                               Map<String, PrepareContractionHierarchies.Result> results, List<CHConfig> chConfigs,
+                                               Map<String, NodeOrderingProvider> nodeOrderings) {
+        return () -> {
+            final String name = chConfig.getName();
+            // toString is not taken into account so we need to cheat, see http://stackoverflow.com/q/6113746/194609 for other options
+            Thread.currentThread().setName(name);
+            PrepareContractionHierarchies prepare = createCHPreparation(baseGraph, chConfig);
+            String nodeOrderingProfile = getNodeOrderingProfile(chConfig);
+            if (nodeOrderingProfile != null) {
+                NodeOrderingProvider nodeOrdering = nodeOrderings.get(nodeOrderingProfile);
+                if (nodeOrdering == null)
+                    throw new IllegalStateException("The node ordering of " + nodeOrderingProfile + " is needed for the CH preparation of " + name
+                            + ", but " + nodeOrderingProfile + " was neither loaded nor prepared");
+                LOGGER.info("Using the node ordering of {} for the CH preparation of {}", nodeOrderingProfile, name);
+                prepare.useFixedNodeOrdering(nodeOrdering);
+            }
+            PrepareContractionHierarchies.Result result = prepare.doWork();
+            results.put(name, result);
+            // the node ordering has to be read before the storage is closed
+            if (chConfigs.stream().anyMatch(c -> name.equals(getNodeOrderingProfile(c))))
+                nodeOrderings.put(name, result.getCHStorage().getNodeOrderingProvider());
+            prepare.flush();
+            if (closeEarly)
+                prepare.close();
+            properties.put(CH.PREPARE + "date." + name, createFormatter().format(new Date()));
+        };
+    }
+
+    /**
+     * @return a rough estimate of the memory in bytes that is needed to prepare the given config: the CHStorage with
+     * about one shortcut per edge, or two for edge-based CH, plus the graph that is used during the contraction, which
+     * is about as big as the nodes and edges of the base graph
+     */
+    public static long estimateMemory(BaseGraph baseGraph, CHConfig chConfig) {
+        long nodes = baseGraph.getNodes(), edges = baseGraph.getEdges();
+        long chStorage = nodes * 8 + (chConfig.isEdgeBased() ? 2 * edges * 28 : edges * 20);
+        long prepareGraph = nodes * 4 + edges * 2 * 16;
+        return chStorage + prepareGraph;
+    }
+
     private PrepareContractionHierarchies createCHPreparation(BaseGraph graph, CHConfig chConfig) {
         PrepareContractionHierarchies pch = PrepareContractionHierarchies.fromGraph(graph, chConfig);
         pch.setParams(pMap);
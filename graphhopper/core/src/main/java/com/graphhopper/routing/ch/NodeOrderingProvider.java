@@ -1,5 +1,8 @@
 package com.graphhopper.routing.ch;
 
+import java.util.Arrays;
+import java.util.function.IntUnaryOperator;
+
 public interface NodeOrderingProvider {
 
     static NodeOrderingProvider identity(int nodes) {
@@ -30,6 +33,36 @@ public interface NodeOrderingProvider {
         };
     }
 
+    /**
+     * Creates the node ordering from the CH levels of the nodes, i.e. the nodes sorted by their level. Nodes that were
+     * not contracted all have the maximum level, they are put at the end of the ordering.
+     */
+    static NodeOrderingProvider fromLevels(int nodes, IntUnaryOperator levelOfNode) {
+        int[] nodesByLevel = new int[nodes];
+        Arrays.fill(nodesByLevel, -1);
+        int uncontracted = 0;
+        for (int node = 0; node < nodes; node++) {
+            int level = levelOfNode.applyAsInt(node);
+            if (level < nodes && nodesByLevel[level] < 0)
+                nodesByLevel[level] = node;
+            else
+                uncontracted++;
+        }
+        if (uncontracted == 0)
+            return fromArray(nodesByLevel);
+        int[] nodeOrdering = new int[nodes];
+        int index = 0;
+        for (int node : nodesByLevel)
+            if (node >= 0)
+                nodeOrdering[index++] = node;
+        for (int node = 0; node < nodes; node++) {
+            int level = levelOfNode.applyAsInt(node);
+            if (level >= nodes || nodesByLevel[level] != node)
+                nodeOrdering[index++] = node;
+        }
+        return fromArray(nodeOrdering);
+    }
+
     int getNodeIdForLevel(int level);
 
     int getNumNodes();
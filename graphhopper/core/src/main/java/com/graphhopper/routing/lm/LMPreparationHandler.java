@@ -24,6 +24,7 @@ import com.graphhopper.config.LMProfile;
 import com.graphhopper.routing.ev.EncodedValueLookup;
 import com.graphhopper.routing.util.AreaIndex;
 import com.graphhopper.routing.util.EncodingManager;
+import com.graphhopper.routing.util.PreparationScheduler;
 import com.graphhopper.storage.BaseGraph;
 import com.graphhopper.storage.StorableProperties;
 import com.graphhopper.storage.index.LocationIndex;
@@ -177,15 +178,9 @@ public class LMPreparationHandler {
         for (int i = 0; i < preparations.size(); i++) {
             PrepareLandmarks prepare = preparations.get(i);
             final int count = i + 1;
-            final String name = prepare.getLMConfig().getName();
             prepareRunnables.add(() -> {
                 LOGGER.info(count + "/" + lmConfigs.size() + " calling LM prepare.doWork for " + prepare.getLMConfig().getName() + " ... (" + getMemInfo() + ")");
-                Thread.currentThread().setName(name);
-                prepare.doWork();
-                if (closeEarly)
-                    prepare.close();
-                LOGGER.info("LM {} finished {}", name, getMemInfo());
-                properties.put(Landmark.PREPARE + "date." + name, createFormatter().format(new Date()));
+                createPreparationRunnable(prepare, properties, closeEarly).run();
             });
         }
         GHUtility.runConcurrently(prepareRunnables.stream(), preparationThreads);
@@ -193,6 +188,42 @@ public class LMPreparationHandler {
         return preparations;
     }
 
+    /**
+     * Adds the preparations of the given configs to the scheduler instead of running them with the preparation
+     * threads of this handler.
+     *
+     * @return the preparations, which are done once the scheduler ran
+     */
+    public List<PrepareLandmarks> schedule(PreparationScheduler scheduler, List<LMConfig> lmConfigs, BaseGraph baseGraph, EncodingManager encodingManager,
+                                           StorableProperties properties, LocationIndex locationIndex, final boolean closeEarly,
+                                           PreparationScheduler.Task... dependencies) {
+        List<PrepareLandmarks> preparations = createPreparations(lmConfigs, baseGraph, encodingManager, locationIndex);
+        for (PrepareLandmarks prepare : preparations)
+            scheduler.add("LM " + prepare.getLMConfig().getName(), estimateMemory(baseGraph),
+                    createPreparationRunnable(prepare, properties, closeEarly), dependencies);
+        return preparations;
+    }
+
+    private Runnable createPreparationRunnable(PrepareLandmarks prepare, StorableProperties properties, boolean closeEarly) {
+        return () -> {
+            final String name = prepare.getLMConfig().getName();
+            Thread.currentThread().setName(name);
+            prepare.doWork();
+            if (closeEarly)
+                prepare.close();
+            LOGGER.info("LM {} finished {}", name, getMemInfo());
+            properties.put(Landmark.PREPARE + "date." + name, createFormatter().format(new Date()));
+        };
+    }
+
+    /**
+     * @return the memory in bytes that is needed to prepare the landmarks of one config: the weights from and to
+     * every landmark and the subnetwork of every node
+     */
+    public long estimateMemory(BaseGraph baseGraph) {
+        return (long) baseGraph.getNodes() * (landmarkCount * 4L + 1);
+    }
+
     /**
      * This method creates the landmark storages ready for landmark creation.
      */
@@ -213,28 +213,20 @@ class QueryOverlayBuilder {
                              PointList fullPL, EdgeIteratorState closestEdge,
                              int prevNodeId, int nodeId) {
         int max = wayIndex + 1;
-        PointList basePoints = new PointList(max - prevWayIndex + 1, is3D);
-        basePoints.add(prevSnapped.lat, prevSnapped.lon, prevSnapped.ele);
-        for (int i = prevWayIndex; i < max; i++) {
-            basePoints.add(fullPL, i);
-        }
-        if (!isPillar) {
-            basePoints.add(currSnapped.lat, currSnapped.lon, currSnapped.ele);
-        }
-        // basePoints must have at least the size of 2 to make sure fetchWayGeometry(FetchMode.ALL) returns at least 2
-        assert basePoints.size() >= 2 : "basePoints must have at least two points";
+        VirtualEdgeGeometry geometry = new VirtualEdgeGeometry(fullPL, prevSnapped, prevWayIndex, max, isPillar ? null : currSnapped, false);
+        // the geometry must have at least the size of 2 to make sure fetchWayGeometry(FetchMode.ALL) returns at least 2
+        assert geometry.size() >= 2 : "geometry must have at least two points";
 
-        PointList baseReversePoints = basePoints.clone(true);
-        double baseDistance = DistancePlaneProjection.DIST_PLANE.calcDistance(basePoints);
+        double baseDistance = geometry.calcDistance(DistancePlaneProjection.DIST_PLANE);
         int virtEdgeId = firstVirtualEdgeId + queryOverlay.getNumVirtualEdges() / 2;
 
         boolean reverse = closestEdge.get(EdgeIteratorState.REVERSE_STATE);
         // edges between base and snapped point
         Map<String, KVStorage.KValue> keyValues = closestEdge.getKeyValues();
         VirtualEdgeIteratorState baseEdge = new VirtualEdgeIteratorState(origEdgeKey, GHUtility.createEdgeKey(virtEdgeId, false),
-                prevNodeId, nodeId, baseDistance, closestEdge.getFlags(), keyValues, basePoints, reverse);
+                prevNodeId, nodeId, baseDistance, closestEdge.getFlags(), keyValues, geometry, reverse);
         VirtualEdgeIteratorState baseReverseEdge = new VirtualEdgeIteratorState(origRevEdgeKey, GHUtility.createEdgeKey(virtEdgeId, true),
-                nodeId, prevNodeId, baseDistance, IntsRef.deepCopyOf(closestEdge.getFlags()), keyValues, baseReversePoints, !reverse);
+                nodeId, prevNodeId, baseDistance, IntsRef.deepCopyOf(closestEdge.getFlags()), keyValues, geometry.reverse(), !reverse);
 
         baseEdge.setReverseEdge(baseReverseEdge);
         baseReverseEdge.setReverseEdge(baseEdge);
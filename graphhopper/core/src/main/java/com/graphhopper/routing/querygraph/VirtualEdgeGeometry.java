@@ -0,0 +1,96 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.querygraph;
+
+import com.graphhopper.util.DistanceCalc;
+import com.graphhopper.util.PointList;
+import com.graphhopper.util.shapes.GHPoint3D;
+
+/**
+ * The geometry of a virtual edge. It is a part of the geometry of the closest edge that starts at a snapped point and
+ * ends at the next snapped point or at the adjacent node. The points are only copied when the geometry is fetched,
+ * e.g. when the points of a path are calculated, and not for every virtual edge of every query.
+ */
+final class VirtualEdgeGeometry {
+    private final PointList fullPL;
+    private final GHPoint3D first;
+    private final int fromWayIndex;
+    private final int toWayIndex;
+    private final GHPoint3D last;
+    private final boolean reverse;
+
+    /**
+     * @param fullPL       all points of the closest edge, they must not be modified afterwards
+     * @param first        the first point
+     * @param fromWayIndex the index of the first point of fullPL that follows the first point
+     * @param toWayIndex   the index after the last point of fullPL that is included
+     * @param last         the last point or null if the last point is the one before toWayIndex
+     */
+    VirtualEdgeGeometry(PointList fullPL, GHPoint3D first, int fromWayIndex, int toWayIndex, GHPoint3D last, boolean reverse) {
+        this.fullPL = fullPL;
+        this.first = first;
+        this.fromWayIndex = fromWayIndex;
+        this.toWayIndex = toWayIndex;
+        this.last = last;
+        this.reverse = reverse;
+    }
+
+    VirtualEdgeGeometry reverse() {
+        return new VirtualEdgeGeometry(fullPL, first, fromWayIndex, toWayIndex, last, !reverse);
+    }
+
+    int size() {
+        return 1 + Math.max(0, toWayIndex - fromWayIndex) + (last == null ? 0 : 1);
+    }
+
+    /**
+     * @return the same as calc.calcDistance for the points of this geometry, but without copying them
+     */
+    double calcDistance(DistanceCalc calc) {
+        double prevLat = first.lat, prevLon = first.lon, prevEle = first.ele;
+        double dist = 0;
+        for (int i = fromWayIndex; i < toWayIndex; i++) {
+            dist += calcDist(calc, prevLat, prevLon, prevEle, fullPL.getLat(i), fullPL.getLon(i), fullPL.getEle(i));
+            prevLat = fullPL.getLat(i);
+            prevLon = fullPL.getLon(i);
+            prevEle = fullPL.getEle(i);
+        }
+        if (last != null)
+            dist += calcDist(calc, prevLat, prevLon, prevEle, last.lat, last.lon, last.ele);
+        return dist;
+    }
+
+    private double calcDist(DistanceCalc calc, double fromLat, double fromLon, double fromEle, double toLat, double toLon, double toEle) {
+        return fullPL.is3D()
+                ? calc.calcDist3D(fromLat, fromLon, fromEle, toLat, toLon, toEle)
+                : calc.calcDist(fromLat, fromLon, toLat, toLon);
+    }
+
+    PointList toPointList() {
+        PointList points = new PointList(size(), fullPL.is3D());
+        points.add(first.lat, first.lon, first.ele);
+        for (int i = fromWayIndex; i < toWayIndex; i++) {
+            points.add(fullPL, i);
+        }
+        if (last != null)
+            points.add(last.lat, last.lon, last.ele);
+        if (reverse)
+            points.reverse();
+        return points;
+    }
+}
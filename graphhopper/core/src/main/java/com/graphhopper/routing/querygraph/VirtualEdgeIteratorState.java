@@ -36,7 +36,9 @@ import static com.graphhopper.util.Parameters.Details.STREET_NAME;
  * even gets removed.
  */
 public class VirtualEdgeIteratorState implements EdgeIteratorState {
-    private final PointList pointList;
+    // the geometry is created from this on demand, or null if the point list was passed directly
+    private final VirtualEdgeGeometry geometry;
+    private volatile PointList pointList;
     private final int edgeKey;
     private final int baseNode;
     private final int adjNode;
@@ -52,6 +54,17 @@ public class VirtualEdgeIteratorState implements EdgeIteratorState {
 
     public VirtualEdgeIteratorState(int originalEdgeKey, int edgeKey, int baseNode, int adjNode, double distance,
                                     IntsRef edgeFlags, Map<String, KVStorage.KValue> keyValues, PointList pointList, boolean reverse) {
+        this(originalEdgeKey, edgeKey, baseNode, adjNode, distance, edgeFlags, keyValues, null, pointList, reverse);
+    }
+
+    VirtualEdgeIteratorState(int originalEdgeKey, int edgeKey, int baseNode, int adjNode, double distance,
+                             IntsRef edgeFlags, Map<String, KVStorage.KValue> keyValues, VirtualEdgeGeometry geometry, boolean reverse) {
+        this(originalEdgeKey, edgeKey, baseNode, adjNode, distance, edgeFlags, keyValues, geometry, null, reverse);
+    }
+
+    private VirtualEdgeIteratorState(int originalEdgeKey, int edgeKey, int baseNode, int adjNode, double distance,
+                                     IntsRef edgeFlags, Map<String, KVStorage.KValue> keyValues, VirtualEdgeGeometry geometry,
+                                     PointList pointList, boolean reverse) {
         this.originalEdgeKey = originalEdgeKey;
         this.edgeKey = edgeKey;
         this.baseNode = baseNode;
@@ -60,6 +73,7 @@ public class VirtualEdgeIteratorState implements EdgeIteratorState {
         this.edgeFlags = edgeFlags;
         this.edgeIntAccess = new IntsRefEdgeIntAccess(edgeFlags);
         this.keyValues = keyValues;
+        this.geometry = geometry;
         this.pointList = pointList;
         this.reverse = reverse;
     }
@@ -101,6 +115,10 @@ public class VirtualEdgeIteratorState implements EdgeIteratorState {
 
     @Override
     public PointList fetchWayGeometry(FetchMode mode) {
+        PointList pointList = this.pointList;
+        if (pointList == null)
+            // concurrent calls might create the same point list twice, which does not matter
+            this.pointList = pointList = geometry.toPointList();
         if (pointList.isEmpty())
             return PointList.EMPTY;
         // due to API we need to create a new instance per call!
@@ -4,28 +4,51 @@ import com.graphhopper.util.*;
 import com.graphhopper.util.shapes.GHPoint;
 
 public class HeadingEdgeFilter implements EdgeFilter {
+    /**
+     * the maximum difference in degrees between the heading and the direction of an accepted edge
+     */
+    public static final double DEFAULT_TOLERANCE = 30;
+    /**
+     * we only accept edges that are not too far away. It might happen that only far away edges match the heading
+     * in which case we rather rely on the fallback snapping than return a match here.
+     */
+    public static final double DEFAULT_MAX_DISTANCE = 20;
 
     private final double heading;
     private final DirectedEdgeFilter directedEdgeFilter;
     private final GHPoint pointNearHeading;
+    private final double tolerance;
+    private final double maxDistance;
 
     public HeadingEdgeFilter(DirectedEdgeFilter directedEdgeFilter, double heading, GHPoint pointNearHeading) {
+        this(directedEdgeFilter, heading, pointNearHeading, DEFAULT_TOLERANCE, DEFAULT_MAX_DISTANCE);
+    }
+
+    public HeadingEdgeFilter(DirectedEdgeFilter directedEdgeFilter, double heading, GHPoint pointNearHeading,
+                             double tolerance, double maxDistance) {
         this.directedEdgeFilter = directedEdgeFilter;
         this.heading = heading;
         this.pointNearHeading = pointNearHeading;
+        this.tolerance = tolerance;
+        this.maxDistance = maxDistance;
     }
 
     @Override
     public boolean accept(EdgeIteratorState edgeState) {
-        final double tolerance = 30;
-        // we only accept edges that are not too far away. It might happen that only far away edges match the heading
-        // in which case we rather rely on the fallback snapping than return a match here.
-        final double maxDistance = 20;
         double headingOfEdge = getHeadingOfGeometryNearPoint(edgeState, pointNearHeading, maxDistance);
         if (Double.isNaN(headingOfEdge))
             // this edge is too far away. we do not accept it.
             return false;
-        // we accept the edge if either of the two directions roughly has the right heading
+        return acceptHeading(edgeState, headingOfEdge, heading, tolerance, directedEdgeFilter);
+    }
+
+    /**
+     * @param headingOfEdge the heading of the edge in fwd direction near the query point
+     * @return true if either of the two directions of the edge roughly has the right heading and is accepted by the
+     * directed edge filter
+     */
+    public static boolean acceptHeading(EdgeIteratorState edgeState, double headingOfEdge, double heading, double tolerance,
+                                        DirectedEdgeFilter directedEdgeFilter) {
         return Math.abs(headingOfEdge - heading) < tolerance && directedEdgeFilter.accept(edgeState, false) ||
                 Math.abs((headingOfEdge + 180) % 360 - heading) < tolerance && directedEdgeFilter.accept(edgeState, true);
     }
@@ -0,0 +1,184 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.util;
+
+import com.graphhopper.util.StopWatch;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import static com.graphhopper.util.Helper.MB;
+import static com.graphhopper.util.Helper.getMemInfo;
+
+/**
+ * Runs the steps of the graph preparation, e.g. the CH and LM preparations of the different profiles, as a dependency
+ * graph. A step is started as soon as all the steps it depends on are finished, a thread is available and the memory
+ * it is expected to need fits into the memory budget. A step that needs more memory than the budget runs only when
+ * no other step is running.
+ */
+public class PreparationScheduler {
+    private static final Logger LOGGER = LoggerFactory.getLogger(PreparationScheduler.class);
+    private final int threads;
+    private final long maxMemory;
+    private final List<Task> tasks = new ArrayList<>();
+
+    /**
+     * @param threads   the maximum number of steps that run at the same time
+     * @param maxMemory the maximum sum of the expected memory in bytes of the steps that run at the same time
+     */
+    public PreparationScheduler(int threads, long maxMemory) {
+        if (threads < 1)
+            throw new IllegalArgumentException("threads must be at least 1, but was " + threads);
+        if (maxMemory < 0)
+            throw new IllegalArgumentException("maxMemory must not be negative, but was " + maxMemory);
+        this.threads = threads;
+        this.maxMemory = maxMemory;
+    }
+
+    /**
+     * Adds a step that is run after the given steps, which have to be added before.
+     *
+     * @param memory the memory in bytes the step is expected to need while it is running
+     */
+    public Task add(String name, long memory, Runnable runnable, Task... dependencies) {
+        return add(name, memory, runnable, Arrays.asList(dependencies));
+    }
+
+    public Task add(String name, long memory, Runnable runnable, Collection<Task> dependencies) {
+        for (Task dependency : dependencies)
+            if (!tasks.contains(dependency))
+                throw new IllegalArgumentException("Dependency " + dependency.name + " of " + name + " was not added to this scheduler");
+        Task task = new Task(name, Math.max(0, memory), runnable, new ArrayList<>(dependencies));
+        tasks.add(task);
+        return task;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public long getMaxMemory() {
+        return maxMemory;
+    }
+
+    /**
+     * Runs all steps and returns once they are finished. If a step fails no further steps are started and the
+     * exception is rethrown once the running steps are finished.
+     */
+    public void run() {
+        if (tasks.isEmpty())
+            return;
+        StopWatch sw = new StopWatch().start();
+        long totalMemory = tasks.stream().mapToLong(Task::getWork).sum();
+        LOGGER.info("Running {} preparation steps with {} threads and a memory budget of {}MB, {}", tasks.size(), threads,
+                maxMemory / MB, getMemInfo());
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CompletionService<Task> completionService = new ExecutorCompletionService<>(executor);
+        List<Task> waiting = new ArrayList<>(tasks);
+        // the big steps first, they usually take the longest
+        waiting.sort(Comparator.comparingLong((Task t) -> t.memory).reversed());
+        Set<Task> finished = new HashSet<>();
+        int running = 0;
+        long usedMemory = 0, finishedWork = 0;
+        RuntimeException failure = null;
+        try {
+            while (finished.size() < tasks.size()) {
+                if (failure == null) {
+                    for (Iterator<Task> iter = waiting.iterator(); iter.hasNext() && running < threads; ) {
+                        Task task = iter.next();
+                        if (!finished.containsAll(task.dependencies) || running > 0 && usedMemory + task.memory > maxMemory)
+                            continue;
+                        iter.remove();
+                        running++;
+                        usedMemory += task.memory;
+                        LOGGER.info("Starting {}, expected memory: {}MB, running steps: {}, {}", task.name, task.memory / MB, running, getMemInfo());
+                        completionService.submit(() -> {
+                            StopWatch taskSW = new StopWatch().start();
+                            task.runnable.run();
+                            task.seconds = taskSW.stop().getSeconds();
+                            return task;
+                        });
+                    }
+                }
+                if (running == 0)
+                    break;
+                Task task;
+                try {
+                    task = completionService.take().get();
+                } catch (ExecutionException e) {
+                    running--;
+                    if (failure == null)
+                        failure = e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : new RuntimeException(e.getCause());
+                    continue;
+                }
+                running--;
+                usedMemory -= task.memory;
+                finished.add(task);
+                finishedWork += task.getWork();
+                double elapsed = sw.getCurrentSeconds();
+                LOGGER.info("Finished {} in {}s, {}/{} steps done, elapsed: {}s, ETA: {}s", task.name, (int) task.seconds,
+                        finished.size(), tasks.size(), (int) elapsed, (int) (elapsed * (totalMemory - finishedWork) / finishedWork));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } finally {
+            executor.shutdownNow();
+        }
+        if (failure != null)
+            throw failure;
+        LOGGER.info("Finished {} preparation steps in {}s, {}", tasks.size(), (int) sw.stop().getSeconds(), getMemInfo());
+    }
+
+    public static class Task {
+        private final String name;
+        private final long memory;
+        private final Runnable runnable;
+        private final List<Task> dependencies;
+        private volatile float seconds;
+
+        private Task(String name, long memory, Runnable runnable, List<Task> dependencies) {
+            this.name = name;
+            this.memory = memory;
+            this.runnable = runnable;
+            this.dependencies = dependencies;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getMemory() {
+            return memory;
+        }
+
+        /**
+         * @return the expected memory is used as an estimate for the work of a step, e.g. to calculate the ETA
+         */
+        private long getWork() {
+            return Math.max(MB, memory);
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+}
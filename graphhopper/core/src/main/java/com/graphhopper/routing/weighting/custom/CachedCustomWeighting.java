@@ -0,0 +1,128 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.weighting.custom;
+
+import com.graphhopper.json.Statement;
+import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.util.CustomModel;
+import com.graphhopper.util.EdgeIteratorState;
+
+import java.util.List;
+
+/**
+ * A custom weighting that reads the weights of the edges of the base graph from an {@link EdgeWeightCache} instead
+ * of evaluating the custom model of the profile. The distance influence of the request is added to the cached
+ * weights and the speed and priority statements of the request can be layered on top, as long as they only
+ * multiply, see {@link #isLayerable(CustomModel)}. Then only the statements of the request are evaluated for every
+ * edge. Everything else, e.g. the virtual edges of a query graph, the time and the turn costs, is delegated to a
+ * custom weighting that applies the statements of the profile and of the request one after the other, like the merged
+ * custom model would.
+ */
+public final class CachedCustomWeighting implements Weighting {
+    private final EdgeWeightCache cache;
+    private final Weighting weighting;
+    private final CustomWeighting.EdgeToDoubleMapping requestSpeedMapping;
+    private final CustomWeighting.EdgeToDoubleMapping requestPriorityMapping;
+    private final double distanceInfluence;
+    private final int cachedEdges;
+
+    /**
+     * @param weighting              a weighting that is equivalent to the one of the merged custom model
+     * @param requestSpeedMapping    the factor the request's custom model multiplies the speed with or null if it
+     *                               has no speed statements
+     * @param requestPriorityMapping the factor the request's custom model multiplies the priority with or null if it
+     *                               has no priority statements
+     * @param distanceInfluence      the distance influence of the merged custom model in s/km
+     */
+    public CachedCustomWeighting(EdgeWeightCache cache, Weighting weighting,
+                                 CustomWeighting.EdgeToDoubleMapping requestSpeedMapping,
+                                 CustomWeighting.EdgeToDoubleMapping requestPriorityMapping, double distanceInfluence) {
+        this.cache = cache;
+        this.weighting = weighting;
+        this.requestSpeedMapping = requestSpeedMapping;
+        this.requestPriorityMapping = requestPriorityMapping;
+        this.distanceInfluence = distanceInfluence / 1000.0;
+        this.cachedEdges = cache.getEdges();
+    }
+
+    /**
+     * @return true if the given query custom model can be layered on top of the cached weights, i.e. its speed and
+     * priority statements only multiply
+     */
+    public static boolean isLayerable(CustomModel queryCustomModel) {
+        return queryCustomModel == null || onlyMultiplies(queryCustomModel.getSpeed()) && onlyMultiplies(queryCustomModel.getPriority());
+    }
+
+    private static boolean onlyMultiplies(List<Statement> statements) {
+        for (Statement statement : statements) {
+            if (statement.isBlock() ? !onlyMultiplies(statement.doBlock()) : statement.operation() != Statement.Op.MULTIPLY)
+                return false;
+        }
+        return true;
+    }
+
+    @Override
+    public double calcMinWeightPerDistance() {
+        return weighting.calcMinWeightPerDistance();
+    }
+
+    @Override
+    public double calcEdgeWeight(EdgeIteratorState edgeState, boolean reverse) {
+        if (edgeState.getEdge() >= cachedEdges)
+            return weighting.calcEdgeWeight(edgeState, reverse);
+        double weight = cache.getWeight(edgeState, reverse);
+        if (Double.isInfinite(weight)) return Double.POSITIVE_INFINITY;
+        // the seconds are divided by the speed factor and the weight by the priority factor
+        if (requestSpeedMapping != null) {
+            double speed = requestSpeedMapping.get(edgeState, reverse);
+            if (speed == 0) return Double.POSITIVE_INFINITY;
+            weight /= speed;
+        }
+        if (requestPriorityMapping != null) {
+            double priority = requestPriorityMapping.get(edgeState, reverse);
+            if (priority == 0) return Double.POSITIVE_INFINITY;
+            weight /= priority;
+        }
+        return weight + edgeState.getDistance() * distanceInfluence;
+    }
+
+    @Override
+    public long calcEdgeMillis(EdgeIteratorState edgeState, boolean reverse) {
+        return weighting.calcEdgeMillis(edgeState, reverse);
+    }
+
+    @Override
+    public double calcTurnWeight(int inEdge, int viaNode, int outEdge) {
+        return weighting.calcTurnWeight(inEdge, viaNode, outEdge);
+    }
+
+    @Override
+    public long calcTurnMillis(int inEdge, int viaNode, int outEdge) {
+        return weighting.calcTurnMillis(inEdge, viaNode, outEdge);
+    }
+
+    @Override
+    public boolean hasTurnCosts() {
+        return weighting.hasTurnCosts();
+    }
+
+    @Override
+    public String getName() {
+        return weighting.getName();
+    }
+}
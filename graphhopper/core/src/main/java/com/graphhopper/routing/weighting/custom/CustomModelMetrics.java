@@ -0,0 +1,114 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.weighting.custom;
+
+import com.graphhopper.json.Statement;
+import com.graphhopper.util.CustomModel;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts how often custom models are compiled and how many statements the created custom weightings contain. All
+ * counters are global for the JVM, like the class cache of {@link CustomModelParser}.
+ */
+public final class CustomModelMetrics {
+    private static final LongAdder compilations = new LongAdder();
+    private static final LongAdder compileNanos = new LongAdder();
+    private static final LongAdder classCacheHits = new LongAdder();
+    private static final LongAdder edgeWeightCacheHits = new LongAdder();
+    private static final LongAdder edgeWeightCacheMisses = new LongAdder();
+    private static final LongAdder weightings = new LongAdder();
+    private static final LongAdder evaluatedStatements = new LongAdder();
+
+    private CustomModelMetrics() {
+    }
+
+    static void recordCompilation(long nanos) {
+        compilations.increment();
+        compileNanos.add(nanos);
+    }
+
+    static void recordClassCacheHit() {
+        classCacheHits.increment();
+    }
+
+    /**
+     * Records a weighting that evaluates the given custom model for every edge.
+     *
+     * @param layered true if the weighting reads the weights of the profile from its {@link EdgeWeightCache} and
+     *                the model only contains the statements of the request, false if the profile has an edge weight
+     *                cache, but the weighting cannot use it, null if the profile has no edge weight cache
+     */
+    public static void recordWeighting(CustomModel evaluatedModel, Boolean layered) {
+        if (layered != null)
+            (layered ? edgeWeightCacheHits : edgeWeightCacheMisses).increment();
+        weightings.increment();
+        evaluatedStatements.add(count(evaluatedModel.getSpeed()) + count(evaluatedModel.getPriority()));
+    }
+
+    private static int count(List<Statement> statements) {
+        int count = 0;
+        for (Statement statement : statements)
+            count += statement.isBlock() ? count(statement.doBlock()) : 1;
+        return count;
+    }
+
+    /**
+     * @return the number of custom models that were compiled into a new class
+     */
+    public static long getCompilations() {
+        return compilations.sum();
+    }
+
+    public static long getCompileMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(compileNanos.sum());
+    }
+
+    /**
+     * @return the number of custom models for which a compiled class was found in the cache
+     */
+    public static long getClassCacheHits() {
+        return classCacheHits.sum();
+    }
+
+    /**
+     * @return the number of weightings which were layered on top of the cached weights of their profile
+     */
+    public static long getEdgeWeightCacheHits() {
+        return edgeWeightCacheHits.sum();
+    }
+
+    /**
+     * @return the number of weightings of profiles with an edge weight cache which had to evaluate the full
+     * custom model, because the custom model of the request cannot be layered on top of the cached weights
+     */
+    public static long getEdgeWeightCacheMisses() {
+        return edgeWeightCacheMisses.sum();
+    }
+
+    /**
+     * @return the average number of speed and priority statements per created weighting, i.e. the number of
+     * statements such a weighting evaluates for every edge
+     */
+    public static double getStatementsPerWeighting() {
+        long count = weightings.sum();
+        return count == 0 ? 0 : (double) evaluatedStatements.sum() / count;
+    }
+}
@@ -96,7 +96,9 @@ public class CustomModelParser {
         if (CACHE_SIZE > 0 && clazz == null)
             clazz = CACHE.get(key);
         if (clazz == null) {
+            long start = System.nanoTime();
             clazz = createClazz(customModel, lookup);
+            CustomModelMetrics.recordCompilation(System.nanoTime() - start);
             if (customModel.isInternal()) {
                 INTERNAL_CACHE.put(key, clazz);
                 if (INTERNAL_CACHE.size() > 100) {
@@ -108,6 +110,8 @@ public class CustomModelParser {
             } else if (CACHE_SIZE > 0) {
                 CACHE.put(key, clazz);
             }
+        } else {
+            CustomModelMetrics.recordClassCacheHit();
         }
 
         try {
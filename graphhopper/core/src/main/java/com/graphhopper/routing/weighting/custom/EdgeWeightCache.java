@@ -0,0 +1,132 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.weighting.custom;
+
+import com.graphhopper.config.Profile;
+import com.graphhopper.routing.ev.EncodedValueLookup;
+import com.graphhopper.routing.util.AllEdgesIterator;
+import com.graphhopper.storage.BaseGraph;
+import com.graphhopper.storage.DataAccess;
+import com.graphhopper.storage.Directory;
+import com.graphhopper.util.CustomModel;
+import com.graphhopper.util.EdgeIteratorState;
+
+import static com.graphhopper.routing.weighting.TurnCostProvider.NO_TURN_COST_PROVIDER;
+
+/**
+ * Stores the weight of every edge of the base graph in both directions for the custom model of one profile, so
+ * the routing algorithms read two floats per edge instead of evaluating the speed and priority statements of the
+ * custom model. The stored weight is seconds / priority, the distance influence is not included and added at request
+ * time, see {@link CachedCustomWeighting}. The weights are rounded up to the next float, so they are never smaller
+ * than the exact weights and the landmark approximations stay admissible.
+ */
+public class EdgeWeightCache {
+    private static final long BYTES_PER_EDGE = 8;
+    private final String profileName;
+    private final DataAccess da;
+    private int edges = -1;
+
+    public EdgeWeightCache(Directory dir, String profileName) {
+        this.profileName = profileName;
+        this.da = dir.create("edge_weights_" + profileName);
+    }
+
+    public String getProfileName() {
+        return profileName;
+    }
+
+    /**
+     * @return true if the cached weights were found in the storage and match the version of the profile
+     * @throws IllegalArgumentException if the cached weights were calculated for a different profile version
+     */
+    public boolean loadExisting(BaseGraph graph, int profileVersion) {
+        if (!da.loadExisting())
+            return false;
+        if (da.getHeader(0) != profileVersion)
+            throw new IllegalArgumentException("Edge weight cache of " + profileName + " already exists in storage and doesn't match configuration");
+        edges = da.getHeader(4);
+        if (edges != graph.getEdges())
+            throw new IllegalStateException("Edge weight cache of " + profileName + " was calculated for " + edges + " edges, but the graph has " + graph.getEdges());
+        return true;
+    }
+
+    /**
+     * Calculates the weights of all edges with the custom model of the given profile.
+     */
+    public void build(BaseGraph graph, EncodedValueLookup lookup, Profile profile) {
+        if (edges >= 0)
+            throw new IllegalStateException("Edge weight cache of " + profileName + " was already built");
+        CustomModel customModel = new CustomModel(profile.getCustomModel()).setDistanceInfluence(0d);
+        CustomWeighting weighting = CustomModelParser.createWeighting(lookup, NO_TURN_COST_PROVIDER, customModel);
+        edges = graph.getEdges();
+        da.create(edges * BYTES_PER_EDGE);
+        da.ensureCapacity(edges * BYTES_PER_EDGE);
+        AllEdgesIterator iter = graph.getAllEdges();
+        while (iter.next()) {
+            long pointer = iter.getEdge() * BYTES_PER_EDGE;
+            da.setInt(pointer, Float.floatToRawIntBits(roundUp(weighting.calcEdgeWeight(iter, false))));
+            da.setInt(pointer + 4, Float.floatToRawIntBits(roundUp(weighting.calcEdgeWeight(iter, true))));
+        }
+        da.setHeader(0, profile.getVersion());
+        da.setHeader(4, edges);
+    }
+
+    private static float roundUp(double weight) {
+        float result = (float) weight;
+        return result < weight ? Math.nextUp(result) : result;
+    }
+
+    /**
+     * @return the number of edges the weights were calculated for, the edges with a larger id are not cached
+     */
+    public int getEdges() {
+        return edges;
+    }
+
+    /**
+     * @return the weight (without distance influence) for the given edge, in the direction of the storage if
+     * reverse is false
+     */
+    public double getWeight(int edge, boolean reverse) {
+        return Float.intBitsToFloat(da.getInt(edge * BYTES_PER_EDGE + (reverse ? 4 : 0)));
+    }
+
+    /**
+     * @return the weight (without distance influence) for the given edge state, like
+     * {@link CustomWeighting#calcEdgeWeight(EdgeIteratorState, boolean)}
+     */
+    public double getWeight(EdgeIteratorState edgeState, boolean reverse) {
+        return getWeight(edgeState.getEdge(), reverse != edgeState.get(EdgeIteratorState.REVERSE_STATE));
+    }
+
+    public void flush() {
+        da.flush();
+    }
+
+    public void close() {
+        da.close();
+    }
+
+    public boolean isClosed() {
+        return da.isClosed();
+    }
+
+    public long getCapacity() {
+        return da.getCapacity();
+    }
+}
@@ -39,6 +39,9 @@ public class KVStorage {
     static final int MAX_UNIQUE_KEYS = (1 << 14);
     // Store string value as byte array and store the length into 1 byte
     private static final int MAX_LENGTH = (1 << 8) - 1;
+    // number of recently added entry maps that we try to re-use, see add
+    static final int MAX_DICTIONARY_ENTRIES = 1 << 14;
+    private static final int GET_CACHE_SIZE = 1 << 12;
 
     private final Directory dir;
     // It stores the mapping of "key to index" in the keys DataAccess. E.g. if your first key is "some" then we will
@@ -82,6 +85,18 @@ public class KVStorage {
     private long bytePointer = START_POINTER;
     private long lastEntryPointer = -1;
     private Map<String, KValue> lastEntries;
+    // Many OSM ways share exactly the same key-value pairs (e.g. the name and ref of a long road that is split into
+    // many ways), so we remember the pointers of the recently added entry maps and store every such map only once.
+    private final Map<Map<String, KValue>, Long> entryDictionary = new LinkedHashMap<Map<String, KValue>, Long>(1024, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Map<String, KValue>, Long> eldest) {
+            return size() > MAX_DICTIONARY_ENTRIES;
+        }
+    };
+    // A direct mapped cache for get. Instructions and path details read the same few keys of consecutive edges, which
+    // often point to the same entries, so most calls can return the value without decoding it again. The stored
+    // values are immutable and every slot is replaced as a whole, so concurrent reads need no locking.
+    private final CachedValue[] getCache = new CachedValue[GET_CACHE_SIZE];
 
     /**
      * Specify a larger cacheSize to reduce disk usage. Note that this increases the memory usage of this object.
@@ -225,6 +240,8 @@ public class KVStorage {
         // This is a very important "compression" mechanism because one OSM way is split into multiple edges and so we
         // can often re-use the serialized key-value pairs of the previous edge.
         if (entries.equals(lastEntries)) return lastEntryPointer;
+        Long existingPointer = entryDictionary.get(entries);
+        if (existingPointer != null) return existingPointer;
 
         int entryCount = 0;
         for (Map.Entry<String, KValue> kv : entries.entrySet()) {
@@ -246,13 +263,17 @@ public class KVStorage {
             }
         }
 
-        lastEntries = entries;
+        // copy the map as the caller could still modify it
+        lastEntries = new HashMap<>(entries);
         lastEntryPointer = bytePointer;
         vals.ensureCapacity(bytePointer + 1);
         vals.setByte(bytePointer, (byte) entryCount);
         bytePointer = setKVList(bytePointer, entries);
         if (bytePointer < 0)
             throw new IllegalStateException("Negative bytePointer in KVStorage");
+        // byte arrays are compared by reference in hashCode, so such maps would only occupy the dictionary
+        if (lastEntries.values().stream().noneMatch(v -> v.fwdValue instanceof byte[] || v.bwdValue instanceof byte[]))
+            entryDictionary.put(lastEntries, lastEntryPointer);
         return lastEntryPointer;
     }
 
@@ -408,6 +429,10 @@ public class KVStorage {
         }
     }
 
+    /**
+     * @return the value of the specified key for the entries at the specified pointer or null if it does not exist.
+     * Strings and numbers are cached, so repeated calls for the same entries usually do not allocate.
+     */
     public Object get(final long entryPointer, String key, boolean reverse) {
         if (entryPointer < 0)
             throw new IllegalStateException("Pointer to access KVStorage cannot be negative:" + entryPointer);
@@ -417,6 +442,25 @@ public class KVStorage {
         Integer keyIndex = keyToIndex.get(key);
         if (keyIndex == null) return null; // key wasn't stored before
 
+        int keyIndexAndDirection = keyIndex << 1 | (reverse ? 1 : 0);
+        int slot = getCacheSlot(entryPointer, keyIndexAndDirection);
+        CachedValue cached = getCache[slot];
+        if (cached != null && cached.entryPointer == entryPointer && cached.keyIndexAndDirection == keyIndexAndDirection)
+            return cached.value;
+
+        Object value = readValue(entryPointer, keyIndex, reverse);
+        // byte arrays are mutable and must not be shared between callers
+        if (!(value instanceof byte[]))
+            getCache[slot] = new CachedValue(entryPointer, keyIndexAndDirection, value);
+        return value;
+    }
+
+    private static int getCacheSlot(long entryPointer, int keyIndexAndDirection) {
+        long hash = (entryPointer * 31 + keyIndexAndDirection) * 0x9E3779B97F4A7C15L;
+        return (int) (hash >>> 40) & (GET_CACHE_SIZE - 1);
+    }
+
+    private Object readValue(long entryPointer, int keyIndex, boolean reverse) {
         int keyCount = vals.getByte(entryPointer) & 0xFF;
         if (keyCount == 0) return null; // no entries
 
@@ -492,6 +536,18 @@ public class KVStorage {
         return vals.getCapacity() + keys.getCapacity();
     }
 
+    private static final class CachedValue {
+        final long entryPointer;
+        final int keyIndexAndDirection;
+        final Object value;
+
+        CachedValue(long entryPointer, int keyIndexAndDirection, Object value) {
+            this.entryPointer = entryPointer;
+            this.keyIndexAndDirection = keyIndexAndDirection;
+            this.value = value;
+        }
+    }
+
     public static class KValue {
         private final Object fwdValue;
         private final Object bwdValue;
@@ -17,6 +17,8 @@
  */
 package com.graphhopper.storage;
 
+import com.carrotsearch.hppc.IntArrayList;
+import com.carrotsearch.hppc.cursors.IntCursor;
 import com.graphhopper.routing.ev.*;
 import com.graphhopper.routing.util.AllEdgesIterator;
 import com.graphhopper.routing.util.EdgeFilter;
@@ -357,6 +359,22 @@ public class BaseGraph implements Graph, Closeable {
         }
     }
 
+    /**
+     * Removes the geometry of the given edge and all its copies. Like in {@link #copyEdge} the copies share a dedicated
+     * negative geo ref afterwards, so they can still be identified.
+     */
+    public void removeWayGeometryOfEdgeAndCopies(EdgeExplorer explorer, EdgeIteratorState edge) {
+        IntArrayList edges = new IntArrayList();
+        forEdgeAndCopiesOfEdge(explorer, edge.getBaseNode(), edge.getEdge(), edges::add);
+        long geoRef = 0;
+        if (edges.size() > 1) {
+            geoRef = minGeoRef;
+            minGeoRef--;
+        }
+        for (IntCursor cursor : edges)
+            store.setGeoRef(store.toEdgePointer(cursor.value), geoRef);
+    }
+
     public void forEdgeAndCopiesOfEdge(EdgeExplorer explorer, int node, int edge, IntConsumer consumer) {
         final long geoRef = store.getGeoRef(store.toEdgePointer(edge));
         if (geoRef == 0) {
@@ -328,16 +328,10 @@ public class CHStorage {
     }
 
     public NodeOrderingProvider getNodeOrderingProvider() {
-        int numNodes = getNodes();
-        final int[] nodeOrdering = new int[numNodes];
         // the node ordering is the inverse of the ch levels
         // if we really want to save some memory it could be still reasonable to not create the node ordering here,
         // but search nodesCH for a given level on demand.
-        for (int i = 0; i < numNodes; ++i) {
-            int level = getLevel(toNodePointer(i));
-            nodeOrdering[level] = i;
-        }
-        return NodeOrderingProvider.fromArray(nodeOrdering);
+        return NodeOrderingProvider.fromLevels(getNodes(), node -> getLevel(toNodePointer(node)));
     }
 
     public void debugPrint() {
@@ -17,7 +17,10 @@
  */
 package com.graphhopper.storage.index;
 
+import com.graphhopper.routing.util.DirectedEdgeFilter;
 import com.graphhopper.routing.util.EdgeFilter;
+import com.graphhopper.routing.util.HeadingEdgeFilter;
+import com.graphhopper.util.shapes.GHPoint;
 import com.graphhopper.util.shapes.BBox;
 
 /**
@@ -46,6 +49,23 @@ public interface LocationIndex {
      */
     Snap findClosest(double lat, double lon, EdgeFilter edgeFilter);
 
+    /**
+     * This method returns the closest Snap for the specified location (lat, lon) among the edges that are not
+     * further away than maxDistance and have a direction that deviates less than tolerance from the given heading.
+     * If there is no such edge it returns the closest Snap that is accepted by the edgeFilter, i.e. the same as
+     * {@link #findClosest(double, double, EdgeFilter)}.
+     *
+     * @param directedEdgeFilter decides which directions of the edges are accepted for the heading
+     * @param heading            the heading in degrees, clockwise from north
+     * @param tolerance          the maximum deviation from the heading in degrees
+     * @param maxDistance        the maximum distance in meters of an edge matching the heading
+     */
+    default Snap findClosest(double lat, double lon, EdgeFilter edgeFilter, DirectedEdgeFilter directedEdgeFilter,
+                             double heading, double tolerance, double maxDistance) {
+        Snap snap = findClosest(lat, lon, new HeadingEdgeFilter(directedEdgeFilter, heading, new GHPoint(lat, lon), tolerance, maxDistance));
+        return snap.isValid() ? snap : findClosest(lat, lon, edgeFilter);
+    }
+
     /**
      * This method explores the LocationIndex with the specified Visitor. It visits only the stored edges (and only once)
      * and limited by the queryBBox. Also (a few) more edges slightly outside of queryBBox could be
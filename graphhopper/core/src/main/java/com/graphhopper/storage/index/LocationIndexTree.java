@@ -19,7 +19,9 @@ package com.graphhopper.storage.index;
 
 import com.carrotsearch.hppc.IntHashSet;
 import com.graphhopper.routing.util.AllEdgesIterator;
+import com.graphhopper.routing.util.DirectedEdgeFilter;
 import com.graphhopper.routing.util.EdgeFilter;
+import com.graphhopper.routing.util.HeadingEdgeFilter;
 import com.graphhopper.storage.Directory;
 import com.graphhopper.storage.Graph;
 import com.graphhopper.storage.NodeAccess;
@@ -308,6 +310,90 @@ public class LocationIndexTree implements LocationIndex {
         return closestMatch;
     }
 
+    /**
+     * Other than the default implementation this searches the tiles only once and finds the closest edge matching
+     * the heading and the closest edge accepted by the edgeFilter at the same time. The heading of an edge is only
+     * calculated if it is not further away than maxDistance.
+     */
+    @Override
+    public Snap findClosest(final double queryLat, final double queryLon, final EdgeFilter edgeFilter,
+                            final DirectedEdgeFilter directedEdgeFilter, final double heading, final double tolerance,
+                            final double maxDistance) {
+        if (isClosed())
+            throw new IllegalStateException("You need to create a new LocationIndex instance as it is already closed");
+
+        final double maxNormedDist = DIST_PLANE.calcNormalizedDist(maxDistance);
+        final Snap closestMatch = new Snap(queryLat, queryLon);
+        final Snap closestHeadingMatch = new Snap(queryLat, queryLon);
+        // the closest position on the current edge
+        final Snap edgeMatch = new Snap(queryLat, queryLon);
+        IntHashSet seenEdges = new IntHashSet();
+        for (int iteration = 0; iteration < maxRegionSearch; iteration++) {
+            lineIntIndex.findEdgeIdsInNeighborhood(queryLat, queryLon, iteration, edgeId -> {
+                if (!seenEdges.add(edgeId))
+                    return;
+                EdgeIteratorState edgeIteratorState = graph.getEdgeIteratorStateForKey(edgeId * 2);
+                edgeMatch.setQueryDistance(Double.MAX_VALUE);
+                traverseEdge(queryLat, queryLon, edgeIteratorState, (node, normedDist, wayIndex, pos) -> {
+                    if (normedDist < edgeMatch.getQueryDistance()) {
+                        edgeMatch.setQueryDistance(normedDist);
+                        edgeMatch.setClosestNode(node);
+                        edgeMatch.setWayIndex(wayIndex);
+                        edgeMatch.setSnappedPosition(pos);
+                    }
+                });
+                if (edgeMatch.getQueryDistance() < closestMatch.getQueryDistance() && edgeFilter.accept(edgeIteratorState))
+                    copyMatch(edgeMatch, edgeIteratorState, closestMatch);
+                if (edgeMatch.getQueryDistance() < closestHeadingMatch.getQueryDistance() && edgeMatch.getQueryDistance() <= maxNormedDist
+                        && HeadingEdgeFilter.acceptHeading(edgeIteratorState, calcHeading(edgeIteratorState, edgeMatch), heading, tolerance, directedEdgeFilter))
+                    copyMatch(edgeMatch, edgeIteratorState, closestHeadingMatch);
+            });
+            // Check if we can stop. Edges matching the heading cannot be further away than maxDistance.
+            double rMin = calculateRMin(queryLat, queryLon, iteration);
+            if (closestHeadingMatch.isValid()) {
+                if (DIST_PLANE.calcDenormalizedDist(closestHeadingMatch.getQueryDistance()) < rMin)
+                    break;
+            } else if (maxDistance < rMin && closestMatch.isValid()
+                    && DIST_PLANE.calcDenormalizedDist(closestMatch.getQueryDistance()) < rMin) {
+                break;
+            }
+        }
+
+        Snap result = closestHeadingMatch.isValid() ? closestHeadingMatch : closestMatch;
+        if (result.isValid()) {
+            result.calcSnappedPoint(DIST_PLANE);
+            result.setQueryDistance(DIST_PLANE.calcDist(result.getSnappedPoint().lat, result.getSnappedPoint().lon, queryLat, queryLon));
+        }
+        return result;
+    }
+
+    private static void copyMatch(Snap from, EdgeIteratorState edge, Snap to) {
+        to.setQueryDistance(from.getQueryDistance());
+        to.setClosestNode(from.getClosestNode());
+        to.setClosestEdge(edge.detach(false));
+        to.setWayIndex(from.getWayIndex());
+        to.setSnappedPosition(from.getSnappedPosition());
+    }
+
+    /**
+     * @return the heading of the segment of the edge (in fwd direction) the given match snapped to
+     */
+    private static double calcHeading(EdgeIteratorState edge, Snap match) {
+        PointList points = edge.fetchWayGeometry(FetchMode.ALL);
+        int from;
+        switch (match.getSnappedPosition()) {
+            case TOWER:
+                from = match.getWayIndex() == 0 ? 0 : points.size() - 2;
+                break;
+            case PILLAR:
+                from = match.getWayIndex() - 1;
+                break;
+            default:
+                from = match.getWayIndex();
+        }
+        return AngleCalc.ANGLE_CALC.calcAzimuth(points.getLat(from), points.getLon(from), points.getLat(from + 1), points.getLon(from + 1));
+    }
+
     @Override
     public void query(TileFilter tileFilter, Visitor function) {
         lineIntIndex.query(tileFilter, function);
@@ -0,0 +1,95 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.util;
+
+import com.graphhopper.ResponsePath;
+import com.graphhopper.util.details.PathDetail;
+import org.locationtech.jts.geom.Envelope;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * A {@link ResponsePath} that calculates its points, instructions and path details when one of them is accessed the
+ * first time, see {@link PathMerger#setLazy(boolean)}. Until then it keeps a reference to the paths and the graph.
+ */
+class LazyResponsePath extends ResponsePath {
+    private Consumer<ResponsePath> calculation;
+
+    LazyResponsePath(Consumer<ResponsePath> calculation) {
+        this.calculation = calculation;
+    }
+
+    private synchronized void calcDetails() {
+        if (calculation == null)
+            return;
+        // the calculation accesses the path itself
+        Consumer<ResponsePath> tmp = calculation;
+        calculation = null;
+        tmp.accept(this);
+    }
+
+    @Override
+    public PointList getPoints() {
+        calcDetails();
+        return super.getPoints();
+    }
+
+    @Override
+    public List<Integer> getWaypointIndices() {
+        calcDetails();
+        return super.getWaypointIndices();
+    }
+
+    @Override
+    public double getAscend() {
+        calcDetails();
+        return super.getAscend();
+    }
+
+    @Override
+    public double getDescend() {
+        calcDetails();
+        return super.getDescend();
+    }
+
+    @Override
+    public Envelope calcBBox2D() {
+        calcDetails();
+        return super.calcBBox2D();
+    }
+
+    @Override
+    public InstructionList getInstructions() {
+        calcDetails();
+        return super.getInstructions();
+    }
+
+    @Override
+    public Map<String, List<PathDetail>> getPathDetails() {
+        calcDetails();
+        return super.getPathDetails();
+    }
+
+    @Override
+    public String toString() {
+        calcDetails();
+        return super.toString();
+    }
+}
@@ -56,6 +56,9 @@ public class PathMerger {
     private PathDetailsBuilderFactory pathBuilderFactory;
     private List<String> requestedPathDetails = Collections.emptyList();
     private double favoredHeading = Double.NaN;
+    private double maxOutputDistance = Double.POSITIVE_INFINITY;
+    private long maxOutputTime = Long.MAX_VALUE;
+    private boolean lazy;
 
     public PathMerger(Graph graph, Weighting weighting) {
         this.graph = graph;
@@ -88,20 +91,37 @@ public class PathMerger {
         return this;
     }
 
+    /**
+     * Restricts the instructions, points and path details to the first part of the route, e.g. if the client only
+     * needs the next kilometers. The distance, time and weight of the response path still refer to the full route.
+     *
+     * @param maxDistance the distance in meter from the start of the route. The first edge that reaches it is still included.
+     * @param maxTime     the time in milliseconds from the start of the route
+     */
+    public PathMerger setOutputWindow(double maxDistance, long maxTime) {
+        if (!(maxDistance > 0) || maxTime <= 0)
+            throw new IllegalArgumentException("The output window must be positive, was: " + maxDistance + "m, " + maxTime + "ms");
+        this.maxOutputDistance = maxDistance;
+        this.maxOutputTime = maxTime;
+        return this;
+    }
+
+    /**
+     * If true the points, instructions and path details are calculated when they are accessed the first time, e.g.
+     * they are never calculated if only the distance and time of the route are used.
+     */
+    public PathMerger setLazy(boolean lazy) {
+        this.lazy = lazy;
+        return this;
+    }
+
     public ResponsePath doWork(PointList waypoints, List<Path> paths, EncodedValueLookup evLookup, Translation tr) {
-        ResponsePath responsePath = new ResponsePath();
-        int origPoints = 0;
         long fullTimeInMillis = 0;
         double fullWeight = 0;
         double fullDistance = 0;
         boolean allFound = true;
-
-        InstructionList fullInstructions = new InstructionList(tr);
-        PointList fullPoints = PointList.EMPTY;
         List<String> description = new ArrayList<>();
-        List<Integer> wayPointIndices = new ArrayList<>();
-        for (int pathIndex = 0; pathIndex < paths.size(); pathIndex++) {
-            Path path = paths.get(pathIndex);
+        for (Path path : paths) {
             if (!path.isFound()) {
                 allFound = false;
                 continue;
@@ -110,14 +130,66 @@ public class PathMerger {
             fullTimeInMillis += path.getTime();
             fullDistance += path.getDistance();
             fullWeight += path.getWeight();
+        }
+
+        ResponsePath responsePath;
+        if (lazy && allFound && (calcPoints || enableInstructions)) {
+            // fail now and not when the details are accessed
+            PathDetailsFromEdges.checkDetails(paths.get(0), evLookup, weighting, requestedPathDetails, pathBuilderFactory, graph);
+            responsePath = new LazyResponsePath(rsp -> calcDetails(rsp, waypoints, paths, true, evLookup, tr));
+        } else {
+            responsePath = new ResponsePath();
+            if (calcPoints || enableInstructions)
+                calcDetails(responsePath, waypoints, paths, allFound, evLookup, tr);
+            else
+                responsePath.setWaypointIndices(new ArrayList<>());
+        }
+
+        if (!allFound) {
+            responsePath.addError(new ConnectionNotFoundException("Connection between locations not found", Collections.emptyMap()));
+        }
+
+        return responsePath.setDescription(description).
+                setRouteWeight(fullWeight).
+                setDistance(fullDistance).
+                setTime(fullTimeInMillis).
+                setWaypoints(waypoints);
+    }
+
+    /**
+     * Calculates the points, instructions and path details of the given paths that are within the output window.
+     */
+    private void calcDetails(ResponsePath responsePath, PointList waypoints, List<Path> paths, boolean allFound,
+                             EncodedValueLookup evLookup, Translation tr) {
+        int origPoints = 0;
+        double distance = 0;
+        long time = 0;
+        boolean truncated = false;
+        InstructionList fullInstructions = new InstructionList(tr);
+        PointList fullPoints = PointList.EMPTY;
+        List<Integer> wayPointIndices = new ArrayList<>();
+        for (int pathIndex = 0; pathIndex < paths.size() && !truncated; pathIndex++) {
+            Path path = paths.get(pathIndex);
+            if (!path.isFound())
+                continue;
+            if (distance + path.getDistance() > maxOutputDistance || time + path.getTime() > maxOutputTime) {
+                Path part = calcPartOfPath(path, maxOutputDistance - distance, maxOutputTime - time);
+                truncated = part != path;
+                path = part;
+            }
+            distance += path.getDistance();
+            time += path.getTime();
             if (enableInstructions) {
                 InstructionList il = InstructionsFromEdges.calcInstructions(path, graph, weighting, evLookup, tr);
 
                 if (!il.isEmpty()) {
                     fullInstructions.addAll(il);
 
-                    // for all paths except the last replace the FinishInstruction with a ViaInstruction
-                    if (pathIndex + 1 < paths.size()) {
+                    // the route does not finish at the end of the output window
+                    if (truncated) {
+                        fullInstructions.remove(fullInstructions.size() - 1);
+                    } else if (pathIndex + 1 < paths.size()) {
+                        // for all paths except the last replace the FinishInstruction with a ViaInstruction
                         ViaInstruction newInstr = new ViaInstruction(fullInstructions.get(fullInstructions.size() - 1));
                         newInstr.setViaCount(pathIndex + 1);
                         fullInstructions.set(fullInstructions.size() - 1, newInstr);
@@ -125,25 +197,21 @@ public class PathMerger {
                 }
 
             }
-            if (calcPoints || enableInstructions) {
-                PointList tmpPoints = path.calcPoints();
-                if (fullPoints.isEmpty())
-                    fullPoints = new PointList(tmpPoints.size(), tmpPoints.is3D());
-
-                // Remove duplicated points, see #1138
-                if (pathIndex + 1 < paths.size()) {
-                    tmpPoints.removeLastPoint();
-                }
+            PointList tmpPoints = path.calcPoints();
+            if (fullPoints.isEmpty())
+                fullPoints = new PointList(tmpPoints.size(), tmpPoints.is3D());
 
-                fullPoints.add(tmpPoints);
-                responsePath.addPathDetails(PathDetailsFromEdges.calcDetails(path, evLookup, weighting, requestedPathDetails, pathBuilderFactory, origPoints, graph));
-                wayPointIndices.add(origPoints);
-                if (pathIndex == paths.size() - 1)
-                    wayPointIndices.add(fullPoints.size() - 1);
-                origPoints = fullPoints.size();
+            // Remove duplicated points, see #1138
+            if (pathIndex + 1 < paths.size() && !truncated) {
+                tmpPoints.removeLastPoint();
             }
 
-            allFound = allFound && path.isFound();
+            fullPoints.add(tmpPoints);
+            responsePath.addPathDetails(PathDetailsFromEdges.calcDetails(path, evLookup, weighting, requestedPathDetails, pathBuilderFactory, origPoints, graph));
+            wayPointIndices.add(origPoints);
+            if (pathIndex == paths.size() - 1 || truncated)
+                wayPointIndices.add(fullPoints.size() - 1);
+            origPoints = fullPoints.size();
         }
 
         if (!fullPoints.isEmpty() && fullPoints.is3D)
@@ -154,31 +222,53 @@ public class PathMerger {
             responsePath.setInstructions(fullInstructions);
         }
 
-        if (!allFound) {
-            responsePath.addError(new ConnectionNotFoundException("Connection between locations not found", Collections.emptyMap()));
-        }
-
         // make sure the way point indices actually point to the points in waypoints...
         if (allFound && !waypoints.isEmpty()) { // we use empty waypoints for map-matching...
-            for (int i = 0; i < wayPointIndices.size(); i++) {
+            // ... except the end of the output window
+            for (int i = 0; i < wayPointIndices.size() - (truncated ? 1 : 0); i++) {
                 int index = wayPointIndices.get(i);
                 if (waypoints.getLat(i) != fullPoints.getLat(index) || waypoints.getLon(i) != fullPoints.getLon(index))
                     throw new IllegalStateException("waypoints are not included in points, or waypoint indices are wrong");
             }
         }
 
-        responsePath.setDescription(description).
-                setPoints(fullPoints).
-                setRouteWeight(fullWeight).
-                setDistance(fullDistance).
-                setTime(fullTimeInMillis).
-                setWaypoints(waypoints).
+        responsePath.setPoints(fullPoints).
                 setWaypointIndices(wayPointIndices);
 
-        if (allFound && simplifyResponse && (calcPoints || enableInstructions)) {
+        if (allFound && simplifyResponse) {
             PathSimplification.simplify(responsePath, ramerDouglasPeucker, enableInstructions);
         }
-        return responsePath;
+    }
+
+    /**
+     * @return the given path if it ends within the output window or a path that consists of its first edges up to and
+     * including the edge that reaches the end of the window otherwise
+     */
+    private Path calcPartOfPath(Path path, double maxDistance, long maxTime) {
+        final int[] edgeCount = {0};
+        final double[] distance = {0};
+        final long[] time = {0};
+        path.forEveryEdge(new Path.EdgeVisitor() {
+            @Override
+            public void next(EdgeIteratorState edge, int index, int prevEdgeId) {
+                if (edgeCount[0] > 0 && (distance[0] >= maxDistance || time[0] >= maxTime))
+                    return;
+                edgeCount[0]++;
+                distance[0] += edge.getDistance();
+                time[0] += GHUtility.calcMillisWithTurnMillis(weighting, edge, false, prevEdgeId);
+            }
+
+            @Override
+            public void finish() {
+            }
+        });
+        if (edgeCount[0] == path.getEdgeCount())
+            return path;
+        // the leg_* details still refer to the full leg
+        return path.calcSubPath(edgeCount[0]).
+                setDistance(path.getDistance()).
+                setTime(path.getTime()).
+                setWeight(path.getWeight());
     }
 
     /**
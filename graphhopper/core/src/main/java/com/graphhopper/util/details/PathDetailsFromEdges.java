@@ -57,10 +57,7 @@ public class PathDetailsFromEdges implements Path.EdgeVisitor {
                                                             int previousIndex, Graph graph) {
         if (!path.isFound() || requestedPathDetails.isEmpty())
             return Collections.emptyMap();
-        HashSet<String> uniquePD = new HashSet<>(requestedPathDetails.size());
-        Collection<String> res = requestedPathDetails.stream().filter(pd -> !uniquePD.add(pd)).toList();
-        if (!res.isEmpty())
-            throw new IllegalArgumentException("Do not use duplicate path details: " + res);
+        checkDuplicates(requestedPathDetails);
 
         List<PathDetailsBuilder> pathBuilders = pathBuilderFactory.createPathDetailsBuilders(requestedPathDetails, path, evLookup, weighting, graph);
         if (pathBuilders.isEmpty())
@@ -79,6 +76,24 @@ public class PathDetailsFromEdges implements Path.EdgeVisitor {
         return pathDetails;
     }
 
+    /**
+     * Throws an IllegalArgumentException for duplicate or unknown path details without calculating them.
+     */
+    public static void checkDetails(Path path, EncodedValueLookup evLookup, Weighting weighting,
+                                    List<String> requestedPathDetails, PathDetailsBuilderFactory pathBuilderFactory, Graph graph) {
+        if (requestedPathDetails.isEmpty())
+            return;
+        checkDuplicates(requestedPathDetails);
+        pathBuilderFactory.createPathDetailsBuilders(requestedPathDetails, path, evLookup, weighting, graph);
+    }
+
+    private static void checkDuplicates(List<String> requestedPathDetails) {
+        HashSet<String> uniquePD = new HashSet<>(requestedPathDetails.size());
+        Collection<String> res = requestedPathDetails.stream().filter(pd -> !uniquePD.add(pd)).toList();
+        if (!res.isEmpty())
+            throw new IllegalArgumentException("Do not use duplicate path details: " + res);
+    }
+
     @Override
     public void next(EdgeIteratorState edge, int index, int prevEdgeId) {
         for (PathDetailsBuilder calc : calculators) {
@@ -23,6 +23,7 @@ import com.graphhopper.config.Profile;
 import com.graphhopper.reader.ReaderWay;
 import com.graphhopper.reader.dem.SRTMProvider;
 import com.graphhopper.reader.dem.SkadiProvider;
+import com.graphhopper.routing.RouteResponseCache;
 import com.graphhopper.routing.TestProfiles;
 import com.graphhopper.routing.ev.*;
 import com.graphhopper.routing.util.AllEdgesIterator;
@@ -31,7 +32,11 @@ import com.graphhopper.routing.util.EdgeFilter;
 import com.graphhopper.routing.util.countryrules.CountryRuleFactory;
 import com.graphhopper.routing.util.parsers.OSMRoadEnvironmentParser;
 import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.routing.weighting.custom.CachedCustomWeighting;
+import com.graphhopper.routing.weighting.custom.CustomModelMetrics;
+import com.graphhopper.storage.BaseGraph;
 import com.graphhopper.storage.IntsRef;
+import com.graphhopper.storage.RoutingCHGraph;
 import com.graphhopper.storage.index.LocationIndexTree;
 import com.graphhopper.storage.index.Snap;
 import com.graphhopper.util.*;
@@ -739,6 +744,307 @@ public class GraphHopperTest {
         assertEquals(expectedDistance, rsp.getBest().getDistance(), 1);
     }
 
+    @ParameterizedTest
+    @CsvSource({"true,false", "false,true", "false,false"})
+    public void testParallelViaRouting(boolean withCH, boolean withLM) {
+        final String profile = "profile";
+        GraphHopper hopper = new GraphHopper().
+                setGraphHopperLocation(GH_LOCATION).
+                setOSMFile(MONACO).
+                setEncodedValuesString("car_access, car_average_speed").
+                setProfiles(TestProfiles.accessAndSpeed(profile, "car")).
+                setStoreOnFlush(true);
+        hopper.getCHPreparationHandler().setCHProfiles(new CHProfile(profile));
+        hopper.getLMPreparationHandler().setLMProfiles(new LMProfile(profile));
+        hopper.importOrLoad();
+
+        Random random = new Random(42);
+        GHRequest request = new GHRequest().setProfile(profile);
+        for (int i = 0; i < 25; i++)
+            request.addPoint(new GHPoint(43.727 + random.nextDouble() * 0.02, 7.416 + random.nextDouble() * 0.02));
+        request.putHint(CH.DISABLE, !withCH);
+        request.putHint(Landmark.DISABLE, !withLM);
+        GHResponse sequential = hopper.route(request);
+        assertFalse(sequential.hasErrors(), sequential.getErrors().toString());
+
+        hopper.getRouterConfig().setViaRoutingThreads(4);
+        GHResponse parallel = hopper.route(request);
+        assertFalse(parallel.hasErrors(), parallel.getErrors().toString());
+        ResponsePath expected = sequential.getBest();
+        ResponsePath actual = parallel.getBest();
+        assertEquals(expected.getDistance(), actual.getDistance());
+        assertEquals(expected.getTime(), actual.getTime());
+        assertEquals(expected.getRouteWeight(), actual.getRouteWeight());
+        assertEquals(expected.getPoints(), actual.getPoints());
+        assertEquals(expected.getWaypoints(), actual.getWaypoints());
+        assertEquals(expected.getInstructions().size(), actual.getInstructions().size());
+        assertEquals(sequential.getHints().getLong("visited_nodes.sum", 0), parallel.getHints().getLong("visited_nodes.sum", 0));
+
+        // a leg which cannot be found fails the whole request, like it does sequentially
+        request.putHint(Routing.MAX_VISITED_NODES, 5);
+        GHResponse failed = hopper.route(request);
+        assertTrue(failed.hasErrors());
+        hopper.getRouterConfig().setViaRoutingThreads(1);
+        assertEquals(hopper.route(request).getErrors().toString(), failed.getErrors().toString());
+        hopper.close();
+    }
+
+    @Test
+    public void testPreparationScheduler() {
+        GraphHopper hopper = new GraphHopper().
+                setGraphHopperLocation(GH_LOCATION).
+                setOSMFile(MONACO).
+                setEncodedValuesString("car_access, car_average_speed").
+                setProfiles(TestProfiles.accessAndSpeed("car", "car"), TestProfiles.accessAndSpeed("car_tc", "car").setTurnCostsConfig(TurnCostsConfig.car())).
+                setPreparationScheduler(3, 0).
+                setStoreOnFlush(true);
+        hopper.calcChecksums = true;
+        hopper.getCHPreparationHandler().setCHProfiles(new CHProfile("car"), new CHProfile("car_tc"));
+        hopper.getLMPreparationHandler().setLMProfiles(new LMProfile("car"), new LMProfile("car_tc"));
+        hopper.importOrLoad();
+
+        assertEquals(2, hopper.getCHGraphs().size());
+        assertEquals(2, hopper.getLandmarks().size());
+        assertFalse(hopper.getProperties().get("checksum.fwd.car").isEmpty());
+        for (String profile : Arrays.asList("car", "car_tc")) {
+            GHRequest request = new GHRequest(43.727687, 7.418737, 43.74958, 7.436566).setProfile(profile);
+            GHResponse ch = hopper.route(request);
+            GHResponse lm = hopper.route(request.putHint(CH.DISABLE, true));
+            GHResponse flex = hopper.route(request.putHint(Landmark.DISABLE, true));
+            assertFalse(ch.hasErrors(), ch.getErrors().toString());
+            assertEquals(flex.getBest().getDistance(), ch.getBest().getDistance(), 1.e-3);
+            assertEquals(flex.getBest().getDistance(), lm.getBest().getDistance(), 1.e-3);
+        }
+        hopper.close();
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {0, 2})
+    public void testCHNodeOrderingProfile(int schedulerThreads) {
+        Profile car = TestProfiles.accessAndSpeed("car", "car");
+        Profile carShort = TestProfiles.accessAndSpeed("car_short", "car");
+        carShort.getCustomModel().setDistanceInfluence(200d);
+        Profile carTC = TestProfiles.accessAndSpeed("car_tc", "car").setTurnCostsConfig(TurnCostsConfig.car());
+        GraphHopper hopper = new GraphHopper().
+                setGraphHopperLocation(GH_LOCATION).
+                setOSMFile(MONACO).
+                setEncodedValuesString("car_access, car_average_speed").
+                setProfiles(car, carShort, carTC).
+                setPreparationScheduler(schedulerThreads, 0).
+                setStoreOnFlush(true);
+        hopper.getCHPreparationHandler().setCHProfiles(new CHProfile("car"), new CHProfile("car_short").setNodeOrderingProfile("car"));
+        hopper.importOrLoad();
+        hopper.close();
+
+        // car is loaded and its node ordering is used for the new profile
+        hopper = new GraphHopper().
+                setGraphHopperLocation(GH_LOCATION).
+                setOSMFile(MONACO).
+                setEncodedValuesString("car_access, car_average_speed").
+                setProfiles(car, carShort, carTC).
+                setPreparationScheduler(schedulerThreads, 0).
+                setStoreOnFlush(true);
+        hopper.getCHPreparationHandler().setCHProfiles(new CHProfile("car"), new CHProfile("car_short").setNodeOrderingProfile("car"),
+                new CHProfile("car_tc").setNodeOrderingProfile("car"));
+        hopper.importOrLoad();
+        assertEquals(3, hopper.getCHGraphs().size());
+        RoutingCHGraph carCH = hopper.getCHGraphs().get("car");
+        for (String profile : Arrays.asList("car_short", "car_tc")) {
+            RoutingCHGraph chGraph = hopper.getCHGraphs().get(profile);
+            for (int node = 0; node < carCH.getNodes(); node++)
+                assertEquals(carCH.getLevel(node), chGraph.getLevel(node));
+        }
+
+        Random random = new Random(123);
+        for (int i = 0; i < 20; i++) {
+            GHPoint from = new GHPoint(43.727 + random.nextDouble() * 0.02, 7.416 + random.nextDouble() * 0.02);
+            GHPoint to = new GHPoint(43.727 + random.nextDouble() * 0.02, 7.416 + random.nextDouble() * 0.02);
+            for (String profile : Arrays.asList("car_short", "car_tc")) {
+                GHResponse ch = hopper.route(new GHRequest(from, to).setProfile(profile));
+                GHResponse flex = hopper.route(new GHRequest(from, to).setProfile(profile).putHint(CH.DISABLE, true));
+                assertFalse(ch.hasErrors(), ch.getErrors().toString());
+                assertEquals(flex.getBest().getRouteWeight(), ch.getBest().getRouteWeight(), 1.e-2);
+            }
+        }
+        hopper.close();
+    }
+
+    @Test
+    public void testOutputWindow() {
+        final String profile = "profile";
+        GraphHopper hopper = new GraphHopper().
+                setGraphHopperLocation(GH_LOCATION).
+                setOSMFile(MONACO).
+                setEncodedValuesString("car_access, car_average_speed").
+                setProfiles(TestProfiles.accessAndSpeed(profile, "car")).
+                setStoreOnFlush(true);
+        hopper.getRouterConfig().setLazyResponsePaths(true);
+        hopper.importOrLoad();
+
+        GHRequest request = new GHRequest(43.727687, 7.418737, 43.74958, 7.436566).setProfile(profile).
+                setPathDetails(Arrays.asList("distance", "time"));
+        ResponsePath full = hopper.route(request).getBest();
+        assertEquals(3587, full.getDistance(), 1);
+
+        request.putHint(Routing.OUTPUT_MAX_DISTANCE, 1000);
+        ResponsePath window = hopper.route(request).getBest();
+        // the summary is still the one of the full route
+        assertEquals(full.getDistance(), window.getDistance());
+        assertEquals(full.getTime(), window.getTime());
+        assertEquals(full.getWaypoints(), window.getWaypoints());
+        double distance = sumDetails(window.getPathDetails().get("distance"));
+        assertTrue(distance >= 1000 && distance < 1200, "distance: " + distance);
+        assertTrue(window.getPoints().size() < full.getPoints().size());
+        assertEquals(full.getPoints().get(0), window.getPoints().get(0));
+        assertEquals(List.of(0, window.getPoints().size() - 1), window.getWaypointIndices());
+        InstructionList instructions = window.getInstructions();
+        assertTrue(instructions.size() < full.getInstructions().size());
+        assertNotEquals(Instruction.FINISH, instructions.get(instructions.size() - 1).getSign());
+        for (int i = 0; i < instructions.size() - 1; i++)
+            assertEquals(full.getInstructions().get(i).getName(), instructions.get(i).getName());
+
+        request.getHints().remove(Routing.OUTPUT_MAX_DISTANCE);
+        request.putHint(Routing.OUTPUT_MAX_TIME, full.getTime() / 2);
+        window = hopper.route(request).getBest();
+        double time = sumDetails(window.getPathDetails().get("time"));
+        assertTrue(time >= full.getTime() / 2.0 && time < full.getTime(), "time: " + time);
+
+        // a window that contains the full route does not change anything
+        request.putHint(Routing.OUTPUT_MAX_TIME, full.getTime() * 2);
+        window = hopper.route(request).getBest();
+        assertEquals(full.getPoints(), window.getPoints());
+        assertEquals(full.getInstructions().size(), window.getInstructions().size());
+        assertEquals(full.getWaypointIndices(), window.getWaypointIndices());
+
+        request.putHint(Routing.OUTPUT_MAX_TIME, 0);
+        assertTrue(hopper.route(request).hasErrors());
+
+        // unknown path details are reported although the details are calculated only when they are accessed
+        GHResponse rsp = hopper.route(new GHRequest(43.727687, 7.418737, 43.74958, 7.436566).setProfile(profile).
+                setPathDetails(List.of("unknown")));
+        assertTrue(rsp.hasErrors());
+        assertTrue(rsp.getErrors().toString().contains("Cannot find the path details: [unknown]"), rsp.getErrors().toString());
+        hopper.close();
+    }
+
+    private static double sumDetails(List<PathDetail> details) {
+        double sum = 0;
+        for (PathDetail detail : details)
+            sum += ((Number) detail.getValue()).doubleValue();
+        return sum;
+    }
+
+    @Test
+    public void testResponseCache() {
+        final String profile = "profile";
+        GraphHopper hopper = new GraphHopper().
+                setGraphHopperLocation(GH_LOCATION).
+                setOSMFile(MONACO).
+                setEncodedValuesString("car_access, car_average_speed").
+                setProfiles(TestProfiles.accessAndSpeed(profile, "car")).
+                setStoreOnFlush(true);
+        hopper.getRouterConfig().setResponseCacheSize(2);
+        hopper.importOrLoad();
+        RouteResponseCache cache = hopper.getResponseCache();
+
+        GHRequest request = new GHRequest(43.727687, 7.418737, 43.74958, 7.436566).setProfile(profile);
+        GHResponse first = hopper.route(request);
+        assertFalse(first.hasErrors(), first.getErrors().toString());
+        assertFalse(first.getDebugInfo().contains("responseCache:hit"));
+        assertEquals(0, cache.getHits());
+        assertEquals(1, cache.getMisses());
+
+        GHResponse second = hopper.route(request);
+        assertTrue(second.getDebugInfo().contains("responseCache:hit"), second.getDebugInfo());
+        assertSame(first.getBest(), second.getBest());
+        assertEquals(first.getHints().getLong("visited_nodes.sum", -1), second.getHints().getLong("visited_nodes.sum", -2));
+        assertEquals(1, cache.getHits());
+
+        // other parameters lead to another response
+        request.putHint(Routing.INSTRUCTIONS, false);
+        GHResponse noInstructions = hopper.route(request);
+        assertFalse(noInstructions.getDebugInfo().contains("responseCache:hit"));
+        assertNotSame(first.getBest(), noInstructions.getBest());
+        assertEquals(2, cache.getSize());
+
+        // the least recently used response is evicted
+        hopper.route(new GHRequest(43.730729, 7.42135, 43.727697, 7.419199).setProfile(profile));
+        assertEquals(2, cache.getSize());
+        assertTrue(hopper.route(request).getDebugInfo().contains("responseCache:hit"));
+        request.putHint(Routing.INSTRUCTIONS, true);
+        assertFalse(hopper.route(request).getDebugInfo().contains("responseCache:hit"));
+        assertEquals(2, cache.getHits());
+        assertEquals(2.0 / 6, cache.getHitRatio(), 1.e-6);
+
+        cache.clear();
+        assertEquals(0, cache.getSize());
+        assertFalse(hopper.route(request).getDebugInfo().contains("responseCache:hit"));
+        hopper.close();
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {true, false})
+    public void testEdgeWeightCache(boolean withLM) {
+        // the same custom model for both profiles, but only one of them uses the edge weight cache
+        GraphHopper hopper = createEdgeWeightCacheHopper();
+        hopper.importOrLoad();
+        assertEdgeWeightCacheRoutes(hopper, withLM);
+        hopper.close();
+
+        // the cached weights are loaded from the storage
+        hopper = createEdgeWeightCacheHopper();
+        hopper.importOrLoad();
+        assertEdgeWeightCacheRoutes(hopper, withLM);
+        hopper.close();
+    }
+
+    private GraphHopper createEdgeWeightCacheHopper() {
+        GraphHopper hopper = new GraphHopper().
+                setGraphHopperLocation(GH_LOCATION).
+                setOSMFile(MONACO).
+                setEncodedValuesString("car_access, car_average_speed, road_class").
+                setProfiles(TestProfiles.accessAndSpeed("cached", "car"), TestProfiles.accessAndSpeed("uncached", "car")).
+                setEdgeWeightCacheProfiles(List.of("cached")).
+                setStoreOnFlush(true);
+        hopper.getLMPreparationHandler().setLMProfiles(new LMProfile("cached"), new LMProfile("uncached"));
+        return hopper;
+    }
+
+    private void assertEdgeWeightCacheRoutes(GraphHopper hopper, boolean withLM) {
+        assertTrue(hopper.createWeighting(hopper.getProfile("cached"), new PMap()) instanceof CachedCustomWeighting);
+        assertFalse(hopper.createWeighting(hopper.getProfile("uncached"), new PMap()) instanceof CachedCustomWeighting);
+        List<CustomModel> customModels = asList(null,
+                new CustomModel().setDistanceInfluence(100d),
+                new CustomModel().addToPriority(If("road_class == PRIMARY", MULTIPLY, "0.5")),
+                new CustomModel().addToSpeed(If("road_class == SECONDARY", MULTIPLY, "0.6")).
+                        addToPriority(If("road_class == RESIDENTIAL", MULTIPLY, "0.8")).setDistanceInfluence(20d),
+                // limits the speed, so it is not layered on top of the cached weights
+                new CustomModel().addToSpeed(If("road_class == SECONDARY", LIMIT, "20")));
+        Random random = new Random(123);
+        for (int i = 0; i < 20; i++) {
+            GHPoint from = new GHPoint(43.727 + random.nextDouble() * 0.02, 7.416 + random.nextDouble() * 0.02);
+            GHPoint to = new GHPoint(43.727 + random.nextDouble() * 0.02, 7.416 + random.nextDouble() * 0.02);
+            for (CustomModel customModel : customModels) {
+                GHRequest request = new GHRequest(from, to).putHint(Landmark.DISABLE, !withLM);
+                if (customModel != null)
+                    request.setCustomModel(customModel);
+                GHResponse expected = hopper.route(request.setProfile("uncached"));
+                long hits = CustomModelMetrics.getEdgeWeightCacheHits();
+                long misses = CustomModelMetrics.getEdgeWeightCacheMisses();
+                GHResponse actual = hopper.route(request.setProfile("cached"));
+                if (CachedCustomWeighting.isLayerable(customModel))
+                    assertTrue(CustomModelMetrics.getEdgeWeightCacheHits() > hits);
+                else
+                    assertTrue(CustomModelMetrics.getEdgeWeightCacheMisses() > misses);
+                assertFalse(expected.hasErrors(), expected.getErrors().toString());
+                assertFalse(actual.hasErrors(), actual.getErrors().toString());
+                assertEquals(expected.getBest().getDistance(), actual.getBest().getDistance(), 1.e-3);
+                assertEquals(expected.getBest().getTime(), actual.getBest().getTime());
+                assertEquals(expected.getBest().getRouteWeight(), actual.getBest().getRouteWeight(), 1.e-3);
+            }
+        }
+    }
+
     @Test
     public void testMonacoVia() {
         final String profile = "profile";
@@ -1126,6 +1432,72 @@ public class GraphHopperTest {
         assertEquals(52, res.getPoints().get(10).getEle(), 1e-2);
     }
 
+    @Test
+    public void testSRTMWithElevationAfterImport() {
+        final String profile = "profile";
+        GHRequest request = new GHRequest(43.730729, 7.421288, 43.727697, 7.419199).setProfile(profile)
+                .setPathDetails(Arrays.asList("average_slope", "max_slope"));
+        List<ResponsePath> paths = new ArrayList<>();
+        for (int threads : new int[]{0, 3}) {
+            Helper.removeDir(new File(GH_LOCATION));
+            GraphHopper hopper = new GraphHopper().
+                    setGraphHopperLocation(GH_LOCATION).
+                    setOSMFile(MONACO).
+                    setEncodedValuesString("foot_access, foot_priority, foot_average_speed, average_slope, max_slope").
+                    setProfiles(TestProfiles.accessSpeedAndPriority(profile, "foot"));
+            hopper.getReaderConfig().setElevationThreads(threads);
+            hopper.setElevationProvider(new SRTMProvider(DIR));
+            hopper.importOrLoad();
+            paths.add(hopper.route(request).getBest());
+            hopper.close();
+        }
+        // adding the elevation after the import must not change the result
+        assertEquals(paths.get(0).getDistance(), paths.get(1).getDistance(), 1.e-6);
+        assertEquals(paths.get(0).getAscend(), paths.get(1).getAscend(), 1.e-6);
+        assertEquals(paths.get(0).getDescend(), paths.get(1).getDescend(), 1.e-6);
+        assertEquals(paths.get(0).getPoints(), paths.get(1).getPoints());
+        assertEquals(paths.get(0).getPathDetails().toString(), paths.get(1).getPathDetails().toString());
+    }
+
+    @Test
+    public void testSRTMWithElevationAfterImportSamplingAndSimplification() {
+        final String profile = "profile";
+        List<GraphHopper> hoppers = new ArrayList<>();
+        for (int threads : new int[]{0, 3}) {
+            GraphHopper hopper = new GraphHopper().
+                    setGraphHopperLocation(GH_LOCATION + "/" + threads).
+                    setOSMFile(MONACO).
+                    setEncodedValuesString("foot_access, foot_priority, foot_average_speed, average_slope, max_slope").
+                    setProfiles(TestProfiles.accessSpeedAndPriority(profile, "foot"));
+            // without the elevation the number of sampled points is derived from the 2D distance, so we use a sampling
+            // distance for which this does not make a difference in Monaco
+            hopper.getReaderConfig().setElevationThreads(threads).
+                    setLongEdgeSamplingDistance(100).
+                    setElevationMaxWayPointDistance(1);
+            hopper.setElevationProvider(new SRTMProvider(DIR));
+            hopper.importOrLoad();
+            hoppers.add(hopper);
+        }
+        BaseGraph inline = hoppers.get(0).getBaseGraph(), afterImport = hoppers.get(1).getBaseGraph();
+        assertEquals(inline.getEdges(), afterImport.getEdges());
+        // the elevation-aware simplification must keep the same points as during the import
+        for (int edge = 0; edge < inline.getEdges(); edge++) {
+            EdgeIteratorState expected = inline.getEdgeIteratorState(edge, Integer.MIN_VALUE);
+            EdgeIteratorState actual = afterImport.getEdgeIteratorState(edge, Integer.MIN_VALUE);
+            assertEquals(expected.fetchWayGeometry(FetchMode.ALL), actual.fetchWayGeometry(FetchMode.ALL), "edge " + edge);
+            // the distance is calculated from the stored coordinates and elevations, which are rounded
+            assertEquals(expected.getDistance(), actual.getDistance(), 1.e-2, "edge " + edge);
+        }
+
+        GHRequest request = new GHRequest(43.730729, 7.421288, 43.727697, 7.419199).setProfile(profile);
+        ResponsePath expected = hoppers.get(0).route(request).getBest();
+        ResponsePath actual = hoppers.get(1).route(request).getBest();
+        assertEquals(expected.getDistance(), actual.getDistance(), 1.e-6);
+        assertEquals(expected.getAscend(), actual.getAscend(), 1.e-6);
+        assertEquals(expected.getPoints(), actual.getPoints());
+        hoppers.forEach(GraphHopper::close);
+    }
+
     @ParameterizedTest
     @ValueSource(booleans = {true, false})
     public void testSRTMWithTunnelInterpolation(boolean withTunnelInterpolation) {
@@ -1499,6 +1871,60 @@ public class GraphHopperTest {
         assertEquals(68, res.getPoints().size());
     }
 
+    @Test
+    public void testRoundTourCandidates() {
+        final String profile = "profile";
+
+        GraphHopper hopper = new GraphHopper().
+                setGraphHopperLocation(GH_LOCATION).
+                setOSMFile(MONACO).
+                setEncodedValuesString("foot_access, foot_priority, foot_average_speed").
+                setProfiles(TestProfiles.accessSpeedAndPriority(profile, "foot")).
+                setStoreOnFlush(true).
+                importOrLoad();
+
+        GHRequest rq = new GHRequest().
+                addPoint(new GHPoint(43.741069, 7.426854)).
+                setProfile(profile).
+                setAlgorithm(ROUND_TRIP);
+        rq.putHint(RoundTrip.DISTANCE, 2000);
+        List<Double> distances = new ArrayList<>();
+        for (int seed = 0; seed < 5; seed++) {
+            rq.putHint(RoundTrip.SEED, seed);
+            distances.add(hopper.route(rq).getBest().getDistance());
+        }
+
+        rq.putHint(RoundTrip.SEED, 0);
+        rq.putHint(RoundTrip.CANDIDATES, 5);
+        rq.putHint(RoundTrip.MAX_PATHS, 3);
+        GHResponse rsp = hopper.route(rq);
+        assertFalse(rsp.hasErrors(), rsp.getErrors().toString());
+        assertEquals(3, rsp.getAll().size());
+        double prevScore = 0;
+        for (ResponsePath path : rsp.getAll()) {
+            // every candidate is the tour of one of the seeds
+            assertTrue(distances.stream().anyMatch(d -> Math.abs(d - path.getDistance()) < 0.1), distances + " " + path.getDistance());
+            String debugInfo = path.getDebugInfo();
+            double score = Double.parseDouble(debugInfo.substring(debugInfo.indexOf("round_trip.score:") + "round_trip.score:".length()));
+            assertTrue(score >= prevScore, debugInfo);
+            prevScore = score;
+        }
+
+        // the candidates are calculated in parallel with the same result
+        hopper.getRouterConfig().setViaRoutingThreads(4);
+        GHResponse parallel = hopper.route(rq);
+        assertEquals(rsp.getAll().size(), parallel.getAll().size());
+        for (int i = 0; i < rsp.getAll().size(); i++) {
+            assertEquals(rsp.getAll().get(i).getDistance(), parallel.getAll().get(i).getDistance(), 1.e-6);
+            assertEquals(rsp.getAll().get(i).getPoints(), parallel.getAll().get(i).getPoints());
+        }
+        assertEquals(rsp.getHints().getLong("visited_nodes.sum", 0), parallel.getHints().getLong("visited_nodes.sum", -1));
+
+        rq.putHint(RoundTrip.MAX_PATHS, 6);
+        assertTrue(hopper.route(rq).hasErrors());
+        hopper.close();
+    }
+
     @Test
     public void testPathDetails1216() {
         final String profile = "profile";
@@ -0,0 +1,91 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.reader.dem;
+
+import com.graphhopper.routing.util.EncodingManager;
+import com.graphhopper.storage.BaseGraph;
+import com.graphhopper.storage.NodeAccess;
+import com.graphhopper.util.DistanceCalcEarth;
+import com.graphhopper.util.EdgeIteratorState;
+import com.graphhopper.util.FetchMode;
+import com.graphhopper.util.PointList;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class EdgeElevationEnrichmentTest {
+
+    private static final ElevationProvider PROVIDER = new ElevationProvider() {
+        @Override
+        public double getEle(double lat, double lon) {
+            // no data in the south-west
+            return lat < 50.01 && lon < 10.01 ? Double.NaN : Math.round((lat - 50) * 10_000 + (lon - 10) * 5_000);
+        }
+
+        @Override
+        public boolean canInterpolate() {
+            return false;
+        }
+
+        @Override
+        public void release() {
+        }
+    };
+
+    @Test
+    public void sameResultAsSequentialLookup() {
+        Random rnd = new Random(123);
+        BaseGraph graph = new BaseGraph.Builder(EncodingManager.start().build()).set3D(true).create();
+        NodeAccess na = graph.getNodeAccess();
+        int nodes = 5_000;
+        for (int node = 0; node < nodes; node++)
+            na.setNode(node, 50 + rnd.nextDouble() / 10, 10 + rnd.nextDouble() / 10, 0);
+        for (int i = 0; i < 25_000; i++) {
+            int from = rnd.nextInt(nodes);
+            EdgeIteratorState edge = graph.edge(from, (from + 1 + rnd.nextInt(nodes - 1)) % nodes);
+            PointList pillars = new PointList(5, true);
+            for (int j = rnd.nextInt(5); j > 0; j--)
+                pillars.add(50 + rnd.nextDouble() / 10, 10 + rnd.nextDouble() / 10, 0);
+            edge.setWayGeometry(pillars);
+            edge.setDistance(DistanceCalcEarth.DIST_EARTH.calcDistance(edge.fetchWayGeometry(FetchMode.ALL)));
+        }
+
+        new EdgeElevationEnrichment(graph, PROVIDER, 4).setDefaultElevation(-3).setSmoothing("moving_average", 150, 5).execute();
+
+        for (int node = 0; node < nodes; node++)
+            assertEquals(getEle(na.getLat(node), na.getLon(node)), na.getEle(node), 1);
+        for (int edgeId = 0; edgeId < graph.getEdges(); edgeId++) {
+            EdgeIteratorState edge = graph.getEdgeIteratorState(edgeId, Integer.MIN_VALUE);
+            PointList actual = edge.fetchWayGeometry(FetchMode.ALL);
+            PointList expected = actual.clone(false);
+            for (int i = 0; i < expected.size(); i++)
+                expected.setElevation(i, getEle(expected.getLat(i), expected.getLon(i)));
+            EdgeElevationSmoothingMovingAverage.smooth(expected, 150);
+            for (int i = 0; i < expected.size(); i++)
+                assertEquals(expected.getEle(i), actual.getEle(i), 1, "edge " + edgeId + ", point " + i);
+            assertEquals(Math.max(0.001, DistanceCalcEarth.DIST_EARTH.calcDistance(actual)), edge.getDistance(), 1.e-3);
+        }
+    }
+
+    private static double getEle(double lat, double lon) {
+        double ele = PROVIDER.getEle(lat, lon);
+        return Double.isNaN(ele) ? -3 : ele;
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.reader.dem;
+
+import com.graphhopper.storage.DAType;
+import com.graphhopper.storage.GHDirectory;
+import com.graphhopper.util.Helper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TileStoreElevationProviderTest {
+    private final String storeDir = "./target/tmp/elevation-tile-store";
+
+    @AfterEach
+    public void tearDown() {
+        Helper.removeDir(new File(storeDir));
+    }
+
+    @Test
+    public void importFromSRTM() {
+        // only cover a part of the world that is available in our test files
+        SRTMProvider srtm = new SRTMProvider("./files/");
+        ElevationTileStore store = new ElevationTileStore(new GHDirectory(storeDir, DAType.MMAP).create()).create(1200);
+        assertTrue(store.importTile(srtm, 49, 11));
+        // SRTM has no data this far north, so the provider returns 0 and the tile is not stored
+        assertFalse(store.importTile(srtm, 70, 19));
+        store.flush();
+        store.close();
+
+        TileStoreElevationProvider provider = new TileStoreElevationProvider(storeDir);
+        assertEquals(1, provider.getStore().getTiles());
+        assertEquals(1200, provider.getStore().getSamplesPerDegree());
+        // at the grid points the store returns exactly what was sampled from the source
+        for (double[] point : new double[][]{{49.5, 11.5}, {49 + 1163 / 1200.0, 11 + 690 / 1200.0}, {49 + 10 / 1200.0, 11 + 1190 / 1200.0}})
+            assertEquals(srtm.getEle(point[0], point[1]), provider.getEle(point[0], point[1]), 1e-1);
+        assertEquals(0, provider.getEle(70.4711873, 19.2501641), 1e-1);
+        provider.release();
+
+        provider = new TileStoreElevationProvider(storeDir);
+        provider.setInterpolate(true);
+        srtm.release();
+        srtm = new SRTMProvider("./files/");
+        srtm.setInterpolate(true);
+        // siegesturm & am main, see SRTMProviderTest
+        assertEquals(srtm.getEle(49.968651, 11.574869), provider.getEle(49.968651, 11.574869), 1);
+        assertEquals(srtm.getEle(49.958233, 11.558647), provider.getEle(49.958233, 11.558647), 1);
+        provider.release();
+        srtm.release();
+    }
+
+    @Test
+    public void concurrentReads() {
+        ElevationTileStore store = new ElevationTileStore(new GHDirectory(storeDir, DAType.MMAP).create()).create(10);
+        short[] samples = new short[11 * 11];
+        for (int i = 0; i < samples.length; i++)
+            samples[i] = (short) i;
+        samples[5] = ElevationTileStore.MISSING;
+        store.setTile(-10, -20, samples);
+        store.flush();
+        store.close();
+
+        TileStoreElevationProvider provider = new TileStoreElevationProvider(storeDir);
+        // first row is the northernmost one
+        assertEquals(0, provider.getEle(-9.01, -20), 1e-6);
+        assertEquals(108, provider.getEle(-9.9, -19.1), 1e-6);
+        assertEquals(23, provider.getEle(-9.2, -19.9), 1e-6);
+        assertTrue(Double.isNaN(provider.getEle(-9.01, -19.5)));
+        // no tile
+        assertEquals(0, provider.getEle(-11, -20), 1e-6);
+
+        double[] results = IntStream.range(0, 10_000).parallel()
+                .mapToDouble(i -> provider.getEle(-10 + (i % 100) / 100.0, -20 + (i / 100) / 100.0)).toArray();
+        assertTrue(Arrays.stream(results).allMatch(ele -> ele >= 0 && ele <= 120 || Double.isNaN(ele)));
+        provider.release();
+    }
+}
@@ -22,17 +22,23 @@ import com.graphhopper.routing.ch.PrepareContractionHierarchies;
 import com.graphhopper.routing.ev.DecimalEncodedValue;
 import com.graphhopper.routing.ev.DecimalEncodedValueImpl;
 import com.graphhopper.routing.util.EncodingManager;
+import com.graphhopper.routing.util.TraversalMode;
 import com.graphhopper.routing.weighting.SpeedWeighting;
+import com.graphhopper.routing.weighting.Weighting;
 import com.graphhopper.storage.BaseGraph;
 import com.graphhopper.storage.CHConfig;
 import com.graphhopper.storage.RoutingCHGraph;
 import com.graphhopper.storage.RoutingCHGraphImpl;
+import com.graphhopper.util.EdgeIteratorState;
+import com.graphhopper.util.GHUtility;
 import com.graphhopper.util.PMap;
 import org.junit.jupiter.api.Test;
 
 import java.util.List;
+import java.util.Random;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class AlternativeRouteCHTest {
     private final DecimalEncodedValue speedEnc = new DecimalEncodedValueImpl("speed", 5, 5, false);
@@ -116,4 +122,59 @@ public class AlternativeRouteCHTest {
         // 4 -> 11 -> 12 -> 10 is not too long compared to 4 -> 10
     }
 
+    @Test
+    public void testViaPathsAreShortestPaths() {
+        // the s -> v and v -> t parts of every alternative are built from the shortest path trees of the main search
+        // and must be shortest paths nevertheless. the shortcut weights are rounded, so we need some tolerance
+        final long seed = System.nanoTime();
+        Random rnd = new Random(seed);
+        BaseGraph g = new BaseGraph.Builder(em).create();
+        GHUtility.buildRandomGraph(g, rnd, 200, 2.5, false, speedEnc, null, 0.9, 0.8);
+        g.freeze();
+        Weighting weighting = new SpeedWeighting(speedEnc);
+        CHConfig chConfig = CHConfig.nodeBased("p", weighting);
+        PrepareContractionHierarchies.Result res = PrepareContractionHierarchies.fromGraph(g, chConfig).doWork();
+        RoutingCHGraph routingCHGraph = RoutingCHGraphImpl.fromGraph(g, res.getCHStorage(), res.getCHConfig());
+        PMap hints = new PMap().putObject("alternative_route.max_weight_factor", 1.5).
+                putObject("alternative_route.max_share_factor", 0.9).
+                putObject("alternative_route.max_paths", 5);
+        int alternativesFound = 0;
+        for (int i = 0; i < 50; i++) {
+            int s = rnd.nextInt(g.getNodes()), t = rnd.nextInt(g.getNodes());
+            List<AlternativeRouteCH.AlternativeInfo> infos = new AlternativeRouteCH(routingCHGraph, hints).calcAlternatives(s, t);
+            Path shortest = new Dijkstra(g, weighting, TraversalMode.NODE_BASED).calcPath(s, t);
+            if (!shortest.isFound()) {
+                assertTrue(infos.isEmpty(), "seed: " + seed);
+                continue;
+            }
+            assertEquals(shortest.getWeight(), infos.get(0).getPath().getWeight(), 1.e-2, "seed: " + seed);
+            for (int j = 1; j < infos.size(); j++) {
+                Path path = infos.get(j).getPath();
+                assertTrue(path.getWeight() <= 1.5 * shortest.getWeight() + 1.e-2, "seed: " + seed);
+                assertTrue(isViaPath(g, weighting, path, s, t), "no via node on alternative " + j + ", seed: " + seed);
+                alternativesFound++;
+            }
+        }
+        assertTrue(alternativesFound > 0, "seed: " + seed);
+    }
+
+    private static boolean isViaPath(BaseGraph g, Weighting weighting, Path path, int s, int t) {
+        List<EdgeIteratorState> edges = path.calcEdges();
+        double weight = 0;
+        for (EdgeIteratorState edge : edges)
+            weight += weighting.calcEdgeWeight(edge, false);
+        assertEquals(weight, path.getWeight(), 1.e-2);
+        double prefixWeight = 0;
+        for (int i = 0; i <= edges.size(); i++) {
+            if (i > 0)
+                prefixWeight += weighting.calcEdgeWeight(edges.get(i - 1), false);
+            int v = i == 0 ? s : edges.get(i - 1).getAdjNode();
+            double sv = new Dijkstra(g, weighting, TraversalMode.NODE_BASED).calcPath(s, v).getWeight();
+            double vt = new Dijkstra(g, weighting, TraversalMode.NODE_BASED).calcPath(v, t).getWeight();
+            if (Math.abs(sv - prefixWeight) < 1.e-2 && Math.abs(vt - (weight - prefixWeight)) < 1.e-2)
+                return true;
+        }
+        return false;
+    }
+
 }
@@ -0,0 +1,141 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing;
+
+import com.carrotsearch.hppc.IntArrayList;
+import com.graphhopper.routing.ev.DecimalEncodedValue;
+import com.graphhopper.routing.ev.DecimalEncodedValueImpl;
+import com.graphhopper.routing.ev.TurnCost;
+import com.graphhopper.routing.util.EncodingManager;
+import com.graphhopper.routing.util.TraversalMode;
+import com.graphhopper.routing.weighting.SpeedWeighting;
+import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.BaseGraph;
+import com.graphhopper.storage.TurnCostStorage;
+import com.graphhopper.util.EdgeExplorer;
+import com.graphhopper.util.EdgeIterator;
+import com.graphhopper.util.GHUtility;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.RepeatedTest;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static com.graphhopper.util.EdgeIterator.ANY_EDGE;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Makes sure {@link DijkstraMultiTarget} yields the same paths as one {@link DijkstraBidirectionRef} search per target.
+ */
+public class DijkstraMultiTargetTest {
+    private final int maxTurnCosts = 10;
+    private TurnCostStorage turnCostStorage;
+    private BaseGraph graph;
+    private DecimalEncodedValue speedEnc;
+    private DecimalEncodedValue turnCostEnc;
+    private Weighting weighting;
+
+    @BeforeEach
+    public void setup() {
+        speedEnc = new DecimalEncodedValueImpl("speed", 5, 5, true);
+        turnCostEnc = TurnCost.create("car", maxTurnCosts);
+        EncodingManager encodingManager = EncodingManager.start().add(speedEnc).addTurnCostEncodedValue(turnCostEnc).build();
+        graph = new BaseGraph.Builder(encodingManager).withTurnCosts(true).create();
+        turnCostStorage = graph.getTurnCostStorage();
+        weighting = new SpeedWeighting(speedEnc, turnCostEnc, turnCostStorage, 40);
+    }
+
+    @Test
+    public void simpleGraph() {
+        // 0 - 1 - 2 - 3
+        // |           |
+        // 4 --- 5 --- 6     7 - 8
+        graph.edge(0, 1).setDistance(10).set(speedEnc, 10, 10);
+        graph.edge(1, 2).setDistance(10).set(speedEnc, 10, 10);
+        graph.edge(2, 3).setDistance(10).set(speedEnc, 10, 10);
+        graph.edge(0, 4).setDistance(100).set(speedEnc, 10, 10);
+        graph.edge(4, 5).setDistance(100).set(speedEnc, 10, 10);
+        graph.edge(5, 6).setDistance(100).set(speedEnc, 10, 10);
+        graph.edge(6, 3).setDistance(100).set(speedEnc, 10, 10);
+        graph.edge(7, 8).setDistance(10).set(speedEnc, 10, 10);
+        weighting = new SpeedWeighting(speedEnc, turnCostEnc, turnCostStorage, Double.POSITIVE_INFINITY);
+
+        List<Path> paths = createAlgo().calcPaths(0, ANY_EDGE, new int[]{3, 5, 7, 0}, new int[]{ANY_EDGE, ANY_EDGE, ANY_EDGE, ANY_EDGE});
+        assertEquals(IntArrayList.from(0, 1, 2, 3), paths.get(0).calcNodes());
+        assertEquals(IntArrayList.from(0, 4, 5), paths.get(1).calcNodes());
+        assertFalse(paths.get(2).isFound());
+        assertTrue(paths.get(3).isFound());
+        assertEquals(0, paths.get(3).getWeight(), 1.e-6);
+
+        // enforcing the first or the last edge
+        paths = createAlgo().calcPaths(0, 3, new int[]{3, 3}, new int[]{ANY_EDGE, 2});
+        assertEquals(IntArrayList.from(0, 4, 5, 6, 3), paths.get(0).calcNodes());
+        assertFalse(paths.get(1).isFound());
+        paths = createAlgo().calcPaths(0, ANY_EDGE, new int[]{3, 3}, new int[]{6, 2});
+        assertEquals(IntArrayList.from(0, 4, 5, 6, 3), paths.get(0).calcNodes());
+        assertEquals(IntArrayList.from(0, 1, 2, 3), paths.get(1).calcNodes());
+    }
+
+    @Test
+    public void restrictionsRequireEdgeBased() {
+        DijkstraMultiTarget algo = new DijkstraMultiTarget(graph, new SpeedWeighting(speedEnc), TraversalMode.NODE_BASED);
+        assertThrows(IllegalArgumentException.class, () -> algo.calcPaths(0, 1, new int[]{1}, new int[]{ANY_EDGE}));
+    }
+
+    @RepeatedTest(10)
+    public void compareWithBidirectionalDijkstra() {
+        final long seed = System.nanoTime();
+        Random rnd = new Random(seed);
+        int numNodes = 100;
+        GHUtility.buildRandomGraph(graph, rnd, numNodes, 2.2, true, speedEnc, null, 0.8, 0.8);
+        GHUtility.addRandomTurnCosts(graph, seed, null, turnCostEnc, maxTurnCosts, turnCostStorage);
+
+        for (int i = 0; i < 50; i++) {
+            int source = rnd.nextInt(numNodes);
+            int sourceOutEdge = rnd.nextBoolean() ? ANY_EDGE : randomEdge(rnd, source);
+            int[] targets = new int[5];
+            int[] targetInEdges = new int[targets.length];
+            for (int j = 0; j < targets.length; j++) {
+                targets[j] = rnd.nextInt(numNodes);
+                targetInEdges[j] = rnd.nextBoolean() ? ANY_EDGE : randomEdge(rnd, targets[j]);
+            }
+            List<Path> paths = createAlgo().calcPaths(source, sourceOutEdge, targets, targetInEdges);
+            for (int j = 0; j < targets.length; j++) {
+                Path expected = new DijkstraBidirectionRef(graph, weighting, TraversalMode.EDGE_BASED)
+                        .calcPath(source, targets[j], sourceOutEdge, targetInEdges[j]);
+                String msg = "from: " + source + " (" + sourceOutEdge + "), to: " + targets[j] + " (" + targetInEdges[j] + "), seed: " + seed;
+                assertEquals(expected.isFound(), paths.get(j).isFound(), msg);
+                assertEquals(expected.getWeight(), paths.get(j).getWeight(), 1.e-6, msg);
+            }
+        }
+    }
+
+    private int randomEdge(Random rnd, int node) {
+        EdgeExplorer explorer = graph.createEdgeExplorer();
+        IntArrayList edges = new IntArrayList();
+        EdgeIterator iter = explorer.setBaseNode(node);
+        while (iter.next())
+            edges.add(iter.getEdge());
+        return edges.isEmpty() ? ANY_EDGE : edges.get(rnd.nextInt(edges.size()));
+    }
+
+    private DijkstraMultiTarget createAlgo() {
+        return new DijkstraMultiTarget(graph, weighting, TraversalMode.EDGE_BASED);
+    }
+}
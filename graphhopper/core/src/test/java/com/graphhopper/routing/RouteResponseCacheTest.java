@@ -0,0 +1,55 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing;
+
+import com.graphhopper.GHRequest;
+import com.graphhopper.GHResponse;
+import com.graphhopper.ResponsePath;
+import com.graphhopper.util.exceptions.ConnectionNotFoundException;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RouteResponseCacheTest {
+
+    @Test
+    public void testExpires() throws InterruptedException {
+        RouteResponseCache cache = new RouteResponseCache(10, 1);
+        RouteResponseCache.Key key = RouteResponseCache.createKey(new GHRequest().setProfile("car"), List.of());
+        GHResponse rsp = new GHResponse();
+        rsp.add(new ResponsePath());
+        cache.put(key, rsp);
+        assertEquals(1, cache.getSize());
+        Thread.sleep(10);
+        assertNull(cache.get(key));
+        assertEquals(0, cache.getSize());
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    public void testErrorsAreNotCached() {
+        RouteResponseCache cache = new RouteResponseCache(10, 60_000);
+        RouteResponseCache.Key key = RouteResponseCache.createKey(new GHRequest().setProfile("car"), List.of());
+        cache.put(key, new GHResponse().addError(new ConnectionNotFoundException("not found", Map.of())));
+        assertEquals(0, cache.getSize());
+        assertThrows(IllegalArgumentException.class, () -> new RouteResponseCache(0, 1));
+    }
+}
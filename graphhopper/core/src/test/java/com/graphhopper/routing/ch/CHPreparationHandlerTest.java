@@ -18,10 +18,22 @@
 package com.graphhopper.routing.ch;
 
 import com.graphhopper.config.CHProfile;
+import com.graphhopper.routing.ev.DecimalEncodedValue;
+import com.graphhopper.routing.ev.DecimalEncodedValueImpl;
+import com.graphhopper.routing.util.AllEdgesIterator;
+import com.graphhopper.routing.util.EncodingManager;
+import com.graphhopper.routing.weighting.SpeedWeighting;
+import com.graphhopper.storage.BaseGraph;
+import com.graphhopper.storage.CHConfig;
+import com.graphhopper.storage.StorableProperties;
+import com.graphhopper.util.GHUtility;
 import org.junit.jupiter.api.Test;
 
-import static org.junit.jupiter.api.Assertions.assertFalse;
-import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
 
 /**
  * @author Peter Karich
@@ -36,4 +48,47 @@ public class CHPreparationHandlerTest {
         assertTrue(instance.isEnabled());
     }
 
+    @Test
+    public void testNodeOrderingProfile() {
+        DecimalEncodedValue speedEnc1 = new DecimalEncodedValueImpl("speed1", 5, 5, true);
+        DecimalEncodedValue speedEnc2 = new DecimalEncodedValueImpl("speed2", 5, 5, true);
+        BaseGraph graph = new BaseGraph.Builder(EncodingManager.start().add(speedEnc1).add(speedEnc2).build()).create();
+        Random rnd = new Random(123);
+        GHUtility.buildRandomGraph(graph, rnd, 500, 2.2, true, speedEnc1, null, 0.8, 0.8);
+        AllEdgesIterator iter = graph.getAllEdges();
+        while (iter.next())
+            iter.set(speedEnc2, 5 + rnd.nextInt(20) * 5, 5 + rnd.nextInt(20) * 5);
+        graph.freeze();
+        CHConfig config1 = CHConfig.nodeBased("p1", new SpeedWeighting(speedEnc1));
+        CHConfig config2 = CHConfig.nodeBased("p2", new SpeedWeighting(speedEnc2));
+
+        CHPreparationHandler handler = new CHPreparationHandler();
+        handler.setCHProfiles(new CHProfile("p1"), new CHProfile("p2").setNodeOrderingProfile("p1"));
+        // p2 is listed first, but it has to wait for p1
+        Map<String, PrepareContractionHierarchies.Result> results = handler.prepare(graph, new StorableProperties(graph.getDirectory()),
+                Arrays.asList(config2, config1), false);
+        NodeOrderingProvider ordering1 = results.get("p1").getCHStorage().getNodeOrderingProvider();
+        NodeOrderingProvider ordering2 = results.get("p2").getCHStorage().getNodeOrderingProvider();
+        for (int level = 0; level < graph.getNodes(); level++)
+            assertEquals(ordering1.getNodeIdForLevel(level), ordering2.getNodeIdForLevel(level));
+
+        // the node ordering of p1 is not available
+        CHPreparationHandler other = new CHPreparationHandler();
+        other.setCHProfiles(new CHProfile("p1"), new CHProfile("p2").setNodeOrderingProfile("p1"));
+        assertThrows(IllegalStateException.class, () -> other.prepare(graph, new StorableProperties(graph.getDirectory()),
+                Arrays.asList(config2), false));
+    }
+
+    @Test
+    public void testNodeOrderingFromLevels() {
+        // nodes 1 and 3 were not contracted and have the maximum level
+        int[] levels = {2, 4, 0, 4, 1};
+        NodeOrderingProvider ordering = NodeOrderingProvider.fromLevels(levels.length, node -> levels[node]);
+        assertEquals(5, ordering.getNumNodes());
+        int[] nodes = new int[5];
+        for (int level = 0; level < 5; level++)
+            nodes[level] = ordering.getNodeIdForLevel(level);
+        assertArrayEquals(new int[]{2, 4, 0, 1, 3}, nodes);
+    }
+
 }
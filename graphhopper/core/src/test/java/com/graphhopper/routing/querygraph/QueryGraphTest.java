@@ -400,6 +400,27 @@ public class QueryGraphTest {
         return edge.fetchWayGeometry(FetchMode.ALL);
     }
 
+    @Test
+    public void testVirtualEdgeGeometry() {
+        initGraph(g);
+        EdgeIteratorState edge = GHUtility.getEdge(g, 0, 1);
+        QueryGraph queryGraph = lookup(Arrays.asList(
+                createLocationResult(1.5, 0.9, edge, 0, EDGE),
+                createLocationResult(1.6, 1.5, edge, 1, PILLAR),
+                createLocationResult(1.2, 2, edge, 2, EDGE)));
+        List<VirtualEdgeIteratorState> virtualEdges = queryGraph.getQueryOverlay().getVirtualEdges();
+        assertFalse(virtualEdges.isEmpty());
+        for (VirtualEdgeIteratorState virtualEdge : virtualEdges) {
+            PointList points = virtualEdge.fetchWayGeometry(FetchMode.ALL);
+            // the distance is calculated without creating the points
+            assertEquals(DIST_PLANE.calcDistance(points), virtualEdge.getDistance(), 1.e-9);
+            assertEquals(points, virtualEdge.detach(true).fetchWayGeometry(FetchMode.ALL).clone(true));
+            // the geometry is created only once, but a copy is returned for every call
+            assertNotSame(points, virtualEdge.fetchWayGeometry(FetchMode.ALL));
+            assertEquals(points, virtualEdge.fetchWayGeometry(FetchMode.ALL));
+        }
+    }
+
     public Snap createLocationResult(double lat, double lon,
                                      EdgeIteratorState edge, int wayIndex, Snap.Position pos) {
         if (edge == null)
@@ -0,0 +1,99 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PreparationSchedulerTest {
+
+    @Test
+    public void dependencies() {
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+        PreparationScheduler scheduler = new PreparationScheduler(4, 1000);
+        PreparationScheduler.Task a = scheduler.add("a", 0, () -> sleepAndAdd(order, "a"));
+        PreparationScheduler.Task b = scheduler.add("b", 0, () -> sleepAndAdd(order, "b"), a);
+        PreparationScheduler.Task c = scheduler.add("c", 0, () -> sleepAndAdd(order, "c"), a);
+        scheduler.add("d", 0, () -> sleepAndAdd(order, "d"), b, c);
+        scheduler.run();
+        assertEquals(4, order.size());
+        assertEquals("a", order.get(0));
+        assertEquals("d", order.get(3));
+    }
+
+    @Test
+    public void dependencyMustBeAdded() {
+        PreparationScheduler other = new PreparationScheduler(1, 0);
+        PreparationScheduler.Task task = other.add("a", 0, () -> {
+        });
+        PreparationScheduler scheduler = new PreparationScheduler(1, 0);
+        assertThrows(IllegalArgumentException.class, () -> scheduler.add("b", 0, () -> {
+        }, task));
+    }
+
+    @Test
+    public void memoryBudget() {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        Runnable runnable = () -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            sleep();
+            running.decrementAndGet();
+        };
+        // only two of the steps fit into the budget at the same time
+        PreparationScheduler scheduler = new PreparationScheduler(4, 250);
+        for (int i = 0; i < 6; i++)
+            scheduler.add("step " + i, 100, runnable);
+        // this step is bigger than the budget, but it must still run
+        scheduler.add("big", 1000, runnable);
+        scheduler.run();
+        assertEquals(2, maxRunning.get());
+    }
+
+    @Test
+    public void failure() {
+        AtomicInteger runs = new AtomicInteger();
+        PreparationScheduler scheduler = new PreparationScheduler(2, 0);
+        PreparationScheduler.Task failing = scheduler.add("failing", 0, () -> {
+            throw new IllegalStateException("failed");
+        });
+        scheduler.add("dependent", 0, runs::incrementAndGet, failing);
+        IllegalStateException e = assertThrows(IllegalStateException.class, scheduler::run);
+        assertEquals("failed", e.getMessage());
+        assertEquals(0, runs.get());
+    }
+
+    private static void sleepAndAdd(List<String> order, String name) {
+        sleep();
+        order.add(name);
+    }
+
+    private static void sleep() {
+        try {
+            Thread.sleep(20);
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
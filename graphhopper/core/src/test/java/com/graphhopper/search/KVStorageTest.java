@@ -303,6 +303,52 @@ public class KVStorageTest {
         assertEquals(pointerA, pointerB);
     }
 
+    @Test
+    public void testReuseNonConsecutiveEntries() {
+        KVStorage index = create();
+        long pointerA = index.add(createMap("name", "Main Street", "ref", "B1"));
+        long pointerB = index.add(createMap("name", "Side Street"));
+        Map<String, KValue> mapC = createMap("name", "Main Street", "ref", "B1");
+        long pointerC = index.add(mapC);
+        assertEquals(pointerA, pointerC);
+        assertNotEquals(pointerA, pointerB);
+
+        // later changes of the map must not affect the stored entries
+        mapC.put("ref", new KValue("B2"));
+        long pointerD = index.add(createMap("name", "Main Street", "ref", "B2"));
+        assertNotEquals(pointerA, pointerD);
+        assertEquals("B1", index.get(pointerA, "ref", false));
+        assertEquals("B2", index.get(pointerD, "ref", false));
+
+        // different values per direction are different entries
+        long pointerE = index.add(Collections.singletonMap("name", new KValue("Main Street", null)));
+        assertNotEquals(pointerA, pointerE);
+        assertNull(index.get(pointerE, "name", true));
+    }
+
+    @Test
+    public void testCachedGet() {
+        KVStorage index = create();
+        long pointerA = index.add(createMap("name", "Main Street", "ref", "B1", "bytes", new byte[]{1, 2}));
+        long pointerB = index.add(Collections.singletonMap("name", new KValue("forward", "backward")));
+
+        Object name = index.get(pointerA, "name", false);
+        assertEquals("Main Street", name);
+        assertSame(name, index.get(pointerA, "name", false));
+        assertEquals(name, index.get(pointerA, "name", true));
+        assertEquals("B1", index.get(pointerA, "ref", false));
+        assertNull(index.get(pointerB, "ref", false));
+        assertNull(index.get(pointerB, "ref", false));
+        assertEquals("forward", index.get(pointerB, "name", false));
+        assertEquals("backward", index.get(pointerB, "name", true));
+        assertEquals("forward", index.get(pointerB, "name", false));
+
+        // byte arrays are never shared
+        byte[] bytes = (byte[]) index.get(pointerA, "bytes", false);
+        bytes[0] = 5;
+        assertArrayEquals(new byte[]{1, 2}, (byte[]) index.get(pointerA, "bytes", false));
+    }
+
     @Test
     public void testUnknownValueClass() {
         KVStorage index = create();
@@ -24,8 +24,10 @@ import com.graphhopper.routing.ev.DecimalEncodedValueImpl;
 import com.graphhopper.routing.ev.SimpleBooleanEncodedValue;
 import com.graphhopper.routing.util.AccessFilter;
 import com.graphhopper.routing.util.AllEdgesIterator;
+import com.graphhopper.routing.util.DirectedEdgeFilter;
 import com.graphhopper.routing.util.EdgeFilter;
 import com.graphhopper.routing.util.EncodingManager;
+import com.graphhopper.routing.util.HeadingEdgeFilter;
 import com.graphhopper.storage.*;
 import com.graphhopper.util.*;
 import com.graphhopper.util.shapes.BBox;
@@ -679,4 +681,63 @@ public class LocationIndexTreeTest {
                     "1, 78, 1, PILLAR"), output);
         }
     }
+
+    @Test
+    public void testFindClosestWithHeading() {
+        //      1
+        //      |
+        // 2 ---|x-- 3
+        //      |
+        //      0
+        BaseGraph graph = new BaseGraph.Builder(encodingManager).create();
+        NodeAccess na = graph.getNodeAccess();
+        na.setNode(0, 51.000, 13.000);
+        na.setNode(1, 51.002, 13.000);
+        na.setNode(2, 51.001, 12.998);
+        na.setNode(3, 51.001, 13.002);
+        DistancePlaneProjection distCalc = new DistancePlaneProjection();
+        graph.edge(0, 1).setDistance(distCalc.calcDist(51.000, 13.000, 51.002, 13.000))
+                .setWayGeometry(Helper.createPointList(51.0005, 13.000, 51.0015, 13.000));
+        graph.edge(2, 3).setDistance(distCalc.calcDist(51.001, 12.998, 51.001, 13.002));
+        LocationIndexTree index = new LocationIndexTree(graph, graph.getDirectory());
+        index.prepareIndex();
+
+        // the edge 2-3 is closer than the edge 0-1
+        double lat = 51.00105, lon = 13.0001;
+        DirectedEdgeFilter all = (edge, reverse) -> true;
+        assertEquals(1, index.findClosest(lat, lon, EdgeFilter.ALL_EDGES).getClosestEdge().getEdge());
+        assertEquals(0, findClosestWithHeading(index, lat, lon, all, 0, 20).getClosestEdge().getEdge());
+        assertEquals(0, findClosestWithHeading(index, lat, lon, all, 190, 20).getClosestEdge().getEdge());
+        assertEquals(1, findClosestWithHeading(index, lat, lon, all, 80, 20).getClosestEdge().getEdge());
+        // no edge matches the heading
+        assertEquals(1, findClosestWithHeading(index, lat, lon, all, 45, 20).getClosestEdge().getEdge());
+        // the edge 0-1 is too far away
+        assertEquals(1, findClosestWithHeading(index, lat, lon, all, 0, 5).getClosestEdge().getEdge());
+        // the edge 0-1 can only be used southwards
+        DirectedEdgeFilter onlyReverse = (edge, reverse) -> edge.getEdge() != 0 || reverse;
+        assertEquals(1, findClosestWithHeading(index, lat, lon, onlyReverse, 0, 20).getClosestEdge().getEdge());
+        assertEquals(0, findClosestWithHeading(index, lat, lon, onlyReverse, 180, 20).getClosestEdge().getEdge());
+
+        // the snaps are the same as those of the heading edge filter with the fallback to the closest edge
+        for (int heading = 0; heading < 360; heading += 15) {
+            for (double maxDistance : new double[]{5, 20, 200}) {
+                for (double[] point : new double[][]{{lat, lon}, {51.0003, 12.9999}, {51.0012, 12.9985}, {51.0025, 13.0005}}) {
+                    Snap expected = index.findClosest(point[0], point[1], new HeadingEdgeFilter(all, heading, new GHPoint(point[0], point[1]),
+                            HeadingEdgeFilter.DEFAULT_TOLERANCE, maxDistance));
+                    if (!expected.isValid())
+                        expected = index.findClosest(point[0], point[1], EdgeFilter.ALL_EDGES);
+                    Snap snap = index.findClosest(point[0], point[1], EdgeFilter.ALL_EDGES, all, heading, HeadingEdgeFilter.DEFAULT_TOLERANCE, maxDistance);
+                    String msg = "heading: " + heading + ", maxDistance: " + maxDistance + ", point: " + Arrays.toString(point);
+                    assertEquals(expected.getClosestEdge().getEdge(), snap.getClosestEdge().getEdge(), msg);
+                    assertEquals(expected.getSnappedPoint(), snap.getSnappedPoint(), msg);
+                    assertEquals(expected.getQueryDistance(), snap.getQueryDistance(), 1.e-6, msg);
+                }
+            }
+        }
+    }
+
+    private static Snap findClosestWithHeading(LocationIndex index, double lat, double lon, DirectedEdgeFilter directedEdgeFilter,
+                                               double heading, double maxDistance) {
+        return index.findClosest(lat, lon, EdgeFilter.ALL_EDGES, directedEdgeFilter, heading, HeadingEdgeFilter.DEFAULT_TOLERANCE, maxDistance);
+    }
 }
@@ -21,7 +21,7 @@ import com.carrotsearch.hppc.IntHashSet;
 import com.graphhopper.GraphHopper;
 import com.graphhopper.config.Profile;
 import com.graphhopper.routing.AStarBidirection;
-import com.graphhopper.routing.DijkstraBidirectionRef;
+import com.graphhopper.routing.DijkstraMultiTarget;
 import com.graphhopper.routing.Path;
 import com.graphhopper.routing.ev.BooleanEncodedValue;
 import com.graphhopper.routing.ev.Subnetwork;
@@ -124,6 +124,10 @@ public class MapMatching {
         int maxVisitedNodes = hints.getInt(Parameters.Routing.MAX_VISITED_NODES, Integer.MAX_VALUE);
 
         Router router = new Router() {
+            private QueryGraph lastQueryGraph;
+            private Weighting queryGraphWeighting;
+            private long visitedNodes;
+
             @Override
             public EdgeFilter getSnapFilter() {
                 return snapFilter;
@@ -132,6 +136,25 @@ public class MapMatching {
             @Override
             public List<Path> calcPaths(QueryGraph queryGraph, int fromNode, int fromOutEdge, int[] toNodes, int[] toInEdges) {
                 assert (toNodes.length == toInEdges.length);
+                // the query graph is the same for all time steps of a match, so we only need to wrap the weighting once
+                if (queryGraph != lastQueryGraph) {
+                    lastQueryGraph = queryGraph;
+                    queryGraphWeighting = queryGraph.wrapWeighting(weighting);
+                }
+                if (landmarks == null) {
+                    // a single forward search settles all candidates of the next time step, this is much faster than
+                    // one bidirectional search per candidate, because the candidates are usually close to each other
+                    DijkstraMultiTarget dijkstra = new DijkstraMultiTarget(queryGraph, queryGraphWeighting, TraversalMode.EDGE_BASED) {
+                        @Override
+                        protected void initCollections(int size) {
+                            super.initCollections(50);
+                        }
+                    };
+                    dijkstra.setMaxVisitedNodes(maxVisitedNodes);
+                    List<Path> result = dijkstra.calcPaths(fromNode, fromOutEdge, toNodes, toInEdges);
+                    visitedNodes += dijkstra.getVisitedNodes();
+                    return result;
+                }
                 List<Path> result = new ArrayList<>();
                 for (int i = 0; i < toNodes.length; i++) {
                     result.add(calcOnePath(queryGraph, fromNode, toNodes[i], fromOutEdge, toInEdges[i]));
@@ -140,35 +163,30 @@ public class MapMatching {
             }
 
             private Path calcOnePath(QueryGraph queryGraph, int fromNode, int toNode, int fromOutEdge, int toInEdge) {
-                Weighting queryGraphWeighting = queryGraph.wrapWeighting(weighting);
-                if (landmarks != null) {
-                    AStarBidirection aStarBidirection = new AStarBidirection(queryGraph, queryGraphWeighting, TraversalMode.EDGE_BASED) {
-                        @Override
-                        protected void initCollections(int size) {
-                            super.initCollections(50);
-                        }
-                    };
-                    int activeLM = Math.min(8, landmarks.getLandmarkCount());
-                    LMApproximator lmApproximator = LMApproximator.forLandmarks(queryGraph, queryGraphWeighting, landmarks, activeLM);
-                    aStarBidirection.setApproximation(lmApproximator);
-                    aStarBidirection.setMaxVisitedNodes(maxVisitedNodes);
-                    return aStarBidirection.calcPath(fromNode, toNode, fromOutEdge, toInEdge);
-                } else {
-                    DijkstraBidirectionRef dijkstraBidirectionRef = new DijkstraBidirectionRef(queryGraph, queryGraphWeighting, TraversalMode.EDGE_BASED) {
-                        @Override
-                        protected void initCollections(int size) {
-                            super.initCollections(50);
-                        }
-                    };
-                    dijkstraBidirectionRef.setMaxVisitedNodes(maxVisitedNodes);
-                    return dijkstraBidirectionRef.calcPath(fromNode, toNode, fromOutEdge, toInEdge);
-                }
+                AStarBidirection aStarBidirection = new AStarBidirection(queryGraph, queryGraphWeighting, TraversalMode.EDGE_BASED) {
+                    @Override
+                    protected void initCollections(int size) {
+                        super.initCollections(50);
+                    }
+                };
+                int activeLM = Math.min(8, landmarks.getLandmarkCount());
+                LMApproximator lmApproximator = LMApproximator.forLandmarks(queryGraph, queryGraphWeighting, landmarks, activeLM);
+                aStarBidirection.setApproximation(lmApproximator);
+                aStarBidirection.setMaxVisitedNodes(maxVisitedNodes);
+                Path path = aStarBidirection.calcPath(fromNode, toNode, fromOutEdge, toInEdge);
+                visitedNodes += aStarBidirection.getVisitedNodes();
+                return path;
             }
 
             @Override
             public Weighting getWeighting() {
                 return weighting;
             }
+
+            @Override
+            public long getVisitedNodes() {
+                return visitedNodes;
+            }
         };
         return router;
     }
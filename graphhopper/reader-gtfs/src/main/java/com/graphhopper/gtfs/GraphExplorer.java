@@ -18,7 +18,7 @@
 
 package com.graphhopper.gtfs;
 
-import com.google.common.collect.Iterators;
+import com.carrotsearch.hppc.IntLongHashMap;
 import com.google.transit.realtime.GtfsRealtime;
 import com.graphhopper.routing.weighting.Weighting;
 import com.graphhopper.storage.Graph;
@@ -28,15 +28,15 @@ import com.graphhopper.util.EdgeIteratorState;
 
 import java.time.Instant;
 import java.time.ZoneId;
-import java.time.temporal.ChronoUnit;
 import java.util.Collections;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Spliterators;
 import java.util.function.Consumer;
 
 public final class GraphExplorer {
 
+    private static final long MILLIS_PER_DAY = 24 * 60 * 60 * 1000L;
+
     private final EdgeExplorer edgeExplorer;
     private final GtfsStorage gtfsStorage;
     private final RealtimeFeed realtimeFeed;
@@ -49,6 +49,9 @@ public final class GraphExplorer {
     private final int blockedRouteTypes;
     private final PtGraph ptGraph;
     private final Graph graph;
+    private StationWalks stationWalks;
+    private Label.NodeId target;
+    private IntLongHashMap walksToTarget;
 
     public GraphExplorer(Graph graph, PtGraph ptGraph, Weighting accessEgressWeighting, GtfsStorage gtfsStorage, RealtimeFeed realtimeFeed, boolean reverse, boolean streetOnly, boolean ptOnly, double walkSpeedKmh, boolean ignoreValidities, int blockedRouteTypes) {
         this.graph = graph;
@@ -65,109 +68,351 @@ public final class GraphExplorer {
         this.walkSpeedKmH = walkSpeedKmh;
     }
 
-    Iterable<MultiModalEdge> exploreEdgesAround(Label label) {
-        return () -> {
-            Iterator<MultiModalEdge> ptEdges = label.node.ptNode != -1 ? ptEdgeStream(label.node.ptNode, label.currentTime).iterator() : Collections.emptyIterator();
-            Iterator<MultiModalEdge> streetEdges = label.node.streetNode != -1 ? streetEdgeStream(label.node.streetNode).iterator() : Collections.emptyIterator();
-            return Iterators.concat(ptEdges, streetEdges);
-        };
+    /**
+     * Makes the search walk from a station where it has left a vehicle with the precomputed walks to the other
+     * stations and to the target, instead of exploring the streets. Does not change the walks at the beginning.
+     *
+     * @param walksToTarget the walking times between the stations and the target, in the direction of the search
+     */
+    void setStationWalks(StationWalks stationWalks, Label.NodeId target, IntLongHashMap walksToTarget) {
+        this.stationWalks = stationWalks;
+        this.target = target;
+        this.walksToTarget = walksToTarget;
     }
 
-    private Iterable<PtGraph.PtEdge> realtimeEdgesAround(int node) {
-        return () -> realtimeFeed.getAdditionalEdges().stream().filter(e -> e.getBaseNode() == node).iterator();
+    Iterable<MultiModalEdge> exploreEdgesAround(Label label) {
+        return () -> Spliterators.iterator(new Spliterators.AbstractSpliterator<MultiModalEdge>(0, 0) {
+            final EdgeCursor edges = createEdgeCursor().setBaseNode(label.node.streetNode, label.node.ptNode, label.currentTime,
+                    label.edge != null ? label.edge.getType() : null);
+
+            @Override
+            public boolean tryAdvance(Consumer<? super MultiModalEdge> action) {
+                if (!edges.next())
+                    return false;
+                action.accept(edges.detach());
+                return true;
+            }
+        });
     }
 
-    private Iterable<PtGraph.PtEdge> backRealtimeEdgesAround(int node) {
-        return () -> realtimeFeed.getAdditionalEdges().stream()
-                .filter(e -> e.getAdjNode() == node)
-                .map(e -> new PtGraph.PtEdge(e.getId(), e.getAdjNode(), e.getBaseNode(), e.getAttrs()))
-                .iterator();
+    /**
+     * @return an iterator over the same edges as exploreEdgesAround, which can be reused for every label of a search
+     */
+    EdgeCursor createEdgeCursor() {
+        return new EdgeCursor();
     }
 
+    /**
+     * Creates the edge a label was reached by again, from what the EdgeCursor returned for it.
+     */
+    MultiModalEdge createEdge(GtfsStorage.EdgeType type, int edge, int baseNode, int adjNode, long time, double distance) {
+        if (type == GtfsStorage.EdgeType.HIGHWAY || type == GtfsStorage.EdgeType.WALK)
+            return new MultiModalEdge(type, edge, baseNode, adjNode, time, distance);
+        PtGraph.PtEdge ptEdge = edge < ptGraph.getEdgeCount() ? ptGraph.edge(edge) : realtimeFeed.getAdditionalEdge(edge);
+        return new MultiModalEdge(reverse ? new PtGraph.PtEdge(ptEdge.getId(), ptEdge.getAdjNode(), ptEdge.getBaseNode(), ptEdge.getAttrs()) : ptEdge);
+    }
 
-    private Iterable<MultiModalEdge> ptEdgeStream(int ptNode, long currentTime) {
-        return () -> Spliterators.iterator(new Spliterators.AbstractSpliterator<MultiModalEdge>(0, 0) {
-            final Iterator<PtGraph.PtEdge> edgeIterator = reverse ?
-                    Iterators.concat(ptNode < ptGraph.getNodeCount() ? ptGraph.backEdgesAround(ptNode).iterator() : Collections.<PtGraph.PtEdge>emptyIterator(), backRealtimeEdgesAround(ptNode).iterator()) :
-                    Iterators.concat(ptNode < ptGraph.getNodeCount() ? ptGraph.edgesAround(ptNode).iterator() : Collections.<PtGraph.PtEdge>emptyIterator(), realtimeEdgesAround(ptNode).iterator());
+    /**
+     * Iterates over the pt and street edges around a node without creating objects for them. The pt edges of the
+     * graph are read attribute by attribute, the ones of the realtime feed and the street edges are used as they are.
+     * With station walks, the walks from a station take the place of its street edges, see setStationWalks.
+     */
+    final class EdgeCursor {
+        private static final int PT = 0, REALTIME = 1, WALK = 2, STREET = 3, END = 4;
+        private int state = END;
+        private long currentTime;
+        private int streetNode;
+        private int nextPtEdge;
+        private List<PtGraph.PtEdge> realtimeEdges = Collections.emptyList();
+        private int nextRealtimeEdge;
+        private EdgeIterator streetEdges;
+        private int ptNode;
+        private GtfsStorage.EdgeType arrivedBy;
+        private int nextWalk;
+        private int endOfWalks;
+
+        // the current edge: a pt edge of the graph if realtimeEdge is null, otherwise one of the realtime feed
+        private boolean onStreet;
+        private int ptEdge;
+        private PtGraph.PtEdge realtimeEdge;
+        private long streetTime;
+        private boolean onWalk;
+        private int walkAdjStreetNode;
+        private int walkAdjPtNode;
+
+        /**
+         * @param arrivedBy the type of the edge the node was reached by, or null at the start
+         */
+        EdgeCursor setBaseNode(int streetNode, int ptNode, long currentTime, GtfsStorage.EdgeType arrivedBy) {
+            this.currentTime = currentTime;
+            this.streetNode = streetNode;
+            this.ptNode = ptNode;
+            this.arrivedBy = arrivedBy;
+            onWalk = false;
+            if (ptNode != -1) {
+                nextPtEdge = ptNode < ptGraph.getNodeCount() ? (reverse ? ptGraph.getEdgeRefIn(ptGraph.toNodePointer(ptNode)) : ptGraph.getEdgeRefOut(ptGraph.toNodePointer(ptNode))) : -1;
+                realtimeEdges = reverse ? realtimeFeed.getAdditionalBackEdgesAround(ptNode) : realtimeFeed.getAdditionalEdgesAround(ptNode);
+                nextRealtimeEdge = 0;
+                state = PT;
+            } else {
+                leavePtEdges();
+            }
+            return this;
+        }
 
-            @Override
-            public boolean tryAdvance(Consumer<? super MultiModalEdge> action) {
-                while (edgeIterator.hasNext()) {
-                    PtGraph.PtEdge edge = edgeIterator.next();
-                    GtfsStorage.EdgeType edgeType = edge.getType();
-
-                    // Optimization (around 20% in Swiss network):
-                    // Only use the (single) least-wait-time edge to enter the
-                    // time expanded network. Later departures are reached via
-                    // WAIT edges. Algorithmically not necessary, and does not
-                    // reduce total number of relaxed nodes, but takes stress
-                    // off the priority queue. Additionally, when only walking,
-                    // don't bother finding the enterEdge, because we are not going to enter.
-                    if (edgeType == GtfsStorage.EdgeType.ENTER_TIME_EXPANDED_NETWORK) {
-                        if (streetOnly) {
-                            return false;
-                        } else {
-                            action.accept(new MultiModalEdge(findEnterEdge(edge))); // fully consumes edgeIterator
-                            return true;
-                        }
-                    }
-                    if (streetOnly && edgeType != (reverse ? GtfsStorage.EdgeType.EXIT_PT : GtfsStorage.EdgeType.ENTER_PT)) {
-                        continue;
-                    }
-                    if (!(ignoreValidities || isValidOn(edge, currentTime))) {
-                        continue;
-                    }
-                    if (edgeType == GtfsStorage.EdgeType.WAIT_ARRIVAL && !reverse) {
-                        continue;
-                    }
-                    if (edgeType == GtfsStorage.EdgeType.ENTER_PT && reverse && ptOnly) {
-                        continue;
-                    }
-                    if (edgeType == GtfsStorage.EdgeType.EXIT_PT && !reverse && ptOnly) {
-                        continue;
-                    }
-                    if ((edgeType == GtfsStorage.EdgeType.ENTER_PT || edgeType == GtfsStorage.EdgeType.EXIT_PT || edgeType == GtfsStorage.EdgeType.TRANSFER) && (blockedRouteTypes & (1 << edge.getAttrs().route_type)) != 0) {
-                        continue;
+        boolean next() {
+            while (state == PT || state == REALTIME) {
+                if (!nextPtEdge()) {
+                    leavePtEdges();
+                    break;
+                }
+                onStreet = false;
+                onWalk = false;
+                GtfsStorage.EdgeType edgeType = getType();
+
+                // Optimization (around 20% in Swiss network):
+                // Only use the (single) least-wait-time edge to enter the
+                // time expanded network. Later departures are reached via
+                // WAIT edges. Algorithmically not necessary, and does not
+                // reduce total number of relaxed nodes, but takes stress
+                // off the priority queue. Additionally, when only walking,
+                // don't bother finding the enterEdge, because we are not going to enter.
+                if (edgeType == GtfsStorage.EdgeType.ENTER_TIME_EXPANDED_NETWORK) {
+                    if (streetOnly) {
+                        startStreetEdges();
+                        break;
+                    } else {
+                        findEnterEdge(); // fully consumes the pt edges
+                        return true;
                     }
-                    action.accept(new MultiModalEdge(edge));
+                }
+                if (streetOnly && edgeType != (reverse ? GtfsStorage.EdgeType.EXIT_PT : GtfsStorage.EdgeType.ENTER_PT)) {
+                    continue;
+                }
+                if (!(ignoreValidities || isValidOn(edgeType, realtimeEdge != null ? realtimeEdge.getAttrs().validity : ptGraph.getValidity(ptEdge), currentTime))) {
+                    continue;
+                }
+                if (edgeType == GtfsStorage.EdgeType.WAIT_ARRIVAL && !reverse) {
+                    continue;
+                }
+                if (edgeType == GtfsStorage.EdgeType.ENTER_PT && reverse && ptOnly) {
+                    continue;
+                }
+                if (edgeType == GtfsStorage.EdgeType.EXIT_PT && !reverse && ptOnly) {
+                    continue;
+                }
+                if ((edgeType == GtfsStorage.EdgeType.ENTER_PT || edgeType == GtfsStorage.EdgeType.EXIT_PT || edgeType == GtfsStorage.EdgeType.TRANSFER) && (blockedRouteTypes & (1 << getRouteTypeOrMinusOne())) != 0) {
+                    continue;
+                }
+                return true;
+            }
+            if (state == WALK) {
+                if (nextWalk()) {
+                    onWalk = true;
                     return true;
                 }
-                return false;
+                state = END;
             }
-
-            private PtGraph.PtEdge findEnterEdge(PtGraph.PtEdge first) {
-                long firstTT = calcTravelTimeMillis(first, currentTime);
-                while (edgeIterator.hasNext()) {
-                    PtGraph.PtEdge result = edgeIterator.next();
-                    long nextTT = calcTravelTimeMillis(result, currentTime);
-                    if (nextTT < firstTT) {
-                        edgeIterator.forEachRemaining(ptEdge -> {
-                        });
-                        return result;
+            if (state == STREET) {
+                while (streetEdges.next()) {
+                    if (Double.isFinite(accessEgressWeighting.calcEdgeWeight(streetEdges, reverse))) {
+                        onStreet = true;
+                        onWalk = false;
+                        streetTime = (long) (accessEgressWeighting.calcEdgeMillis(streetEdges, reverse) * (5.0 / walkSpeedKmH));
+                        return true;
                     }
                 }
-                return first;
+                state = END;
             }
+            return false;
+        }
 
-        });
-    }
+        private boolean nextPtEdge() {
+            if (state == PT) {
+                if (nextPtEdge >= 0) {
+                    ptEdge = nextPtEdge;
+                    realtimeEdge = null;
+                    long edgePointer = ptGraph.toEdgePointer(ptEdge);
+                    nextPtEdge = reverse ? ptGraph.getLinkB(edgePointer) : ptGraph.getLinkA(edgePointer);
+                    return true;
+                }
+                state = REALTIME;
+            }
+            if (nextRealtimeEdge < realtimeEdges.size()) {
+                realtimeEdge = realtimeEdges.get(nextRealtimeEdge++);
+                return true;
+            }
+            return false;
+        }
 
-    private Iterable<MultiModalEdge> streetEdgeStream(int streetNode) {
-        return () -> Spliterators.iterator(new Spliterators.AbstractSpliterator<MultiModalEdge>(0, 0) {
-            final EdgeIterator e = edgeExplorer.setBaseNode(streetNode);
+        private void findEnterEdge() {
+            long firstTT = calcPtTravelTime(currentTime);
+            int firstPtEdge = ptEdge;
+            PtGraph.PtEdge firstRealtimeEdge = realtimeEdge;
+            while (nextPtEdge()) {
+                if (calcPtTravelTime(currentTime) < firstTT) {
+                    // skip the rest
+                    nextPtEdge = -1;
+                    nextRealtimeEdge = realtimeEdges.size();
+                    state = REALTIME;
+                    return;
+                }
+            }
+            ptEdge = firstPtEdge;
+            realtimeEdge = firstRealtimeEdge;
+        }
 
-            @Override
-            public boolean tryAdvance(Consumer<? super MultiModalEdge> action) {
-                while (e.next()) {
-                    if (Double.isFinite(accessEgressWeighting.calcEdgeWeight(e, reverse))) {
-                        action.accept(new MultiModalEdge(e.getEdge(), e.getBaseNode(), e.getAdjNode(), (long) (accessEgressWeighting.calcEdgeMillis(e.detach(false), reverse) * (5.0 / walkSpeedKmH)), e.getDistance()));
-                        return true;
-                    }
+        private void leavePtEdges() {
+            if (stationWalks == null || ptNode == -1 || arrivedBy == null) {
+                startStreetEdges();
+            } else if (arrivedBy == (reverse ? GtfsStorage.EdgeType.ENTER_PT : GtfsStorage.EdgeType.EXIT_PT)) {
+                // we have left a vehicle at this station
+                nextWalk = stationWalks.getFirstWalk(ptNode);
+                endOfWalks = stationWalks.getEndOfWalks(ptNode);
+                state = WALK;
+            } else if (arrivedBy == GtfsStorage.EdgeType.WALK) {
+                // the walk to this station was the whole way from the last one
+                state = END;
+            } else {
+                startStreetEdges();
+            }
+        }
+
+        /**
+         * Moves to the next walk from the station, the one to the target coming after those to the other stations.
+         */
+        private boolean nextWalk() {
+            if (nextWalk < endOfWalks) {
+                walkAdjPtNode = stationWalks.getStation(nextWalk);
+                walkAdjStreetNode = gtfsStorage.getPtToStreet().getOrDefault(walkAdjPtNode, -1);
+                streetTime = (long) (stationWalks.getMillis(nextWalk++) * (5.0 / walkSpeedKmH));
+                return true;
+            }
+            if (nextWalk == endOfWalks) {
+                nextWalk++;
+                long millis = walksToTarget.getOrDefault(ptNode, -1);
+                if (millis >= 0 && ptNode != target.ptNode) {
+                    walkAdjPtNode = target.ptNode;
+                    walkAdjStreetNode = target.streetNode;
+                    streetTime = (long) (millis * (5.0 / walkSpeedKmH));
+                    return true;
                 }
-                return false;
             }
-        });
+            return false;
+        }
+
+        private void startStreetEdges() {
+            if (streetNode != -1) {
+                streetEdges = edgeExplorer.setBaseNode(streetNode);
+                state = STREET;
+            } else {
+                state = END;
+            }
+        }
+
+        GtfsStorage.EdgeType getType() {
+            if (onWalk)
+                return GtfsStorage.EdgeType.WALK;
+            if (onStreet)
+                return GtfsStorage.EdgeType.HIGHWAY;
+            return realtimeEdge != null ? realtimeEdge.getType() : ptGraph.getType(ptEdge);
+        }
+
+        int getId() {
+            if (onWalk)
+                return -1;
+            if (onStreet)
+                return streetEdges.getEdge();
+            return realtimeEdge != null ? realtimeEdge.getId() : ptEdge;
+        }
+
+        int getTransfers() {
+            if (onStreet || onWalk)
+                return 0;
+            return realtimeEdge != null ? realtimeEdge.getAttrs().transfers : ptGraph.getTransfers(ptEdge);
+        }
+
+        int getRouteType() {
+            GtfsStorage.EdgeType edgeType = getType();
+            if ((edgeType == GtfsStorage.EdgeType.ENTER_PT || edgeType == GtfsStorage.EdgeType.EXIT_PT || edgeType == GtfsStorage.EdgeType.TRANSFER)) {
+                return getRouteTypeOrMinusOne();
+            }
+            throw new RuntimeException("Edge type " + edgeType + " doesn't encode route type.");
+        }
+
+        private int getRouteTypeOrMinusOne() {
+            return realtimeEdge != null ? realtimeEdge.getAttrs().route_type : ptGraph.getRouteType(ptEdge);
+        }
+
+        int getAdjStreetNode() {
+            if (onWalk)
+                return walkAdjStreetNode;
+            if (onStreet)
+                return streetEdges.getAdjNode();
+            return gtfsStorage.getPtToStreet().getOrDefault(getAdjPtNodeOfPtEdge(), -1);
+        }
+
+        int getAdjPtNode() {
+            if (onWalk)
+                return walkAdjPtNode;
+            if (onStreet)
+                return gtfsStorage.getStreetToPt().getOrDefault(streetEdges.getAdjNode(), -1);
+            return getAdjPtNodeOfPtEdge();
+        }
+
+        private int getAdjPtNodeOfPtEdge() {
+            if (realtimeEdge != null)
+                return realtimeEdge.getAdjNode();
+            long edgePointer = ptGraph.toEdgePointer(ptEdge);
+            return reverse ? ptGraph.getNodeA(edgePointer) : ptGraph.getNodeB(edgePointer);
+        }
+
+        double getDistance() {
+            return onStreet ? streetEdges.getDistance() : 0;
+        }
+
+        long calcTravelTimeMillis(long earliestStartTime) {
+            if (onStreet || onWalk)
+                return streetTime;
+            GtfsStorage.EdgeType edgeType = getType();
+            if (edgeType == GtfsStorage.EdgeType.ENTER_TIME_EXPANDED_NETWORK || edgeType == GtfsStorage.EdgeType.LEAVE_TIME_EXPANDED_NETWORK)
+                return calcPtTravelTime(earliestStartTime);
+            return getPtTime() * 1000L;
+        }
+
+        // like calcTravelTimeMillis(PtGraph.PtEdge, long), i.e. in seconds for the edges outside the time expanded network
+        private long calcPtTravelTime(long earliestStartTime) {
+            GtfsStorage.EdgeType edgeType = getType();
+            if (edgeType == GtfsStorage.EdgeType.ENTER_TIME_EXPANDED_NETWORK || edgeType == GtfsStorage.EdgeType.LEAVE_TIME_EXPANDED_NETWORK) {
+                ZoneId zoneId = realtimeEdge != null ? realtimeEdge.getAttrs().feedIdWithTimezone.zoneId : ptGraph.getFeedIdWithTimezone(ptEdge).zoneId;
+                return GraphExplorer.this.calcTravelTimeMillis(edgeType, getPtTime(), zoneId, earliestStartTime);
+            }
+            return getPtTime();
+        }
+
+        private int getPtTime() {
+            return realtimeEdge != null ? realtimeEdge.getTime() : ptGraph.getTime(ptEdge);
+        }
+
+        boolean isBlocked() {
+            return !onWalk && realtimeFeed.isBlocked(getId());
+        }
+
+        long getDelayFromBoardEdge(long currentTime) {
+            return realtimeFeed.getDelayForBoardEdge(getId(), currentTime);
+        }
+
+        long getDelayFromAlightEdge(long currentTime) {
+            return realtimeFeed.getDelayForAlightEdge(getId(), currentTime);
+        }
+
+        MultiModalEdge detach() {
+            if (onWalk)
+                return new MultiModalEdge(GtfsStorage.EdgeType.WALK, -1, streetNode, walkAdjStreetNode, streetTime, 0);
+            if (onStreet)
+                return new MultiModalEdge(streetEdges.getEdge(), streetEdges.getBaseNode(), streetEdges.getAdjNode(), streetTime, streetEdges.getDistance());
+            return createEdge(getType(), getId(), -1, -1, 0, 0);
+        }
     }
 
     long calcTravelTimeMillis(MultiModalEdge edge, long earliestStartTime) {
@@ -192,24 +437,23 @@ public final class GraphExplorer {
     long calcTravelTimeMillis(PtGraph.PtEdge edge, long earliestStartTime) {
         switch (edge.getType()) {
             case ENTER_TIME_EXPANDED_NETWORK:
-                if (reverse) {
-                    return 0;
-                } else {
-                    return waitingTime(edge, earliestStartTime);
-                }
             case LEAVE_TIME_EXPANDED_NETWORK:
-                if (reverse) {
-                    return -waitingTime(edge, earliestStartTime);
-                } else {
-                    return 0;
-                }
+                return calcTravelTimeMillis(edge.getType(), edge.getTime(), edge.getAttrs().feedIdWithTimezone.zoneId, earliestStartTime);
             default:
                 return edge.getTime();
         }
     }
 
+    private long calcTravelTimeMillis(GtfsStorage.EdgeType edgeType, int time, ZoneId zoneId, long earliestStartTime) {
+        if (edgeType == GtfsStorage.EdgeType.ENTER_TIME_EXPANDED_NETWORK) {
+            return reverse ? 0 : waitingTime(time, zoneId, earliestStartTime);
+        } else {
+            return reverse ? -waitingTime(time, zoneId, earliestStartTime) : 0;
+        }
+    }
+
     public boolean isBlocked(MultiModalEdge edge) {
-        return realtimeFeed.isBlocked(edge.getId());
+        return edge.getType() != GtfsStorage.EdgeType.WALK && realtimeFeed.isBlocked(edge.getId());
     }
 
     long getDelayFromBoardEdge(MultiModalEdge edge, long currentTime) {
@@ -221,7 +465,11 @@ public final class GraphExplorer {
     }
 
     private long waitingTime(PtGraph.PtEdge edge, long earliestStartTime) {
-        long l = edge.getTime() * 1000L - millisOnTravelDay(edge, earliestStartTime);
+        return waitingTime(edge.getTime(), edge.getAttrs().feedIdWithTimezone.zoneId, earliestStartTime);
+    }
+
+    private long waitingTime(int time, ZoneId zoneId, long earliestStartTime) {
+        long l = time * 1000L - millisOnTravelDay(zoneId, earliestStartTime);
         if (!reverse) {
             if (l < 0) l = l + 24 * 60 * 60 * 1000;
         } else {
@@ -230,15 +478,18 @@ public final class GraphExplorer {
         return l;
     }
 
-    private long millisOnTravelDay(PtGraph.PtEdge edge, long instant) {
-        final ZoneId zoneId = edge.getAttrs().feedIdWithTimezone.zoneId;
-        return Instant.ofEpochMilli(instant).atZone(zoneId).toLocalTime().toNanoOfDay() / 1000000L;
+    private long millisOnTravelDay(ZoneId zoneId, long instant) {
+        return Math.floorMod(localMillis(zoneId, instant), MILLIS_PER_DAY);
     }
 
-    private boolean isValidOn(PtGraph.PtEdge edge, long instant) {
-        if (edge.getType() == GtfsStorage.EdgeType.BOARD || edge.getType() == GtfsStorage.EdgeType.ALIGHT) {
-            final GtfsStorage.Validity validity = edge.getAttrs().validity;
-            final int trafficDay = (int) ChronoUnit.DAYS.between(validity.start, Instant.ofEpochMilli(instant).atZone(validity.zoneId).toLocalDate());
+    // the same as going through ZonedDateTime, but this is called for almost every edge we look at
+    private static long localMillis(ZoneId zoneId, long instant) {
+        return instant + zoneId.getRules().getOffset(Instant.ofEpochMilli(instant)).getTotalSeconds() * 1000L;
+    }
+
+    private boolean isValidOn(GtfsStorage.EdgeType edgeType, GtfsStorage.Validity validity, long instant) {
+        if (edgeType == GtfsStorage.EdgeType.BOARD || edgeType == GtfsStorage.EdgeType.ALIGHT) {
+            final int trafficDay = (int) (Math.floorDiv(localMillis(validity.zoneId, instant), MILLIS_PER_DAY) - validity.start.toEpochDay());
             return trafficDay >= 0 && validity.validity.get(trafficDay);
         } else {
             return true;
@@ -263,12 +514,21 @@ public final class GraphExplorer {
         private double distance;
         private int edge;
         private PtGraph.PtEdge ptEdge;
+        private GtfsStorage.EdgeType type;
 
         public MultiModalEdge(PtGraph.PtEdge ptEdge) {
             this.ptEdge = ptEdge;
         }
 
         public MultiModalEdge(int edge, int baseNode, int adjNode, long time, double distance) {
+            this(GtfsStorage.EdgeType.HIGHWAY, edge, baseNode, adjNode, time, distance);
+        }
+
+        /**
+         * @param type HIGHWAY for a street edge, or WALK for a precomputed walk between two street nodes
+         */
+        MultiModalEdge(GtfsStorage.EdgeType type, int edge, int baseNode, int adjNode, long time, double distance) {
+            this.type = type;
             this.edge = edge;
             this.baseNode = baseNode;
             this.adjNode = adjNode;
@@ -277,7 +537,7 @@ public final class GraphExplorer {
         }
 
         public GtfsStorage.EdgeType getType() {
-            return ptEdge != null ? ptEdge.getType() : GtfsStorage.EdgeType.HIGHWAY;
+            return ptEdge != null ? ptEdge.getType() : type;
         }
 
         public int getTransfers() {
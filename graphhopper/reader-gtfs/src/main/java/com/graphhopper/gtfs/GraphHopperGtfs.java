@@ -29,6 +29,7 @@ import com.graphhopper.storage.index.InMemConstructionIndex;
 import com.graphhopper.storage.index.IndexStructureInfo;
 import com.graphhopper.storage.index.LineIntIndex;
 import com.graphhopper.util.EdgeIteratorState;
+import com.graphhopper.util.GHUtility;
 import com.graphhopper.util.PMap;
 import com.graphhopper.util.shapes.BBox;
 import org.slf4j.Logger;
@@ -38,18 +39,24 @@ import java.io.File;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 public class GraphHopperGtfs extends GraphHopper {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(GraphHopperGtfs.class);
 
+    private static final int TRANSFER_BATCH_SIZE = 10_000;
+
     private final GraphHopperConfig ghConfig;
+    private final int importThreads;
     private GtfsStorage gtfsStorage;
     private PtGraph ptGraph;
 
     public GraphHopperGtfs(GraphHopperConfig ghConfig) {
         this.ghConfig = ghConfig;
+        this.importThreads = ghConfig.getInt("gtfs.import_threads", 1);
     }
 
     @Override
@@ -66,9 +73,12 @@ public class GraphHopperGtfs extends GraphHopper {
         ptGraph = new PtGraph(getBaseGraph().getDirectory(), 100);
         gtfsStorage = new GtfsStorage(getBaseGraph().getDirectory());
         LineIntIndex stopIndex = new LineIntIndex(new BBox(-180.0, 180.0, -90.0, 90.0), getBaseGraph().getDirectory(), "stop_index");
+        StationWalks stationWalks = new StationWalks(getBaseGraph().getDirectory());
         if (getGtfsStorage().loadExisting()) {
             ptGraph.loadExisting();
             stopIndex.loadExisting();
+            if (stationWalks.loadExisting())
+                gtfsStorage.setStationWalks(stationWalks);
         } else {
             ensureWriteAccess();
             getGtfsStorage().create();
@@ -78,15 +88,20 @@ public class GraphHopperGtfs extends GraphHopper {
             try {
                 int idx = 0;
                 List<String> gtfsFiles = ghConfig.has("gtfs.file") ? Arrays.asList(ghConfig.getString("gtfs.file", "").split(",")) : Collections.emptyList();
+                Map<String, File> zipFilesOrDirectories = new LinkedHashMap<>();
                 for (String gtfsFile : gtfsFiles) {
-                    getGtfsStorage().loadGtfsFromZipFileOrDirectory("gtfs_" + idx++, new File(gtfsFile));
+                    zipFilesOrDirectories.put("gtfs_" + idx++, new File(gtfsFile));
                 }
+                getGtfsStorage().loadGtfsFromZipFilesOrDirectories(zipFilesOrDirectories, importThreads);
                 getGtfsStorage().postInit();
-                Map<String, Transfers> allTransfers = new HashMap<>();
+                Map<String, Transfers> allTransfers = new ConcurrentHashMap<>();
+                GHUtility.runConcurrently(getGtfsStorage().getGtfsFeeds().entrySet().stream().map(e -> () ->
+                        allTransfers.put(e.getKey(), new Transfers(e.getValue()))), importThreads);
                 HashMap<String, GtfsReader> allReaders = new HashMap<>();
+                // The feeds write to the same PtGraph, so they are added one after the other, to get the same node
+                // and edge ids no matter how many threads we use. The work within a feed is done in parallel.
                 getGtfsStorage().getGtfsFeeds().forEach((id, gtfsFeed) -> {
-                    Transfers transfers = new Transfers(gtfsFeed);
-                    allTransfers.put(id, transfers);
+                    Transfers transfers = allTransfers.get(id);
                     GtfsReader gtfsReader = new GtfsReader(id, ptGraph, ptGraph, getGtfsStorage(), getLocationIndex(), transfers, indexBuilder);
                     // Stops must be connected to the networks of all the modes
                     List<DefaultSnapFilter> snapFilters = getProfiles().stream().map(p ->
@@ -97,9 +112,9 @@ public class GraphHopperGtfs extends GraphHopper {
                                 return false;
                         }
                         return true;
-                    });
+                    }, importThreads);
                     LOGGER.info("Building transit graph for feed {}", gtfsFeed.feedId);
-                    gtfsReader.buildPtNetwork();
+                    gtfsReader.buildPtNetwork(importThreads);
                     allReaders.put(id, gtfsReader);
                 });
                 interpolateTransfers(allReaders, allTransfers);
@@ -110,6 +125,16 @@ public class GraphHopperGtfs extends GraphHopper {
             getGtfsStorage().flush();
             stopIndex.store(indexBuilder);
             stopIndex.flush();
+            final int maxStationWalkTimeSeconds = ghConfig.getInt("gtfs.max_station_walk_time_seconds", 0);
+            if (maxStationWalkTimeSeconds > 0) {
+                LOGGER.info("Computing the walks between stations");
+                stationWalks.create(100);
+                stationWalks.build(getBaseGraph(), createWeighting(getProfile("foot"), new PMap()), gtfsStorage,
+                        Duration.ofSeconds(maxStationWalkTimeSeconds).toMillis(), importThreads);
+                stationWalks.flush();
+                LOGGER.info("Found {} walks between stations", stationWalks.getWalkCount());
+                gtfsStorage.setStationWalks(stationWalks);
+            }
         }
         gtfsStorage.setStopIndex(stopIndex);
         gtfsStorage.setPtGraph(ptGraph);
@@ -120,35 +145,47 @@ public class GraphHopperGtfs extends GraphHopper {
         final int maxTransferWalkTimeSeconds = ghConfig.getInt("gtfs.max_transfer_interpolation_walk_time_seconds", 120);
         QueryGraph queryGraph = QueryGraph.create(getBaseGraph(), Collections.emptyList());
         Weighting transferWeighting = createWeighting(getProfile("foot"), new PMap());
-        final GraphExplorer graphExplorer = new GraphExplorer(queryGraph, ptGraph, transferWeighting, getGtfsStorage(), RealtimeFeed.empty(), true, true, false, 5.0, false, 0);
-        getGtfsStorage().getStationNodes().values().stream().distinct().map(n -> new Label.NodeId(gtfsStorage.getPtToStreet().getOrDefault(n, -1), n)).forEach(stationNode -> {
-            MultiCriteriaLabelSetting router = new MultiCriteriaLabelSetting(graphExplorer, true, false, false, 0, new ArrayList<>());
-            router.setLimitStreetTime(Duration.ofSeconds(maxTransferWalkTimeSeconds).toMillis());
-            for (Label label : router.calcLabels(stationNode, Instant.ofEpochMilli(0))) {
-                if (label.parent != null) {
-                    if (label.edge.getType() == GtfsStorage.EdgeType.EXIT_PT) {
-                        GtfsStorage.PlatformDescriptor fromPlatformDescriptor = label.edge.getPlatformDescriptor();
-                        Transfers transfers = allTransfers.get(fromPlatformDescriptor.feed_id);
-                        for (PtGraph.PtEdge ptEdge : ptGraph.edgesAround(stationNode.ptNode)) {
-                            if (ptEdge.getType() == GtfsStorage.EdgeType.ENTER_PT) {
-                                GtfsStorage.PlatformDescriptor toPlatformDescriptor = ptEdge.getAttrs().platformDescriptor;
-                                LOGGER.debug(fromPlatformDescriptor + " -> " + toPlatformDescriptor);
-                                if (!toPlatformDescriptor.feed_id.equals(fromPlatformDescriptor.feed_id)) {
-                                    LOGGER.debug(" Different feed. Inserting transfer with " + (int) (label.streetTime / 1000L) + " s.");
+        List<Label.NodeId> stationNodes = getGtfsStorage().getStationNodes().values().stream().distinct().map(n -> new Label.NodeId(gtfsStorage.getPtToStreet().getOrDefault(n, -1), n)).collect(Collectors.toList());
+        // The walks from the stations only read the graph, so we do them in parallel, but insert the transfers they
+        // find in the order of the stations. Only a batch of them is kept in memory at a time.
+        for (int batchStart = 0; batchStart < stationNodes.size(); batchStart += TRANSFER_BATCH_SIZE) {
+            List<Label.NodeId> batch = stationNodes.subList(batchStart, Math.min(batchStart + TRANSFER_BATCH_SIZE, stationNodes.size()));
+            List<List<Label>> exitLabelsByStation = new ArrayList<>(Collections.nCopies(batch.size(), null));
+            GHUtility.runConcurrently(IntStream.range(0, batch.size()).mapToObj(i -> () -> {
+                final GraphExplorer graphExplorer = new GraphExplorer(queryGraph, ptGraph, transferWeighting, getGtfsStorage(), RealtimeFeed.empty(), true, true, false, 5.0, false, 0);
+                MultiCriteriaLabelSetting router = new MultiCriteriaLabelSetting(graphExplorer, true, false, false, 0, new ArrayList<>());
+                router.setLimitStreetTime(Duration.ofSeconds(maxTransferWalkTimeSeconds).toMillis());
+                List<Label> exitLabels = new ArrayList<>();
+                for (Label label : router.calcLabels(batch.get(i), Instant.ofEpochMilli(0))) {
+                    if (label.parent != null && label.edge.getType() == GtfsStorage.EdgeType.EXIT_PT)
+                        exitLabels.add(label);
+                }
+                exitLabelsByStation.set(i, exitLabels);
+            }), importThreads);
+            for (int i = 0; i < batch.size(); i++) {
+                Label.NodeId stationNode = batch.get(i);
+                for (Label label : exitLabelsByStation.get(i)) {
+                    GtfsStorage.PlatformDescriptor fromPlatformDescriptor = label.edge.getPlatformDescriptor();
+                    Transfers transfers = allTransfers.get(fromPlatformDescriptor.feed_id);
+                    for (PtGraph.PtEdge ptEdge : ptGraph.edgesAround(stationNode.ptNode)) {
+                        if (ptEdge.getType() == GtfsStorage.EdgeType.ENTER_PT) {
+                            GtfsStorage.PlatformDescriptor toPlatformDescriptor = ptEdge.getAttrs().platformDescriptor;
+                            LOGGER.debug(fromPlatformDescriptor + " -> " + toPlatformDescriptor);
+                            if (!toPlatformDescriptor.feed_id.equals(fromPlatformDescriptor.feed_id)) {
+                                LOGGER.debug(" Different feed. Inserting transfer with " + (int) (label.streetTime / 1000L) + " s.");
+                                insertInterpolatedTransfer(label, toPlatformDescriptor, readers);
+                            } else {
+                                List<Transfer> transfersToStop = transfers.getTransfersToStop(toPlatformDescriptor.stop_id, routeIdOrNull(toPlatformDescriptor));
+                                if (transfersToStop.stream().noneMatch(t -> t.from_stop_id.equals(fromPlatformDescriptor.stop_id))) {
+                                    LOGGER.debug("  Inserting transfer with " + (int) (label.streetTime / 1000L) + " s.");
                                     insertInterpolatedTransfer(label, toPlatformDescriptor, readers);
-                                } else {
-                                    List<Transfer> transfersToStop = transfers.getTransfersToStop(toPlatformDescriptor.stop_id, routeIdOrNull(toPlatformDescriptor));
-                                    if (transfersToStop.stream().noneMatch(t -> t.from_stop_id.equals(fromPlatformDescriptor.stop_id))) {
-                                        LOGGER.debug("  Inserting transfer with " + (int) (label.streetTime / 1000L) + " s.");
-                                        insertInterpolatedTransfer(label, toPlatformDescriptor, readers);
-                                    }
                                 }
                             }
                         }
                     }
                 }
             }
-        });
+        }
     }
 
     private void insertInterpolatedTransfer(Label label, GtfsStorage.PlatformDescriptor toPlatformDescriptor, HashMap<String, GtfsReader> readers) {
@@ -189,6 +226,8 @@ public class GraphHopperGtfs extends GraphHopper {
 
     @Override
     public void close() {
+        if (getGtfsStorage().getStationWalks() != null)
+            getGtfsStorage().getStationWalks().close();
         getGtfsStorage().close();
         super.close();
     }
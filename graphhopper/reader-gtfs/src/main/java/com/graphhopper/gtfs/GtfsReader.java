@@ -26,6 +26,7 @@ import com.graphhopper.routing.util.EdgeFilter;
 import com.graphhopper.storage.index.InMemConstructionIndex;
 import com.graphhopper.storage.index.LocationIndex;
 import com.graphhopper.storage.index.Snap;
+import com.graphhopper.util.GHUtility;
 import org.mapdb.Fun;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -34,6 +35,7 @@ import java.time.LocalDate;
 import java.time.ZoneId;
 import java.util.*;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import static com.conveyal.gtfs.model.Entity.Writer.convertToGtfsTime;
 import static java.time.temporal.ChronoUnit.DAYS;
@@ -93,35 +95,41 @@ class GtfsReader {
         this.indexBuilder = indexBuilder;
     }
 
-    void connectStopsToStreetNetwork(EdgeFilter filter) {
-        for (Stop stop : feed.stops.values()) {
-            if (stop.location_type == 0) { // Only stops. Not interested in parent stations for now.
-                Snap locationSnap = streetNetworkIndex.findClosest(stop.stop_lat, stop.stop_lon, filter);
-                int stopNode;
-                if (locationSnap.isValid()) {
-                    stopNode = gtfsStorage.getStreetToPt().getOrDefault(locationSnap.getClosestNode(), -1);
-                    if (stopNode == -1) {
-                        stopNode = out.createNode();
-                        indexBuilder.addToAllTilesOnLine(stopNode, stop.stop_lat, stop.stop_lon, stop.stop_lat, stop.stop_lon);
-                        gtfsStorage.getPtToStreet().put(stopNode, locationSnap.getClosestNode());
-                        gtfsStorage.getStreetToPt().put(locationSnap.getClosestNode(), stopNode);
-                    }
-                } else {
+    void connectStopsToStreetNetwork(EdgeFilter filter, int threads) {
+        List<Stop> stops = feed.stops.values().stream()
+                .filter(stop -> stop.location_type == 0) // Only stops. Not interested in parent stations for now.
+                .collect(Collectors.toList());
+        // The snapping is independent for each stop, but the nodes are created in the order of the stops.
+        Snap[] snaps = new Snap[stops.size()];
+        GHUtility.runConcurrently(IntStream.range(0, stops.size()).mapToObj(i -> () ->
+                snaps[i] = streetNetworkIndex.findClosest(stops.get(i).stop_lat, stops.get(i).stop_lon, filter)), threads);
+        for (int i = 0; i < stops.size(); i++) {
+            Stop stop = stops.get(i);
+            Snap locationSnap = snaps[i];
+            int stopNode;
+            if (locationSnap.isValid()) {
+                stopNode = gtfsStorage.getStreetToPt().getOrDefault(locationSnap.getClosestNode(), -1);
+                if (stopNode == -1) {
                     stopNode = out.createNode();
                     indexBuilder.addToAllTilesOnLine(stopNode, stop.stop_lat, stop.stop_lon, stop.stop_lat, stop.stop_lon);
+                    gtfsStorage.getPtToStreet().put(stopNode, locationSnap.getClosestNode());
+                    gtfsStorage.getStreetToPt().put(locationSnap.getClosestNode(), stopNode);
                 }
-                gtfsStorage.getStationNodes().put(new GtfsStorage.FeedIdWithStopId(id, stop.stop_id), stopNode);
+            } else {
+                stopNode = out.createNode();
+                indexBuilder.addToAllTilesOnLine(stopNode, stop.stop_lat, stop.stop_lon, stop.stop_lat, stop.stop_lon);
             }
+            gtfsStorage.getStationNodes().put(new GtfsStorage.FeedIdWithStopId(id, stop.stop_id), stopNode);
         }
     }
 
-    void buildPtNetwork() {
-        createTrips();
+    void buildPtNetwork(int threads) {
+        createTrips(threads);
         wireUpStops();
         insertGtfsTransfers();
     }
 
-    private void createTrips() {
+    private void createTrips(int threads) {
         HashMultimap<String, Trip> blockTrips = HashMultimap.create();
         for (Trip trip : feed.trips.values()) {
             if (trip.block_id != null) {
@@ -130,22 +138,13 @@ class GtfsReader {
                 blockTrips.put("non-block-trip" + trip.trip_id, trip);
             }
         }
-        blockTrips.asMap().values().forEach(unsortedTrips -> {
-            List<TripWithStopTimes> trips = unsortedTrips.stream()
-                    .map(trip -> {
-                        Service service = feed.services.get(trip.service_id);
-                        BitSet validOnDay = new BitSet((int) DAYS.between(startDate, endDate));
-                        for (LocalDate date = startDate; !date.isAfter(endDate); date = date.plusDays(1)) {
-                            if (service.activeOn(date)) {
-                                validOnDay.set((int) DAYS.between(startDate, date));
-                            }
-                        }
-                        ArrayList<StopTime> stopTimes = new ArrayList<>();
-                        feed.getInterpolatedStopTimesForTrip(trip.trip_id).forEach(stopTimes::add);
-                        return new TripWithStopTimes(trip, stopTimes, validOnDay, Collections.emptySet(), Collections.emptySet());
-                    })
-                    .sorted(Comparator.comparingInt(trip -> trip.stopTimes.iterator().next().departure_time))
-                    .collect(Collectors.toList());
+        // Reading the stop times and calendars of the trips is most of the work, and it only reads the feed. So we
+        // do it in parallel, and add the trips to the graph in the same order as we would without threads.
+        List<Collection<Trip>> blocks = new ArrayList<>(blockTrips.asMap().values());
+        List<List<TripWithStopTimes>> tripsByBlock = new ArrayList<>(Collections.nCopies(blocks.size(), null));
+        GHUtility.runConcurrently(IntStream.range(0, blocks.size()).mapToObj(i -> () ->
+                tripsByBlock.set(i, readBlock(blocks.get(i)))), threads);
+        tripsByBlock.forEach(trips -> {
             if (trips.stream().map(trip -> feed.getFrequencies(trip.trip.trip_id)).distinct().count() != 1) {
                 throw new RuntimeException("Found a block with frequency-based trips. Not supported.");
             }
@@ -163,6 +162,24 @@ class GtfsReader {
         });
     }
 
+    private List<TripWithStopTimes> readBlock(Collection<Trip> unsortedTrips) {
+        return unsortedTrips.stream()
+                .map(trip -> {
+                    Service service = feed.services.get(trip.service_id);
+                    BitSet validOnDay = new BitSet((int) DAYS.between(startDate, endDate));
+                    for (LocalDate date = startDate; !date.isAfter(endDate); date = date.plusDays(1)) {
+                        if (service.activeOn(date)) {
+                            validOnDay.set((int) DAYS.between(startDate, date));
+                        }
+                    }
+                    ArrayList<StopTime> stopTimes = new ArrayList<>();
+                    feed.getInterpolatedStopTimesForTrip(trip.trip_id).forEach(stopTimes::add);
+                    return new TripWithStopTimes(trip, stopTimes, validOnDay, Collections.emptySet(), Collections.emptySet());
+                })
+                .sorted(Comparator.comparingInt(trip -> trip.stopTimes.iterator().next().departure_time))
+                .collect(Collectors.toList());
+    }
+
     private void wireUpStops() {
         arrivalTimelinesByStop.forEach((stopId, arrivalTimelines) -> {
             Stop stop = feed.stops.get(stopId);
@@ -235,6 +252,9 @@ class GtfsReader {
             arrivalTimelines.forEach(((platformDescriptor, timeline) ->
                     wireUpOrPatchArrivalTimeline(zoneId, stop, routeIdOrNull(platformDescriptor), timeline, platformDescriptor)));
         });
+        // the reader can be used for the next realtime trip update now
+        departureTimelinesByStop.clear();
+        arrivalTimelinesByStop.clear();
     }
 
     private void addTrips(ZoneId zoneId, List<TripWithStopTimes> trips, int time, boolean frequencyBased) {
@@ -397,7 +417,7 @@ class GtfsReader {
         StopTime stopTime = feed.stop_times.get(new Fun.Tuple2(tripDescriptor.getTripId(), stopSequence));
         Map<GtfsStorage.PlatformDescriptor, NavigableMap<Integer, Integer>> departureTimelineNodesByRoute = departureTimelinesByStop.computeIfAbsent(stopTime.stop_id, s -> new HashMap<>());
         NavigableMap<Integer, Integer> departureTimelineNodes = departureTimelineNodesByRoute.computeIfAbsent(GtfsStorage.PlatformDescriptor.route(id, stopTime.stop_id, trip.route_id), s -> new TreeMap<>());
-        int departureTimelineNode = departureTimelineNodes.computeIfAbsent(departureTime % (24 * 60 * 60), t -> ptGraph.createNode());
+        int departureTimelineNode = departureTimelineNodes.computeIfAbsent(departureTime % (24 * 60 * 60), t -> out.createNode());
 
         int dayShift = departureTime / (24 * 60 * 60);
         GtfsStorage.Validity validOn = new GtfsStorage.Validity(getValidOn(validOnDay, dayShift), zoneId, startDate);
@@ -440,7 +460,7 @@ class GtfsReader {
                 blockTransferValidity.or(validOn.validity);
                 blockTransferValidity.and(accumulatorValidity);
                 GtfsStorage.Validity blockTransferValidOn = new GtfsStorage.Validity(blockTransferValidity, zoneId, startDate);
-                int node = ptGraph.createNode();
+                int node = out.createNode();
                 out.createEdge(lastTrip.arrivalNode, node, new PtEdgeAttributes(GtfsStorage.EdgeType.TRANSFER, dwellTime, null, -1, null, 0, -1, null, platform));
                 out.createEdge(node, departureNode, new PtEdgeAttributes(GtfsStorage.EdgeType.BOARD, 0, blockTransferValidOn, -1, null, 0, stopTime.stop_sequence, tripDescriptor, null));
                 accumulatorValidity.andNot(lastTrip.tripWithStopTimes.validOnDay);
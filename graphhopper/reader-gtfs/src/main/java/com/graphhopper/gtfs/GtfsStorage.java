@@ -24,8 +24,10 @@ import com.carrotsearch.hppc.cursors.IntIntCursor;
 import com.carrotsearch.hppc.cursors.IntObjectCursor;
 import com.conveyal.gtfs.GTFSFeed;
 import com.conveyal.gtfs.model.Fare;
+import com.graphhopper.gtfs.fare.FareIndex;
 import com.graphhopper.storage.Directory;
 import com.graphhopper.storage.index.LineIntIndex;
+import com.graphhopper.util.GHUtility;
 import org.mapdb.DB;
 import org.mapdb.DBMaker;
 import org.slf4j.Logger;
@@ -37,12 +39,15 @@ import java.nio.file.Paths;
 import java.time.LocalDate;
 import java.time.ZoneId;
 import java.util.*;
+import java.util.stream.IntStream;
 
 public class GtfsStorage {
 
 	private static final Logger LOGGER = LoggerFactory.getLogger(GtfsStorage.class);
 	private LineIntIndex stopIndex;
 	private PtGraph ptGraph;
+	private RaptorTimetable raptorTimetable;
+	private StationWalks stationWalks;
 
 	public void setStopIndex(LineIntIndex stopIndex) {
 		this.stopIndex = stopIndex;
@@ -60,6 +65,26 @@ public class GtfsStorage {
         this.ptGraph = ptGraph;
     }
 
+	/**
+	 * @param stationWalks the walks between the stations, or null if they were not computed at import
+	 */
+	public void setStationWalks(StationWalks stationWalks) {
+		this.stationWalks = stationWalks;
+	}
+
+	public StationWalks getStationWalks() {
+		return stationWalks;
+	}
+
+    /**
+     * The timetable for {@link PtRouterRaptorImpl} is derived from the PtGraph when it is needed for the first time.
+     */
+    synchronized RaptorTimetable getRaptorTimetable() {
+        if (raptorTimetable == null)
+            raptorTimetable = RaptorTimetable.build(this);
+        return raptorTimetable;
+    }
+
 	public IntObjectHashMap<int[]> getSkippedEdgesForTransfer() {
 		return skippedEdgesForTransfer;
 	}
@@ -148,6 +173,7 @@ public class GtfsStorage {
 	private Set<String> gtfsFeedIds;
 	private Map<String, GTFSFeed> gtfsFeeds = new HashMap<>();
 	private Map<String, Map<String, Fare>> faresByFeed;
+	private FareIndex fareIndex;
 	private Map<FeedIdWithStopId, Integer> stationNodes;
 	private IntObjectHashMap<int[]> skippedEdgesForTransfer;
 
@@ -155,7 +181,7 @@ public class GtfsStorage {
 	private IntIntHashMap streetToPt;
 
 	public enum EdgeType {
-		HIGHWAY, ENTER_TIME_EXPANDED_NETWORK, LEAVE_TIME_EXPANDED_NETWORK, ENTER_PT, EXIT_PT, HOP, DWELL, BOARD, ALIGHT, OVERNIGHT, TRANSFER, WAIT, WAIT_ARRIVAL
+		HIGHWAY, ENTER_TIME_EXPANDED_NETWORK, LEAVE_TIME_EXPANDED_NETWORK, ENTER_PT, EXIT_PT, HOP, DWELL, BOARD, ALIGHT, OVERNIGHT, TRANSFER, WAIT, WAIT_ARRIVAL, WALK
     }
 
 	private DB data;
@@ -239,17 +265,28 @@ public class GtfsStorage {
 		this.skippedEdgesForTransfer = new IntObjectHashMap<>();
 	}
 
-	void loadGtfsFromZipFileOrDirectory(String id, File zipFileOrDirectory) {
-		File dbFile = new File(dir.getLocation() + "/" + id);
-		try {
-			Files.deleteIfExists(dbFile.toPath());
-			GTFSFeed feed = new GTFSFeed(dbFile);
-			feed.loadFromFileAndLogErrors(zipFileOrDirectory);
-			this.gtfsFeeds.put(id, feed);
-		} catch (IOException e) {
-			throw new RuntimeException(e);
+	/**
+	 * Every feed goes to a database of its own, so they can be read concurrently. They are added in the order of
+	 * the given map.
+	 */
+	void loadGtfsFromZipFilesOrDirectories(Map<String, File> zipFilesOrDirectories, int threads) {
+		List<String> ids = new ArrayList<>(zipFilesOrDirectories.keySet());
+		GTFSFeed[] feeds = new GTFSFeed[ids.size()];
+		GHUtility.runConcurrently(IntStream.range(0, ids.size()).mapToObj(i -> () -> {
+			File dbFile = new File(dir.getLocation() + "/" + ids.get(i));
+			try {
+				Files.deleteIfExists(dbFile.toPath());
+				GTFSFeed feed = new GTFSFeed(dbFile);
+				feed.loadFromFileAndLogErrors(zipFilesOrDirectories.get(ids.get(i)));
+				feeds[i] = feed;
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			}
+		}), threads);
+		for (int i = 0; i < ids.size(); i++) {
+			this.gtfsFeeds.put(ids.get(i), feeds[i]);
+			this.gtfsFeedIds.add(ids.get(i));
 		}
-		this.gtfsFeedIds.add(id);
 	}
 
 	// TODO: Refactor initialization
@@ -259,6 +296,7 @@ public class GtfsStorage {
 		LOGGER.info("Calendar range covered by all feeds: {} till {}", latestStartDate, earliestEndDate);
 		faresByFeed = new HashMap<>();
 		this.gtfsFeeds.forEach((feed_id, feed) -> faresByFeed.put(feed_id, feed.fares));
+		fareIndex = new FareIndex(faresByFeed);
 	}
 
 	public void close() {
@@ -275,6 +313,10 @@ public class GtfsStorage {
 		return faresByFeed;
 	}
 
+	public FareIndex getFareIndex() {
+		return fareIndex;
+	}
+
 	public IntIntHashMap getPtToStreet() {
 		return ptToStreet;
 	}
@@ -0,0 +1,186 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.graphhopper.gtfs;
+
+import com.carrotsearch.hppc.LongIntHashMap;
+
+import java.util.Arrays;
+
+/**
+ * The labels of a MultiCriteriaLabelSetting search, stored column by column in primitive arrays and addressed by
+ * their index. Most labels are dominated before they are settled, so {@link Label} objects are only created for
+ * the labels that are handed out to the caller.
+ * <p>
+ * The labels at a node are kept in a linked list through nextAtNode, so that the dominance checks don't need a
+ * list object per node. heapIndex is maintained by the priority queue of the search, -1 means not queued.
+ */
+final class LabelPool {
+
+    static final long NO_DEPARTURE_TIME = Long.MIN_VALUE;
+    static final byte NO_EDGE = -1;
+    private static final GtfsStorage.EdgeType[] edgeTypeValues = GtfsStorage.EdgeType.values();
+
+    private int size;
+
+    long[] currentTime;
+    long[] departureTime;
+    long[] streetTime;
+    long[] extraWeight;
+    long[] residualDelay;
+    int[] nTransfers;
+    boolean[] impossible;
+    int[] parent;
+    int[] streetNode;
+    int[] ptNode;
+    int[] edge;
+    byte[] edgeType;
+    double[] edgeDistance;
+
+    int[] heapIndex;
+    private int[] nextAtNode;
+    private Label[] labels;
+    private final LongIntHashMap firstAtNode = new LongIntHashMap();
+
+    LabelPool(int initialCapacity) {
+        allocate(Math.max(initialCapacity, 16));
+    }
+
+    int size() {
+        return size;
+    }
+
+    void clear() {
+        Arrays.fill(labels, 0, size, null);
+        firstAtNode.clear();
+        size = 0;
+    }
+
+    /**
+     * Appends a label that is not yet part of any node list.
+     *
+     * @param edge     the id of the edge the label was reached by, or -1
+     * @param edgeType the ordinal of the type of that edge, or NO_EDGE
+     */
+    int add(long currentTime, int edge, byte edgeType, double edgeDistance, int streetNode, int ptNode, int nTransfers,
+            long departureTime, long streetTime, long extraWeight, long residualDelay, boolean impossible, int parent) {
+        if (size == this.currentTime.length)
+            allocate(size + (size >> 1));
+        int label = size++;
+        this.currentTime[label] = currentTime;
+        this.edge[label] = edge;
+        this.edgeType[label] = edgeType;
+        this.edgeDistance[label] = edgeDistance;
+        this.streetNode[label] = streetNode;
+        this.ptNode[label] = ptNode;
+        this.nTransfers[label] = nTransfers;
+        this.departureTime[label] = departureTime;
+        this.streetTime[label] = streetTime;
+        this.extraWeight[label] = extraWeight;
+        this.residualDelay[label] = residualDelay;
+        this.impossible[label] = impossible;
+        this.parent[label] = parent;
+        this.heapIndex[label] = -1;
+        this.nextAtNode[label] = -1;
+        return label;
+    }
+
+    /**
+     * Drops the label that was added last. Used for candidates which turn out to be dominated.
+     */
+    void removeLast() {
+        size--;
+    }
+
+    /**
+     * Copies a label which is not part of this pool into it, so it can be compared with the pooled ones.
+     */
+    int add(Label label) {
+        return add(label.currentTime, -1, NO_EDGE, 0, label.node.streetNode, label.node.ptNode, label.nTransfers,
+                label.departureTime != null ? label.departureTime : NO_DEPARTURE_TIME, label.streetTime,
+                label.extraWeight, label.residualDelay, label.impossible, -1);
+    }
+
+    GtfsStorage.EdgeType getEdgeType(int label) {
+        return edgeType[label] == NO_EDGE ? null : edgeTypeValues[edgeType[label]];
+    }
+
+    int firstAtNode(int label) {
+        return firstAtNode.getOrDefault(nodeKey(label), -1);
+    }
+
+    int nextAtNode(int label) {
+        return nextAtNode[label];
+    }
+
+    void linkAtNode(int label) {
+        long key = nodeKey(label);
+        nextAtNode[label] = firstAtNode.getOrDefault(key, -1);
+        firstAtNode.put(key, label);
+    }
+
+    /**
+     * @param previous the label before the given one in the list of its node, or -1 if it is the first one
+     */
+    void unlinkAtNode(int label, int previous) {
+        if (previous < 0)
+            firstAtNode.put(nodeKey(label), nextAtNode[label]);
+        else
+            nextAtNode[previous] = nextAtNode[label];
+        nextAtNode[label] = -1;
+    }
+
+    Label getLabel(int label) {
+        return labels[label];
+    }
+
+    void setLabel(int label, Label object) {
+        labels[label] = object;
+    }
+
+    private long nodeKey(int label) {
+        return ((long) streetNode[label] << 32) | (ptNode[label] & 0xFFFFFFFFL);
+    }
+
+    private void allocate(int capacity) {
+        currentTime = grow(currentTime, capacity);
+        departureTime = grow(departureTime, capacity);
+        streetTime = grow(streetTime, capacity);
+        extraWeight = grow(extraWeight, capacity);
+        residualDelay = grow(residualDelay, capacity);
+        nTransfers = grow(nTransfers, capacity);
+        impossible = impossible == null ? new boolean[capacity] : Arrays.copyOf(impossible, capacity);
+        parent = grow(parent, capacity);
+        streetNode = grow(streetNode, capacity);
+        ptNode = grow(ptNode, capacity);
+        edge = grow(edge, capacity);
+        edgeType = edgeType == null ? new byte[capacity] : Arrays.copyOf(edgeType, capacity);
+        edgeDistance = edgeDistance == null ? new double[capacity] : Arrays.copyOf(edgeDistance, capacity);
+        heapIndex = grow(heapIndex, capacity);
+        nextAtNode = grow(nextAtNode, capacity);
+        labels = labels == null ? new Label[capacity] : Arrays.copyOf(labels, capacity);
+    }
+
+    private static long[] grow(long[] array, int capacity) {
+        return array == null ? new long[capacity] : Arrays.copyOf(array, capacity);
+    }
+
+    private static int[] grow(int[] array, int capacity) {
+        return array == null ? new int[capacity] : Arrays.copyOf(array, capacity);
+    }
+}
@@ -37,8 +37,8 @@ public class MultiCriteriaLabelSetting {
     private final Comparator<Label> queueComparator;
     private final List<Label> targetLabels;
     private long startTime;
-    private final Map<Label.NodeId, List<Label>> fromMap;
-    private final PriorityQueue<Label> fromHeap;
+    private final LabelPool pool;
+    private final LabelHeap fromHeap;
     private final long maxProfileDuration;
     private final boolean reverse;
     private final boolean mindTransfers;
@@ -49,6 +49,7 @@ public class MultiCriteriaLabelSetting {
     private double betaStreetTime = 1.0;
     private long limitTripTime = Long.MAX_VALUE;
     private long limitStreetTime = Long.MAX_VALUE;
+    private boolean rangeQuery = false;
 
     public MultiCriteriaLabelSetting(GraphExplorer explorer, boolean reverse, boolean mindTransfers, boolean profileQuery, long maxProfileDuration, List<Label> solutions) {
         this.explorer = explorer;
@@ -59,8 +60,8 @@ public class MultiCriteriaLabelSetting {
         this.targetLabels = solutions;
 
         queueComparator = new LabelComparator();
-        fromHeap = new PriorityQueue<>(queueComparator);
-        fromMap = new HashMap<>();
+        pool = new LabelPool(64);
+        fromHeap = new LabelHeap();
     }
 
     public Iterable<Label> calcLabels(Label.NodeId from, Instant startTime) {
@@ -68,6 +69,15 @@ public class MultiCriteriaLabelSetting {
         return () -> Spliterators.iterator(new MultiCriteriaLabelSettingSpliterator(from));
     }
 
+    /**
+     * In a range query, the labels we have only walked to are valid for every departure time of the profile, so
+     * they don't compete with the ones which depend on a vehicle. Otherwise, we could lose the places we can walk
+     * to for the later departures, when an earlier one gets there sooner.
+     */
+    void setRangeQuery(boolean rangeQuery) {
+        this.rangeQuery = rangeQuery;
+    }
+
     void setBetaTransfers(double betaTransfers) {
         this.betaTransfers = betaTransfers;
     }
@@ -82,94 +92,99 @@ public class MultiCriteriaLabelSetting {
 
     private class MultiCriteriaLabelSettingSpliterator extends Spliterators.AbstractSpliterator<Label> {
 
+        private final GraphExplorer.EdgeCursor edges = explorer.createEdgeCursor();
+
         MultiCriteriaLabelSettingSpliterator(Label.NodeId from) {
             super(0, 0);
-            Label label = new Label(startTime, null, from, 0, null, 0, 0L, 0, false, null);
-            ArrayList<Label> labels = new ArrayList<>(1);
-            labels.add(label);
-            fromMap.put(from, labels);
-            fromHeap.add(label);
+            pool.clear();
+            fromHeap.clear();
+            int label = pool.add(startTime, -1, LabelPool.NO_EDGE, 0, from.streetNode, from.ptNode, 0, LabelPool.NO_DEPARTURE_TIME, 0, 0L, 0, false, -1);
+            pool.setLabel(label, new Label(startTime, null, from, 0, null, 0, 0L, 0, false, null));
+            pool.linkAtNode(label);
+            fromHeap.push(label);
         }
 
         @Override
         public boolean tryAdvance(Consumer<? super Label> action) {
-            while (!fromHeap.isEmpty() && fromHeap.peek().deleted)
-                fromHeap.poll();
             if (fromHeap.isEmpty()) {
                 return false;
             } else {
-                Label label = fromHeap.poll();
-                action.accept(label);
-                for (GraphExplorer.MultiModalEdge edge : explorer.exploreEdgesAround(label)) {
+                int label = fromHeap.poll();
+                action.accept(toLabel(label));
+                long currentTime = pool.currentTime[label];
+                int labelNTransfers = pool.nTransfers[label];
+                long labelDepartureTime = pool.departureTime[label];
+                long labelStreetTime = pool.streetTime[label];
+                long labelExtraWeight = pool.extraWeight[label];
+                long labelResidualDelay = pool.residualDelay[label];
+                boolean labelImpossible = pool.impossible[label];
+                boolean result = pool.getEdgeType(label) == GtfsStorage.EdgeType.EXIT_PT;
+                edges.setBaseNode(pool.streetNode[label], pool.ptNode[label], currentTime, pool.getEdgeType(label));
+                while (edges.next()) {
+                    long travelTime = edges.calcTravelTimeMillis(currentTime);
                     long nextTime;
                     if (reverse) {
-                        nextTime = label.currentTime - explorer.calcTravelTimeMillis(edge, label.currentTime);
+                        nextTime = currentTime - travelTime;
                     } else {
-                        nextTime = label.currentTime + explorer.calcTravelTimeMillis(edge, label.currentTime);
+                        nextTime = currentTime + travelTime;
                     }
-                    int nTransfers = label.nTransfers + edge.getTransfers();
-                    long extraWeight = label.extraWeight;
-                    Long firstPtDepartureTime = label.departureTime;
-                    GtfsStorage.EdgeType edgeType = edge.getType();
+                    int nTransfers = labelNTransfers + edges.getTransfers();
+                    long extraWeight = labelExtraWeight;
+                    long firstPtDepartureTime = labelDepartureTime;
+                    GtfsStorage.EdgeType edgeType = edges.getType();
                     if (!reverse && (edgeType == GtfsStorage.EdgeType.ENTER_PT) || reverse && (edgeType == GtfsStorage.EdgeType.EXIT_PT)) {
-                        extraWeight += transferPenaltiesByRouteType.applyAsLong(edge.getRouteType());
+                        extraWeight += transferPenaltiesByRouteType.applyAsLong(edges.getRouteType());
                     }
                     if (edgeType == GtfsStorage.EdgeType.TRANSFER) {
-                        extraWeight += transferPenaltiesByRouteType.applyAsLong(edge.getRouteType());
+                        extraWeight += transferPenaltiesByRouteType.applyAsLong(edges.getRouteType());
                     }
                     if (!reverse && (edgeType == GtfsStorage.EdgeType.ENTER_TIME_EXPANDED_NETWORK || edgeType == GtfsStorage.EdgeType.WAIT)) {
-                        if (label.nTransfers == 0) {
-                            firstPtDepartureTime = nextTime - label.streetTime;
+                        if (labelNTransfers == 0) {
+                            firstPtDepartureTime = nextTime - labelStreetTime;
                         }
                     } else if (reverse && (edgeType == GtfsStorage.EdgeType.LEAVE_TIME_EXPANDED_NETWORK || edgeType == GtfsStorage.EdgeType.WAIT_ARRIVAL)) {
-                        if (label.nTransfers == 0) {
-                            firstPtDepartureTime = nextTime + label.streetTime;
+                        if (labelNTransfers == 0) {
+                            firstPtDepartureTime = nextTime + labelStreetTime;
                         }
                     }
-                    long walkTime = label.streetTime + (edgeType == GtfsStorage.EdgeType.HIGHWAY || edgeType == GtfsStorage.EdgeType.ENTER_PT || edgeType == GtfsStorage.EdgeType.EXIT_PT ? ((reverse ? -1 : 1) * (nextTime - label.currentTime)) : 0);
+                    long walkTime = labelStreetTime + (edgeType == GtfsStorage.EdgeType.HIGHWAY || edgeType == GtfsStorage.EdgeType.WALK || edgeType == GtfsStorage.EdgeType.ENTER_PT || edgeType == GtfsStorage.EdgeType.EXIT_PT ? ((reverse ? -1 : 1) * (nextTime - currentTime)) : 0);
                     if (walkTime > limitStreetTime)
                         continue;
                     if (Math.abs(nextTime - startTime) > limitTripTime)
                         continue;
-                    boolean result = false;
-                    if (label.edge != null) {
-                        result = label.edge.getType() == GtfsStorage.EdgeType.EXIT_PT;
-                    }
                     if (edgeType == GtfsStorage.EdgeType.ENTER_PT && result) {
                         continue;
                     }
-                    boolean impossible = label.impossible
-                            || explorer.isBlocked(edge)
-                            || (!reverse) && edgeType == GtfsStorage.EdgeType.BOARD && label.residualDelay > 0
-                            || reverse && edgeType == GtfsStorage.EdgeType.ALIGHT && label.residualDelay < explorer.getDelayFromAlightEdge(edge, label.currentTime);
+                    boolean impossible = labelImpossible
+                            || edges.isBlocked()
+                            || (!reverse) && edgeType == GtfsStorage.EdgeType.BOARD && labelResidualDelay > 0
+                            || reverse && edgeType == GtfsStorage.EdgeType.ALIGHT && labelResidualDelay < edges.getDelayFromAlightEdge(currentTime);
                     long residualDelay;
                     if (!reverse) {
                         if (edgeType == GtfsStorage.EdgeType.WAIT || edgeType == GtfsStorage.EdgeType.TRANSFER) {
-                            residualDelay = Math.max(0, label.residualDelay - explorer.calcTravelTimeMillis(edge, label.currentTime));
+                            residualDelay = Math.max(0, labelResidualDelay - travelTime);
                         } else if (edgeType == GtfsStorage.EdgeType.ALIGHT) {
-                            residualDelay = label.residualDelay + explorer.getDelayFromAlightEdge(edge, label.currentTime);
+                            residualDelay = labelResidualDelay + edges.getDelayFromAlightEdge(currentTime);
                         } else if (edgeType == GtfsStorage.EdgeType.BOARD) {
-                            residualDelay = -explorer.getDelayFromBoardEdge(edge, label.currentTime);
+                            residualDelay = -edges.getDelayFromBoardEdge(currentTime);
                         } else {
-                            residualDelay = label.residualDelay;
+                            residualDelay = labelResidualDelay;
                         }
                     } else {
                         if (edgeType == GtfsStorage.EdgeType.WAIT || edgeType == GtfsStorage.EdgeType.TRANSFER) {
-                            residualDelay = label.residualDelay + explorer.calcTravelTimeMillis(edge, label.currentTime);
+                            residualDelay = labelResidualDelay + travelTime;
                         } else {
                             residualDelay = 0;
                         }
                     }
                     if (!reverse && edgeType == GtfsStorage.EdgeType.LEAVE_TIME_EXPANDED_NETWORK && residualDelay > 0) {
-                        Label newImpossibleLabelForDelayedTrip = new Label(nextTime, edge, edge.getAdjNode(), nTransfers, firstPtDepartureTime, walkTime, extraWeight, residualDelay, true, label);
-                        insertIfNotDominated(newImpossibleLabelForDelayedTrip);
+                        // the impossible label for the delayed trip
+                        insertIfNotDominated(nextTime, edges, nTransfers, firstPtDepartureTime, walkTime, extraWeight, residualDelay, true, label);
                         nextTime += residualDelay;
                         residualDelay = 0;
-                        Label newLabel = new Label(nextTime, edge, edge.getAdjNode(), nTransfers, firstPtDepartureTime, walkTime, extraWeight, residualDelay, impossible, label);
-                        insertIfNotDominated(newLabel);
+                        insertIfNotDominated(nextTime, edges, nTransfers, firstPtDepartureTime, walkTime, extraWeight, residualDelay, impossible, label);
                     } else {
-                        Label newLabel = new Label(nextTime, edge, edge.getAdjNode(), nTransfers, firstPtDepartureTime, walkTime, extraWeight, residualDelay, impossible, label);
-                        insertIfNotDominated(newLabel);
+                        insertIfNotDominated(nextTime, edges, nTransfers, firstPtDepartureTime, walkTime, extraWeight, residualDelay, impossible, label);
                     }
                 }
                 return true;
@@ -177,24 +192,141 @@ public class MultiCriteriaLabelSetting {
         }
     }
 
+    /**
+     * Creates the Label object for a settled label. Its parent has been settled before, so it already has one.
+     */
+    private Label toLabel(int label) {
+        if (pool.getLabel(label) != null)
+            return pool.getLabel(label);
+        int parent = pool.parent[label];
+        GtfsStorage.EdgeType edgeType = pool.getEdgeType(label);
+        GraphExplorer.MultiModalEdge edge = explorer.createEdge(edgeType, pool.edge[label], pool.streetNode[parent], pool.streetNode[label],
+                Math.abs(pool.currentTime[label] - pool.currentTime[parent]), pool.edgeDistance[label]);
+        long departureTime = pool.departureTime[label];
+        Label result = new Label(pool.currentTime[label], edge, new Label.NodeId(pool.streetNode[label], pool.ptNode[label]), pool.nTransfers[label],
+                departureTime != LabelPool.NO_DEPARTURE_TIME ? departureTime : null, pool.streetTime[label], pool.extraWeight[label],
+                pool.residualDelay[label], pool.impossible[label], pool.getLabel(parent));
+        pool.setLabel(label, result);
+        return result;
+    }
 
-    void insertIfNotDominated(Label me) {
-        Predicate<Label> filter;
-        if (profileQuery && me.departureTime != null) {
-            filter = (targetLabel) -> (!reverse ? prc(me, targetLabel) : rprc(me, targetLabel));
+    private void insertIfNotDominated(long currentTime, GraphExplorer.EdgeCursor edge, int nTransfers, long departureTime, long streetTime,
+                                      long extraWeight, long residualDelay, boolean impossible, int parent) {
+        int me = pool.add(currentTime, edge.getId(), (byte) edge.getType().ordinal(), edge.getDistance(), edge.getAdjStreetNode(), edge.getAdjPtNode(),
+                nTransfers, departureTime, streetTime, extraWeight, residualDelay, impossible, parent);
+        if (isNotDominatedByTargetLabels(me) && isNotDominatedAtNode(me)) {
+            removeDominatedAtNode(me);
+            pool.linkAtNode(me);
+            fromHeap.push(me);
         } else {
-            filter = label -> true;
+            pool.removeLast();
+        }
+    }
+
+    private boolean isNotDominatedByTargetLabels(int me) {
+        for (Label targetLabel : targetLabels) {
+            int they = pool.add(targetLabel);
+            boolean dominated = filter(me, they) && dominates(they, me);
+            pool.removeLast();
+            if (dominated)
+                return false;
         }
-        if (isNotDominatedByAnyOf(me, targetLabels, filter)) {
-            List<Label> sptEntries = fromMap.computeIfAbsent(me.node, k -> new ArrayList<>(1));
-            if (isNotDominatedByAnyOf(me, sptEntries, filter)) {
-                removeDominated(me, sptEntries, filter);
-                sptEntries.add(me);
-                fromHeap.add(me);
+        return true;
+    }
+
+    private boolean isNotDominatedAtNode(int me) {
+        for (int they = pool.firstAtNode(me); they >= 0; they = pool.nextAtNode(they)) {
+            if (filter(me, they) && dominates(they, me))
+                return false;
+        }
+        return true;
+    }
+
+    private void removeDominatedAtNode(int me) {
+        int previous = -1;
+        for (int they = pool.firstAtNode(me); they >= 0; ) {
+            int next = pool.nextAtNode(they);
+            if (filter(me, they) && dominates(me, they)) {
+                pool.unlinkAtNode(they, previous);
+                fromHeap.remove(they);
+                Label label = pool.getLabel(they);
+                if (label != null)
+                    label.deleted = true;
+            } else {
+                previous = they;
             }
+            they = next;
         }
     }
 
+    /**
+     * The same as prc and rprc, for pooled labels: In a profile query, a label only competes with the ones which
+     * depart later (earlier when reverse), or after the end of the profile.
+     */
+    private boolean filter(int me, int they) {
+        long myDepartureTime = pool.departureTime[me];
+        if (!profileQuery)
+            return true;
+        long theirDepartureTime = pool.departureTime[they];
+        if (myDepartureTime == LabelPool.NO_DEPARTURE_TIME)
+            return !rangeQuery || theirDepartureTime == LabelPool.NO_DEPARTURE_TIME;
+        if (theirDepartureTime == LabelPool.NO_DEPARTURE_TIME)
+            return false;
+        if (!reverse)
+            return theirDepartureTime >= myDepartureTime || theirDepartureTime >= startTime + maxProfileDuration;
+        else
+            return theirDepartureTime <= myDepartureTime || theirDepartureTime <= startTime - maxProfileDuration;
+    }
+
+    private boolean dominates(int me, int they) {
+        if (weight(me) > weight(they))
+            return false;
+
+        if (mindTransfers && pool.nTransfers[me] > pool.nTransfers[they])
+            return false;
+        if (pool.impossible[me] && !pool.impossible[they])
+            return false;
+
+        if (weight(me) < weight(they))
+            return true;
+        if (mindTransfers && pool.nTransfers[me] < pool.nTransfers[they])
+            return true;
+
+        return compare(me, they) <= 0;
+    }
+
+    private long weight(int label) {
+        return (reverse ? -1 : 1) * (pool.currentTime[label] - startTime) + (long) (pool.nTransfers[label] * betaTransfers) + (long) (pool.streetTime[label] * (betaStreetTime - 1.0)) + pool.extraWeight[label];
+    }
+
+    /**
+     * The same order as LabelComparator, for pooled labels
+     */
+    private int compare(int o1, int o2) {
+        int c = Long.compare(weight(o1), weight(o2));
+        if (c != 0)
+            return c;
+        c = Integer.compare(pool.nTransfers[o1], pool.nTransfers[o2]);
+        if (c != 0)
+            return c;
+
+        c = Long.compare(pool.streetTime[o1], pool.streetTime[o2]);
+        if (c != 0)
+            return c;
+
+        c = Long.compare(departureTimeKey(o1), departureTimeKey(o2));
+        if (c != 0)
+            return c;
+
+        c = Integer.compare(pool.impossible[o1] ? 1 : 0, pool.impossible[o2] ? 1 : 0);
+        return c;
+    }
+
+    private long departureTimeKey(int label) {
+        long departureTime = pool.departureTime[label];
+        return departureTime != LabelPool.NO_DEPARTURE_TIME ? reverse ? departureTime : -departureTime : 0;
+    }
+
     boolean rprc(Label me, Label they) {
         return they.departureTime != null && (they.departureTime <= me.departureTime || they.departureTime <= startTime - maxProfileDuration);
     }
@@ -259,6 +391,86 @@ public class MultiCriteriaLabelSetting {
         this.limitStreetTime = limitStreetTime;
     }
 
+    /**
+     * A binary heap of pooled labels. Unlike a PriorityQueue it knows where each label is, so dominated labels can be
+     * removed right away instead of being flagged and skipped when they come up.
+     */
+    private class LabelHeap {
+        private int[] heap = new int[64];
+        private int size;
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        void clear() {
+            size = 0;
+        }
+
+        void push(int label) {
+            if (size == heap.length)
+                heap = Arrays.copyOf(heap, size + (size >> 1));
+            heap[size] = label;
+            siftUp(size++);
+        }
+
+        int poll() {
+            int label = heap[0];
+            removeAt(0);
+            return label;
+        }
+
+        void remove(int label) {
+            int index = pool.heapIndex[label];
+            if (index >= 0)
+                removeAt(index);
+        }
+
+        private void removeAt(int index) {
+            pool.heapIndex[heap[index]] = -1;
+            size--;
+            if (index != size) {
+                int last = heap[size];
+                heap[index] = last;
+                siftDown(index);
+                if (heap[index] == last)
+                    siftUp(index);
+            }
+        }
+
+        private void siftUp(int index) {
+            int label = heap[index];
+            while (index > 0) {
+                int parentIndex = (index - 1) >>> 1;
+                int parent = heap[parentIndex];
+                if (compare(label, parent) >= 0)
+                    break;
+                heap[index] = parent;
+                pool.heapIndex[parent] = index;
+                index = parentIndex;
+            }
+            heap[index] = label;
+            pool.heapIndex[label] = index;
+        }
+
+        private void siftDown(int index) {
+            int label = heap[index];
+            int half = size >>> 1;
+            while (index < half) {
+                int child = 2 * index + 1;
+                if (child + 1 < size && compare(heap[child + 1], heap[child]) < 0)
+                    child++;
+                if (compare(label, heap[child]) <= 0)
+                    break;
+                heap[index] = heap[child];
+                pool.heapIndex[heap[index]] = index;
+                index = child;
+            }
+            heap[index] = label;
+            pool.heapIndex[label] = index;
+        }
+    }
+
     private class LabelComparator implements Comparator<Label> {
 
         @Override
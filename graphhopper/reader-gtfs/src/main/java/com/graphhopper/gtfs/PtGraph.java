@@ -520,6 +520,52 @@ public class PtGraph implements GtfsReader.PtGraphOut {
         }
     }
 
+    // The following read single attributes of an edge without pulling all of them into a PtEdgeAttributes,
+    // for the searches which look at far more edges than they end up using. See createEdge for the layout.
+
+    public GtfsStorage.EdgeType getType(int edgeId) {
+        return edgeTypeValues[attrs.getInt(getAttrPointer(toEdgePointer(edgeId)))];
+    }
+
+    public int getTime(int edgeId) {
+        return attrs.getInt(getAttrPointer(toEdgePointer(edgeId)) + 4);
+    }
+
+    /**
+     * @return the number of transfers of a BOARD edge, 0 for all other edges
+     */
+    public int getTransfers(int edgeId) {
+        long attrPointer = getAttrPointer(toEdgePointer(edgeId));
+        return edgeTypeValues[attrs.getInt(attrPointer)] == BOARD ? attrs.getInt(attrPointer + 20) : 0;
+    }
+
+    /**
+     * @return the route type of an ENTER_PT or TRANSFER edge, -1 for all other edges
+     */
+    public int getRouteType(int edgeId) {
+        long attrPointer = getAttrPointer(toEdgePointer(edgeId));
+        GtfsStorage.EdgeType type = edgeTypeValues[attrs.getInt(attrPointer)];
+        return type == GtfsStorage.EdgeType.ENTER_PT || type == GtfsStorage.EdgeType.TRANSFER ? attrs.getInt(attrPointer + 8) : -1;
+    }
+
+    /**
+     * @return the validity of a BOARD or ALIGHT edge, null for all other edges
+     */
+    public GtfsStorage.Validity getValidity(int edgeId) {
+        long attrPointer = getAttrPointer(toEdgePointer(edgeId));
+        GtfsStorage.EdgeType type = edgeTypeValues[attrs.getInt(attrPointer)];
+        return type == BOARD || type == GtfsStorage.EdgeType.ALIGHT ? validityList.get(attrs.getInt(attrPointer + 16)) : null;
+    }
+
+    /**
+     * @return the feed of an ENTER_TIME_EXPANDED_NETWORK or LEAVE_TIME_EXPANDED_NETWORK edge, null for all other edges
+     */
+    GtfsStorage.FeedIdWithTimezone getFeedIdWithTimezone(int edgeId) {
+        long attrPointer = getAttrPointer(toEdgePointer(edgeId));
+        GtfsStorage.EdgeType type = edgeTypeValues[attrs.getInt(attrPointer)];
+        return type == GtfsStorage.EdgeType.ENTER_TIME_EXPANDED_NETWORK || type == GtfsStorage.EdgeType.LEAVE_TIME_EXPANDED_NETWORK ? feedIdWithTimezoneList.get(attrs.getInt(attrPointer + 8)) : null;
+    }
+
     public PtEdge edge(int edgeId) {
         long edgePointer = toEdgePointer(edgeId);
         int nodeA = getNodeA(edgePointer);
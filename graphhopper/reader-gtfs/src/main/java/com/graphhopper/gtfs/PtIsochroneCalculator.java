@@ -0,0 +1,193 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.graphhopper.gtfs;
+
+import com.conveyal.gtfs.model.Stop;
+import com.graphhopper.routing.querygraph.QueryGraph;
+import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.NodeAccess;
+import org.locationtech.jts.geom.Coordinate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+
+/**
+ * Finds the places which can be reached by public transit and walking within a time limit, for a series of
+ * departure times (arrival times, if reverse) at regular intervals. All of them come from one profile search over
+ * the whole range, like a range RAPTOR query, instead of one search per departure time.
+ * <p>
+ * The result of every departure time is kept in a least recently used cache, so the departure times which are
+ * asked for again, alone or as part of another range, are not searched for again. The search does not use the
+ * realtime feed, so the cached results stay valid.
+ */
+public class PtIsochroneCalculator {
+
+    private final GtfsStorage gtfsStorage;
+    private final Map<Key, Map<Coordinate, Double>> cache;
+
+    /**
+     * @param cacheSize the number of departure times for which the reached places are kept, 0 for no cache
+     */
+    public PtIsochroneCalculator(GtfsStorage gtfsStorage, int cacheSize) {
+        this.gtfsStorage = gtfsStorage;
+        this.cache = new LinkedHashMap<Key, Map<Coordinate, Double>>(cacheSize + 1, .75F, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Map<Coordinate, Double>> eldest) {
+                return size() > cacheSize;
+            }
+        };
+    }
+
+    /**
+     * @param location  the location the search starts from, it identifies the results in the cache
+     * @param start     the node of the location in the query graph
+     * @param firstTime the first departure time (arrival time, if reverse)
+     * @param interval  the time between the departure times
+     * @param times     the number of departure times
+     * @param limit     how long the trips may take
+     * @return for every departure time, the coordinates of the places reached within the limit with the time it
+     * takes to get there, in milliseconds. The maps must not be modified.
+     */
+    public List<Map<Coordinate, Double>> calcReachedPlaces(QueryGraph queryGraph, Weighting weighting, GHLocation location,
+                                                           Label.NodeId start, boolean reverse, int blockedRouteTypes,
+                                                           Instant firstTime, Duration interval, int times, Duration limit) {
+        if (times < 1)
+            throw new IllegalArgumentException("At least one departure time is needed");
+        if (times > 1 && interval.toMillis() <= 0)
+            throw new IllegalArgumentException("The interval between the departure times must be positive");
+        List<Key> keys = new ArrayList<>(times);
+        for (int i = 0; i < times; i++)
+            keys.add(new Key(locationKey(location), reverse, blockedRouteTypes, limit.toMillis(), firstTime.plus(interval.multipliedBy(i)).toEpochMilli()));
+        List<Map<Coordinate, Double>> result = new ArrayList<>(Collections.nCopies(times, null));
+        int firstMissing = -1, lastMissing = -1;
+        synchronized (cache) {
+            for (int i = 0; i < times; i++) {
+                result.set(i, cache.get(keys.get(i)));
+                if (result.get(i) == null) {
+                    if (firstMissing < 0)
+                        firstMissing = i;
+                    lastMissing = i;
+                }
+            }
+        }
+        if (firstMissing < 0)
+            return result;
+
+        // the departure times in between are searched for again, it does not cost more than searching for the range
+        List<Map<Coordinate, Double>> reachedPlaces = search(queryGraph, weighting, start, reverse, blockedRouteTypes,
+                firstTime.plus(interval.multipliedBy(firstMissing)), interval, lastMissing - firstMissing + 1, limit.toMillis());
+        synchronized (cache) {
+            for (int i = firstMissing; i <= lastMissing; i++) {
+                if (result.get(i) == null) {
+                    result.set(i, reachedPlaces.get(i - firstMissing));
+                    cache.put(keys.get(i), reachedPlaces.get(i - firstMissing));
+                }
+            }
+        }
+        return result;
+    }
+
+    private List<Map<Coordinate, Double>> search(QueryGraph queryGraph, Weighting weighting, Label.NodeId start, boolean reverse,
+                                                 int blockedRouteTypes, Instant firstTime, Duration interval, int times, long limit) {
+        long[] departureTimes = new long[times];
+        for (int i = 0; i < times; i++)
+            departureTimes[i] = firstTime.plus(interval.multipliedBy(i)).toEpochMilli();
+        long range = departureTimes[times - 1] - departureTimes[0];
+        // a reverse profile search goes back in time from its start
+        long startTime = reverse ? departureTimes[times - 1] : departureTimes[0];
+        int direction = reverse ? -1 : 1;
+
+        GraphExplorer graphExplorer = new GraphExplorer(queryGraph, gtfsStorage.getPtGraph(), weighting, gtfsStorage, RealtimeFeed.empty(), reverse, false, false, 5.0, reverse, blockedRouteTypes);
+        MultiCriteriaLabelSetting router = new MultiCriteriaLabelSetting(graphExplorer, reverse, false, times > 1, range, Collections.emptyList());
+        router.setRangeQuery(true);
+
+        List<Map<Coordinate, Double>> result = new ArrayList<>(times);
+        for (int i = 0; i < times; i++)
+            result.add(new HashMap<>());
+        NodeAccess nodeAccess = queryGraph.getNodeAccess();
+        for (Label label : router.calcLabels(start, Instant.ofEpochMilli(startTime))) {
+            if (!((label.currentTime - startTime) * direction <= limit + range)) {
+                break;
+            }
+            Coordinate coordinate;
+            if (label.node.streetNode != -1) {
+                coordinate = new Coordinate(nodeAccess.getLon(label.node.streetNode), nodeAccess.getLat(label.node.streetNode));
+            } else if (label.edge != null && (label.edge.getType() == GtfsStorage.EdgeType.EXIT_PT || label.edge.getType() == GtfsStorage.EdgeType.ENTER_PT)) {
+                GtfsStorage.PlatformDescriptor platformDescriptor = label.edge.getPlatformDescriptor();
+                Stop stop = gtfsStorage.getGtfsFeeds().get(platformDescriptor.feed_id).stops.get(platformDescriptor.stop_id);
+                coordinate = new Coordinate(stop.stop_lon, stop.stop_lat);
+            } else {
+                continue;
+            }
+            for (int i = 0; i < times; i++) {
+                long time;
+                if (label.departureTime == null) {
+                    // only walked, which takes the same time whenever we leave
+                    time = (label.currentTime - startTime) * direction;
+                } else if ((label.departureTime - departureTimes[i]) * direction >= 0) {
+                    time = (label.currentTime - departureTimes[i]) * direction;
+                } else {
+                    // the vehicle has left before this departure time
+                    continue;
+                }
+                if (time <= limit)
+                    result.get(i).merge(coordinate, (double) time, Math::min);
+            }
+        }
+        // they are shared through the cache
+        result.replaceAll(Collections::unmodifiableMap);
+        return result;
+    }
+
+    private static String locationKey(GHLocation location) {
+        if (location instanceof GHStationLocation)
+            return "Stop(" + ((GHStationLocation) location).stop_id + ")";
+        return location.toString();
+    }
+
+    private static class Key {
+        final String location;
+        final boolean reverse;
+        final int blockedRouteTypes;
+        final long limit;
+        final long time;
+
+        Key(String location, boolean reverse, int blockedRouteTypes, long limit, long time) {
+            this.location = location;
+            this.reverse = reverse;
+            this.blockedRouteTypes = blockedRouteTypes;
+            this.limit = limit;
+            this.time = time;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Key key = (Key) o;
+            return reverse == key.reverse && blockedRouteTypes == key.blockedRouteTypes && limit == key.limit && time == key.time && location.equals(key.location);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(location, reverse, blockedRouteTypes, limit, time);
+        }
+    }
+}
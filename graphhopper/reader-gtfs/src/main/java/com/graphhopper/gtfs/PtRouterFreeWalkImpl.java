@@ -18,6 +18,7 @@
 
 package com.graphhopper.gtfs;
 
+import com.carrotsearch.hppc.IntLongHashMap;
 import com.conveyal.gtfs.GTFSFeed;
 import com.google.transit.realtime.GtfsRealtime;
 import com.graphhopper.GHResponse;
@@ -25,12 +26,15 @@ import com.graphhopper.GraphHopperConfig;
 import com.graphhopper.ResponsePath;
 import com.graphhopper.config.Profile;
 import com.graphhopper.routing.DefaultWeightingFactory;
+import com.graphhopper.routing.Dijkstra;
+import com.graphhopper.routing.Path;
 import com.graphhopper.routing.WeightingFactory;
 import com.graphhopper.routing.ev.Subnetwork;
 import com.graphhopper.routing.querygraph.QueryGraph;
 import com.graphhopper.routing.util.DefaultSnapFilter;
 import com.graphhopper.routing.util.EdgeFilter;
 import com.graphhopper.routing.util.EncodingManager;
+import com.graphhopper.routing.util.TraversalMode;
 import com.graphhopper.routing.weighting.Weighting;
 import com.graphhopper.storage.BaseGraph;
 import com.graphhopper.storage.index.LocationIndex;
@@ -214,6 +218,11 @@ public final class PtRouterFreeWalkImpl implements PtRouter {
             StopWatch stopWatch = new StopWatch().start();
 
             GraphExplorer graphExplorer = new GraphExplorer(queryGraph, ptGraph, accessEgressWeighting, gtfsStorage, realtimeFeed, arriveBy, false, false, walkSpeedKmH, false, blockedRouteTypes);
+            StationWalks stationWalks = gtfsStorage.getStationWalks();
+            if (stationWalks != null) {
+                IntLongHashMap walksToTarget = stationWalks.findWalks(queryGraph, accessEgressWeighting, gtfsStorage, destNode.streetNode, !arriveBy);
+                graphExplorer.setStationWalks(stationWalks, destNode, walksToTarget);
+            }
             List<Label> discoveredSolutions = new ArrayList<>();
             router = new MultiCriteriaLabelSetting(graphExplorer, arriveBy, !ignoreTransfers, profileQuery, maxProfileDuration, discoveredSolutions);
             router.setBetaTransfers(betaTransfers);
@@ -237,7 +246,7 @@ public final class PtRouterFreeWalkImpl implements PtRouter {
             List<List<Label.Transition>> paths = new ArrayList<>();
             for (Label discoveredSolution : discoveredSolutions) {
                 List<Label.Transition> path = Label.getTransitions(discoveredSolution, arriveBy);
-                paths.add(path);
+                paths.add(stationWalks != null ? expandWalks(path) : path);
             }
 
             response.addDebugInfo("routing:" + stopWatch.stop().getSeconds() + "s");
@@ -252,6 +261,34 @@ public final class PtRouterFreeWalkImpl implements PtRouter {
             return paths;
         }
 
+        /**
+         * Replaces the precomputed walks of a path with the street edges they stand for, so they become walk legs.
+         * The last street edge of a walk keeps the label the search has found, so the times of the rest of the path
+         * stay as they are.
+         */
+        private List<Label.Transition> expandWalks(List<Label.Transition> path) {
+            GraphExplorer forwardExplorer = new GraphExplorer(queryGraph, ptGraph, accessEgressWeighting, gtfsStorage, realtimeFeed, false, true, false, walkSpeedKmH, false, blockedRouteTypes);
+            List<Label.Transition> result = new ArrayList<>(path.size());
+            for (int i = 0; i < path.size(); i++) {
+                Label.Transition transition = path.get(i);
+                if (transition.edge == null || transition.edge.getType() != GtfsStorage.EdgeType.WALK) {
+                    result.add(transition);
+                    continue;
+                }
+                Label previous = path.get(i - 1).label;
+                Path walk = new Dijkstra(queryGraph, accessEgressWeighting, TraversalMode.NODE_BASED).calcPath(previous.node.streetNode, transition.label.node.streetNode);
+                if (!walk.isFound())
+                    throw new IllegalStateException("No walk from " + previous.node + " to " + transition.label.node);
+                // two stations at the same street node, nothing to walk
+                if (walk.getEdgeCount() == 0)
+                    continue;
+                List<Label.Transition> walkTransitions = forwardExplorer.walkPath(walk.calcEdges().stream().mapToInt(EdgeIteratorState::getEdgeKey).toArray(), previous.currentTime);
+                result.addAll(walkTransitions.subList(1, walkTransitions.size() - 1));
+                result.add(new Label.Transition(transition.label, walkTransitions.get(walkTransitions.size() - 1).edge));
+            }
+            return result;
+        }
+
     }
 
 }
@@ -0,0 +1,851 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.gtfs;
+
+import com.carrotsearch.hppc.IntIntHashMap;
+import com.carrotsearch.hppc.IntObjectHashMap;
+import com.conveyal.gtfs.GTFSFeed;
+import com.google.transit.realtime.GtfsRealtime;
+import com.graphhopper.GHResponse;
+import com.graphhopper.GraphHopperConfig;
+import com.graphhopper.ResponsePath;
+import com.graphhopper.config.Profile;
+import com.graphhopper.routing.DefaultWeightingFactory;
+import com.graphhopper.routing.WeightingFactory;
+import com.graphhopper.routing.ev.Subnetwork;
+import com.graphhopper.routing.querygraph.QueryGraph;
+import com.graphhopper.routing.util.DefaultSnapFilter;
+import com.graphhopper.routing.util.EdgeFilter;
+import com.graphhopper.routing.util.EncodingManager;
+import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.BaseGraph;
+import com.graphhopper.storage.index.LocationIndex;
+import com.graphhopper.util.*;
+import com.graphhopper.util.details.PathDetailsBuilderFactory;
+import com.graphhopper.util.exceptions.ConnectionNotFoundException;
+import com.graphhopper.util.exceptions.MaximumNodesExceededException;
+
+import javax.inject.Inject;
+import java.time.Instant;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * A public transit router that uses the round-based RAPTOR algorithm (Delling, Pajor, Werneck: Round-Based Public
+ * Transit Routing) instead of the label setting on the time-expanded graph that is used by {@link PtRouterImpl}.
+ * Every round k finds the earliest arrival with k vehicles by scanning each pattern (a group of trips with the same
+ * stops and times, see {@link RaptorTimetable}) once from the first platform that was improved in the previous
+ * round. This does not need a priority queue and only touches the compact timetable arrays.
+ * <p>
+ * Access and egress are found with the same street searches as {@link PtRouterImpl} and the journeys are turned into
+ * paths through the time-expanded graph, so the responses look exactly like the ones of the label setting.
+ * Profile queries are answered with rRAPTOR, i.e. RAPTOR runs once for every possible departure within the profile
+ * duration starting with the latest one and keeps the arrival times of the later departures as upper bounds.
+ * Realtime updates are considered via blocked and delayed board and alight edges. Trips that are only added by the
+ * realtime feed are not yet known to the timetable and arrive-by queries are delegated to {@link PtRouterImpl}.
+ */
+public final class PtRouterRaptorImpl implements PtRouter {
+
+    private static final int MAX_ROUNDS = 8;
+    private static final long DAY_MILLIS = 24 * 60 * 60 * 1000L;
+
+    private final GraphHopperConfig config;
+    private final TranslationMap translationMap;
+    private final BaseGraph baseGraph;
+    private final EncodingManager encodingManager;
+    private final LocationIndex locationIndex;
+    private final GtfsStorage gtfsStorage;
+    private final PtGraph ptGraph;
+    private final RealtimeFeed realtimeFeed;
+    private final PathDetailsBuilderFactory pathDetailsBuilderFactory;
+    private final WeightingFactory weightingFactory;
+    private final RaptorTimetable timetable;
+    // position of a pattern -> boardings that exist only because of delays in the realtime feed
+    private final IntObjectHashMap<List<DelayedBoarding>> delayedBoardings = new IntObjectHashMap<>();
+
+    @Inject
+    public PtRouterRaptorImpl(GraphHopperConfig config, TranslationMap translationMap, BaseGraph baseGraph, EncodingManager encodingManager, LocationIndex locationIndex, GtfsStorage gtfsStorage, RealtimeFeed realtimeFeed, PathDetailsBuilderFactory pathDetailsBuilderFactory) {
+        this.config = config;
+        this.weightingFactory = new DefaultWeightingFactory(baseGraph, encodingManager);
+        this.translationMap = translationMap;
+        this.baseGraph = baseGraph;
+        this.encodingManager = encodingManager;
+        this.locationIndex = locationIndex;
+        this.gtfsStorage = gtfsStorage;
+        this.ptGraph = gtfsStorage.getPtGraph();
+        this.realtimeFeed = realtimeFeed;
+        this.pathDetailsBuilderFactory = pathDetailsBuilderFactory;
+        this.timetable = gtfsStorage.getRaptorTimetable();
+        initDelayedBoardings();
+    }
+
+    @Override
+    public GHResponse route(Request request) {
+        if (request.isArriveBy())
+            return new PtRouterImpl(config, translationMap, baseGraph, encodingManager, locationIndex, gtfsStorage, realtimeFeed, pathDetailsBuilderFactory).route(request);
+        return new RequestHandler(request).route();
+    }
+
+    public static class Factory {
+        private final GraphHopperConfig config;
+        private final TranslationMap translationMap;
+        private final BaseGraph baseGraph;
+        private final EncodingManager encodingManager;
+        private final LocationIndex locationIndex;
+        private final GtfsStorage gtfsStorage;
+        private final Map<String, Transfers> transfers;
+
+        public Factory(GraphHopperConfig config, TranslationMap translationMap, BaseGraph baseGraph, EncodingManager encodingManager, LocationIndex locationIndex, GtfsStorage gtfsStorage) {
+            this.config = config;
+            this.translationMap = translationMap;
+            this.baseGraph = baseGraph;
+            this.encodingManager = encodingManager;
+            this.locationIndex = locationIndex;
+            this.gtfsStorage = gtfsStorage;
+            this.transfers = new HashMap<>();
+            for (Map.Entry<String, GTFSFeed> entry : this.gtfsStorage.getGtfsFeeds().entrySet()) {
+                this.transfers.put(entry.getKey(), new Transfers(entry.getValue()));
+            }
+        }
+
+        public PtRouter createWith(GtfsRealtime.FeedMessage realtimeFeed) {
+            Map<String, GtfsRealtime.FeedMessage> realtimeFeeds = new HashMap<>();
+            realtimeFeeds.put("gtfs_0", realtimeFeed);
+            return new PtRouterRaptorImpl(config, translationMap, baseGraph, encodingManager, locationIndex, gtfsStorage, RealtimeFeed.fromProtobuf(gtfsStorage, this.transfers, realtimeFeeds), new PathDetailsBuilderFactory());
+        }
+
+        public PtRouter createWithoutRealtimeFeed() {
+            return new PtRouterRaptorImpl(config, translationMap, baseGraph, encodingManager, locationIndex, gtfsStorage, RealtimeFeed.empty(), new PathDetailsBuilderFactory());
+        }
+    }
+
+    private static class DelayedBoarding {
+        final int stopTime;
+        final PtGraph.PtEdge boardEdge;
+        final int time;
+        final GtfsStorage.Validity validity;
+
+        DelayedBoarding(int stopTime, PtGraph.PtEdge boardEdge, int time) {
+            this.stopTime = stopTime;
+            this.boardEdge = boardEdge;
+            this.time = time;
+            this.validity = boardEdge.getAttrs().validity;
+        }
+    }
+
+    private void initDelayedBoardings() {
+        List<PtGraph.PtEdge> additionalEdges = realtimeFeed.getAdditionalEdges();
+        if (additionalEdges.isEmpty())
+            return;
+        IntIntHashMap departureTimes = new IntIntHashMap();
+        for (PtGraph.PtEdge edge : additionalEdges) {
+            if (edge.getType() == GtfsStorage.EdgeType.ENTER_TIME_EXPANDED_NETWORK)
+                departureTimes.put(edge.getAdjNode(), edge.getTime());
+        }
+        for (PtGraph.PtEdge edge : additionalEdges) {
+            if (edge.getType() != GtfsStorage.EdgeType.BOARD)
+                continue;
+            int stopTime = timetable.stopTimeByDepartureNode.getOrDefault(edge.getAdjNode(), -1);
+            int time = departureTimes.getOrDefault(edge.getBaseNode(), -1);
+            // boardings of trips that were added by the realtime feed are not supported
+            if (stopTime < 0 || time < 0)
+                continue;
+            int trip = Arrays.binarySearch(timetable.tripFirstStopTimes, stopTime);
+            if (trip < 0)
+                trip = -trip - 2;
+            int position = timetable.patternFirstPositions[timetable.tripPatterns[trip]] + stopTime - timetable.tripFirstStopTimes[trip];
+            List<DelayedBoarding> list = delayedBoardings.get(position);
+            if (list == null)
+                delayedBoardings.put(position, list = new ArrayList<>());
+            list.add(new DelayedBoarding(stopTime, edge, time));
+        }
+    }
+
+    /**
+     * The label of the RAPTOR search: the earliest time at which a vehicle can be boarded at a platform, together
+     * with the ride and the transfer that lead there.
+     */
+    private static class RaptorLabel {
+        final long time;
+        final Ride ride;
+        final int transfer;
+        final long departureTime;
+
+        RaptorLabel(long time, Ride ride, int transfer, long departureTime) {
+            this.time = time;
+            this.ride = ride;
+            this.transfer = transfer;
+            this.departureTime = departureTime;
+        }
+    }
+
+    /**
+     * A ride with one vehicle. If the vehicle continues as another trip of the same block the ride consists of
+     * several segments that are linked via previousSegment.
+     */
+    private static class Ride {
+        final RaptorLabel boardedFrom;
+        final int accessPlatform;
+        final Ride previousSegment;
+        final int blockTransfer;
+        final int trip;
+        final int boardPos;
+        final PtGraph.PtEdge boardEdge;
+        final long boardTime;
+        final long boardDelay;
+        int alightPos = -1;
+        long arrivalTime;
+
+        Ride(RaptorLabel boardedFrom, int accessPlatform, Ride previousSegment, int blockTransfer, int trip, int boardPos, PtGraph.PtEdge boardEdge, long boardTime, long boardDelay) {
+            this.boardedFrom = boardedFrom;
+            this.accessPlatform = accessPlatform;
+            this.previousSegment = previousSegment;
+            this.blockTransfer = blockTransfer;
+            this.trip = trip;
+            this.boardPos = boardPos;
+            this.boardEdge = boardEdge;
+            this.boardTime = boardTime;
+            this.boardDelay = boardDelay;
+        }
+
+        RaptorLabel origin() {
+            Ride first = this;
+            while (first.previousSegment != null)
+                first = first.previousSegment;
+            return first.boardedFrom;
+        }
+
+        Ride alightAt(int pos, long time) {
+            Ride result = new Ride(boardedFrom, accessPlatform, previousSegment, blockTransfer, trip, boardPos, boardEdge, boardTime, boardDelay);
+            result.alightPos = pos;
+            result.arrivalTime = time;
+            return result;
+        }
+    }
+
+    private static class Journey {
+        final Ride ride;
+        final int rounds;
+        final int exit;
+        final long arrivalTime;
+        final long departureTime;
+
+        Journey(Ride ride, int rounds, int exit, long arrivalTime, long departureTime) {
+            this.ride = ride;
+            this.rounds = rounds;
+            this.exit = exit;
+            this.arrivalTime = arrivalTime;
+            this.departureTime = departureTime;
+        }
+    }
+
+    private class RequestHandler {
+        private final int maxVisitedNodesForRequest;
+        private final int limitSolutions;
+        private final long maxProfileDuration;
+        private final Instant initialTime;
+        private final boolean profileQuery;
+        private final boolean ignoreTransfers;
+        private final double betaTransfers;
+        private final double betaAccessTime;
+        private final double betaEgressTime;
+        private final double walkSpeedKmH;
+        private final int blockedRouteTypes;
+        private final GHLocation enter;
+        private final GHLocation exit;
+        private final Translation translation;
+        private final List<String> requestedPathDetails;
+
+        private final GHResponse response = new GHResponse();
+        private final long limitTripTime;
+        private final long limitStreetTime;
+        private QueryGraph queryGraph;
+        private int visitedNodes;
+        private GraphExplorer graphExplorer;
+
+        private final Profile accessProfile;
+        private final EdgeFilter accessSnapFilter;
+        private final Weighting accessWeighting;
+        private final Profile transferProfile;
+        private final Weighting transferWeighting;
+        private final Profile egressProfile;
+        private final EdgeFilter egressSnapFilter;
+        private final Weighting egressWeighting;
+
+        private Label[] accessLabels;
+        private final Map<Integer, Label> additionalAccessLabels = new HashMap<>();
+        private Label[] egressLabels;
+        private final List<RaptorLabel[]> rounds = new ArrayList<>();
+        private final long[] bestBoardingTimes = new long[timetable.platformNodes.length];
+        private final long[] bestArrivalTimes = new long[timetable.exitNodes.length];
+        private final int[] firstMarkedPositions = new int[timetable.patternTripCounts.length];
+        private final BitSet markedPlatforms = new BitSet();
+        private final BitSet nextMarkedPlatforms = new BitSet();
+        private final List<Journey> journeys = new ArrayList<>();
+        private long bestArrivalAtDestination;
+
+        RequestHandler(Request request) {
+            maxVisitedNodesForRequest = request.getMaxVisitedNodes();
+            profileQuery = request.isProfileQuery();
+            ignoreTransfers = Optional.ofNullable(request.getIgnoreTransfers()).orElse(request.isProfileQuery());
+            betaTransfers = request.getBetaTransfers();
+            betaAccessTime = request.getBetaAccessTime();
+            betaEgressTime = request.getBetaEgressTime();
+            limitSolutions = Optional.ofNullable(request.getLimitSolutions()).orElse(profileQuery ? 50 : ignoreTransfers ? 1 : Integer.MAX_VALUE);
+            initialTime = request.getEarliestDepartureTime();
+            maxProfileDuration = request.getMaxProfileDuration().toMillis();
+            walkSpeedKmH = request.getWalkSpeedKmH();
+            blockedRouteTypes = request.getBlockedRouteTypes();
+            translation = translationMap.getWithFallBack(request.getLocale());
+            enter = request.getPoints().get(0);
+            exit = request.getPoints().get(1);
+            limitTripTime = request.getLimitTripTime() != null ? request.getLimitTripTime().toMillis() : Long.MAX_VALUE;
+            limitStreetTime = request.getLimitStreetTime() != null ? request.getLimitStreetTime().toMillis() : Long.MAX_VALUE;
+            requestedPathDetails = request.getPathDetails();
+            accessProfile = config.getProfiles().stream().filter(p -> p.getName().equals(request.getAccessProfile())).findFirst().get();
+            accessWeighting = weightingFactory.createWeighting(accessProfile, new PMap(), false);
+            accessSnapFilter = new DefaultSnapFilter(accessWeighting, encodingManager.getBooleanEncodedValue(Subnetwork.key(accessProfile.getName())));
+            transferProfile = config.getProfiles().stream().filter(p -> p.getName().equals("foot")).findFirst().get();
+            transferWeighting = weightingFactory.createWeighting(transferProfile, new PMap(), false);
+            egressProfile = config.getProfiles().stream().filter(p -> p.getName().equals(request.getEgressProfile())).findFirst().get();
+            egressWeighting = weightingFactory.createWeighting(egressProfile, new PMap(), false);
+            egressSnapFilter = new DefaultSnapFilter(egressWeighting, encodingManager.getBooleanEncodedValue(Subnetwork.key(egressProfile.getName())));
+        }
+
+        GHResponse route() {
+            StopWatch stopWatch = new StopWatch().start();
+            PtLocationSnapper.Result result = new PtLocationSnapper(baseGraph, locationIndex, gtfsStorage).snapAll(Arrays.asList(enter, exit), Arrays.asList(accessSnapFilter, egressSnapFilter));
+            queryGraph = result.queryGraph;
+            response.addDebugInfo("idLookup:" + stopWatch.stop().getSeconds() + "s");
+
+            List<List<Label.Transition>> solutions = findPaths(result.nodes.get(0), result.nodes.get(1));
+            parseSolutionsAndAddToResponse(solutions, result.points);
+            return response;
+        }
+
+        private void parseSolutionsAndAddToResponse(List<List<Label.Transition>> solutions, PointList waypoints) {
+            TripFromLabel tripFromLabel = new TripFromLabel(queryGraph, encodingManager, gtfsStorage, realtimeFeed, pathDetailsBuilderFactory, walkSpeedKmH);
+            for (List<Label.Transition> solution : solutions) {
+                final ResponsePath responsePath = tripFromLabel.createResponsePath(translation, waypoints, queryGraph, accessWeighting, egressWeighting, transferWeighting, solution, requestedPathDetails);
+                responsePath.setImpossible(solution.stream().anyMatch(t -> t.label.impossible));
+                responsePath.setTime((solution.get(solution.size() - 1).label.currentTime - solution.get(0).label.currentTime));
+                responsePath.setRouteWeight(weight(solution.get(solution.size() - 1).label));
+                response.add(responsePath);
+            }
+            Comparator<ResponsePath> c = Comparator.comparingInt(p -> (p.isImpossible() ? 1 : 0));
+            Comparator<ResponsePath> d = Comparator.comparingDouble(ResponsePath::getTime);
+            response.getAll().sort(c.thenComparing(d));
+        }
+
+        private long weight(Label label) {
+            return label.currentTime - initialTime.toEpochMilli() + (long) (label.nTransfers * betaTransfers) + (long) (label.streetTime * (betaAccessTime - 1.0)) + label.extraWeight;
+        }
+
+        private List<List<Label.Transition>> findPaths(Label.NodeId startNode, Label.NodeId destNode) {
+            StopWatch stopWatch = new StopWatch().start();
+            graphExplorer = new GraphExplorer(queryGraph, ptGraph, accessWeighting, gtfsStorage, realtimeFeed, false, true, false, walkSpeedKmH, false, blockedRouteTypes);
+            Label walkLabel = findEgress(startNode, destNode);
+            findAccess(startNode);
+            Arrays.fill(bestBoardingTimes, Long.MAX_VALUE);
+            Arrays.fill(bestArrivalTimes, Long.MAX_VALUE);
+            bestArrivalAtDestination = Long.MAX_VALUE;
+            long walkDuration = walkLabel != null ? initialTime.toEpochMilli() - walkLabel.currentTime : -1;
+
+            List<Long> departureTimes = profileQuery ? findProfileDepartureTimes() : Collections.singletonList(initialTime.toEpochMilli());
+            for (long departureTime : departureTimes) {
+                if (visitedNodes >= maxVisitedNodesForRequest)
+                    break;
+                if (walkLabel != null)
+                    // walking is always possible, so every journey must arrive earlier than the walk
+                    bestArrivalAtDestination = Math.min(bestArrivalAtDestination, departureTime + walkDuration);
+                runRounds(departureTime);
+            }
+
+            List<Journey> solutions = selectSolutions();
+            List<List<Label.Transition>> paths = new ArrayList<>();
+            if (walkLabel != null && (solutions.size() < limitSolutions || profileQuery) && (profileQuery || solutions.isEmpty() || !ignoreTransfers)) {
+                Label startLabel = new Label(initialTime.toEpochMilli(), null, startNode, 0, null, 0, 0, 0, false, null);
+                paths.add(appendEgress(startLabel, walkLabel));
+            }
+            for (Journey journey : solutions)
+                paths.add(toPath(journey));
+
+            response.addDebugInfo("routing:" + stopWatch.stop().getSeconds() + "s");
+            if (paths.isEmpty() && visitedNodes >= maxVisitedNodesForRequest) {
+                response.addError(new MaximumNodesExceededException("No path found - maximum number of nodes exceeded: " + maxVisitedNodesForRequest, maxVisitedNodesForRequest));
+            }
+            response.getHints().putObject("visited_nodes.sum", visitedNodes);
+            response.getHints().putObject("visited_nodes.average", visitedNodes);
+            if (paths.isEmpty()) {
+                response.addError(new ConnectionNotFoundException("No route found", Collections.emptyMap()));
+            }
+            return paths;
+        }
+
+        /**
+         * Searches the platforms that can be left towards the destination on foot (or with the egress profile) like
+         * the station router of {@link PtRouterImpl}.
+         *
+         * @return the label of the walk from start to destination or null if walking is not possible
+         */
+        private Label findEgress(Label.NodeId startNode, Label.NodeId destNode) {
+            GraphExplorer egressExplorer = new GraphExplorer(queryGraph, ptGraph, egressWeighting, gtfsStorage, realtimeFeed, true, true, false, walkSpeedKmH, false, blockedRouteTypes);
+            MultiCriteriaLabelSetting stationRouter = new MultiCriteriaLabelSetting(egressExplorer, true, false, false, maxProfileDuration, new ArrayList<>());
+            stationRouter.setBetaStreetTime(betaEgressTime);
+            stationRouter.setLimitStreetTime(limitStreetTime);
+            egressLabels = new Label[timetable.exitNodes.length];
+            for (Label label : stationRouter.calcLabels(destNode, initialTime)) {
+                visitedNodes++;
+                if (label.node.equals(startNode)) {
+                    return label;
+                } else if (label.edge != null && label.edge.getType() == GtfsStorage.EdgeType.EXIT_PT) {
+                    int exit = timetable.exitByNode.getOrDefault(label.node.ptNode, -1);
+                    if (exit >= 0 && egressLabels[exit] == null)
+                        egressLabels[exit] = label;
+                }
+            }
+            return null;
+        }
+
+        private void findAccess(Label.NodeId startNode) {
+            GraphExplorer accessExplorer = new GraphExplorer(queryGraph, ptGraph, accessWeighting, gtfsStorage, realtimeFeed, false, true, false, walkSpeedKmH, false, blockedRouteTypes);
+            MultiCriteriaLabelSetting stationRouter = new MultiCriteriaLabelSetting(accessExplorer, false, false, false, maxProfileDuration, new ArrayList<>());
+            stationRouter.setBetaStreetTime(betaAccessTime);
+            stationRouter.setLimitStreetTime(limitStreetTime);
+            accessLabels = new Label[timetable.platformNodes.length];
+            for (Label label : stationRouter.calcLabels(startNode, initialTime)) {
+                visitedNodes++;
+                if (visitedNodes >= maxVisitedNodesForRequest)
+                    break;
+                if (label.edge != null && label.edge.getType() == GtfsStorage.EdgeType.ENTER_PT) {
+                    int platform = timetable.platformByNode.getOrDefault(label.node.ptNode, -1);
+                    if (platform < 0)
+                        additionalAccessLabels.putIfAbsent(label.node.ptNode, label);
+                    else if (accessLabels[platform] == null)
+                        accessLabels[platform] = label;
+                }
+            }
+        }
+
+        /**
+         * @return all times at which one can start at the origin and catch a departure within the profile duration,
+         * the latest first. Like the label setting the first journey that departs after the profile duration is
+         * included, so the latest time is the end of the profile duration.
+         */
+        private List<Long> findProfileDepartureTimes() {
+            TreeSet<Long> result = new TreeSet<>(Comparator.reverseOrder());
+            result.add(initialTime.toEpochMilli());
+            result.add(initialTime.toEpochMilli() + maxProfileDuration + 1);
+            for (int platform = 0; platform < accessLabels.length; platform++) {
+                Label accessLabel = accessLabels[platform];
+                if (accessLabel == null)
+                    continue;
+                long accessDuration = accessLabel.currentTime - initialTime.toEpochMilli();
+                long from = accessLabel.currentTime, to = from + maxProfileDuration;
+                long localMillis = millisOnTravelDay(from, timetable.platformZones[platform]);
+                for (int i = timetable.platformFirstPositions[platform]; i < timetable.platformFirstPositions[platform + 1]; i++) {
+                    int position = timetable.platformPositions[i];
+                    int pattern = timetable.positionPatterns[position];
+                    int count = timetable.patternTripCounts[pattern];
+                    int first = timetable.patternFirstDepartures[pattern] + (position - timetable.patternFirstPositions[pattern]) * count;
+                    for (long day = 0; day * DAY_MILLIS <= maxProfileDuration + DAY_MILLIS; day++) {
+                        for (int d = first; d < first + count; d++) {
+                            long time = from + timetable.departureTimes[d] * 1000L - localMillis + day * DAY_MILLIS;
+                            if (time >= from && time <= to)
+                                result.add(time - accessDuration);
+                        }
+                    }
+                }
+            }
+            return new ArrayList<>(result);
+        }
+
+        private void runRounds(long departureTime) {
+            RaptorLabel[] access = getRound(0);
+            markedPlatforms.clear();
+            for (int platform = 0; platform < accessLabels.length; platform++) {
+                if (accessLabels[platform] == null)
+                    continue;
+                long time = departureTime + accessLabels[platform].currentTime - initialTime.toEpochMilli();
+                if (time < bestBoardingTimes[platform]) {
+                    access[platform] = new RaptorLabel(time, null, -1, departureTime);
+                    bestBoardingTimes[platform] = time;
+                    markedPlatforms.set(platform);
+                }
+            }
+            for (int round = 1; round <= MAX_ROUNDS && !markedPlatforms.isEmpty(); round++) {
+                // only one ride is allowed if we do not care about transfers
+                if (ignoreTransfers && round > 1 && !profileQuery && !journeys.isEmpty())
+                    break;
+                Arrays.fill(firstMarkedPositions, Integer.MAX_VALUE);
+                for (int platform = markedPlatforms.nextSetBit(0); platform >= 0; platform = markedPlatforms.nextSetBit(platform + 1)) {
+                    for (int i = timetable.platformFirstPositions[platform]; i < timetable.platformFirstPositions[platform + 1]; i++) {
+                        int position = timetable.platformPositions[i];
+                        int pattern = timetable.positionPatterns[position];
+                        firstMarkedPositions[pattern] = Math.min(firstMarkedPositions[pattern], position - timetable.patternFirstPositions[pattern]);
+                    }
+                }
+                nextMarkedPlatforms.clear();
+                RaptorLabel[] previous = getRound(round - 1);
+                RaptorLabel[] current = getRound(round);
+                for (int pattern = 0; pattern < firstMarkedPositions.length; pattern++) {
+                    if (firstMarkedPositions[pattern] != Integer.MAX_VALUE)
+                        scanPattern(pattern, firstMarkedPositions[pattern], previous, current, round);
+                }
+                markedPlatforms.clear();
+                markedPlatforms.or(nextMarkedPlatforms);
+            }
+        }
+
+        private RaptorLabel[] getRound(int round) {
+            while (rounds.size() <= round)
+                rounds.add(new RaptorLabel[timetable.platformNodes.length]);
+            return rounds.get(round);
+        }
+
+        private void scanPattern(int pattern, int firstPos, RaptorLabel[] previous, RaptorLabel[] current, int round) {
+            int firstPosition = timetable.patternFirstPositions[pattern];
+            int length = timetable.getPatternLength(pattern);
+            Ride ride = null;
+            for (int pos = firstPos; pos < length; pos++) {
+                visitedNodes++;
+                int position = firstPosition + pos;
+                if (ride != null) {
+                    Ride alighted = alight(ride, pos, position);
+                    if (alighted != null)
+                        relaxArrival(alighted, timetable.positionExits[position], current, round);
+                    if (pos == length - 1)
+                        continueInBlock(ride, current, round, 0);
+                }
+                RaptorLabel label = previous[timetable.positionPlatforms[position]];
+                if (label == null || pos == length - 1)
+                    continue;
+                long currentDeparture = ride == null ? Long.MAX_VALUE : ride.boardTime + (timetable.positionDepartureOffsets[position] - timetable.positionDepartureOffsets[firstPosition + ride.boardPos]) * 1000L;
+                if (label.time > currentDeparture)
+                    continue;
+                Ride boarding = findBoarding(label, position, pos);
+                if (boarding != null && boarding.boardTime < currentDeparture)
+                    ride = boarding;
+            }
+        }
+
+        /**
+         * Finds the earliest trip of the pattern that can be boarded at the given position, like waiting on the
+         * departure timeline of the platform.
+         */
+        private Ride findBoarding(RaptorLabel label, int position, int pos) {
+            int pattern = timetable.positionPatterns[position];
+            int platform = timetable.positionPlatforms[position];
+            int count = timetable.patternTripCounts[pattern];
+            int first = timetable.patternFirstDepartures[pattern] + pos * count;
+            long localMillis = millisOnTravelDay(label.time, timetable.platformZones[platform]);
+            long latest = Math.min(bestArrivalAtDestination, limitTripTime == Long.MAX_VALUE ? Long.MAX_VALUE : initialTime.toEpochMilli() + limitTripTime);
+            int start = lowerBound(timetable.departureTimes, first, first + count, (int) ((localMillis + 999) / 1000));
+            Ride result = null;
+            for (int day = 0; day < 2 && result == null; day++) {
+                for (int d = day == 0 ? start : first; d < first + count; d++) {
+                    long time = label.time + timetable.departureTimes[d] * 1000L - localMillis + day * DAY_MILLIS;
+                    if (time >= latest)
+                        break;
+                    int stopTime = timetable.getStopTime(timetable.departureTrips[d], pos);
+                    if (realtimeFeed.isBlocked(timetable.stopTimeBoardEdges[stopTime]) || !timetable.isValidOn(stopTime, time))
+                        continue;
+                    result = new Ride(label, -1, null, -1, timetable.departureTrips[d], pos, ptGraph.edge(timetable.stopTimeBoardEdges[stopTime]), time, 0);
+                    break;
+                }
+            }
+            List<DelayedBoarding> delayed = delayedBoardings.get(position);
+            if (delayed != null) {
+                for (DelayedBoarding boarding : delayed) {
+                    long waitingTime = boarding.time * 1000L - localMillis;
+                    long time = label.time + (waitingTime < 0 ? waitingTime + DAY_MILLIS : waitingTime);
+                    if (time >= latest || result != null && time >= result.boardTime || !RaptorTimetable.isValidOn(boarding.validity, time))
+                        continue;
+                    int trip = timetable.departureTrips[first];
+                    for (int d = first; d < first + count; d++) {
+                        if (timetable.getStopTime(timetable.departureTrips[d], pos) == boarding.stopTime)
+                            trip = timetable.departureTrips[d];
+                    }
+                    long delay = realtimeFeed.getDelayForBoardEdge(boarding.boardEdge, Instant.ofEpochMilli(time));
+                    result = new Ride(label, -1, null, -1, trip, pos, boarding.boardEdge, time, delay);
+                }
+            }
+            return result;
+        }
+
+        private Ride alight(Ride ride, int pos, int position) {
+            int stopTime = timetable.getStopTime(ride.trip, pos);
+            int boardPosition = position - pos + ride.boardPos;
+            long scheduledArrival = ride.boardTime + (timetable.positionArrivalOffsets[position] - timetable.positionDepartureOffsets[boardPosition]) * 1000L;
+            int alightEdge = timetable.stopTimeAlightEdges[stopTime];
+            if (realtimeFeed.isBlocked(alightEdge) || !timetable.isValidForAlighting(stopTime, scheduledArrival))
+                return null;
+            long arrival = scheduledArrival;
+            if (!realtimeFeed.feedMessages.isEmpty())
+                arrival += Math.max(0, realtimeFeed.getDelayForAlightEdge(ptGraph.edge(alightEdge), Instant.ofEpochMilli(scheduledArrival)) - ride.boardDelay);
+            if (limitTripTime != Long.MAX_VALUE && arrival - initialTime.toEpochMilli() > limitTripTime)
+                return null;
+            return ride.alightAt(pos, arrival);
+        }
+
+        private void relaxArrival(Ride ride, int exit, RaptorLabel[] current, int round) {
+            if (ride.arrivalTime >= bestArrivalAtDestination)
+                return;
+            Label egressLabel = egressLabels[exit];
+            if (egressLabel != null) {
+                long arrival = ride.arrivalTime + initialTime.toEpochMilli() - egressLabel.currentTime;
+                if (arrival < bestArrivalAtDestination) {
+                    bestArrivalAtDestination = arrival;
+                    journeys.add(new Journey(ride, round, exit, arrival, ride.origin().departureTime));
+                }
+            }
+            if (ride.arrivalTime >= bestArrivalTimes[exit])
+                return;
+            bestArrivalTimes[exit] = ride.arrivalTime;
+            int arrivalTimeline = timetable.stopTimeArrivalTimelines[timetable.getStopTime(ride.trip, ride.alightPos)];
+            relaxTransfers(ride, arrivalTimeline, ride.arrivalTime, current);
+            int first = timetable.arrivalTimelineFirsts[arrivalTimeline];
+            if (first != arrivalTimeline)
+                relaxTransfers(ride, first, ride.arrivalTime + DAY_MILLIS + (timetable.arrivalTimelineTimes[first] - timetable.arrivalTimelineTimes[arrivalTimeline]) * 1000L, current);
+        }
+
+        private void relaxTransfers(Ride ride, int arrivalTimeline, long arrivalTime, RaptorLabel[] current) {
+            for (int t = timetable.transferFirst[arrivalTimeline]; t < timetable.transferFirst[arrivalTimeline + 1]; t++) {
+                if ((blockedRouteTypes & (1 << timetable.transferRouteTypes[t])) != 0)
+                    continue;
+                int platform = timetable.transferPlatforms[t];
+                long time = arrivalTime + timetable.transferTimes[t] * 1000L;
+                if (time < bestBoardingTimes[platform] && time < bestArrivalAtDestination) {
+                    bestBoardingTimes[platform] = time;
+                    current[platform] = new RaptorLabel(time, ride, t, ride.origin().departureTime);
+                    nextMarkedPlatforms.set(platform);
+                }
+            }
+        }
+
+        /**
+         * Stays in the vehicle if it continues as another trip of the same block.
+         */
+        private void continueInBlock(Ride ride, RaptorLabel[] current, int round, int depth) {
+            int[] blockTransfers = timetable.blockTransfers.get(ride.trip);
+            if (blockTransfers == null || depth > MAX_ROUNDS)
+                return;
+            int pattern = timetable.tripPatterns[ride.trip];
+            int firstPosition = timetable.patternFirstPositions[pattern];
+            int lastPos = timetable.getPatternLength(pattern) - 1;
+            long arrival = ride.boardTime + (timetable.positionArrivalOffsets[firstPosition + lastPos] - timetable.positionDepartureOffsets[firstPosition + ride.boardPos]) * 1000L;
+            for (int i = 0; i < blockTransfers.length; i += 3) {
+                int nextTrip = blockTransfers[i + 2];
+                if (nextTrip < 0)
+                    continue;
+                PtGraph.PtEdge transfer = ptGraph.edge(blockTransfers[i]);
+                PtGraph.PtEdge board = ptGraph.edge(blockTransfers[i + 1]);
+                long time = arrival + transfer.getTime() * 1000L;
+                if (realtimeFeed.isBlocked(board.getId()) || !RaptorTimetable.isValidOn(board.getAttrs().validity, time) || time >= bestArrivalAtDestination)
+                    continue;
+                Ride segment = new Ride(null, -1, ride.alightAt(lastPos, arrival), blockTransfers[i], nextTrip, 0, board, time, ride.boardDelay);
+                int nextPattern = timetable.tripPatterns[nextTrip];
+                int length = timetable.getPatternLength(nextPattern);
+                for (int pos = 1; pos < length; pos++) {
+                    visitedNodes++;
+                    int position = timetable.patternFirstPositions[nextPattern] + pos;
+                    Ride alighted = alight(segment, pos, position);
+                    if (alighted != null)
+                        relaxArrival(alighted, timetable.positionExits[position], current, round);
+                }
+                continueInBlock(segment, current, round, depth + 1);
+            }
+        }
+
+        private List<Journey> selectSolutions() {
+            List<Journey> result = new ArrayList<>();
+            // a journey is only kept if it is not dominated by a journey that departs later or at the same time
+            journeys.sort(Comparator.comparingLong((Journey j) -> -j.departureTime).thenComparingLong(j -> j.arrivalTime).thenComparingInt(j -> j.rounds));
+            for (Journey journey : journeys) {
+                boolean dominated = false;
+                for (Journey other : result) {
+                    if (other.arrivalTime <= journey.arrivalTime && (ignoreTransfers || other.rounds <= journey.rounds) && (profileQuery || other.departureTime >= journey.departureTime)) {
+                        dominated = true;
+                        break;
+                    }
+                }
+                if (!dominated)
+                    result.add(journey);
+            }
+            if (!profileQuery && ignoreTransfers && result.size() > 1)
+                result = result.subList(0, 1);
+            result.sort(Comparator.comparingLong(j -> j.departureTime));
+            return result.size() > limitSolutions ? result.subList(0, limitSolutions) : result;
+        }
+
+        /**
+         * Turns the journey into a path through the time-expanded graph, so it can be parsed by
+         * {@link TripFromLabel}.
+         */
+        private List<Label.Transition> toPath(Journey journey) {
+            List<Ride> rides = new ArrayList<>();
+            for (Ride ride = journey.ride; ride != null; ride = ride.origin().ride)
+                rides.add(ride);
+            Collections.reverse(rides);
+            Label label = null;
+            for (Ride ride : rides) {
+                List<Ride> segments = new ArrayList<>();
+                for (Ride segment = ride; segment != null; segment = segment.previousSegment)
+                    segments.add(segment);
+                Collections.reverse(segments);
+                RaptorLabel boardedFrom = segments.get(0).boardedFrom;
+                if (label == null) {
+                    // the access was searched for the initial time, but rRAPTOR may depart later
+                    label = shift(findAccessLabel(segments.get(0)), journey.departureTime - initialTime.toEpochMilli());
+                    label = next(label, findEdge(label.node.ptNode, GtfsStorage.EdgeType.ENTER_TIME_EXPANDED_NETWORK, segments.get(0).boardEdge.getBaseNode()), segments.get(0).boardTime);
+                } else {
+                    label = waitUntil(label, segments.get(0).boardEdge.getBaseNode(), segments.get(0).boardTime);
+                }
+                for (Ride segment : segments) {
+                    if (segment.previousSegment != null) {
+                        label = next(label, ptGraph.edge(segment.blockTransfer), label.currentTime + ptGraph.edge(segment.blockTransfer).getTime() * 1000L);
+                    }
+                    label = next(label, segment.boardEdge, segment.boardTime);
+                    int alightPos = segment.alightPos >= 0 ? segment.alightPos : timetable.getPatternLength(timetable.tripPatterns[segment.trip]) - 1;
+                    for (int pos = segment.boardPos + 1; pos <= alightPos; pos++) {
+                        int stopTime = timetable.getStopTime(segment.trip, pos);
+                        PtGraph.PtEdge hop = ptGraph.edge(timetable.stopTimeHopEdges[stopTime]);
+                        label = next(label, hop, label.currentTime + hop.getTime() * 1000L);
+                        if (pos < alightPos) {
+                            PtGraph.PtEdge dwell = ptGraph.edge(timetable.stopTimeDwellEdges[stopTime]);
+                            label = next(label, dwell, label.currentTime + dwell.getTime() * 1000L);
+                        }
+                    }
+                }
+                label = next(label, ptGraph.edge(timetable.stopTimeAlightEdges[timetable.getStopTime(ride.trip, ride.alightPos)]), label.currentTime);
+                RaptorLabel transferredTo = findTransferredTo(rides, ride);
+                if (transferredTo != null) {
+                    // this may also be a transfer of the next day, which is like waiting in the arrival timeline
+                    label = next(label, ptGraph.edge(timetable.transferEdges[transferredTo.transfer]), transferredTo.time);
+                } else {
+                    int arrivalTimeline = timetable.stopTimeArrivalTimelines[timetable.getStopTime(ride.trip, ride.alightPos)];
+                    label = next(label, ptGraph.edge(timetable.arrivalTimelineLeaveEdges[arrivalTimeline]), ride.arrivalTime);
+                }
+            }
+            return appendEgress(label, egressLabels[journey.exit]);
+        }
+
+        private Label findAccessLabel(Ride firstSegment) {
+            int timelineNode = firstSegment.boardEdge.getBaseNode();
+            int platform = timetable.departureTimelinePlatforms.getOrDefault(timelineNode, -1);
+            if (platform >= 0)
+                return accessLabels[platform];
+            // a delayed departure that was added to the timeline of a platform by the realtime feed
+            for (PtGraph.PtEdge e : realtimeFeed.getAdditionalEdges()) {
+                if (e.getType() == GtfsStorage.EdgeType.ENTER_TIME_EXPANDED_NETWORK && e.getAdjNode() == timelineNode) {
+                    platform = timetable.platformByNode.getOrDefault(e.getBaseNode(), -1);
+                    return platform >= 0 ? accessLabels[platform] : additionalAccessLabels.get(e.getBaseNode());
+                }
+            }
+            throw new IllegalStateException("No access to departure timeline node " + timelineNode);
+        }
+
+        private RaptorLabel findTransferredTo(List<Ride> rides, Ride ride) {
+            int index = rides.indexOf(ride);
+            if (index == rides.size() - 1)
+                return null;
+            return rides.get(index + 1).origin();
+        }
+
+        /**
+         * Follows the WAIT (and OVERNIGHT) edges of the departure timeline from the node the transfer led to until
+         * the node of the boarding.
+         */
+        private Label waitUntil(Label label, int timelineNode, long time) {
+            while (label.node.ptNode != timelineNode) {
+                PtGraph.PtEdge wait = null;
+                for (PtGraph.PtEdge e : edgesAround(label.node.ptNode)) {
+                    if ((e.getType() == GtfsStorage.EdgeType.WAIT || e.getType() == GtfsStorage.EdgeType.OVERNIGHT) && (wait == null || e.getTime() < wait.getTime()))
+                        wait = e;
+                }
+                // a departure that was added by the realtime feed may not be on the timeline we transferred to
+                if (wait == null || label.currentTime + wait.getTime() * 1000L > time)
+                    break;
+                label = next(label, wait, label.currentTime + wait.getTime() * 1000L);
+            }
+            return label;
+        }
+
+        private List<PtGraph.PtEdge> edgesAround(int node) {
+            List<PtGraph.PtEdge> result = new ArrayList<>();
+            if (node < ptGraph.getNodeCount())
+                ptGraph.edgesAround(node).forEach(result::add);
+            for (PtGraph.PtEdge e : realtimeFeed.getAdditionalEdges()) {
+                if (e.getBaseNode() == node)
+                    result.add(e);
+            }
+            return result;
+        }
+
+        private PtGraph.PtEdge findEdge(int baseNode, GtfsStorage.EdgeType type, int adjNode) {
+            for (PtGraph.PtEdge e : edgesAround(baseNode)) {
+                if (e.getType() == type && (adjNode < 0 || e.getAdjNode() == adjNode))
+                    return e;
+            }
+            return null;
+        }
+
+        private Label shift(Label label, long diff) {
+            if (diff == 0)
+                return label;
+            Label parent = label.parent != null ? shift(label.parent, diff) : null;
+            Long departureTime = label.departureTime != null ? label.departureTime + diff : null;
+            return new Label(label.currentTime + diff, label.edge, label.node, label.nTransfers, departureTime, label.streetTime, label.extraWeight, label.residualDelay, label.impossible, parent);
+        }
+
+        private Label next(Label parent, PtGraph.PtEdge ptEdge, long time) {
+            GraphExplorer.MultiModalEdge edge = graphExplorer.new MultiModalEdge(ptEdge);
+            Long departureTime = parent.departureTime;
+            if ((edge.getType() == GtfsStorage.EdgeType.ENTER_TIME_EXPANDED_NETWORK || edge.getType() == GtfsStorage.EdgeType.WAIT) && parent.nTransfers == 0)
+                departureTime = time - parent.streetTime;
+            return new Label(time, edge, edge.getAdjNode(), parent.nTransfers + edge.getTransfers(), departureTime, parent.streetTime, parent.extraWeight, 0, false, parent);
+        }
+
+        private List<Label.Transition> appendEgress(Label destinationStopLabel, Label egressLabel) {
+            List<Label.Transition> pathToDestinationStop = Label.getTransitions(destinationStopLabel, false);
+            List<Label.Transition> pathFromStation = Label.getTransitions(egressLabel, true);
+            long diff = destinationStopLabel.currentTime - pathFromStation.get(0).label.currentTime;
+            List<Label.Transition> patchedPathFromStation = pathFromStation.stream().map(t -> {
+                return new Label.Transition(new Label(t.label.currentTime + diff, t.label.edge, t.label.node, destinationStopLabel.nTransfers + t.label.nTransfers, t.label.departureTime, destinationStopLabel.streetTime + pathFromStation.get(0).label.streetTime, destinationStopLabel.extraWeight + t.label.extraWeight, t.label.residualDelay, t.label.impossible, null), t.edge);
+            }).collect(Collectors.toList());
+            List<Label.Transition> pp = new ArrayList<>(pathToDestinationStop);
+            pp.addAll(patchedPathFromStation.subList(1, pathFromStation.size()));
+            return pp;
+        }
+    }
+
+    private static int lowerBound(int[] values, int from, int to, int key) {
+        while (from < to) {
+            int mid = (from + to) >>> 1;
+            if (values[mid] < key)
+                from = mid + 1;
+            else
+                to = mid;
+        }
+        return from;
+    }
+
+    private static long millisOnTravelDay(long instant, java.time.ZoneId zoneId) {
+        return Instant.ofEpochMilli(instant).atZone(zoneId).toLocalTime().toNanoOfDay() / 1000000L;
+    }
+}
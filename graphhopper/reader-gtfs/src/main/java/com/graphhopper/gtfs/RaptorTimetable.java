@@ -0,0 +1,475 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.gtfs;
+
+import com.carrotsearch.hppc.IntArrayList;
+import com.carrotsearch.hppc.IntIntHashMap;
+import com.carrotsearch.hppc.IntObjectHashMap;
+import com.graphhopper.util.StopWatch;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+
+/**
+ * The timetable of all feeds in the compact form that is needed by the round-based {@link PtRouterRaptorImpl}. It is
+ * derived from the {@link PtGraph}, so every trip, platform and transfer of the RAPTOR timetable refers to the edges
+ * of the time-expanded network and the journeys can be turned into the same kind of paths the label setting
+ * produces.
+ * <p>
+ * Trips that stop at the same platforms with the same hop and dwell times form a pattern (a route in RAPTOR terms),
+ * so the trips of a pattern never overtake each other. For every position of a pattern the departures are sorted by
+ * their time of day, which means the earliest trip that can be boarded is found with a binary search.
+ * All per-stop-time data is kept in flat int arrays indexed by the stop time, i.e. the first stop time of the trip
+ * plus the position within the trip.
+ */
+final class RaptorTimetable {
+    private static final Logger logger = LoggerFactory.getLogger(RaptorTimetable.class);
+
+    // departure platforms, i.e. the nodes behind the ENTER_PT edges
+    final int[] platformNodes;
+    final ZoneId[] platformZones;
+    final IntIntHashMap platformByNode = new IntIntHashMap();
+    final int[] platformFirstPositions;
+    final int[] platformPositions;
+    final IntIntHashMap departureTimelinePlatforms = new IntIntHashMap();
+
+    // arrival platforms, i.e. the nodes before the EXIT_PT edges
+    final int[] exitNodes;
+    final IntIntHashMap exitByNode = new IntIntHashMap();
+
+    // the nodes of the arrival timelines and the transfers that start there
+    final int[] arrivalTimelineLeaveEdges;
+    final int[] arrivalTimelineExits;
+    // the transfers of an arrival only reach departures of the same day, the later ones are reached from the first
+    // arrival of the timeline on the next day
+    final int[] arrivalTimelineTimes;
+    final int[] arrivalTimelineFirsts;
+    final int[] transferFirst;
+    final int[] transferEdges;
+    final int[] transferTimes;
+    final int[] transferPlatforms;
+    final int[] transferRouteTypes;
+
+    final int[] patternFirstPositions;
+    final int[] patternFirstDepartures;
+    final int[] patternTripCounts;
+    final int[] positionPatterns;
+    final int[] positionPlatforms;
+    final int[] positionExits;
+    final int[] positionDepartureOffsets;
+    final int[] positionArrivalOffsets;
+    final int[] departureTrips;
+    final int[] departureTimes;
+
+    final int[] tripFirstStopTimes;
+    final int[] tripPatterns;
+    // trip -> triples of block transfer edge, board edge and the next trip of the same vehicle
+    final IntObjectHashMap<int[]> blockTransfers = new IntObjectHashMap<>();
+
+    final int[] stopTimeBoardEdges;
+    final int[] stopTimeAlightEdges;
+    final int[] stopTimeHopEdges;
+    final int[] stopTimeDwellEdges;
+    final int[] stopTimeDepartureNodes;
+    // the realtime feed refers to the stop times via their departure nodes
+    final IntIntHashMap stopTimeByDepartureNode = new IntIntHashMap();
+    final int[] stopTimeArrivalTimelines;
+    final int[] stopTimeValidities;
+    final int[] stopTimeAlightValidities;
+    final GtfsStorage.Validity[] validities;
+
+    private RaptorTimetable(Builder b) {
+        platformNodes = b.platformNodes.toArray();
+        platformZones = b.platformZones.toArray(new ZoneId[0]);
+        for (int i = 0; i < platformNodes.length; i++)
+            platformByNode.put(platformNodes[i], i);
+        departureTimelinePlatforms.putAll(b.departureTimelinePlatforms);
+        exitNodes = b.exitNodes.toArray();
+        for (int i = 0; i < exitNodes.length; i++)
+            exitByNode.put(exitNodes[i], i);
+        arrivalTimelineLeaveEdges = b.arrivalTimelineLeaveEdges.toArray();
+        arrivalTimelineExits = b.arrivalTimelineExits.toArray();
+        arrivalTimelineTimes = b.arrivalTimelineTimes.toArray();
+        arrivalTimelineFirsts = b.arrivalTimelineFirsts.toArray();
+        transferFirst = b.transferFirst.toArray();
+        transferEdges = b.transferEdges.toArray();
+        transferTimes = b.transferTimes.toArray();
+        transferPlatforms = b.transferPlatforms.toArray();
+        transferRouteTypes = b.transferRouteTypes.toArray();
+
+        tripFirstStopTimes = new int[b.trips.size() + 1];
+        tripPatterns = new int[b.trips.size()];
+        int stopTimes = b.trips.stream().mapToInt(t -> t.boardEdges.size()).sum();
+        stopTimeBoardEdges = new int[stopTimes];
+        stopTimeAlightEdges = new int[stopTimes];
+        stopTimeHopEdges = new int[stopTimes];
+        stopTimeDwellEdges = new int[stopTimes];
+        stopTimeDepartureNodes = new int[stopTimes];
+        stopTimeArrivalTimelines = new int[stopTimes];
+        stopTimeValidities = new int[stopTimes];
+        stopTimeAlightValidities = new int[stopTimes];
+        validities = b.validities.toArray(new GtfsStorage.Validity[0]);
+        int stopTime = 0;
+        for (int trip = 0; trip < b.trips.size(); trip++) {
+            TripBuilder t = b.trips.get(trip);
+            tripFirstStopTimes[trip] = stopTime;
+            tripPatterns[trip] = t.pattern;
+            for (int pos = 0; pos < t.boardEdges.size(); pos++, stopTime++) {
+                stopTimeBoardEdges[stopTime] = t.boardEdges.get(pos);
+                stopTimeAlightEdges[stopTime] = t.alightEdges.get(pos);
+                stopTimeHopEdges[stopTime] = t.hopEdges.get(pos);
+                stopTimeDwellEdges[stopTime] = t.dwellEdges.get(pos);
+                stopTimeDepartureNodes[stopTime] = t.departureNodes.get(pos);
+                stopTimeByDepartureNode.put(stopTimeDepartureNodes[stopTime], stopTime);
+                stopTimeArrivalTimelines[stopTime] = t.arrivalTimelines.get(pos);
+                stopTimeValidities[stopTime] = t.validities.get(pos);
+                stopTimeAlightValidities[stopTime] = t.alightValidities.get(pos);
+            }
+        }
+        tripFirstStopTimes[b.trips.size()] = stopTime;
+        IntIntHashMap tripByFirstDepartureNode = new IntIntHashMap();
+        for (int trip = 0; trip < b.trips.size(); trip++)
+            tripByFirstDepartureNode.put(stopTimeDepartureNodes[tripFirstStopTimes[trip]], trip);
+        for (int trip = 0; trip < b.trips.size(); trip++) {
+            int[] transfers = b.trips.get(trip).blockTransfers;
+            if (transfers == null)
+                continue;
+            // replace the departure node of the next trip with the trip itself
+            for (int i = 2; i < transfers.length; i += 3)
+                transfers[i] = tripByFirstDepartureNode.getOrDefault(transfers[i], -1);
+            blockTransfers.put(trip, transfers);
+        }
+
+        int patterns = b.patternTrips.size();
+        patternFirstPositions = new int[patterns + 1];
+        patternFirstDepartures = new int[patterns];
+        patternTripCounts = new int[patterns];
+        int positions = 0;
+        for (int p = 0; p < patterns; p++) {
+            patternFirstPositions[p] = positions;
+            positions += b.trips.get(b.patternTrips.get(p).get(0)).boardEdges.size();
+        }
+        patternFirstPositions[patterns] = positions;
+        positionPatterns = new int[positions];
+        positionPlatforms = new int[positions];
+        positionExits = new int[positions];
+        positionDepartureOffsets = new int[positions];
+        positionArrivalOffsets = new int[positions];
+        departureTrips = new int[stopTimes];
+        departureTimes = new int[stopTimes];
+        int departure = 0;
+        for (int p = 0; p < patterns; p++) {
+            IntArrayList trips = b.patternTrips.get(p);
+            TripBuilder first = b.trips.get(trips.get(0));
+            patternFirstDepartures[p] = departure;
+            patternTripCounts[p] = trips.size();
+            for (int pos = 0; pos < first.boardEdges.size(); pos++) {
+                int position = patternFirstPositions[p] + pos;
+                positionPatterns[position] = p;
+                positionPlatforms[position] = first.platforms.get(pos);
+                positionExits[position] = arrivalTimelineExits[first.arrivalTimelines.get(pos)];
+                positionDepartureOffsets[position] = first.departureOffsets.get(pos);
+                positionArrivalOffsets[position] = first.arrivalOffsets.get(pos);
+                final int fpos = pos;
+                Integer[] sorted = new Integer[trips.size()];
+                for (int i = 0; i < sorted.length; i++)
+                    sorted[i] = trips.get(i);
+                Arrays.sort(sorted, Comparator.comparingInt(trip -> b.trips.get(trip).departureTimes.get(fpos)));
+                for (int trip : sorted) {
+                    departureTrips[departure] = trip;
+                    departureTimes[departure] = b.trips.get(trip).departureTimes.get(pos);
+                    departure++;
+                }
+            }
+        }
+
+        platformFirstPositions = new int[platformNodes.length + 1];
+        for (int position = 0; position < positions; position++)
+            platformFirstPositions[positionPlatforms[position] + 1]++;
+        for (int i = 0; i < platformNodes.length; i++)
+            platformFirstPositions[i + 1] += platformFirstPositions[i];
+        platformPositions = new int[positions];
+        int[] fill = Arrays.copyOf(platformFirstPositions, platformNodes.length);
+        for (int position = 0; position < positions; position++)
+            platformPositions[fill[positionPlatforms[position]]++] = position;
+    }
+
+    static RaptorTimetable build(GtfsStorage gtfsStorage) {
+        StopWatch sw = StopWatch.started();
+        RaptorTimetable timetable = new Builder(gtfsStorage.getPtGraph()).build(new TreeSet<>(gtfsStorage.getStationNodes().values()));
+        logger.info("Created RAPTOR timetable with " + timetable.patternTripCounts.length + " patterns, "
+                + (timetable.tripFirstStopTimes.length - 1) + " trips and " + timetable.stopTimeBoardEdges.length
+                + " stop times, took " + sw.stop().getSeconds() + "s");
+        return timetable;
+    }
+
+    int getStopTime(int trip, int pos) {
+        return tripFirstStopTimes[trip] + pos;
+    }
+
+    int getPatternLength(int pattern) {
+        return patternFirstPositions[pattern + 1] - patternFirstPositions[pattern];
+    }
+
+    boolean isValidOn(int stopTime, long instant) {
+        return isValidOn(validities[stopTimeValidities[stopTime]], instant);
+    }
+
+    boolean isValidForAlighting(int stopTime, long instant) {
+        return isValidOn(validities[stopTimeAlightValidities[stopTime]], instant);
+    }
+
+    static boolean isValidOn(GtfsStorage.Validity validity, long instant) {
+        int trafficDay = (int) ChronoUnit.DAYS.between(validity.start, Instant.ofEpochMilli(instant).atZone(validity.zoneId).toLocalDate());
+        return trafficDay >= 0 && validity.validity.get(trafficDay);
+    }
+
+    private static class TripBuilder {
+        int pattern;
+        final IntArrayList boardEdges = new IntArrayList();
+        final IntArrayList alightEdges = new IntArrayList();
+        final IntArrayList hopEdges = new IntArrayList();
+        final IntArrayList dwellEdges = new IntArrayList();
+        final IntArrayList departureNodes = new IntArrayList();
+        final IntArrayList arrivalTimelines = new IntArrayList();
+        final IntArrayList validities = new IntArrayList();
+        final IntArrayList alightValidities = new IntArrayList();
+        final IntArrayList platforms = new IntArrayList();
+        final IntArrayList departureTimes = new IntArrayList();
+        final IntArrayList departureOffsets = new IntArrayList();
+        final IntArrayList arrivalOffsets = new IntArrayList();
+        int[] blockTransfers;
+    }
+
+    private static class Builder {
+        private final PtGraph ptGraph;
+        final IntArrayList platformNodes = new IntArrayList();
+        final List<ZoneId> platformZones = new ArrayList<>();
+        final IntIntHashMap departureTimelinePlatforms = new IntIntHashMap();
+        final IntIntHashMap departureTimelineTimes = new IntIntHashMap();
+        final IntArrayList exitNodes = new IntArrayList();
+        final IntIntHashMap arrivalTimelines = new IntIntHashMap();
+        final IntArrayList arrivalTimelineNodes = new IntArrayList();
+        final IntArrayList arrivalTimelineLeaveEdges = new IntArrayList();
+        final IntArrayList arrivalTimelineExits = new IntArrayList();
+        final IntArrayList arrivalTimelineTimes = new IntArrayList();
+        final IntArrayList arrivalTimelineFirsts = new IntArrayList();
+        final IntArrayList transferFirst = new IntArrayList();
+        final IntArrayList transferEdges = new IntArrayList();
+        final IntArrayList transferTimes = new IntArrayList();
+        final IntArrayList transferPlatforms = new IntArrayList();
+        final IntArrayList transferRouteTypes = new IntArrayList();
+        final List<TripBuilder> trips = new ArrayList<>();
+        final List<IntArrayList> patternTrips = new ArrayList<>();
+        final List<GtfsStorage.Validity> validities = new ArrayList<>();
+        final Map<GtfsStorage.Validity, Integer> validityIds = new HashMap<>();
+
+        Builder(PtGraph ptGraph) {
+            this.ptGraph = ptGraph;
+        }
+
+        RaptorTimetable build(Collection<Integer> stationNodes) {
+            for (int station : stationNodes) {
+                for (PtGraph.PtEdge enterPt : ptGraph.edgesAround(station)) {
+                    if (enterPt.getType() == GtfsStorage.EdgeType.ENTER_PT)
+                        addPlatform(enterPt);
+                }
+                for (PtGraph.PtEdge exitPt : ptGraph.backEdgesAround(station)) {
+                    if (exitPt.getType() == GtfsStorage.EdgeType.EXIT_PT)
+                        addExit(exitPt.getAdjNode());
+                }
+            }
+            // the transfers can only be added once all departure timelines are known
+            transferFirst.add(0);
+            for (int timeline = 0; timeline < arrivalTimelineExits.size(); timeline++) {
+                addTransfers(arrivalTimelineNodes.get(timeline));
+                transferFirst.add(transferEdges.size());
+            }
+            Map<IntArrayList, Integer> patterns = new HashMap<>();
+            for (int platform = 0; platform < platformNodes.size(); platform++) {
+                for (PtGraph.PtEdge enterTen : ptGraph.edgesAround(platformNodes.get(platform))) {
+                    if (enterTen.getType() != GtfsStorage.EdgeType.ENTER_TIME_EXPANDED_NETWORK)
+                        continue;
+                    for (PtGraph.PtEdge board : ptGraph.edgesAround(enterTen.getAdjNode())) {
+                        if (board.getType() == GtfsStorage.EdgeType.BOARD && board.getAttrs().transfers == 1 && isFirstDeparture(board.getAdjNode()))
+                            addTrip(board, patterns);
+                    }
+                }
+            }
+            for (int trip = 0; trip < trips.size(); trip++)
+                addBlockTransfers(trip);
+            return new RaptorTimetable(this);
+        }
+
+        private void addPlatform(PtGraph.PtEdge enterPt) {
+            int platform = platformNodes.size();
+            platformNodes.add(enterPt.getAdjNode());
+            ZoneId zoneId = null;
+            for (PtGraph.PtEdge enterTen : ptGraph.edgesAround(enterPt.getAdjNode())) {
+                if (enterTen.getType() == GtfsStorage.EdgeType.ENTER_TIME_EXPANDED_NETWORK) {
+                    departureTimelinePlatforms.put(enterTen.getAdjNode(), platform);
+                    departureTimelineTimes.put(enterTen.getAdjNode(), enterTen.getTime());
+                    zoneId = enterTen.getAttrs().feedIdWithTimezone.zoneId;
+                }
+            }
+            platformZones.add(zoneId);
+        }
+
+        private void addExit(int exitNode) {
+            int exit = exitNodes.size();
+            exitNodes.add(exitNode);
+            int first = arrivalTimelineNodes.size();
+            for (PtGraph.PtEdge leaveTen : ptGraph.backEdgesAround(exitNode)) {
+                if (leaveTen.getType() == GtfsStorage.EdgeType.LEAVE_TIME_EXPANDED_NETWORK) {
+                    arrivalTimelines.put(leaveTen.getAdjNode(), arrivalTimelineNodes.size());
+                    arrivalTimelineNodes.add(leaveTen.getAdjNode());
+                    arrivalTimelineLeaveEdges.add(leaveTen.getId());
+                    arrivalTimelineExits.add(exit);
+                    arrivalTimelineTimes.add(leaveTen.getTime());
+                }
+            }
+            int earliest = first;
+            for (int timeline = first; timeline < arrivalTimelineNodes.size(); timeline++) {
+                if (arrivalTimelineTimes.get(timeline) < arrivalTimelineTimes.get(earliest))
+                    earliest = timeline;
+            }
+            for (int timeline = first; timeline < arrivalTimelineNodes.size(); timeline++)
+                arrivalTimelineFirsts.add(earliest);
+        }
+
+        private void addTransfers(int arrivalTimelineNode) {
+            for (PtGraph.PtEdge transfer : ptGraph.edgesAround(arrivalTimelineNode)) {
+                if (transfer.getType() != GtfsStorage.EdgeType.TRANSFER)
+                    continue;
+                int platform = departureTimelinePlatforms.getOrDefault(transfer.getAdjNode(), -1);
+                if (platform < 0)
+                    continue;
+                transferEdges.add(transfer.getId());
+                transferTimes.add(transfer.getTime());
+                transferPlatforms.add(platform);
+                transferRouteTypes.add(transfer.getAttrs().route_type);
+            }
+        }
+
+        private boolean isFirstDeparture(int departureNode) {
+            int arrivalNode = findBack(departureNode, GtfsStorage.EdgeType.DWELL).getAdjNode();
+            return findBack(arrivalNode, GtfsStorage.EdgeType.HOP) == null;
+        }
+
+        private void addTrip(PtGraph.PtEdge firstBoard, Map<IntArrayList, Integer> patterns) {
+            TripBuilder trip = new TripBuilder();
+            PtGraph.PtEdge board = firstBoard;
+            PtGraph.PtEdge hop = null;
+            int departureOffset = 0, arrivalOffset = 0;
+            while (true) {
+                int departureNode = board.getAdjNode();
+                PtGraph.PtEdge dwell = findBack(departureNode, GtfsStorage.EdgeType.DWELL);
+                PtGraph.PtEdge alight = find(dwell.getAdjNode(), GtfsStorage.EdgeType.ALIGHT);
+                if (hop != null) {
+                    arrivalOffset = departureOffset + hop.getTime();
+                    departureOffset = arrivalOffset + dwell.getTime();
+                }
+                trip.boardEdges.add(board.getId());
+                trip.alightEdges.add(alight.getId());
+                trip.hopEdges.add(hop == null ? -1 : hop.getId());
+                trip.dwellEdges.add(dwell.getId());
+                trip.departureNodes.add(departureNode);
+                trip.arrivalTimelines.add(arrivalTimelines.get(alight.getAdjNode()));
+                trip.validities.add(validityId(board.getAttrs().validity));
+                trip.alightValidities.add(validityId(alight.getAttrs().validity));
+                int timeline = board.getBaseNode();
+                trip.platforms.add(departureTimelinePlatforms.get(timeline));
+                trip.departureTimes.add(departureTimelineTimes.get(timeline));
+                trip.departureOffsets.add(departureOffset);
+                trip.arrivalOffsets.add(arrivalOffset);
+
+                hop = find(departureNode, GtfsStorage.EdgeType.HOP);
+                if (hop == null)
+                    break;
+                int nextDepartureNode = find(hop.getAdjNode(), GtfsStorage.EdgeType.DWELL).getAdjNode();
+                board = null;
+                for (PtGraph.PtEdge e : ptGraph.backEdgesAround(nextDepartureNode)) {
+                    if (e.getType() == GtfsStorage.EdgeType.BOARD && e.getAttrs().transfers == 1)
+                        board = new PtGraph.PtEdge(e.getId(), e.getAdjNode(), e.getBaseNode(), e.getAttrs());
+                }
+            }
+
+            IntArrayList key = new IntArrayList();
+            key.addAll(trip.platforms);
+            for (int i = 0; i < trip.arrivalTimelines.size(); i++)
+                key.add(arrivalTimelineExits.get(trip.arrivalTimelines.get(i)));
+            key.addAll(trip.departureOffsets);
+            key.addAll(trip.arrivalOffsets);
+            trip.pattern = patterns.computeIfAbsent(key, k -> {
+                patternTrips.add(new IntArrayList());
+                return patternTrips.size() - 1;
+            });
+            patternTrips.get(trip.pattern).add(trips.size());
+            trips.add(trip);
+        }
+
+        private int validityId(GtfsStorage.Validity validity) {
+            return validityIds.computeIfAbsent(validity, v -> {
+                validities.add(v);
+                return validities.size() - 1;
+            });
+        }
+
+        private void addBlockTransfers(int trip) {
+            // the block transfers start at the arrival node of the last stop
+            TripBuilder t = trips.get(trip);
+            int lastDwell = t.dwellEdges.get(t.dwellEdges.size() - 1);
+            int lastArrivalNode = -1;
+            for (PtGraph.PtEdge e : ptGraph.backEdgesAround(t.departureNodes.get(t.departureNodes.size() - 1))) {
+                if (e.getId() == lastDwell)
+                    lastArrivalNode = e.getAdjNode();
+            }
+            IntArrayList result = new IntArrayList();
+            for (PtGraph.PtEdge transfer : ptGraph.edgesAround(lastArrivalNode)) {
+                if (transfer.getType() != GtfsStorage.EdgeType.TRANSFER)
+                    continue;
+                for (PtGraph.PtEdge board : ptGraph.edgesAround(transfer.getAdjNode())) {
+                    if (board.getType() == GtfsStorage.EdgeType.BOARD)
+                        result.add(transfer.getId(), board.getId(), board.getAdjNode());
+                }
+            }
+            if (!result.isEmpty())
+                t.blockTransfers = result.toArray();
+        }
+
+        private PtGraph.PtEdge find(int baseNode, GtfsStorage.EdgeType type) {
+            for (PtGraph.PtEdge e : ptGraph.edgesAround(baseNode)) {
+                if (e.getType() == type)
+                    return e;
+            }
+            return null;
+        }
+
+        private PtGraph.PtEdge findBack(int adjNode, GtfsStorage.EdgeType type) {
+            for (PtGraph.PtEdge e : ptGraph.backEdgesAround(adjNode)) {
+                if (e.getType() == type)
+                    return e;
+            }
+            return null;
+        }
+    }
+}
@@ -21,8 +21,8 @@ package com.graphhopper.gtfs;
 import com.carrotsearch.hppc.IntArrayList;
 import com.carrotsearch.hppc.IntHashSet;
 import com.carrotsearch.hppc.IntLongHashMap;
+import com.carrotsearch.hppc.IntObjectHashMap;
 import com.conveyal.gtfs.GTFSFeed;
-import com.conveyal.gtfs.model.Frequency;
 import com.conveyal.gtfs.model.StopTime;
 import com.conveyal.gtfs.model.Trip;
 import com.google.transit.realtime.GtfsRealtime;
@@ -43,7 +43,6 @@ import java.util.stream.StreamSupport;
 
 import static com.google.transit.realtime.GtfsRealtime.TripUpdate.StopTimeUpdate.ScheduleRelationship.NO_DATA;
 import static com.google.transit.realtime.GtfsRealtime.TripUpdate.StopTimeUpdate.ScheduleRelationship.SKIPPED;
-import static java.time.temporal.ChronoUnit.DAYS;
 
 public class RealtimeFeed {
     private static final Logger logger = LoggerFactory.getLogger(RealtimeFeed.class);
@@ -51,15 +50,29 @@ public class RealtimeFeed {
     private final IntLongHashMap delaysForBoardEdges;
     private final IntLongHashMap delaysForAlightEdges;
     private final List<PtGraph.PtEdge> additionalEdges;
+    private final IntObjectHashMap<PtGraph.PtEdge> additionalEdgesById = new IntObjectHashMap<>();
+    private final IntObjectHashMap<List<PtGraph.PtEdge>> additionalEdgesByBaseNode = new IntObjectHashMap<>();
+    private final IntObjectHashMap<List<PtGraph.PtEdge>> additionalBackEdgesByAdjNode = new IntObjectHashMap<>();
     public final Map<String, GtfsRealtime.FeedMessage> feedMessages;
 
-    private RealtimeFeed(Map<String, GtfsRealtime.FeedMessage> feedMessages, IntHashSet blockedEdges,
-                         IntLongHashMap delaysForBoardEdges, IntLongHashMap delaysForAlightEdges, List<PtGraph.PtEdge> additionalEdges) {
+    RealtimeFeed(Map<String, GtfsRealtime.FeedMessage> feedMessages, IntHashSet blockedEdges,
+                 IntLongHashMap delaysForBoardEdges, IntLongHashMap delaysForAlightEdges, List<PtGraph.PtEdge> additionalEdges) {
         this.feedMessages = feedMessages;
         this.blockedEdges = blockedEdges;
         this.delaysForBoardEdges = delaysForBoardEdges;
         this.delaysForAlightEdges = delaysForAlightEdges;
         this.additionalEdges = additionalEdges;
+        for (PtGraph.PtEdge e : additionalEdges) {
+            additionalEdgesById.put(e.getId(), e);
+            List<PtGraph.PtEdge> edges = additionalEdgesByBaseNode.get(e.getBaseNode());
+            if (edges == null)
+                additionalEdgesByBaseNode.put(e.getBaseNode(), edges = new ArrayList<>(2));
+            edges.add(e);
+            List<PtGraph.PtEdge> backEdges = additionalBackEdgesByAdjNode.get(e.getAdjNode());
+            if (backEdges == null)
+                additionalBackEdgesByAdjNode.put(e.getAdjNode(), backEdges = new ArrayList<>(2));
+            backEdges.add(new PtGraph.PtEdge(e.getId(), e.getAdjNode(), e.getBaseNode(), e.getAttrs()));
+        }
     }
 
     public static RealtimeFeed empty() {
@@ -67,107 +80,10 @@ public class RealtimeFeed {
     }
 
     public static RealtimeFeed fromProtobuf(GtfsStorage staticGtfs, Map<String, Transfers> transfers, Map<String, GtfsRealtime.FeedMessage> feedMessages) {
-        final IntHashSet blockedEdges = new IntHashSet();
-        final IntLongHashMap delaysForBoardEdges = new IntLongHashMap();
-        final IntLongHashMap delaysForAlightEdges = new IntLongHashMap();
-        final LinkedList<PtGraph.PtEdge> additionalEdges = new LinkedList<>();
-        final GtfsReader.PtGraphOut overlayGraph = new GtfsReader.PtGraphOut() {
-            int nextEdge = staticGtfs.getPtGraph().getEdgeCount();
-            int nextNode = staticGtfs.getPtGraph().getNodeCount();
-
-            @Override
-            public int createEdge(int src, int dest, PtEdgeAttributes attrs) {
-                int edgeId = nextEdge++;
-                additionalEdges.add(new PtGraph.PtEdge(edgeId, src, dest, attrs));
-                return edgeId;
-            }
-
-            @Override
-            public int createNode() {
-                return nextNode++;
-            }
-
-        };
-
-        feedMessages.forEach((feedKey, feedMessage) -> {
-            GTFSFeed feed = staticGtfs.getGtfsFeeds().get(feedKey);
-            ZoneId timezone = ZoneId.of(feed.agency.values().stream().findFirst().get().agency_timezone);
-            PtGraph ptGraphNodesAndEdges = staticGtfs.getPtGraph();
-            final GtfsReader gtfsReader = new GtfsReader(feedKey, ptGraphNodesAndEdges, overlayGraph, staticGtfs, null, transfers.get(feedKey), null);
-            Instant timestamp = Instant.ofEpochSecond(feedMessage.getHeader().getTimestamp());
-            LocalDate dateToChange = timestamp.atZone(timezone).toLocalDate(); //FIXME
-            BitSet validOnDay = new BitSet();
-            LocalDate startDate = feed.getStartDate();
-            validOnDay.set((int) DAYS.between(startDate, dateToChange));
-            feedMessage.getEntityList().stream()
-                    .filter(GtfsRealtime.FeedEntity::hasTripUpdate)
-                    .map(GtfsRealtime.FeedEntity::getTripUpdate)
-                    .filter(tripUpdate -> tripUpdate.getTrip().getScheduleRelationship() == GtfsRealtime.TripDescriptor.ScheduleRelationship.SCHEDULED)
-                    .forEach(tripUpdate -> {
-                        Collection<Frequency> frequencies = feed.getFrequencies(tripUpdate.getTrip().getTripId());
-                        int timeOffset = (tripUpdate.getTrip().hasStartTime() && !frequencies.isEmpty()) ? LocalTime.parse(tripUpdate.getTrip().getStartTime()).toSecondOfDay() : 0;
-                        final int[] boardEdges = findBoardEdgesForTrip(staticGtfs, feedKey, feed, tripUpdate);
-                        final int[] leaveEdges = findLeaveEdgesForTrip(staticGtfs, feedKey, feed, tripUpdate);
-                        if (boardEdges == null || leaveEdges == null) {
-                            logger.warn("Trip not found: {}", tripUpdate.getTrip());
-                            return;
-                        }
-                        tripUpdate.getStopTimeUpdateList().stream()
-                                .filter(stopTimeUpdate -> stopTimeUpdate.getScheduleRelationship() == SKIPPED)
-                                .mapToInt(GtfsRealtime.TripUpdate.StopTimeUpdate::getStopSequence)
-                                .forEach(skippedStopSequenceNumber -> {
-                                    blockedEdges.add(boardEdges[skippedStopSequenceNumber]);
-                                    blockedEdges.add(leaveEdges[skippedStopSequenceNumber]);
-                                });
-                        GtfsReader.TripWithStopTimes tripWithStopTimes = toTripWithStopTimes(feed, tripUpdate);
-                        tripWithStopTimes.stopTimes.forEach(stopTime -> {
-                            if (stopTime.stop_sequence > leaveEdges.length - 1) {
-                                logger.warn("Stop sequence number too high {} vs {}", stopTime.stop_sequence, leaveEdges.length);
-                                return;
-                            }
-                            final StopTime originalStopTime = feed.stop_times.get(new Fun.Tuple2(tripUpdate.getTrip().getTripId(), stopTime.stop_sequence));
-                            int arrivalDelay = stopTime.arrival_time - originalStopTime.arrival_time;
-                            delaysForAlightEdges.put(leaveEdges[stopTime.stop_sequence], arrivalDelay * 1000);
-                            int departureDelay = stopTime.departure_time - originalStopTime.departure_time;
-                            if (departureDelay > 0) {
-                                int boardEdge = boardEdges[stopTime.stop_sequence];
-                                int departureNode = ptGraphNodesAndEdges.edge(boardEdge).getAdjNode();
-                                int delayedBoardEdge = gtfsReader.addDelayedBoardEdge(timezone, tripUpdate.getTrip(), stopTime.stop_sequence, stopTime.departure_time + timeOffset, departureNode, validOnDay);
-                                delaysForBoardEdges.put(delayedBoardEdge, departureDelay * 1000);
-                            }
-                        });
-                    });
-            feedMessage.getEntityList().stream()
-                    .filter(GtfsRealtime.FeedEntity::hasTripUpdate)
-                    .map(GtfsRealtime.FeedEntity::getTripUpdate)
-                    .filter(tripUpdate -> tripUpdate.getTrip().getScheduleRelationship() == GtfsRealtime.TripDescriptor.ScheduleRelationship.ADDED)
-                    .forEach(tripUpdate -> {
-                        Trip trip = new Trip();
-                        trip.trip_id = tripUpdate.getTrip().getTripId();
-                        trip.route_id = tripUpdate.getTrip().getRouteId();
-                        final List<StopTime> stopTimes = tripUpdate.getStopTimeUpdateList().stream()
-                                .map(stopTimeUpdate -> {
-                                    final StopTime stopTime = new StopTime();
-                                    stopTime.stop_sequence = stopTimeUpdate.getStopSequence();
-                                    stopTime.stop_id = stopTimeUpdate.getStopId();
-                                    stopTime.trip_id = trip.trip_id;
-                                    final ZonedDateTime arrival_time = Instant.ofEpochSecond(stopTimeUpdate.getArrival().getTime()).atZone(timezone);
-                                    stopTime.arrival_time = (int) Duration.between(arrival_time.truncatedTo(ChronoUnit.DAYS), arrival_time).getSeconds();
-                                    final ZonedDateTime departure_time = Instant.ofEpochSecond(stopTimeUpdate.getArrival().getTime()).atZone(timezone);
-                                    stopTime.departure_time = (int) Duration.between(departure_time.truncatedTo(ChronoUnit.DAYS), departure_time).getSeconds();
-                                    return stopTime;
-                                })
-                                .collect(Collectors.toList());
-                        GtfsReader.TripWithStopTimes tripWithStopTimes = new GtfsReader.TripWithStopTimes(trip, stopTimes, validOnDay, Collections.emptySet(), Collections.emptySet());
-                        gtfsReader.addTrip(timezone, 0, new ArrayList<>(), tripWithStopTimes, tripUpdate.getTrip());
-                    });
-            gtfsReader.wireUpAdditionalDeparturesAndArrivals(timezone);
-        });
-
-        return new RealtimeFeed(feedMessages, blockedEdges, delaysForBoardEdges, delaysForAlightEdges, additionalEdges);
+        return new RealtimeOverlay(staticGtfs, transfers).apply(feedMessages);
     }
 
-    private static int[] findLeaveEdgesForTrip(GtfsStorage staticGtfs, String feedKey, GTFSFeed feed, GtfsRealtime.TripUpdate tripUpdate) {
+    static int[] findLeaveEdgesForTrip(GtfsStorage staticGtfs, String feedKey, GTFSFeed feed, GtfsRealtime.TripUpdate tripUpdate) {
         Trip trip = feed.trips.get(tripUpdate.getTrip().getTripId());
         StopTime next = feed.getOrderedStopTimesForTrip(trip.trip_id).iterator().next();
         int station = staticGtfs.getStationNodes().get(new GtfsStorage.FeedIdWithStopId(feedKey, next.stop_id));
@@ -183,7 +99,7 @@ public class RealtimeFeed {
         return collectWithPadding(boardEdges);
     }
 
-    private static int[] findBoardEdgesForTrip(GtfsStorage staticGtfs, String feedKey, GTFSFeed feed, GtfsRealtime.TripUpdate tripUpdate) {
+    static int[] findBoardEdgesForTrip(GtfsStorage staticGtfs, String feedKey, GTFSFeed feed, GtfsRealtime.TripUpdate tripUpdate) {
         Trip trip = feed.trips.get(tripUpdate.getTrip().getTripId());
         StopTime next = feed.getOrderedStopTimesForTrip(trip.trip_id).iterator().next();
         int station = staticGtfs.getStationNodes().get(new GtfsStorage.FeedIdWithStopId(feedKey, next.stop_id));
@@ -266,6 +182,26 @@ public class RealtimeFeed {
         return additionalEdges;
     }
 
+    PtGraph.PtEdge getAdditionalEdge(int edgeId) {
+        return additionalEdgesById.get(edgeId);
+    }
+
+    /**
+     * @return the additional edges leaving the given node, in the same order as in getAdditionalEdges
+     */
+    List<PtGraph.PtEdge> getAdditionalEdgesAround(int node) {
+        List<PtGraph.PtEdge> edges = additionalEdgesByBaseNode.get(node);
+        return edges != null ? edges : Collections.emptyList();
+    }
+
+    /**
+     * @return the additional edges arriving at the given node, reversed like the ones of PtGraph#backEdgesAround
+     */
+    List<PtGraph.PtEdge> getAdditionalBackEdgesAround(int node) {
+        List<PtGraph.PtEdge> edges = additionalBackEdgesByAdjNode.get(node);
+        return edges != null ? edges : Collections.emptyList();
+    }
+
     public Optional<GtfsReader.TripWithStopTimes> getTripUpdate(GTFSFeed staticFeed, GtfsRealtime.TripDescriptor tripDescriptor, Instant boardTime) {
         try {
             logger.trace("getTripUpdate {}", tripDescriptor);
@@ -392,19 +328,22 @@ public class RealtimeFeed {
     }
 
     public long getDelayForBoardEdge(PtGraph.PtEdge edge, Instant now) {
-        if (isThisRealtimeUpdateAboutThisLineRun(now)) {
-            return delaysForBoardEdges.getOrDefault(edge.getId(), 0);
-        } else {
-            return 0;
-        }
+        return getDelayForBoardEdge(edge.getId(), now.toEpochMilli());
     }
 
     public long getDelayForAlightEdge(PtGraph.PtEdge edge, Instant now) {
-        if (isThisRealtimeUpdateAboutThisLineRun(now)) {
-            return delaysForAlightEdges.getOrDefault(edge.getId(), 0);
-        } else {
-            return 0;
-        }
+        return getDelayForAlightEdge(edge.getId(), now.toEpochMilli());
+    }
+
+    // Most edges don't have a delay, so we look at the feed timestamp only if there is one.
+    long getDelayForBoardEdge(int edgeId, long now) {
+        long delay = delaysForBoardEdges.getOrDefault(edgeId, 0);
+        return delay != 0 && isThisRealtimeUpdateAboutThisLineRun(Instant.ofEpochMilli(now)) ? delay : 0;
+    }
+
+    long getDelayForAlightEdge(int edgeId, long now) {
+        long delay = delaysForAlightEdges.getOrDefault(edgeId, 0);
+        return delay != 0 && isThisRealtimeUpdateAboutThisLineRun(Instant.ofEpochMilli(now)) ? delay : 0;
     }
 
     boolean isThisRealtimeUpdateAboutThisLineRun(Instant now) {
@@ -0,0 +1,297 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.graphhopper.gtfs;
+
+import com.carrotsearch.hppc.IntArrayList;
+import com.carrotsearch.hppc.IntHashSet;
+import com.carrotsearch.hppc.IntLongHashMap;
+import com.conveyal.gtfs.GTFSFeed;
+import com.conveyal.gtfs.model.Frequency;
+import com.conveyal.gtfs.model.StopTime;
+import com.conveyal.gtfs.model.Trip;
+import com.google.transit.realtime.GtfsRealtime;
+import org.mapdb.Fun;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.*;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static com.google.transit.realtime.GtfsRealtime.TripUpdate.StopTimeUpdate.ScheduleRelationship.SKIPPED;
+import static java.time.temporal.ChronoUnit.DAYS;
+
+/**
+ * Turns a sequence of GTFS-realtime feed messages into RealtimeFeeds. What a trip update changes in the graph is
+ * computed once and kept for as long as the same trip update is in the feed, so applying a new feed message only
+ * costs work for the trip updates which are new or changed since the previous one.
+ * <p>
+ * Each call of apply publishes a new RealtimeFeed with a new version. Published RealtimeFeeds are never modified,
+ * so a query keeps the snapshot it started with while the queries started after apply see the update.
+ */
+public class RealtimeOverlay {
+
+    private static final Logger logger = LoggerFactory.getLogger(RealtimeOverlay.class);
+
+    // The ids of realtime edges and nodes are never reused, so that a trip update which is still in the feed can
+    // keep its edges. If we ever run out of them, we start over at the end of the static graph.
+    private static final int MAX_ID = Integer.MAX_VALUE - (1 << 24);
+
+    private final GtfsStorage staticGtfs;
+    private final Map<String, Transfers> transfers;
+    private final GtfsReader.PtGraphOut overlayGraph = new GtfsReader.PtGraphOut() {
+        @Override
+        public int createEdge(int src, int dest, PtEdgeAttributes attrs) {
+            int edgeId = nextEdge++;
+            tripUpdateOverlay.additionalEdges.add(new PtGraph.PtEdge(edgeId, src, dest, attrs));
+            return edgeId;
+        }
+
+        @Override
+        public int createNode() {
+            return nextNode++;
+        }
+    };
+    private int nextEdge;
+    private int nextNode;
+    private TripUpdateOverlay tripUpdateOverlay;
+    private Map<TripUpdateKey, TripUpdateOverlay> tripUpdateOverlays = new LinkedHashMap<>();
+
+    private volatile RealtimeFeed realtimeFeed = RealtimeFeed.empty();
+    private volatile long version;
+    private volatile long lastApplyNanos;
+    private volatile int lastChangedTripUpdates;
+    private volatile int overlaySize;
+
+    public RealtimeOverlay(GtfsStorage staticGtfs, Map<String, Transfers> transfers) {
+        this.staticGtfs = staticGtfs;
+        this.transfers = transfers;
+        resetIds();
+    }
+
+    /**
+     * Replaces the feed messages of the previous call with the given ones.
+     *
+     * @return the RealtimeFeed for the given feed messages, which is also returned by getRealtimeFeed from now on
+     */
+    public synchronized RealtimeFeed apply(Map<String, GtfsRealtime.FeedMessage> feedMessages) {
+        long start = System.nanoTime();
+        if (nextEdge > MAX_ID || nextNode > MAX_ID) {
+            tripUpdateOverlays.clear();
+            resetIds();
+        }
+        Map<TripUpdateKey, TripUpdateOverlay> previous = tripUpdateOverlays;
+        Map<TripUpdateKey, TripUpdateOverlay> current = new LinkedHashMap<>();
+        int changed = 0;
+        for (Map.Entry<String, GtfsRealtime.FeedMessage> entry : feedMessages.entrySet()) {
+            String feedKey = entry.getKey();
+            GTFSFeed feed = staticGtfs.getGtfsFeeds().get(feedKey);
+            ZoneId timezone = ZoneId.of(feed.agency.values().stream().findFirst().get().agency_timezone);
+            Instant timestamp = Instant.ofEpochSecond(entry.getValue().getHeader().getTimestamp());
+            // the trip updates are applied to the day of the feed timestamp, their start dates are not used
+            LocalDate dateToChange = timestamp.atZone(timezone).toLocalDate();
+            GtfsReader gtfsReader = null;
+            BitSet validOnDay = null;
+            for (GtfsRealtime.FeedEntity feedEntity : entry.getValue().getEntityList()) {
+                if (!feedEntity.hasTripUpdate())
+                    continue;
+                GtfsRealtime.TripUpdate tripUpdate = feedEntity.getTripUpdate();
+                GtfsRealtime.TripDescriptor.ScheduleRelationship scheduleRelationship = tripUpdate.getTrip().getScheduleRelationship();
+                if (scheduleRelationship != GtfsRealtime.TripDescriptor.ScheduleRelationship.SCHEDULED && scheduleRelationship != GtfsRealtime.TripDescriptor.ScheduleRelationship.ADDED)
+                    continue;
+                TripUpdateKey key = new TripUpdateKey(feedKey, dateToChange, tripUpdate);
+                if (current.containsKey(key))
+                    continue;
+                TripUpdateOverlay overlay = previous.get(key);
+                if (overlay == null) {
+                    if (gtfsReader == null) {
+                        gtfsReader = new GtfsReader(feedKey, staticGtfs.getPtGraph(), overlayGraph, staticGtfs, null, transfers.get(feedKey), null);
+                        validOnDay = new BitSet();
+                        validOnDay.set((int) DAYS.between(feed.getStartDate(), dateToChange));
+                    }
+                    overlay = tripUpdateOverlay = new TripUpdateOverlay();
+                    if (scheduleRelationship == GtfsRealtime.TripDescriptor.ScheduleRelationship.SCHEDULED)
+                        applyScheduledTripUpdate(feedKey, feed, timezone, gtfsReader, validOnDay, tripUpdate);
+                    else
+                        applyAddedTripUpdate(timezone, gtfsReader, validOnDay, tripUpdate);
+                    gtfsReader.wireUpAdditionalDeparturesAndArrivals(timezone);
+                    tripUpdateOverlay = null;
+                    changed++;
+                }
+                current.put(key, overlay);
+            }
+        }
+        tripUpdateOverlays = current;
+        RealtimeFeed result = createRealtimeFeed(feedMessages, current.values());
+        realtimeFeed = result;
+        version++;
+        lastChangedTripUpdates = changed;
+        lastApplyNanos = System.nanoTime() - start;
+        return result;
+    }
+
+    private void applyScheduledTripUpdate(String feedKey, GTFSFeed feed, ZoneId timezone, GtfsReader gtfsReader, BitSet validOnDay, GtfsRealtime.TripUpdate tripUpdate) {
+        PtGraph ptGraph = staticGtfs.getPtGraph();
+        Collection<Frequency> frequencies = feed.getFrequencies(tripUpdate.getTrip().getTripId());
+        int timeOffset = (tripUpdate.getTrip().hasStartTime() && !frequencies.isEmpty()) ? LocalTime.parse(tripUpdate.getTrip().getStartTime()).toSecondOfDay() : 0;
+        final int[] boardEdges = RealtimeFeed.findBoardEdgesForTrip(staticGtfs, feedKey, feed, tripUpdate);
+        final int[] leaveEdges = RealtimeFeed.findLeaveEdgesForTrip(staticGtfs, feedKey, feed, tripUpdate);
+        if (boardEdges == null || leaveEdges == null) {
+            logger.warn("Trip not found: {}", tripUpdate.getTrip());
+            return;
+        }
+        tripUpdate.getStopTimeUpdateList().stream()
+                .filter(stopTimeUpdate -> stopTimeUpdate.getScheduleRelationship() == SKIPPED)
+                .mapToInt(GtfsRealtime.TripUpdate.StopTimeUpdate::getStopSequence)
+                .forEach(skippedStopSequenceNumber -> {
+                    tripUpdateOverlay.blockedEdges.add(boardEdges[skippedStopSequenceNumber]);
+                    tripUpdateOverlay.blockedEdges.add(leaveEdges[skippedStopSequenceNumber]);
+                });
+        GtfsReader.TripWithStopTimes tripWithStopTimes = RealtimeFeed.toTripWithStopTimes(feed, tripUpdate);
+        tripWithStopTimes.stopTimes.forEach(stopTime -> {
+            if (stopTime.stop_sequence > leaveEdges.length - 1) {
+                logger.warn("Stop sequence number too high {} vs {}", stopTime.stop_sequence, leaveEdges.length);
+                return;
+            }
+            final StopTime originalStopTime = feed.stop_times.get(new Fun.Tuple2(tripUpdate.getTrip().getTripId(), stopTime.stop_sequence));
+            int arrivalDelay = stopTime.arrival_time - originalStopTime.arrival_time;
+            tripUpdateOverlay.delaysForAlightEdges.put(leaveEdges[stopTime.stop_sequence], arrivalDelay * 1000);
+            int departureDelay = stopTime.departure_time - originalStopTime.departure_time;
+            if (departureDelay > 0) {
+                int boardEdge = boardEdges[stopTime.stop_sequence];
+                int departureNode = ptGraph.edge(boardEdge).getAdjNode();
+                int delayedBoardEdge = gtfsReader.addDelayedBoardEdge(timezone, tripUpdate.getTrip(), stopTime.stop_sequence, stopTime.departure_time + timeOffset, departureNode, validOnDay);
+                tripUpdateOverlay.delaysForBoardEdges.put(delayedBoardEdge, departureDelay * 1000);
+            }
+        });
+    }
+
+    private void applyAddedTripUpdate(ZoneId timezone, GtfsReader gtfsReader, BitSet validOnDay, GtfsRealtime.TripUpdate tripUpdate) {
+        Trip trip = new Trip();
+        trip.trip_id = tripUpdate.getTrip().getTripId();
+        trip.route_id = tripUpdate.getTrip().getRouteId();
+        final List<StopTime> stopTimes = tripUpdate.getStopTimeUpdateList().stream()
+                .map(stopTimeUpdate -> {
+                    final StopTime stopTime = new StopTime();
+                    stopTime.stop_sequence = stopTimeUpdate.getStopSequence();
+                    stopTime.stop_id = stopTimeUpdate.getStopId();
+                    stopTime.trip_id = trip.trip_id;
+                    final ZonedDateTime arrival_time = Instant.ofEpochSecond(stopTimeUpdate.getArrival().getTime()).atZone(timezone);
+                    stopTime.arrival_time = (int) Duration.between(arrival_time.truncatedTo(ChronoUnit.DAYS), arrival_time).getSeconds();
+                    final ZonedDateTime departure_time = Instant.ofEpochSecond(stopTimeUpdate.getArrival().getTime()).atZone(timezone);
+                    stopTime.departure_time = (int) Duration.between(departure_time.truncatedTo(ChronoUnit.DAYS), departure_time).getSeconds();
+                    return stopTime;
+                })
+                .collect(Collectors.toList());
+        GtfsReader.TripWithStopTimes tripWithStopTimes = new GtfsReader.TripWithStopTimes(trip, stopTimes, validOnDay, Collections.emptySet(), Collections.emptySet());
+        gtfsReader.addTrip(timezone, 0, new ArrayList<>(), tripWithStopTimes, tripUpdate.getTrip());
+    }
+
+    private RealtimeFeed createRealtimeFeed(Map<String, GtfsRealtime.FeedMessage> feedMessages, Collection<TripUpdateOverlay> overlays) {
+        IntHashSet blockedEdges = new IntHashSet();
+        IntLongHashMap delaysForBoardEdges = new IntLongHashMap();
+        IntLongHashMap delaysForAlightEdges = new IntLongHashMap();
+        List<PtGraph.PtEdge> additionalEdges = new ArrayList<>();
+        for (TripUpdateOverlay overlay : overlays) {
+            blockedEdges.addAll(overlay.blockedEdges);
+            delaysForBoardEdges.putAll(overlay.delaysForBoardEdges);
+            delaysForAlightEdges.putAll(overlay.delaysForAlightEdges);
+            additionalEdges.addAll(overlay.additionalEdges);
+        }
+        overlaySize = blockedEdges.size() + delaysForBoardEdges.size() + delaysForAlightEdges.size() + additionalEdges.size();
+        return new RealtimeFeed(feedMessages, blockedEdges, delaysForBoardEdges, delaysForAlightEdges, additionalEdges);
+    }
+
+    private void resetIds() {
+        nextEdge = staticGtfs.getPtGraph().getEdgeCount();
+        nextNode = staticGtfs.getPtGraph().getNodeCount();
+    }
+
+    /**
+     * @return the RealtimeFeed of the last call of apply, or an empty one
+     */
+    public RealtimeFeed getRealtimeFeed() {
+        return realtimeFeed;
+    }
+
+    /**
+     * @return the number of calls of apply so far
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    public long getLastApplyNanos() {
+        return lastApplyNanos;
+    }
+
+    /**
+     * @return how many trip updates the last call of apply had to compute, because they were new or changed
+     */
+    public int getLastChangedTripUpdates() {
+        return lastChangedTripUpdates;
+    }
+
+    /**
+     * @return the number of blocked edges, delays and additional edges in the current RealtimeFeed
+     */
+    public int getOverlaySize() {
+        return overlaySize;
+    }
+
+    /**
+     * What a single trip update changes in the graph. Delays and blocked edges refer to edges of the static graph,
+     * except for the delays of the additional board edges the trip update created itself.
+     */
+    private static class TripUpdateOverlay {
+        final IntArrayList blockedEdges = new IntArrayList();
+        final IntLongHashMap delaysForBoardEdges = new IntLongHashMap();
+        final IntLongHashMap delaysForAlightEdges = new IntLongHashMap();
+        final List<PtGraph.PtEdge> additionalEdges = new ArrayList<>();
+    }
+
+    /**
+     * The overlay of a trip update depends on the day it applies to, which we take from the feed header.
+     */
+    private static class TripUpdateKey {
+        final String feedKey;
+        final LocalDate date;
+        final GtfsRealtime.TripUpdate tripUpdate;
+
+        TripUpdateKey(String feedKey, LocalDate date, GtfsRealtime.TripUpdate tripUpdate) {
+            this.feedKey = feedKey;
+            this.date = date;
+            this.tripUpdate = tripUpdate;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            TripUpdateKey that = (TripUpdateKey) o;
+            return feedKey.equals(that.feedKey) && date.equals(that.date) && tripUpdate.equals(that.tripUpdate);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(feedKey, date, tripUpdate);
+        }
+    }
+}
@@ -0,0 +1,190 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.graphhopper.gtfs;
+
+import com.carrotsearch.hppc.IntArrayList;
+import com.carrotsearch.hppc.IntLongHashMap;
+import com.carrotsearch.hppc.IntObjectHashMap;
+import com.graphhopper.isochrone.algorithm.ShortestPathTree;
+import com.graphhopper.routing.util.TraversalMode;
+import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.DataAccess;
+import com.graphhopper.storage.Directory;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.util.GHUtility;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * The walking times between all pairs of stations which are at most a given time apart, computed once at import.
+ * The walks of a station are stored one after the other, sorted by the pt node of the station they lead to, so the
+ * walks of a station are found from their offset without a street search.
+ * <p>
+ * The times are those of the foot profile, i.e. at 5 km/h, like the street edges in the {@link GraphExplorer}.
+ * Walking is assumed to take the same time in both directions, so the table is used for the reverse searches as well.
+ */
+public class StationWalks {
+
+    private static final int BATCH_SIZE = 10_000;
+
+    private final DataAccess offsets;
+    private final DataAccess walks;
+    private int stationCount;
+    private int walkCount;
+    private long maxWalkMillis;
+    private IntObjectHashMap<IntArrayList> stationsByStreetNode;
+
+    public StationWalks(Directory dir) {
+        offsets = dir.create("pt_station_walk_offsets", dir.getDefaultType("pt_station_walk_offsets", true), -1);
+        walks = dir.create("pt_station_walks", dir.getDefaultType("pt_station_walks", true), -1);
+    }
+
+    public void create(long initSize) {
+        offsets.create(initSize);
+        walks.create(initSize);
+    }
+
+    public boolean loadExisting() {
+        if (!offsets.loadExisting() || !walks.loadExisting())
+            return false;
+        stationCount = offsets.getHeader(0);
+        maxWalkMillis = offsets.getHeader(4);
+        walkCount = walks.getHeader(0);
+        return true;
+    }
+
+    public void flush() {
+        offsets.setHeader(0, stationCount);
+        offsets.setHeader(4, (int) maxWalkMillis);
+        walks.setHeader(0, walkCount);
+        offsets.flush();
+        walks.flush();
+    }
+
+    public void close() {
+        offsets.close();
+        walks.close();
+    }
+
+    /**
+     * Finds the walks from every station with a shortest path tree from its street node. The trees only read the
+     * graph, so they are grown in parallel, a batch of stations at a time, but the walks are written in the order
+     * of the stations, so the table is the same no matter how many threads we use.
+     */
+    public void build(Graph graph, Weighting weighting, GtfsStorage gtfsStorage, long maxWalkMillis, int threads) {
+        if (maxWalkMillis > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("Maximum walk time too large: " + maxWalkMillis);
+        this.maxWalkMillis = maxWalkMillis;
+        IntObjectHashMap<IntArrayList> stationsByStreetNode = getStationsByStreetNode(gtfsStorage);
+        int[] stations = gtfsStorage.getStationNodes().values().stream().mapToInt(Integer::intValue).distinct().sorted().toArray();
+        stationCount = stations.length == 0 ? 0 : stations[stations.length - 1] + 1;
+        offsets.ensureCapacity((long) (stationCount + 1) * 4);
+        int nextStation = 0;
+        walkCount = 0;
+        for (int batchStart = 0; batchStart < stations.length; batchStart += BATCH_SIZE) {
+            int[] batch = Arrays.copyOfRange(stations, batchStart, Math.min(batchStart + BATCH_SIZE, stations.length));
+            IntLongHashMap[] walksByStation = new IntLongHashMap[batch.length];
+            GHUtility.runConcurrently(IntStream.range(0, batch.length).mapToObj(i -> () ->
+                    walksByStation[i] = findWalks(graph, weighting, stationsByStreetNode, gtfsStorage.getPtToStreet().getOrDefault(batch[i], -1), false, maxWalkMillis)), threads);
+            for (int i = 0; i < batch.length; i++) {
+                for (; nextStation <= batch[i]; nextStation++)
+                    offsets.setInt((long) nextStation * 4, walkCount);
+                int[] targets = walksByStation[i].keys().toArray();
+                Arrays.sort(targets);
+                walks.ensureCapacity((long) (walkCount + targets.length) * 8);
+                for (int target : targets) {
+                    if (target == batch[i])
+                        continue;
+                    walks.setInt((long) walkCount * 8, target);
+                    walks.setInt((long) walkCount * 8 + 4, (int) walksByStation[i].get(target));
+                    walkCount++;
+                }
+            }
+        }
+        for (; nextStation <= stationCount; nextStation++)
+            offsets.setInt((long) nextStation * 4, walkCount);
+    }
+
+    int getFirstWalk(int station) {
+        return station < stationCount ? offsets.getInt((long) station * 4) : 0;
+    }
+
+    int getEndOfWalks(int station) {
+        return station < stationCount ? offsets.getInt((long) (station + 1) * 4) : 0;
+    }
+
+    int getStation(int walk) {
+        return walks.getInt((long) walk * 8);
+    }
+
+    long getMillis(int walk) {
+        return walks.getInt((long) walk * 8 + 4);
+    }
+
+    public long getMaxWalkMillis() {
+        return maxWalkMillis;
+    }
+
+    public int getWalkCount() {
+        return walkCount;
+    }
+
+    /**
+     * The stations which can be reached on foot from a street node within the maximum walk time of this table, with
+     * their walking times. Used for the walks between the stations and the start or destination of a query, which
+     * can't be known in advance.
+     */
+    IntLongHashMap findWalks(Graph graph, Weighting weighting, GtfsStorage gtfsStorage, int streetNode, boolean reverse) {
+        return findWalks(graph, weighting, getStationsByStreetNode(gtfsStorage), streetNode, reverse, maxWalkMillis);
+    }
+
+    private static IntLongHashMap findWalks(Graph graph, Weighting weighting, IntObjectHashMap<IntArrayList> stationsByStreetNode, int streetNode, boolean reverse, long maxWalkMillis) {
+        IntLongHashMap result = new IntLongHashMap();
+        if (streetNode == -1)
+            return result;
+        ShortestPathTree tree = new ShortestPathTree(graph, weighting, reverse, TraversalMode.NODE_BASED);
+        tree.setTimeLimit(maxWalkMillis);
+        tree.search(streetNode, label -> {
+            IntArrayList stations = stationsByStreetNode.get(label.node);
+            if (stations != null) {
+                for (int i = 0; i < stations.size(); i++)
+                    result.put(stations.get(i), label.time);
+            }
+        });
+        return result;
+    }
+
+    private synchronized IntObjectHashMap<IntArrayList> getStationsByStreetNode(GtfsStorage gtfsStorage) {
+        if (stationsByStreetNode != null)
+            return stationsByStreetNode;
+        IntObjectHashMap<IntArrayList> result = new IntObjectHashMap<>();
+        gtfsStorage.getStationNodes().values().stream().distinct().sorted().forEach(station -> {
+            int streetNode = gtfsStorage.getPtToStreet().getOrDefault(station, -1);
+            if (streetNode == -1)
+                return;
+            IntArrayList stations = result.get(streetNode);
+            if (stations == null)
+                result.put(streetNode, stations = new IntArrayList());
+            stations.add(station);
+        });
+        stationsByStreetNode = result;
+        return result;
+    }
+}
@@ -177,7 +177,7 @@ class TripFromLabel {
                                         ptLeg.stops.stream().map(s -> gtfsFeed.stops.get(s.stop_id).zone_id).collect(Collectors.toSet()));
                             })
                             .forEach(faresTrip.segments::add);
-                    Fares.cheapestFare(gtfsStorage.getFares(), faresTrip)
+                    Fares.cheapestFare(gtfsStorage.getFareIndex(), faresTrip)
                             .ifPresent(amount -> path.setFare(amount.getAmount()));
                 });
         return path;
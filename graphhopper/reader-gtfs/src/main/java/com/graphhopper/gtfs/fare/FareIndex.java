@@ -0,0 +1,110 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.graphhopper.gtfs.fare;
+
+import com.conveyal.gtfs.model.Fare;
+import com.conveyal.gtfs.model.FareRule;
+
+import java.util.*;
+
+/**
+ * The fare rules of the feeds, resolved by route, by origin and destination zone and by contained zone, so the
+ * fares which can be used for a trip segment are looked up instead of matching the segment against every rule of
+ * the feed. It finds the same fares as {@link Fares#possibleFares(Map, Trip.Segment)}, in the same order.
+ */
+public class FareIndex {
+
+    private final Map<String, FeedIndex> feedIndexes = new HashMap<>();
+
+    public FareIndex(Map<String, Map<String, Fare>> faresByFeed) {
+        faresByFeed.forEach((feedId, fares) -> feedIndexes.put(feedId, new FeedIndex(fares)));
+    }
+
+    Collection<Fare> possibleFares(Trip.Segment segment) {
+        FeedIndex feedIndex = feedIndexes.get(segment.feed_id);
+        if (feedIndex == null)
+            return Collections.emptyList();
+        return feedIndex.possibleFares(segment);
+    }
+
+    private static class FeedIndex {
+        // the fares in the order of the feed, the index refers to them by their position
+        private final List<Fare> fares = new ArrayList<>();
+        private final BitSet unrestricted = new BitSet();
+        private final Map<String, BitSet> byRoute = new HashMap<>();
+        private final Map<String, Map<String, BitSet>> byOriginAndDestination = new HashMap<>();
+        private final Map<String, BitSet> byContainedZone = new HashMap<>();
+        private final Map<Integer, Set<String>> containedZones = new HashMap<>();
+
+        FeedIndex(Map<String, Fare> faresById) {
+            for (Fare fare : faresById.values()) {
+                int position = fares.size();
+                fares.add(fare);
+                if (fare.fare_rules.isEmpty()) {
+                    unrestricted.set(position);
+                    continue;
+                }
+                Set<String> zones = new HashSet<>();
+                for (FareRule rule : fare.fare_rules) {
+                    if (rule.route_id != null)
+                        byRoute.computeIfAbsent(rule.route_id, r -> new BitSet()).set(position);
+                    if (rule.origin_id != null && rule.destination_id != null)
+                        byOriginAndDestination.computeIfAbsent(rule.origin_id, o -> new HashMap<>())
+                                .computeIfAbsent(rule.destination_id, d -> new BitSet()).set(position);
+                    if (rule.contains_id != null)
+                        zones.add(rule.contains_id);
+                }
+                // a zone rule is only good for segments which stay within all the zones the fare contains
+                if (!zones.isEmpty()) {
+                    containedZones.put(position, zones);
+                    for (String zone : zones)
+                        byContainedZone.computeIfAbsent(zone, z -> new BitSet()).set(position);
+                }
+            }
+        }
+
+        Collection<Fare> possibleFares(Trip.Segment segment) {
+            BitSet result = (BitSet) unrestricted.clone();
+            BitSet route = byRoute.get(segment.getRoute());
+            if (route != null)
+                result.or(route);
+            BitSet originAndDestination = byOriginAndDestination.getOrDefault(segment.getOriginId(), Collections.emptyMap()).get(segment.getDestinationId());
+            if (originAndDestination != null)
+                result.or(originAndDestination);
+            // every zone of the segment must be contained, so the fares containing any one of them are the candidates
+            Iterator<String> segmentZones = segment.getZones().iterator();
+            if (segmentZones.hasNext()) {
+                BitSet zone = byContainedZone.get(segmentZones.next());
+                if (zone != null) {
+                    for (int i = zone.nextSetBit(0); i >= 0; i = zone.nextSetBit(i + 1)) {
+                        if (containedZones.get(i).containsAll(segment.getZones()))
+                            result.set(i);
+                    }
+                }
+            } else {
+                containedZones.keySet().forEach(result::set);
+            }
+            List<Fare> possibleFares = new ArrayList<>(result.cardinality());
+            for (int i = result.nextSetBit(0); i >= 0; i = result.nextSetBit(i + 1))
+                possibleFares.add(fares.get(i));
+            return possibleFares;
+        }
+    }
+
+}
@@ -30,10 +30,14 @@ import static java.util.stream.Collectors.toList;
 
 public class Fares {
     public static Optional<Amount> cheapestFare(Map<String, Map<String, Fare>> fares, Trip trip) {
-        return ticketsBruteForce(fares, trip)
+        return cheapestFare(new FareIndex(fares), trip);
+    }
+
+    public static Optional<Amount> cheapestFare(FareIndex fareIndex, Trip trip) {
+        return ticketsBruteForce(fareIndex, trip)
                 .flatMap(tickets -> tickets.stream()
                         .map(ticket -> {
-                            Fare fare = fares.get(ticket.feed_id).get(ticket.getFare().fare_id);
+                            Fare fare = ticket.getFare();
                             final BigDecimal priceOfOneTicket = BigDecimal.valueOf(fare.fare_attribute.price);
                             return new Amount(priceOfOneTicket, fare.fare_attribute.currency_type);
                         })
@@ -44,23 +48,27 @@ public class Fares {
                         .map(e -> new Amount(e.getValue(), e.getKey())));
     }
 
-    static Optional<List<Ticket>> ticketsBruteForce(Map<String, Map<String, Fare>> fares, Trip trip) {
+    static Optional<List<Ticket>> ticketsBruteForce(FareIndex fareIndex, Trip trip) {
         // Recursively enumerate all packages of tickets with which the trip can be done.
         // Take the cheapest.
         TicketPurchaseScoreCalculator ticketPurchaseScoreCalculator = new TicketPurchaseScoreCalculator();
-        return allShoppingCarts(fares, trip)
+        return allShoppingCarts(fareIndex, trip)
                 .max(Comparator.comparingDouble(ticketPurchaseScoreCalculator::calculateScore))
                 .map(TicketPurchase::getTickets);
     }
 
     static Stream<TicketPurchase> allShoppingCarts(Map<String, Map<String, Fare>> fares, Trip trip) {
+        return allShoppingCarts(new FareIndex(fares), trip);
+    }
+
+    static Stream<TicketPurchase> allShoppingCarts(FareIndex fareIndex, Trip trip) {
         // Recursively enumerate all packages of tickets with which the trip can be done.
         List<Trip.Segment> segments = trip.segments;
-        List<List<FareAssignment>> result = allFareAssignments(fares, segments);
+        List<List<FareAssignment>> result = allFareAssignments(fareIndex, segments);
         return result.stream().map(TicketPurchase::new);
     }
 
-    private static List<List<FareAssignment>> allFareAssignments(Map<String, Map<String, Fare>> fares, List<Trip.Segment> segments) {
+    private static List<List<FareAssignment>> allFareAssignments(FareIndex fareIndex, List<Trip.Segment> segments) {
         // Recursively enumerate all possible ways of assigning trip segments to fares.
         if (segments.isEmpty()) {
             ArrayList<List<FareAssignment>> emptyList = new ArrayList<>();
@@ -69,8 +77,8 @@ public class Fares {
         } else {
             List<List<FareAssignment>> result = new ArrayList<>();
             Trip.Segment segment = segments.get(0);
-            List<List<FareAssignment>> tail = allFareAssignments(fares, segments.subList(1, segments.size()));
-            Collection<Fare> possibleFares = Fares.possibleFares(fares.get(segment.feed_id), segment);
+            List<List<FareAssignment>> tail = allFareAssignments(fareIndex, segments.subList(1, segments.size()));
+            Collection<Fare> possibleFares = fareIndex.possibleFares(segment);
             for (Fare fare : possibleFares) {
                 for (List<FareAssignment> tailFareAssignments : tail) {
                     ArrayList<FareAssignment> fairAssignments = new ArrayList<>(tailFareAssignments);
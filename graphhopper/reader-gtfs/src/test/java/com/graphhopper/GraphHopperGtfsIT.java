@@ -20,7 +20,12 @@ package com.graphhopper;
 
 import com.conveyal.gtfs.model.Stop;
 import com.graphhopper.gtfs.*;
+import com.graphhopper.routing.DefaultWeightingFactory;
 import com.graphhopper.routing.TestProfiles;
+import com.graphhopper.routing.ev.Subnetwork;
+import com.graphhopper.routing.util.DefaultSnapFilter;
+import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.util.PMap;
 import com.graphhopper.util.Helper;
 import com.graphhopper.util.Instruction;
 import com.graphhopper.util.TranslationMap;
@@ -28,15 +33,18 @@ import org.assertj.core.util.Maps;
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
+import org.locationtech.jts.geom.Coordinate;
 
 import java.io.File;
 import java.math.BigDecimal;
 import java.time.Duration;
+import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.time.ZoneId;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -76,6 +84,39 @@ public class GraphHopperGtfsIT {
         graphHopperGtfs.close();
     }
 
+    @Test
+    public void testParallelImportBuildsTheSameGraph() {
+        GraphHopperConfig ghConfig = new GraphHopperConfig();
+        ghConfig.putObject("graph.location", GRAPH_LOC + "-parallel");
+        ghConfig.putObject("import.osm.ignored_highways", "");
+        ghConfig.putObject("gtfs.file", "files/sample-feed");
+        ghConfig.putObject("gtfs.import_threads", 4);
+        ghConfig.putObject("graph.encoded_values", "foot_access, foot_priority, foot_average_speed, car_access, car_average_speed");
+        ghConfig.setProfiles(List.of(
+                TestProfiles.accessSpeedAndPriority("foot"),
+                TestProfiles.accessAndSpeed("car")));
+
+        Helper.removeDir(new File(GRAPH_LOC + "-parallel"));
+        GraphHopperGtfs parallel = new GraphHopperGtfs(ghConfig);
+        parallel.init(ghConfig);
+        parallel.importOrLoad();
+        try {
+            PtGraph expected = graphHopperGtfs.getPtGraph();
+            PtGraph actual = parallel.getPtGraph();
+            assertEquals(expected.getNodeCount(), actual.getNodeCount());
+            assertEquals(expected.getEdgeCount(), actual.getEdgeCount());
+            for (int edge = 0; edge < expected.getEdgeCount(); edge++) {
+                assertEquals(expected.edge(edge).getBaseNode(), actual.edge(edge).getBaseNode());
+                assertEquals(expected.edge(edge).getAdjNode(), actual.edge(edge).getAdjNode());
+                assertEquals(expected.edge(edge).getType(), actual.edge(edge).getType());
+                assertEquals(expected.edge(edge).getTime(), actual.edge(edge).getTime());
+            }
+            assertEquals(graphHopperGtfs.getGtfsStorage().getStationNodes(), parallel.getGtfsStorage().getStationNodes());
+        } finally {
+            parallel.close();
+        }
+    }
+
     @Test
     public void testRoute1() {
         Request ghRequest = new Request(Arrays.asList(
@@ -593,4 +634,29 @@ public class GraphHopperGtfsIT {
         assertEquals(4, boardingArea.location_type, "Boarding area can be read (doesn't do anything though)");
     }
 
+    @Test
+    public void testRangeIsochrone() {
+        Weighting weighting = new DefaultWeightingFactory(graphHopperGtfs.getBaseGraph(), graphHopperGtfs.getEncodingManager())
+                .createWeighting(graphHopperGtfs.getProfile("foot"), new PMap(), false);
+        DefaultSnapFilter snapFilter = new DefaultSnapFilter(weighting, graphHopperGtfs.getEncodingManager().getBooleanEncodedValue(Subnetwork.key("foot")));
+        GHLocation location = new GHStationLocation("STAGECOACH");
+        PtLocationSnapper.Result snapResult = new PtLocationSnapper(graphHopperGtfs.getBaseGraph(), graphHopperGtfs.getLocationIndex(), graphHopperGtfs.getGtfsStorage())
+                .snapAll(Arrays.asList(location), Arrays.asList(snapFilter));
+        PtIsochroneCalculator calculator = new PtIsochroneCalculator(graphHopperGtfs.getGtfsStorage(), 0);
+        Instant firstTime = LocalDateTime.of(2007, 1, 1, 5, 30).atZone(zoneId).toInstant();
+        Duration interval = Duration.ofMinutes(10);
+        for (boolean reverse : new boolean[]{false, true}) {
+            List<Map<Coordinate, Double>> range = calculator.calcReachedPlaces(snapResult.queryGraph, weighting, location, snapResult.nodes.get(0),
+                    reverse, 0, firstTime, interval, 18, Duration.ofHours(2));
+            assertEquals(18, range.size());
+            for (int i = 0; i < 18; i++) {
+                List<Map<Coordinate, Double>> single = calculator.calcReachedPlaces(snapResult.queryGraph, weighting, location, snapResult.nodes.get(0),
+                        reverse, 0, firstTime.plus(interval.multipliedBy(i)), interval, 1, Duration.ofHours(2));
+                assertEquals(single.get(0), range.get(i), "Departure time " + i + (reverse ? ", reverse" : ""));
+            }
+            // not the same for every departure time, or we wouldn't have tested much
+            assertNotEquals(range.get(0), range.get(17));
+        }
+    }
+
 }
@@ -0,0 +1,213 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.graphhopper;
+
+import com.google.transit.realtime.GtfsRealtime;
+import com.graphhopper.gtfs.*;
+import com.graphhopper.routing.TestProfiles;
+import com.graphhopper.util.Helper;
+import com.graphhopper.util.Instruction;
+import com.graphhopper.util.TranslationMap;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.time.*;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.google.transit.realtime.GtfsRealtime.TripUpdate.StopTimeUpdate.ScheduleRelationship.SCHEDULED;
+import static com.google.transit.realtime.GtfsRealtime.TripUpdate.StopTimeUpdate.ScheduleRelationship.SKIPPED;
+import static com.graphhopper.gtfs.GtfsHelper.time;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RaptorIT {
+
+    private static final String GRAPH_LOC = "target/RaptorIT";
+    private static final ZoneId zoneId = ZoneId.of("America/Los_Angeles");
+    private static final List<String> STOPS = Arrays.asList("FUR_CREEK_RES", "BEATTY_AIRPORT", "BULLFROG", "STAGECOACH", "NADAV", "NANAA", "DADAN", "EMSI", "AMV");
+    private static PtRouter ptRouter;
+    private static PtRouter raptorRouter;
+    private static PtRouterRaptorImpl.Factory raptorRouterFactory;
+    private static GraphHopperGtfs graphHopperGtfs;
+
+    @BeforeAll
+    public static void init() {
+        GraphHopperConfig ghConfig = new GraphHopperConfig();
+        ghConfig.putObject("graph.location", GRAPH_LOC);
+        ghConfig.putObject("import.osm.ignored_highways", "");
+        ghConfig.putObject("gtfs.file", "files/sample-feed");
+        ghConfig.putObject("graph.encoded_values", "foot_access, foot_priority, foot_average_speed, car_access, car_average_speed");
+        ghConfig.setProfiles(List.of(
+                TestProfiles.accessSpeedAndPriority("foot"),
+                TestProfiles.accessAndSpeed("car")));
+
+        Helper.removeDir(new File(GRAPH_LOC));
+        graphHopperGtfs = new GraphHopperGtfs(ghConfig);
+        graphHopperGtfs.init(ghConfig);
+        graphHopperGtfs.importOrLoad();
+        ptRouter = new PtRouterImpl.Factory(ghConfig, new TranslationMap().doImport(), graphHopperGtfs.getBaseGraph(), graphHopperGtfs.getEncodingManager(), graphHopperGtfs.getLocationIndex(), graphHopperGtfs.getGtfsStorage())
+                .createWithoutRealtimeFeed();
+        raptorRouterFactory = new PtRouterRaptorImpl.Factory(ghConfig, new TranslationMap().doImport(), graphHopperGtfs.getBaseGraph(), graphHopperGtfs.getEncodingManager(), graphHopperGtfs.getLocationIndex(), graphHopperGtfs.getGtfsStorage());
+        raptorRouter = raptorRouterFactory.createWithoutRealtimeFeed();
+    }
+
+    @AfterAll
+    public static void close() {
+        graphHopperGtfs.close();
+    }
+
+    @Test
+    public void testRoute1() {
+        Request ghRequest = new Request(Arrays.asList(
+                new GHStationLocation("NADAV"),
+                new GHStationLocation("NANAA")),
+                LocalDateTime.of(2007, 1, 1, 0, 0, 0).atZone(zoneId).toInstant());
+        ghRequest.setIgnoreTransfers(true);
+        GHResponse route = raptorRouter.route(ghRequest);
+        assertFalse(route.hasErrors());
+        assertEquals(1, route.getAll().size());
+        assertEquals(time(6, 49), route.getBest().getTime(), "Expected travel time == scheduled arrival time");
+    }
+
+    @Test
+    public void testNoSolutionIfIDontLikeBusses() {
+        Request ghRequest = new Request(Arrays.asList(
+                new GHStationLocation("NADAV"),
+                new GHStationLocation("NANAA")),
+                LocalDateTime.of(2007, 1, 1, 7, 44).atZone(zoneId).toInstant());
+        ghRequest.setBlockedRouteTypes(8);
+        GHResponse response = raptorRouter.route(ghRequest);
+        assertTrue(response.getAll().isEmpty(), "When I block busses, there is no solution");
+    }
+
+    @Test
+    public void testRoute5() {
+        Request ghRequest = new Request(Arrays.asList(
+                new GHStationLocation("STAGECOACH"),
+                new GHStationLocation("BULLFROG")),
+                LocalDateTime.of(2007, 1, 1, 0, 0).atZone(zoneId).toInstant());
+        GHResponse route = raptorRouter.route(ghRequest);
+        assertFalse(route.hasErrors(), route.toString());
+        assertEquals(time(8, 10), route.getBest().getTime(), "Expected travel time == scheduled travel time");
+        assertEquals("STBA", (((Trip.PtLeg) route.getBest().getLegs().get(0)).trip_id), "Using expected route");
+        assertEquals("AB1", (((Trip.PtLeg) route.getBest().getLegs().get(1)).trip_id), "Using expected route");
+    }
+
+    @Test
+    public void testBlockTrips() {
+        Request ghRequest = new Request(Arrays.asList(
+                new GHStationLocation("BEATTY_AIRPORT"),
+                new GHStationLocation("FUR_CREEK_RES")),
+                LocalDateTime.of(2007, 1, 1, 8, 0).atZone(zoneId).toInstant());
+        GHResponse response = raptorRouter.route(ghRequest);
+        assertEquals(1, response.getAll().size(), "The ride in one vehicle dominates the slower alternative");
+        assertEquals(time(1, 20), response.getBest().getTime(), "Expected travel time == scheduled travel time");
+        assertEquals(2, response.getBest().getLegs().size(), "Two legs: pt, pt, but the two pt legs are in one vehicle, so...");
+        assertEquals(1, response.getBest().getInstructions().stream().filter(i -> i.getSign() == Instruction.PT_START_TRIP).count());
+        assertEquals(1, response.getBest().getInstructions().stream().filter(i -> i.getSign() == Instruction.PT_END_TRIP).count());
+    }
+
+    @Test
+    public void testProfileQuery() {
+        Request ghRequest = new Request(Arrays.asList(
+                new GHStationLocation("NADAV"),
+                new GHStationLocation("NANAA")),
+                LocalDateTime.of(2007, 1, 1, 6, 0).atZone(zoneId).toInstant());
+        ghRequest.setProfileQuery(true);
+        ghRequest.setIgnoreTransfers(true);
+        ghRequest.setMaxProfileDuration(Duration.ofHours(4));
+        GHResponse expected = ptRouter.route(ghRequest);
+        GHResponse actual = raptorRouter.route(ghRequest);
+        assertFalse(actual.hasErrors(), actual.toString());
+        assertEquals(departureTimes(expected), departureTimes(actual));
+    }
+
+    @Test
+    public void testSameEarliestArrivalAsLabelSetting() {
+        for (int hour = 0; hour < 24; hour += 3) {
+            for (String from : STOPS) {
+                for (String to : STOPS) {
+                    if (from.equals(to))
+                        continue;
+                    Request ghRequest = new Request(Arrays.asList(
+                            new GHStationLocation(from),
+                            new GHStationLocation(to)),
+                            LocalDateTime.of(2007, 1, 6, hour, 10).atZone(zoneId).toInstant());
+                    GHResponse expected = ptRouter.route(ghRequest);
+                    GHResponse actual = raptorRouter.route(ghRequest);
+                    String message = from + " -> " + to + " at " + hour + ":10";
+                    assertEquals(expected.getAll().isEmpty(), actual.getAll().isEmpty(), message);
+                    if (!expected.getAll().isEmpty())
+                        assertEquals(expected.getBest().getTime(), actual.getBest().getTime(), message);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testSkipDepartureStop() {
+        Request ghRequest = new Request(Arrays.asList(
+                new GHStationLocation("NADAV"),
+                new GHStationLocation("NANAA")),
+                LocalDateTime.of(2007, 1, 1, 6, 44).atZone(zoneId).toInstant());
+        GtfsRealtime.FeedMessage.Builder feedMessageBuilder = feedMessage();
+        feedMessageBuilder.addEntityBuilder()
+                .setId("1")
+                .getTripUpdateBuilder()
+                .setTrip(GtfsRealtime.TripDescriptor.newBuilder().setTripId("CITY2").setStartTime("06:00:00"))
+                .addStopTimeUpdateBuilder()
+                .setStopSequence(3)
+                .setScheduleRelationship(SKIPPED);
+        GHResponse response = raptorRouterFactory.createWith(feedMessageBuilder.build()).route(ghRequest);
+        assertEquals(time(0, 35), response.getBest().getTime(), "I have to wait half an hour for the next one (and ride 5 minutes)");
+    }
+
+    @Test
+    public void testCanUseDelayedTripWhenIAmLateToo() {
+        Request ghRequest = new Request(Arrays.asList(
+                new GHStationLocation("NADAV"),
+                new GHStationLocation("NANAA")),
+                LocalDateTime.of(2007, 1, 1, 6, 46).atZone(zoneId).toInstant());
+        GtfsRealtime.FeedMessage.Builder feedMessageBuilder = feedMessage();
+        feedMessageBuilder.addEntityBuilder()
+                .setId("1")
+                .getTripUpdateBuilder()
+                .setTrip(GtfsRealtime.TripDescriptor.newBuilder().setTripId("CITY2").setStartTime("06:00:00"))
+                .addStopTimeUpdateBuilder()
+                .setScheduleRelationship(SCHEDULED)
+                .setStopSequence(3)
+                .setArrival(GtfsRealtime.TripUpdate.StopTimeEvent.newBuilder().setDelay(120).build());
+        GHResponse response = raptorRouterFactory.createWith(feedMessageBuilder.build()).route(ghRequest);
+        assertEquals(time(0, 5), response.getBest().getTime(), "I am two minutes late for my bus, but the bus is two minutes late, too, so I catch it!");
+    }
+
+    private static GtfsRealtime.FeedMessage.Builder feedMessage() {
+        GtfsRealtime.FeedMessage.Builder feedMessageBuilder = GtfsRealtime.FeedMessage.newBuilder();
+        feedMessageBuilder.setHeader(GtfsRealtime.FeedHeader.newBuilder()
+                .setGtfsRealtimeVersion("1")
+                .setTimestamp(ZonedDateTime.of(LocalDate.of(2007, 1, 1), LocalTime.of(0, 0), zoneId).toEpochSecond()));
+        return feedMessageBuilder;
+    }
+
+    private static List<Object> departureTimes(GHResponse response) {
+        return Arrays.asList(response.getAll().stream().map(p -> ((Trip.PtLeg) p.getLegs().get(0)).getDepartureTime()).sorted().toArray());
+    }
+}
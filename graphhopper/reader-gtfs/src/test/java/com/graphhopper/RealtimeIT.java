@@ -19,10 +19,7 @@
 package com.graphhopper;
 
 import com.google.transit.realtime.GtfsRealtime;
-import com.graphhopper.gtfs.GraphHopperGtfs;
-import com.graphhopper.gtfs.PtRouter;
-import com.graphhopper.gtfs.PtRouterImpl;
-import com.graphhopper.gtfs.Request;
+import com.graphhopper.gtfs.*;
 import com.graphhopper.routing.TestProfiles;
 import com.graphhopper.util.Helper;
 import com.graphhopper.util.TranslationMap;
@@ -33,7 +30,7 @@ import org.junit.jupiter.api.Test;
 import java.io.File;
 import java.math.BigDecimal;
 import java.time.*;
-import java.util.List;
+import java.util.*;
 
 import static com.google.transit.realtime.GtfsRealtime.TripDescriptor.ScheduleRelationship.ADDED;
 import static com.google.transit.realtime.GtfsRealtime.TripUpdate.StopTimeUpdate.ScheduleRelationship.SCHEDULED;
@@ -358,6 +355,62 @@ public class RealtimeIT {
         assertEquals(time(1, 5), response.getBest().getTime(), 0.1, "There is an extra trip at 6:45 tomorrow, but that doesn't concern me today.");
     }
 
+    @Test
+    public void testIncrementalUpdate() {
+        Request ghRequest = new Request(Arrays.asList(
+                new GHStationLocation("NADAV"),
+                new GHStationLocation("NANAA")),
+                LocalDateTime.of(2007, 1, 1, 6, 46).atZone(zoneId).toInstant());
+        ghRequest.setIgnoreTransfers(true);
+
+        Map<String, Transfers> transfers = new HashMap<>();
+        graphHopperGtfs.getGtfsStorage().getGtfsFeeds().forEach((feedKey, feed) -> transfers.put(feedKey, new Transfers(feed)));
+        RealtimeOverlay overlay = new RealtimeOverlay(graphHopperGtfs.getGtfsStorage(), transfers);
+
+        // The 6:00 departure of my line skips my departure stop
+        final GtfsRealtime.FeedMessage.Builder skipped = GtfsRealtime.FeedMessage.newBuilder();
+        skipped.setHeader(header());
+        skipped.addEntityBuilder()
+                .setId("1")
+                .getTripUpdateBuilder()
+                .setTrip(GtfsRealtime.TripDescriptor.newBuilder().setTripId("CITY2").setStartTime("06:00:00"))
+                .addStopTimeUpdateBuilder()
+                .setStopSequence(3)
+                .setScheduleRelationship(SKIPPED);
+        RealtimeFeed first = overlay.apply(Collections.singletonMap("gtfs_0", skipped.build()));
+        assertEquals(1, overlay.getVersion());
+        assertEquals(1, overlay.getLastChangedTripUpdates());
+
+        // ..then it doesn't, but it is two minutes late
+        final GtfsRealtime.FeedMessage.Builder delayed = GtfsRealtime.FeedMessage.newBuilder();
+        delayed.setHeader(header());
+        delayed.addEntityBuilder()
+                .setId("1")
+                .getTripUpdateBuilder()
+                .setTrip(GtfsRealtime.TripDescriptor.newBuilder().setTripId("CITY2").setStartTime("06:00:00"))
+                .addStopTimeUpdateBuilder()
+                .setScheduleRelationship(SCHEDULED)
+                .setStopSequence(3)
+                .setArrival(GtfsRealtime.TripUpdate.StopTimeEvent.newBuilder().setDelay(120).build());
+        RealtimeFeed second = overlay.apply(Collections.singletonMap("gtfs_0", delayed.build()));
+        assertEquals(2, overlay.getVersion());
+        assertEquals(1, overlay.getLastChangedTripUpdates());
+        assertTrue(overlay.getOverlaySize() > 0);
+
+        // The same trip update again doesn't need any work
+        RealtimeFeed third = overlay.apply(Collections.singletonMap("gtfs_0", delayed.build()));
+        assertEquals(3, overlay.getVersion());
+        assertEquals(0, overlay.getLastChangedTripUpdates());
+        assertSame(third, overlay.getRealtimeFeed());
+
+        // A query which started with the first version still sees the cancelled departure
+        ResponsePath possibleAlternative = graphHopperFactory.createWith(first).route(ghRequest).getAll().stream().filter(a -> !a.isImpossible()).findFirst().get();
+        assertEquals(time(0, 33), possibleAlternative.getTime(), "I have to wait for the next one");
+        assertEquals(time(0, 5), graphHopperFactory.createWith(second).route(ghRequest).getBest().getTime(), "I am two minutes late, but so is the bus");
+        assertEquals(time(0, 5), graphHopperFactory.createWith(third).route(ghRequest).getBest().getTime(), "I am two minutes late, but so is the bus");
+        assertEquals(time(0, 5), graphHopperFactory.createWith(delayed.build()).route(ghRequest).getBest().getTime(), "Same as building the realtime feed from scratch");
+    }
+
     @Test
     public void testZeroDelay() {
         final double FROM_LAT = 36.914893, FROM_LON = -116.76821; // NADAV stop
@@ -0,0 +1,149 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.graphhopper;
+
+import com.graphhopper.gtfs.*;
+import com.graphhopper.routing.TestProfiles;
+import com.graphhopper.util.Helper;
+import com.graphhopper.util.TranslationMap;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static com.graphhopper.gtfs.GtfsHelper.time;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The same walks as in {@link FreeWalkIT}, but between the stations they are taken from the table which is computed
+ * at import.
+ */
+public class StationWalksIT {
+
+    private static final String GRAPH_LOC = "target/StationWalksIT";
+    private static PtRouter ptRouter;
+    private static PtRouter ptRouterWithoutStationWalks;
+    private static final ZoneId zoneId = ZoneId.of("America/Los_Angeles");
+    private static GraphHopperGtfs graphHopperGtfs;
+
+    @BeforeAll
+    public static void init() {
+        GraphHopperConfig ghConfig = new GraphHopperConfig();
+        ghConfig.putObject("graph.location", GRAPH_LOC);
+        ghConfig.putObject("datareader.file", "files/beatty.osm");
+        ghConfig.putObject("gtfs.file", "files/sample-feed,files/another-sample-feed");
+        ghConfig.putObject("gtfs.max_transfer_interpolation_walk_time_seconds", 0);
+        ghConfig.putObject("gtfs.max_station_walk_time_seconds", 600);
+        ghConfig.putObject("gtfs.import_threads", 2);
+        ghConfig.putObject("import.osm.ignored_highways", "");
+        ghConfig.putObject("graph.encoded_values", "foot_access, foot_priority, foot_average_speed, car_access, car_average_speed");
+        ghConfig.setProfiles(List.of(
+                TestProfiles.accessSpeedAndPriority("foot"),
+                TestProfiles.accessAndSpeed("car")));
+
+        Helper.removeDir(new File(GRAPH_LOC));
+        graphHopperGtfs = new GraphHopperGtfs(ghConfig);
+        graphHopperGtfs.init(ghConfig);
+        graphHopperGtfs.importOrLoad();
+        ptRouter = new PtRouterFreeWalkImpl.Factory(ghConfig, new TranslationMap().doImport(), graphHopperGtfs.getBaseGraph(), graphHopperGtfs.getEncodingManager(), graphHopperGtfs.getLocationIndex(), graphHopperGtfs.getGtfsStorage())
+                .createWithoutRealtimeFeed();
+        StationWalks stationWalks = graphHopperGtfs.getGtfsStorage().getStationWalks();
+        graphHopperGtfs.getGtfsStorage().setStationWalks(null);
+        ptRouterWithoutStationWalks = new PtRouterFreeWalkImpl.Factory(ghConfig, new TranslationMap().doImport(), graphHopperGtfs.getBaseGraph(), graphHopperGtfs.getEncodingManager(), graphHopperGtfs.getLocationIndex(), graphHopperGtfs.getGtfsStorage())
+                .createWithoutRealtimeFeed();
+        graphHopperGtfs.getGtfsStorage().setStationWalks(stationWalks);
+    }
+
+    @AfterAll
+    public static void close() {
+        graphHopperGtfs.close();
+    }
+
+    @Test
+    public void testStationWalksAreComputed() {
+        StationWalks stationWalks = graphHopperGtfs.getGtfsStorage().getStationWalks();
+        assertNotNull(stationWalks);
+        assertTrue(stationWalks.getWalkCount() > 0);
+        assertEquals(600_000, stationWalks.getMaxWalkMillis());
+    }
+
+    @Test
+    public void testWalkTransferBetweenFeeds() {
+        Request ghRequest = new Request(
+                Arrays.asList(
+                        new GHStationLocation("JUSTICE_COURT"),
+                        new GHStationLocation("DADAN")
+                ),
+                LocalDateTime.of(2007, 1, 1, 9, 0, 0).atZone(zoneId).toInstant()
+        );
+        ghRequest.setIgnoreTransfers(true);
+        ghRequest.setWalkSpeedKmH(0.5); // Prevent walk solution
+        GHResponse route = ptRouter.route(ghRequest);
+
+        assertFalse(route.hasErrors());
+        assertEquals(1, route.getAll().size());
+        ResponsePath transitSolution = route.getBest();
+        Trip.PtLeg firstLeg = ((Trip.PtLeg) transitSolution.getLegs().get(0));
+        Trip.WalkLeg transferLeg = ((Trip.WalkLeg) transitSolution.getLegs().get(1));
+        Trip.PtLeg secondLeg = ((Trip.PtLeg) transitSolution.getLegs().get(2));
+        assertEquals("JUSTICE_COURT,MUSEUM", firstLeg.stops.stream().map(s -> s.stop_id).collect(Collectors.joining(",")));
+        assertEquals("EMSI,DADAN", secondLeg.stops.stream().map(s -> s.stop_id).collect(Collectors.joining(",")));
+        assertEquals(LocalDateTime.parse("2007-01-01T10:00:00").atZone(zoneId).toInstant(), transferLeg.getDepartureTime().toInstant());
+        assertFalse(transferLeg.getArrivalTime().after(secondLeg.getDepartureTime()));
+        assertEquals(time(1, 15), transitSolution.getTime(), "Expected total travel time == scheduled travel time + wait time");
+
+        // the walk is the one we find without the table
+        ResponsePath solutionWithoutStationWalks = ptRouterWithoutStationWalks.route(ghRequest).getBest();
+        assertEquals(solutionWithoutStationWalks.getLegs().get(1).geometry, transferLeg.geometry);
+        assertEquals(solutionWithoutStationWalks.getLegs().get(1).getDistance(), transferLeg.getDistance(), 1e-6);
+    }
+
+    @Test
+    public void testSameSolutionsAsWithoutStationWalks() {
+        for (boolean arriveBy : new boolean[]{false, true}) {
+            Request ghRequest = new Request(
+                    Arrays.asList(
+                            new GHStationLocation("JUSTICE_COURT"),
+                            new GHStationLocation("DADAN")
+                    ),
+                    LocalDateTime.of(2007, 1, 1, arriveBy ? 11 : 9, 0, 0).atZone(zoneId).toInstant()
+            );
+            ghRequest.setArriveBy(arriveBy);
+            ghRequest.setWalkSpeedKmH(0.5);
+            GHResponse route = ptRouter.route(ghRequest);
+            GHResponse routeWithoutStationWalks = ptRouterWithoutStationWalks.route(ghRequest);
+
+            assertFalse(route.hasErrors());
+            assertEquals(routeWithoutStationWalks.getAll().size(), route.getAll().size());
+            for (int i = 0; i < route.getAll().size(); i++) {
+                List<Trip.Leg> legs = route.getAll().get(i).getLegs();
+                List<Trip.Leg> legsWithoutStationWalks = routeWithoutStationWalks.getAll().get(i).getLegs();
+                assertEquals(legsWithoutStationWalks.stream().map(l -> l.type).collect(Collectors.toList()), legs.stream().map(l -> l.type).collect(Collectors.toList()));
+                assertEquals(legsWithoutStationWalks.get(0).getDepartureTime(), legs.get(0).getDepartureTime());
+            }
+        }
+    }
+
+}
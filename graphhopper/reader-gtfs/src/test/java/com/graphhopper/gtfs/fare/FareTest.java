@@ -231,6 +231,17 @@ public class FareTest {
                 });
     }
 
+    @ParameterizedTest(name = "{2}")
+    @ArgumentsSource(DataPointProvider.class)
+    public void indexFindsTheSameFaresAsTheRules(Map<String, Map<String, Fare>> fares, Trip trip, String displayName) {
+        FareIndex fareIndex = new FareIndex(fares);
+        for (Trip.Segment segment : trip.segments) {
+            assertEquals(new ArrayList<>(Fares.possibleFares(fares.get(segment.feed_id), segment)), new ArrayList<>(fareIndex.possibleFares(segment)));
+            Trip.Segment withoutZones = new Trip.Segment(segment.feed_id, segment.getRoute(), segment.getStartTime(), segment.getOriginId(), segment.getDestinationId(), Collections.emptySet());
+            assertEquals(new ArrayList<>(Fares.possibleFares(fares.get(segment.feed_id), withoutZones)), new ArrayList<>(fareIndex.possibleFares(withoutZones)));
+        }
+    }
+
     public static Map<String, Fare> parseFares(String feedId, String fareAttributes, String fareRules) {
         GTFSFeed feed = new GTFSFeed();
         feed.feedId = feedId;
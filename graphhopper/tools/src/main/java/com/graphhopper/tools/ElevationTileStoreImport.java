@@ -0,0 +1,92 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.tools;
+
+import com.graphhopper.GraphHopper;
+import com.graphhopper.GraphHopperConfig;
+import com.graphhopper.reader.dem.ElevationProvider;
+import com.graphhopper.reader.dem.ElevationTileStore;
+import com.graphhopper.storage.DAType;
+import com.graphhopper.storage.GHDirectory;
+import com.graphhopper.util.PMap;
+import com.graphhopper.util.StopWatch;
+import com.graphhopper.util.shapes.BBox;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.util.Arrays;
+
+/**
+ * Converts a directory of local elevation tiles (e.g. hgt or tiff files) into a single {@link ElevationTileStore} that
+ * can be used via graph.elevation.provider: tile_store. Example:
+ * <pre>
+ * java -cp tools.jar com.graphhopper.tools.ElevationTileStoreImport source=hgt source_dir=/data/hgt \
+ *     store_dir=/data/elevation-store bbox=5,16,47,56 samples_per_degree=1200
+ * </pre>
+ * The bbox is specified as minLon,maxLon,minLat,maxLat and all one degree cells that intersect it are imported.
+ */
+public class ElevationTileStoreImport {
+    private static final Logger logger = LoggerFactory.getLogger(ElevationTileStoreImport.class);
+
+    public static void main(String[] strs) {
+        logger.info("running for args: " + Arrays.toString(strs));
+        PMap args = PMap.read(strs);
+        String storeDir = args.getString("store_dir", "");
+        if (storeDir.isEmpty())
+            throw new IllegalArgumentException("You need to specify the store_dir");
+        if (new File(storeDir, "elevation_tile_store").exists())
+            throw new IllegalArgumentException("There is already an elevation tile store in " + storeDir);
+        BBox bbox = BBox.parseBBoxString(args.getString("bbox", "-180,180,-90,90"));
+        int samplesPerDegree = args.getInt("samples_per_degree", 1200);
+
+        GraphHopperConfig sourceConfig = new GraphHopperConfig()
+                .putObject("graph.elevation.provider", args.getString("source", "hgt"))
+                .putObject("graph.elevation.cache_dir", args.getString("source_dir", ""))
+                .putObject("graph.elevation.interpolate", args.getString("interpolate", "none"));
+        ElevationProvider source = GraphHopper.createElevationProvider(sourceConfig);
+        if (source == ElevationProvider.NOOP)
+            throw new IllegalArgumentException("Unknown source: " + args.getString("source", "hgt"));
+
+        ElevationTileStore store = new ElevationTileStore(new GHDirectory(storeDir, DAType.MMAP).create()).create(samplesPerDegree);
+        int minLat = (int) Math.floor(bbox.minLat), maxLat = (int) Math.ceil(bbox.maxLat);
+        int minLon = (int) Math.floor(bbox.minLon), maxLon = (int) Math.ceil(bbox.maxLon);
+        int cells = (maxLat - minLat) * (maxLon - minLon), processed = 0;
+        StopWatch sw = new StopWatch().start();
+        try {
+            for (int lat = Math.max(-90, minLat); lat < Math.min(90, maxLat); lat++) {
+                for (int lon = Math.max(-180, minLon); lon < Math.min(180, maxLon); lon++) {
+                    boolean stored = store.importTile(source, lat, lon);
+                    processed++;
+                    if (stored)
+                        logger.info("imported tile " + lat + "," + lon + ", " + processed + "/" + cells
+                                + " cells, tiles: " + store.getTiles() + ", took " + sw.getCurrentSeconds() + "s");
+                    // the source providers cache all tiles, so we release them from time to time
+                    if (processed % 50 == 0)
+                        source.release();
+                }
+            }
+            store.flush();
+            logger.info("finished elevation tile store with " + store.getTiles() + " tiles, "
+                    + store.getCapacity() / (1 << 20) + "MB, took " + sw.stop().getSeconds() + "s");
+        } finally {
+            store.close();
+            source.release();
+        }
+    }
+}
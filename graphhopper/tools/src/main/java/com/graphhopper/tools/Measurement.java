@@ -36,6 +36,7 @@ import com.graphhopper.routing.weighting.Weighting;
 import com.graphhopper.routing.weighting.custom.CustomWeighting;
 import com.graphhopper.storage.*;
 import com.graphhopper.storage.index.LocationIndex;
+import com.graphhopper.storage.index.Snap;
 import com.graphhopper.util.*;
 import com.graphhopper.util.Parameters.Algorithms;
 import com.graphhopper.util.Parameters.CH;
@@ -120,9 +121,10 @@ public class Measurement {
 
         GraphHopper hopper = new GraphHopper() {
             @Override
-            protected Map<String, PrepareContractionHierarchies.Result> prepareCH(boolean closeEarly, List<CHConfig> configsToPrepare) {
+            protected Map<String, PrepareContractionHierarchies.Result> prepareCH(boolean closeEarly, List<CHConfig> configsToPrepare,
+                                                                                 Map<String, RoutingCHGraph> loaded) {
                 StopWatch sw = new StopWatch().start();
-                Map<String, PrepareContractionHierarchies.Result> result = super.prepareCH(closeEarly, configsToPrepare);
+                Map<String, PrepareContractionHierarchies.Result> result = super.prepareCH(closeEarly, configsToPrepare, loaded);
                 // note that we measure the total time of all (possibly edge&node) CH preparations
                 put(Parameters.CH.PREPARE + "time", sw.stop().getMillis());
                 if (result.get("profile_no_tc") != null) {
@@ -184,6 +186,8 @@ public class Measurement {
             printGraphDetails(g, vehicle);
             measureGraphTraversal(g, accessEnc, count * 100);
             measureLocationIndex(g, hopper.getLocationIndex(), count);
+            measureLocationIndexWithHeading(g, hopper.getLocationIndex(), count);
+            measureKeyValues(g, count);
 
             if (runSlow) {
                 boolean isCH = false;
@@ -426,6 +430,56 @@ public class Measurement {
         print("location_index", miniPerf);
     }
 
+    private void measureLocationIndexWithHeading(Graph g, final LocationIndex idx, int count) {
+        final BBox bbox = g.getBounds();
+        final double latDelta = bbox.maxLat - bbox.minLat;
+        final double lonDelta = bbox.maxLon - bbox.minLon;
+        final DirectedEdgeFilter directedEdgeFilter = (edge, reverse) -> true;
+        // the lookup with a single search for the heading and the fallback
+        Random rand = new Random(seed);
+        MiniPerfTest miniPerf = new MiniPerfTest().setIterations(count).start((warmup, run) -> {
+            double lat = rand.nextDouble() * latDelta + bbox.minLat;
+            double lon = rand.nextDouble() * lonDelta + bbox.minLon;
+            return idx.findClosest(lat, lon, EdgeFilter.ALL_EDGES, directedEdgeFilter, rand.nextInt(360),
+                    HeadingEdgeFilter.DEFAULT_TOLERANCE, HeadingEdgeFilter.DEFAULT_MAX_DISTANCE).getClosestNode();
+        });
+        print("location_index_heading", miniPerf);
+
+        // the same points and headings, but filtering with the HeadingEdgeFilter and searching again if nothing matched
+        Random filterRand = new Random(seed);
+        miniPerf = new MiniPerfTest().setIterations(count).start((warmup, run) -> {
+            double lat = filterRand.nextDouble() * latDelta + bbox.minLat;
+            double lon = filterRand.nextDouble() * lonDelta + bbox.minLon;
+            Snap snap = idx.findClosest(lat, lon, new HeadingEdgeFilter(directedEdgeFilter, filterRand.nextInt(360), new GHPoint(lat, lon)));
+            if (!snap.isValid())
+                snap = idx.findClosest(lat, lon, EdgeFilter.ALL_EDGES);
+            return snap.getClosestNode();
+        });
+        print("location_index_heading_filter", miniPerf);
+    }
+
+    private void measureKeyValues(Graph g, int count) {
+        final Random rand = new Random(seed);
+        final int maxEdgesId = g.getEdges();
+        final int edgesPerRoute = 50;
+        final List<String> keys = Arrays.asList(Parameters.Details.STREET_NAME, Parameters.Details.STREET_REF, Parameters.Details.STREET_DESTINATION);
+        // similar to the instructions and street details of a route we read the names along consecutive edges
+        MiniPerfTest miniPerf = new MiniPerfTest().setIterations(count).start((warmup, run) -> {
+            int start = rand.nextInt(Math.max(1, maxEdgesId - edgesPerRoute));
+            int sum = 0;
+            for (int edgeId = start; edgeId < Math.min(maxEdgesId, start + edgesPerRoute); edgeId++) {
+                EdgeIteratorState edge = g.getEdgeIteratorState(edgeId, Integer.MIN_VALUE);
+                for (String key : keys) {
+                    Object value = edge.getValue(key);
+                    if (value != null)
+                        sum += value.hashCode();
+                }
+            }
+            return sum;
+        });
+        print("unit_tests.edge_kv_get", miniPerf);
+    }
+
     private void measureGraphTraversal(final Graph graph, BooleanEncodedValue accessEnc, int count) {
         final Random rand = new Random(seed);
 
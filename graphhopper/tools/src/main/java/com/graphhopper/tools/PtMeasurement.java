@@ -0,0 +1,109 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.tools;
+
+import com.conveyal.gtfs.GTFSFeed;
+import com.graphhopper.GraphHopperConfig;
+import com.graphhopper.gtfs.*;
+import com.graphhopper.routing.TestProfiles;
+import com.graphhopper.util.Helper;
+import com.graphhopper.util.MiniPerfTest;
+import com.graphhopper.util.PMap;
+import com.graphhopper.util.TranslationMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.*;
+
+import static com.graphhopper.util.Helper.nf;
+
+/**
+ * Runs random station to station queries on a GTFS feed, the sample feed of reader-gtfs by default, and logs the time
+ * and the heap memory allocated per query for the public transit routers. The allocations are what makes the garbage
+ * collector busy when there is a lot of /route-pt traffic, so they are worth watching as much as the time.
+ */
+public class PtMeasurement {
+    private static final Logger LOGGER = LoggerFactory.getLogger(PtMeasurement.class);
+
+    public static void main(String[] args) {
+        // example args:
+        // gtfs=reader-gtfs/files/sample-feed date=2007-01-06 iterations=2000 seed=123
+        PMap map = PMap.read(args);
+        String gtfsFile = map.getString("gtfs", "reader-gtfs/files/sample-feed");
+        String graphLocation = map.getString("graph.location", "pt-measurement-gh");
+        LocalDate date = LocalDate.parse(map.getString("date", "2007-01-06"));
+        int iterations = map.getInt("iterations", 2000);
+        long seed = map.getLong("seed", 123);
+
+        GraphHopperConfig ghConfig = new GraphHopperConfig();
+        ghConfig.putObject("graph.location", graphLocation);
+        ghConfig.putObject("import.osm.ignored_highways", "");
+        ghConfig.putObject("gtfs.file", gtfsFile);
+        ghConfig.putObject("graph.encoded_values", "foot_access, foot_priority, foot_average_speed");
+        ghConfig.setProfiles(List.of(TestProfiles.accessSpeedAndPriority("foot")));
+        Helper.removeDir(new File(graphLocation));
+        GraphHopperGtfs hopper = new GraphHopperGtfs(ghConfig);
+        hopper.init(ghConfig);
+        hopper.importOrLoad();
+        try {
+            List<Request> requests = createRequests(hopper.getGtfsStorage(), date, iterations, seed);
+            TranslationMap translationMap = new TranslationMap().doImport();
+            measure("pt_label_setting", new PtRouterImpl.Factory(ghConfig, translationMap, hopper.getBaseGraph(), hopper.getEncodingManager(),
+                    hopper.getLocationIndex(), hopper.getGtfsStorage()).createWithoutRealtimeFeed(), requests);
+            measure("pt_raptor", new PtRouterRaptorImpl.Factory(ghConfig, translationMap, hopper.getBaseGraph(), hopper.getEncodingManager(),
+                    hopper.getLocationIndex(), hopper.getGtfsStorage()).createWithoutRealtimeFeed(), requests);
+        } finally {
+            hopper.close();
+        }
+    }
+
+    private static List<Request> createRequests(GtfsStorage gtfsStorage, LocalDate date, int count, long seed) {
+        List<String> stops = new ArrayList<>();
+        ZoneId zoneId = null;
+        for (GTFSFeed feed : gtfsStorage.getGtfsFeeds().values()) {
+            feed.stops.values().stream().filter(stop -> stop.location_type == 0).forEach(stop -> stops.add(stop.stop_id));
+            if (zoneId == null)
+                zoneId = ZoneId.of(feed.agency.values().iterator().next().agency_timezone);
+        }
+        Random random = new Random(seed);
+        List<Request> requests = new ArrayList<>(count);
+        while (requests.size() < count) {
+            String from = stops.get(random.nextInt(stops.size()));
+            String to = stops.get(random.nextInt(stops.size()));
+            if (from.equals(to))
+                continue;
+            requests.add(new Request(Arrays.asList(new GHStationLocation(from), new GHStationLocation(to)),
+                    date.atStartOfDay(zoneId).plusSeconds(random.nextInt(24 * 60 * 60)).toInstant()));
+        }
+        return requests;
+    }
+
+    private static void measure(String name, PtRouter router, List<Request> requests) {
+        com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long allocatedBefore = threadBean.getCurrentThreadAllocatedBytes();
+        MiniPerfTest perf = new MiniPerfTest().setIterations(requests.size()).start((warmup, run) -> router.route(requests.get(run)).getAll().size());
+        long allocated = threadBean.getCurrentThreadAllocatedBytes() - allocatedBefore;
+        // the warm-up runs count as well
+        int queries = requests.size() + Math.max(1, requests.size() / 3);
+        LOGGER.info(name + ": " + perf.getReport() + ", allocated/call: " + nf(allocated / queries) + " bytes");
+    }
+}
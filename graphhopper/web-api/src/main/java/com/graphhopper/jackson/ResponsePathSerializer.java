@@ -18,6 +18,7 @@
 
 package com.graphhopper.jackson;
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.JsonNodeFactory;
 import com.fasterxml.jackson.databind.node.ObjectNode;
@@ -26,6 +27,8 @@ import com.graphhopper.ResponsePath;
 import com.graphhopper.util.Helper;
 import com.graphhopper.util.PointList;
 
+import java.io.IOException;
+import java.io.Reader;
 import java.text.NumberFormat;
 import java.util.List;
 import java.util.Locale;
@@ -43,42 +46,88 @@ import java.util.Locale;
 public class ResponsePathSerializer {
 
     public static String encodePolyline(PointList poly, boolean includeElevation, double multiplier) {
-        if (multiplier < 1)
-            throw new IllegalArgumentException("multiplier cannot be smaller than 1 but was " + multiplier + " for polyline");
-
+        PolylineReader reader = new PolylineReader(poly, includeElevation, multiplier);
         StringBuilder sb = new StringBuilder(Math.max(20, poly.size() * 3));
-        int size = poly.size();
-        int prevLat = 0;
-        int prevLon = 0;
-        int prevEle = 0;
-        for (int i = 0; i < size; i++) {
+        char[] buffer = new char[256];
+        int read;
+        while ((read = reader.read(buffer, 0, buffer.length)) > 0) {
+            sb.append(buffer, 0, read);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Encodes the points while they are read, so that a {@link JsonGenerator} can write the polyline without
+     * creating the string first.
+     */
+    static class PolylineReader extends Reader {
+        private final PointList poly;
+        private final boolean includeElevation;
+        private final double multiplier;
+        // an encoded number has at most 7 characters
+        private final char[] pending = new char[3 * 7];
+        private int pendingStart, pendingEnd;
+        private int index;
+        private int prevLat, prevLon, prevEle;
+
+        PolylineReader(PointList poly, boolean includeElevation, double multiplier) {
+            if (multiplier < 1)
+                throw new IllegalArgumentException("multiplier cannot be smaller than 1 but was " + multiplier + " for polyline");
+            this.poly = poly;
+            this.includeElevation = includeElevation;
+            this.multiplier = multiplier;
+        }
+
+        @Override
+        public int read(char[] cbuf, int off, int len) {
+            int written = 0;
+            while (written < len) {
+                if (pendingStart == pendingEnd) {
+                    if (index >= poly.size())
+                        break;
+                    encodePoint(index++);
+                }
+                int count = Math.min(len - written, pendingEnd - pendingStart);
+                System.arraycopy(pending, pendingStart, cbuf, off + written, count);
+                pendingStart += count;
+                written += count;
+            }
+            return written == 0 && len > 0 ? -1 : written;
+        }
+
+        private void encodePoint(int i) {
+            pendingStart = 0;
+            pendingEnd = 0;
             int num = (int) Math.round(poly.getLat(i) * multiplier);
-            encodeNumber(sb, num - prevLat);
+            encodeNumber(num - prevLat);
             prevLat = num;
             num = (int) Math.round(poly.getLon(i) * multiplier);
-            encodeNumber(sb, num - prevLon);
+            encodeNumber(num - prevLon);
             prevLon = num;
             if (includeElevation) {
                 num = (int) Math.round(poly.getEle(i) * 100);
-                encodeNumber(sb, num - prevEle);
+                encodeNumber(num - prevEle);
                 prevEle = num;
             }
         }
-        return sb.toString();
-    }
 
-    private static void encodeNumber(StringBuilder sb, int num) {
-        num = num << 1;
-        if (num < 0) {
-            num = ~num;
+        private void encodeNumber(int num) {
+            num = num << 1;
+            if (num < 0) {
+                num = ~num;
+            }
+            while (num >= 0x20) {
+                int nextValue = (0x20 | (num & 0x1f)) + 63;
+                pending[pendingEnd++] = (char) (nextValue);
+                num >>= 5;
+            }
+            num += 63;
+            pending[pendingEnd++] = (char) (num);
         }
-        while (num >= 0x20) {
-            int nextValue = (0x20 | (num & 0x1f)) + 63;
-            sb.append((char) (nextValue));
-            num >>= 5;
+
+        @Override
+        public void close() {
         }
-        num += 63;
-        sb.append((char) (num));
     }
 
     public record Info(List<String> copyrights, long took, String roadDataTimestamp) {
@@ -122,4 +171,76 @@ public class ResponsePathSerializer {
         }
         return json;
     }
+
+    /**
+     * Writes the same JSON as {@link #jsonObject} directly to the generator, without building the tree first. The
+     * points are written while they are encoded. The generator needs a codec, e.g. from {@link Jackson#newObjectMapper()}.
+     */
+    public static void writeJson(JsonGenerator gen, GHResponse ghRsp, Info info, boolean enableInstructions,
+                                 boolean calcPoints, boolean enableElevation, boolean pointsEncoded, double pointsMultiplier) throws IOException {
+        gen.writeStartObject();
+        gen.writeObjectField("hints", ghRsp.getHints().toMap());
+        gen.writeObjectField("info", info);
+        gen.writeArrayFieldStart("paths");
+        for (ResponsePath p : ghRsp.getAll()) {
+            gen.writeStartObject();
+            gen.writeNumberField("distance", Helper.round(p.getDistance(), 3));
+            gen.writeNumberField("weight", Helper.round6(p.getRouteWeight()));
+            gen.writeNumberField("time", p.getTime());
+            gen.writeNumberField("transfers", p.getNumChanges());
+            if (!p.getDescription().isEmpty()) {
+                gen.writeObjectField("description", p.getDescription());
+            }
+
+            // for points and snapped_waypoints:
+            gen.writeBooleanField("points_encoded", pointsEncoded);
+            if (pointsEncoded) gen.writeNumberField("points_encoded_multiplier", pointsMultiplier);
+
+            if (calcPoints) {
+                gen.writeObjectField("bbox", p.calcBBox2D());
+                gen.writeFieldName("points");
+                writePoints(gen, p.getPoints(), enableElevation, pointsEncoded, pointsMultiplier);
+                if (enableInstructions) {
+                    gen.writeObjectField("instructions", p.getInstructions());
+                }
+                gen.writeObjectField("legs", p.getLegs());
+                gen.writeObjectField("details", p.getPathDetails());
+                gen.writeNumberField("ascend", p.getAscend());
+                gen.writeNumberField("descend", p.getDescend());
+            }
+            gen.writeFieldName("snapped_waypoints");
+            writePoints(gen, p.getWaypoints(), enableElevation, pointsEncoded, pointsMultiplier);
+            if (p.getFare() != null) {
+                gen.writeStringField("fare", NumberFormat.getCurrencyInstance(Locale.ROOT).format(p.getFare()));
+            }
+            gen.writeEndObject();
+        }
+        gen.writeEndArray();
+        gen.writeEndObject();
+    }
+
+    private static void writePoints(JsonGenerator gen, PointList points, boolean enableElevation, boolean pointsEncoded,
+                                    double pointsMultiplier) throws IOException {
+        if (pointsEncoded) {
+            gen.writeString(new PolylineReader(points, enableElevation, pointsMultiplier), -1);
+            return;
+        }
+        // the same GeoJSON as for PointList.toLineString
+        gen.writeStartObject();
+        gen.writeStringField("type", "LineString");
+        gen.writeArrayFieldStart("coordinates");
+        // special case as just 1 point is not supported in the specification #1412
+        int size = points.size() == 1 ? 2 : points.size();
+        for (int i = 0; i < size; i++) {
+            int index = Math.min(i, points.size() - 1);
+            gen.writeStartArray();
+            gen.writeNumber(Helper.round6(points.getLon(index)));
+            gen.writeNumber(Helper.round6(points.getLat(index)));
+            if (enableElevation)
+                gen.writeNumber(Helper.round2(points.getEle(index)));
+            gen.writeEndArray();
+        }
+        gen.writeEndArray();
+        gen.writeEndObject();
+    }
 }
@@ -0,0 +1,349 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.protobuf;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.WireFormat;
+import com.graphhopper.GHResponse;
+import com.graphhopper.ResponsePath;
+import com.graphhopper.jackson.Jackson;
+import com.graphhopper.jackson.ResponsePathDeserializerHelper;
+import com.graphhopper.util.*;
+import com.graphhopper.util.details.PathDetail;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.*;
+
+import static com.graphhopper.protobuf.ResponsePathProtobufSerializer.*;
+
+/**
+ * Reads the binary response of the routing API written by {@link ResponsePathProtobufSerializer}. The paths are
+ * created like {@link ResponsePathDeserializerHelper#createResponsePath} does for the JSON response.
+ */
+public class ResponsePathProtobufDeserializer {
+    private static final ObjectMapper objectMapper = Jackson.newObjectMapper();
+
+    private static class InstructionData {
+        String text = "";
+        String streetName = "";
+        long time;
+        double distance;
+        int sign;
+        int first, last;
+        final Map<String, Object> extraInfo = new HashMap<>();
+    }
+
+    private static class Property {
+        String key = "";
+        Object value;
+    }
+
+    public static GHResponse readFrom(InputStream inputStream, boolean hasElevation, boolean turnDescription) throws IOException {
+        CodedInputStream in = CodedInputStream.newInstance(inputStream);
+        // the default of 100MB is not enough for long routes with path details
+        in.setSizeLimit(Integer.MAX_VALUE);
+        GHResponse res = new GHResponse();
+        int tag;
+        while ((tag = in.readTag()) != 0) {
+            switch (WireFormat.getTagFieldNumber(tag)) {
+                case RESPONSE_PATHS:
+                    int limit = in.pushLimit(in.readRawVarint32());
+                    res.add(readPath(in, hasElevation, turnDescription));
+                    in.popLimit(limit);
+                    break;
+                case RESPONSE_HINTS:
+                    Property hint = readProperty(in);
+                    res.getHints().putObject(hint.key, hint.value);
+                    break;
+                default:
+                    // the info is not part of the GHResponse, like for the JSON response
+                    in.skipField(tag);
+            }
+        }
+        return res;
+    }
+
+    private static ResponsePath readPath(CodedInputStream in, boolean hasElevation, boolean turnDescription) throws IOException {
+        ResponsePath responsePath = new ResponsePath();
+        List<String> description = new ArrayList<>();
+        List<InstructionData> instructions = new ArrayList<>();
+        Map<String, List<PathDetail>> pathDetails = new HashMap<>();
+        PointList points = null;
+        int tag;
+        while ((tag = in.readTag()) != 0) {
+            switch (WireFormat.getTagFieldNumber(tag)) {
+                case PATH_DISTANCE:
+                    responsePath.setDistance(in.readDouble());
+                    break;
+                case PATH_WEIGHT:
+                    responsePath.setRouteWeight(in.readDouble());
+                    break;
+                case PATH_TIME:
+                    responsePath.setTime(in.readInt64());
+                    break;
+                case PATH_TRANSFERS:
+                    responsePath.setNumChanges(in.readInt32());
+                    break;
+                case PATH_DESCRIPTION:
+                    description.add(in.readString());
+                    break;
+                case PATH_POINTS:
+                    points = readPoints(in, hasElevation);
+                    break;
+                case PATH_INSTRUCTIONS:
+                    instructions.add(readInstruction(in));
+                    break;
+                case PATH_DETAILS:
+                    readDetails(in, pathDetails);
+                    break;
+                case PATH_ASCEND:
+                    responsePath.setAscend(in.readDouble());
+                    break;
+                case PATH_DESCEND:
+                    responsePath.setDescend(in.readDouble());
+                    break;
+                case PATH_SNAPPED_WAYPOINTS:
+                    responsePath.setWaypoints(readPoints(in, hasElevation));
+                    break;
+                default:
+                    // the bbox is calculated from the points and the fare is only formatted for display
+                    in.skipField(tag);
+            }
+        }
+        if (!description.isEmpty())
+            responsePath.setDescription(description);
+        if (points != null) {
+            responsePath.setPoints(points);
+            if (!instructions.isEmpty())
+                responsePath.setInstructions(createInstructions(instructions, points, hasElevation, turnDescription));
+            if (!pathDetails.isEmpty())
+                responsePath.addPathDetails(pathDetails);
+        }
+        List<Integer> pointsOrder = new ArrayList<>(responsePath.getWaypoints().size());
+        for (int i = 0; i < responsePath.getWaypoints().size(); i++) {
+            pointsOrder.add(i);
+        }
+        responsePath.setPointsOrder(pointsOrder);
+        return responsePath;
+    }
+
+    private static PointList readPoints(CodedInputStream in, boolean hasElevation) throws IOException {
+        int limit = in.pushLimit(in.readRawVarint32());
+        double multiplier = 1e5;
+        boolean elevation = false;
+        PointList pointList = new PointList(10, hasElevation);
+        int tag;
+        while ((tag = in.readTag()) != 0) {
+            switch (WireFormat.getTagFieldNumber(tag)) {
+                case POINTS_MULTIPLIER:
+                    multiplier = in.readDouble();
+                    break;
+                case POINTS_ELEVATION:
+                    elevation = in.readBool();
+                    break;
+                case POINTS_COORDINATES:
+                    if (multiplier < 1)
+                        throw new IllegalArgumentException("multiplier cannot be smaller than 1 but was " + multiplier + " for points");
+                    int coordinatesLimit = in.pushLimit(in.readRawVarint32());
+                    int lat = 0, lon = 0, ele = 0;
+                    while (in.getBytesUntilLimit() > 0) {
+                        lat += in.readSInt32();
+                        lon += in.readSInt32();
+                        if (elevation)
+                            ele += in.readSInt32();
+                        if (hasElevation)
+                            pointList.add(lat / multiplier, lon / multiplier, ele / 100.0);
+                        else
+                            pointList.add(lat / multiplier, lon / multiplier);
+                    }
+                    in.popLimit(coordinatesLimit);
+                    break;
+                default:
+                    in.skipField(tag);
+            }
+        }
+        in.popLimit(limit);
+        return pointList;
+    }
+
+    private static InstructionData readInstruction(CodedInputStream in) throws IOException {
+        int limit = in.pushLimit(in.readRawVarint32());
+        InstructionData data = new InstructionData();
+        int tag;
+        while ((tag = in.readTag()) != 0) {
+            switch (WireFormat.getTagFieldNumber(tag)) {
+                case INSTRUCTION_TEXT:
+                    data.text = in.readString();
+                    break;
+                case INSTRUCTION_STREET_NAME:
+                    data.streetName = in.readString();
+                    break;
+                case INSTRUCTION_TIME:
+                    data.time = in.readInt64();
+                    break;
+                case INSTRUCTION_DISTANCE:
+                    data.distance = in.readDouble();
+                    break;
+                case INSTRUCTION_SIGN:
+                    data.sign = in.readInt32();
+                    break;
+                case INSTRUCTION_FIRST:
+                    data.first = in.readUInt32();
+                    break;
+                case INSTRUCTION_LAST:
+                    data.last = in.readUInt32();
+                    break;
+                case INSTRUCTION_EXTRA_INFO:
+                    Property property = readProperty(in);
+                    data.extraInfo.put(property.key, property.value);
+                    break;
+                default:
+                    in.skipField(tag);
+            }
+        }
+        in.popLimit(limit);
+        return data;
+    }
+
+    private static InstructionList createInstructions(List<InstructionData> instructions, PointList pointList,
+                                                      boolean hasElevation, boolean turnDescription) {
+        InstructionList il = new InstructionList(null);
+        int viaCount = 1;
+        for (InstructionData data : instructions) {
+            String text = turnDescription ? data.text : data.streetName;
+            PointList instPL = new PointList(data.last - data.first, hasElevation);
+            for (int j = data.first; j <= data.last; j++) {
+                instPL.add(pointList, j);
+            }
+
+            Instruction instr;
+            if (data.sign == Instruction.USE_ROUNDABOUT || data.sign == Instruction.LEAVE_ROUNDABOUT) {
+                RoundaboutInstruction ri = new RoundaboutInstruction(data.sign, text, instPL);
+                if (data.extraInfo.get("exit_number") instanceof Number)
+                    ri.setExitNumber(((Number) data.extraInfo.get("exit_number")).intValue());
+                if (Boolean.TRUE.equals(data.extraInfo.get("exited")))
+                    ri.setExited();
+                if (data.extraInfo.get("turn_angle") instanceof Number) {
+                    double angle = ((Number) data.extraInfo.get("turn_angle")).doubleValue();
+                    ri.setDirOfRotation(angle);
+                    ri.setRadian((angle < 0 ? -Math.PI : Math.PI) - angle);
+                }
+                instr = ri;
+            } else if (data.sign == Instruction.REACHED_VIA) {
+                ViaInstruction tmpInstr = new ViaInstruction(text, instPL);
+                tmpInstr.setViaCount(viaCount);
+                viaCount++;
+                instr = tmpInstr;
+            } else if (data.sign == Instruction.FINISH) {
+                instr = new FinishInstruction(text, instPL, 0);
+            } else {
+                instr = new Instruction(data.sign, text, instPL);
+                if (data.sign == Instruction.CONTINUE_ON_STREET && data.extraInfo.get("heading") instanceof Number)
+                    instr.setExtraInfo("heading", ((Number) data.extraInfo.get("heading")).doubleValue());
+            }
+
+            if (turnDescription)
+                instr.setUseRawName();
+
+            instr.setDistance(data.distance).setTime(data.time);
+            il.add(instr);
+        }
+        return il;
+    }
+
+    private static void readDetails(CodedInputStream in, Map<String, List<PathDetail>> pathDetails) throws IOException {
+        int limit = in.pushLimit(in.readRawVarint32());
+        String name = "";
+        List<PathDetail> pathDetailList = new ArrayList<>();
+        int tag;
+        while ((tag = in.readTag()) != 0) {
+            switch (WireFormat.getTagFieldNumber(tag)) {
+                case DETAILS_NAME:
+                    name = in.readString();
+                    break;
+                case DETAILS_DETAILS:
+                    pathDetailList.add(readDetail(in));
+                    break;
+                default:
+                    in.skipField(tag);
+            }
+        }
+        in.popLimit(limit);
+        pathDetails.put(name, pathDetailList);
+    }
+
+    private static PathDetail readDetail(CodedInputStream in) throws IOException {
+        int limit = in.pushLimit(in.readRawVarint32());
+        int first = 0, last = 0;
+        Object value = null;
+        int tag;
+        while ((tag = in.readTag()) != 0) {
+            int field = WireFormat.getTagFieldNumber(tag);
+            if (field == DETAIL_FIRST)
+                first = in.readUInt32();
+            else if (field == DETAIL_LAST)
+                last = in.readUInt32();
+            else if (field >= DOUBLE_VALUE && field <= JSON_VALUE)
+                value = readValue(in, field);
+            else
+                in.skipField(tag);
+        }
+        in.popLimit(limit);
+        PathDetail pd = new PathDetail(value);
+        pd.setFirst(first);
+        pd.setLast(last);
+        return pd;
+    }
+
+    private static Property readProperty(CodedInputStream in) throws IOException {
+        int limit = in.pushLimit(in.readRawVarint32());
+        Property property = new Property();
+        int tag;
+        while ((tag = in.readTag()) != 0) {
+            int field = WireFormat.getTagFieldNumber(tag);
+            if (field == PROPERTY_KEY)
+                property.key = in.readString();
+            else if (field >= DOUBLE_VALUE && field <= JSON_VALUE)
+                property.value = readValue(in, field);
+            else
+                in.skipField(tag);
+        }
+        in.popLimit(limit);
+        return property;
+    }
+
+    private static Object readValue(CodedInputStream in, int field) throws IOException {
+        switch (field) {
+            case DOUBLE_VALUE:
+                return in.readDouble();
+            case LONG_VALUE:
+                return in.readSInt64();
+            case BOOL_VALUE:
+                return in.readBool();
+            case STRING_VALUE:
+                return in.readString();
+            case JSON_VALUE:
+                // like for the JSON response objects become maps and arrays become lists
+                return objectMapper.readValue(in.readString(), Object.class);
+            default:
+                throw new IllegalArgumentException("Unknown value field " + field);
+        }
+    }
+}
@@ -0,0 +1,205 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.protobuf;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.WireFormat;
+import com.graphhopper.GHResponse;
+import com.graphhopper.ResponsePath;
+import com.graphhopper.jackson.Jackson;
+import com.graphhopper.jackson.ResponsePathSerializer;
+import com.graphhopper.util.Helper;
+import com.graphhopper.util.Instruction;
+import com.graphhopper.util.InstructionList;
+import com.graphhopper.util.PointList;
+import com.graphhopper.util.details.PathDetail;
+import org.locationtech.jts.geom.Envelope;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.text.NumberFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Writes the response of the routing API in the binary format described in route.proto. Other than
+ * {@link ResponsePathSerializer#jsonObject} it writes directly from the {@link ResponsePath}s to the stream, only the
+ * bytes of the nested messages are buffered, because their length has to be written first.
+ */
+public class ResponsePathProtobufSerializer {
+    public static final String MEDIA_TYPE = "application/x-protobuf";
+
+    // the field numbers from route.proto
+    static final int RESPONSE_PATHS = 1, RESPONSE_INFO = 2, RESPONSE_HINTS = 3;
+    static final int INFO_COPYRIGHTS = 1, INFO_TOOK = 2, INFO_ROAD_DATA_TIMESTAMP = 3;
+    static final int PATH_DISTANCE = 1, PATH_WEIGHT = 2, PATH_TIME = 3, PATH_TRANSFERS = 4, PATH_DESCRIPTION = 5,
+            PATH_BBOX = 6, PATH_POINTS = 7, PATH_INSTRUCTIONS = 8, PATH_DETAILS = 9, PATH_ASCEND = 10,
+            PATH_DESCEND = 11, PATH_SNAPPED_WAYPOINTS = 12, PATH_FARE = 13;
+    static final int POINTS_MULTIPLIER = 1, POINTS_ELEVATION = 2, POINTS_COORDINATES = 3;
+    static final int INSTRUCTION_TEXT = 1, INSTRUCTION_STREET_NAME = 2, INSTRUCTION_TIME = 3, INSTRUCTION_DISTANCE = 4,
+            INSTRUCTION_SIGN = 5, INSTRUCTION_FIRST = 6, INSTRUCTION_LAST = 7, INSTRUCTION_EXTRA_INFO = 8;
+    static final int DETAILS_NAME = 1, DETAILS_DETAILS = 2;
+    static final int DETAIL_FIRST = 1, DETAIL_LAST = 2;
+    static final int PROPERTY_KEY = 1;
+    // the fields of the value of a Detail or a Property
+    static final int DOUBLE_VALUE = 3, LONG_VALUE = 4, BOOL_VALUE = 5, STRING_VALUE = 6, JSON_VALUE = 7;
+
+    private static final ObjectMapper objectMapper = Jackson.newObjectMapper();
+
+    private interface MessageWriter {
+        void write(CodedOutputStream out) throws IOException;
+    }
+
+    public static void writeTo(OutputStream outputStream, GHResponse ghRsp, ResponsePathSerializer.Info info, boolean enableInstructions,
+                               boolean calcPoints, boolean enableElevation, double pointsMultiplier) throws IOException {
+        if (pointsMultiplier < 1)
+            throw new IllegalArgumentException("multiplier cannot be smaller than 1 but was " + pointsMultiplier + " for points");
+        CodedOutputStream out = CodedOutputStream.newInstance(outputStream);
+        for (ResponsePath p : ghRsp.getAll())
+            writeMessage(out, RESPONSE_PATHS, pathOut -> writePath(pathOut, p, enableInstructions, calcPoints, enableElevation, pointsMultiplier));
+        writeMessage(out, RESPONSE_INFO, infoOut -> {
+            for (String copyright : info.copyrights())
+                infoOut.writeString(INFO_COPYRIGHTS, copyright);
+            infoOut.writeInt64(INFO_TOOK, info.took());
+            if (info.roadDataTimestamp() != null)
+                infoOut.writeString(INFO_ROAD_DATA_TIMESTAMP, info.roadDataTimestamp());
+        });
+        for (Map.Entry<String, Object> hint : ghRsp.getHints().toMap().entrySet())
+            writeMessage(out, RESPONSE_HINTS, hintOut -> {
+                hintOut.writeString(PROPERTY_KEY, hint.getKey());
+                writeValue(hintOut, hint.getValue());
+            });
+        out.flush();
+    }
+
+    private static void writePath(CodedOutputStream out, ResponsePath p, boolean enableInstructions, boolean calcPoints,
+                                  boolean enableElevation, double pointsMultiplier) throws IOException {
+        out.writeDouble(PATH_DISTANCE, p.getDistance());
+        out.writeDouble(PATH_WEIGHT, p.getRouteWeight());
+        out.writeInt64(PATH_TIME, p.getTime());
+        out.writeInt32(PATH_TRANSFERS, p.getNumChanges());
+        for (String description : p.getDescription())
+            out.writeString(PATH_DESCRIPTION, description);
+        if (calcPoints) {
+            Envelope bbox = p.calcBBox2D();
+            if (!bbox.isNull()) {
+                out.writeTag(PATH_BBOX, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+                out.writeUInt32NoTag(4 * 8);
+                out.writeDoubleNoTag(bbox.getMinX());
+                out.writeDoubleNoTag(bbox.getMinY());
+                out.writeDoubleNoTag(bbox.getMaxX());
+                out.writeDoubleNoTag(bbox.getMaxY());
+            }
+            writeMessage(out, PATH_POINTS, pointsOut -> writePoints(pointsOut, p.getPoints(), enableElevation, pointsMultiplier));
+            if (enableInstructions)
+                writeInstructions(out, p.getInstructions());
+            for (Map.Entry<String, List<PathDetail>> details : p.getPathDetails().entrySet())
+                writeMessage(out, PATH_DETAILS, detailsOut -> {
+                    detailsOut.writeString(DETAILS_NAME, details.getKey());
+                    for (PathDetail detail : details.getValue())
+                        writeMessage(detailsOut, DETAILS_DETAILS, detailOut -> {
+                            detailOut.writeUInt32(DETAIL_FIRST, detail.getFirst());
+                            detailOut.writeUInt32(DETAIL_LAST, detail.getLast());
+                            writeValue(detailOut, detail.getValue());
+                        });
+                });
+            out.writeDouble(PATH_ASCEND, p.getAscend());
+            out.writeDouble(PATH_DESCEND, p.getDescend());
+        }
+        writeMessage(out, PATH_SNAPPED_WAYPOINTS, pointsOut -> writePoints(pointsOut, p.getWaypoints(), enableElevation, pointsMultiplier));
+        if (p.getFare() != null)
+            out.writeString(PATH_FARE, NumberFormat.getCurrencyInstance(Locale.ROOT).format(p.getFare()));
+    }
+
+    private static void writePoints(CodedOutputStream out, PointList points, boolean enableElevation, double multiplier) throws IOException {
+        out.writeDouble(POINTS_MULTIPLIER, multiplier);
+        out.writeBool(POINTS_ELEVATION, enableElevation);
+        if (points.isEmpty())
+            return;
+        // the deltas like in the encoded polyline, see ResponsePathSerializer.encodePolyline
+        int[] deltas = new int[points.size() * (enableElevation ? 3 : 2)];
+        int prevLat = 0, prevLon = 0, prevEle = 0, index = 0;
+        for (int i = 0; i < points.size(); i++) {
+            int lat = (int) Math.round(points.getLat(i) * multiplier);
+            deltas[index++] = lat - prevLat;
+            prevLat = lat;
+            int lon = (int) Math.round(points.getLon(i) * multiplier);
+            deltas[index++] = lon - prevLon;
+            prevLon = lon;
+            if (enableElevation) {
+                int ele = (int) Math.round(points.getEle(i) * 100);
+                deltas[index++] = ele - prevEle;
+                prevEle = ele;
+            }
+        }
+        int size = 0;
+        for (int delta : deltas)
+            size += CodedOutputStream.computeSInt32SizeNoTag(delta);
+        out.writeTag(POINTS_COORDINATES, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+        out.writeUInt32NoTag(size);
+        for (int delta : deltas)
+            out.writeSInt32NoTag(delta);
+    }
+
+    private static void writeInstructions(CodedOutputStream out, InstructionList instructions) throws IOException {
+        int pointsIndex = 0;
+        for (Instruction instruction : instructions) {
+            int first = pointsIndex;
+            int last = pointsIndex + instruction.getLength();
+            pointsIndex = last;
+            writeMessage(out, PATH_INSTRUCTIONS, instructionOut -> {
+                instructionOut.writeString(INSTRUCTION_TEXT, Helper.firstBig(instruction.getTurnDescription(instructions.getTr())));
+                instructionOut.writeString(INSTRUCTION_STREET_NAME, instruction.getName());
+                instructionOut.writeInt64(INSTRUCTION_TIME, instruction.getTime());
+                instructionOut.writeDouble(INSTRUCTION_DISTANCE, instruction.getDistance());
+                instructionOut.writeInt32(INSTRUCTION_SIGN, instruction.getSign());
+                instructionOut.writeUInt32(INSTRUCTION_FIRST, first);
+                instructionOut.writeUInt32(INSTRUCTION_LAST, last);
+                for (Map.Entry<String, Object> extraInfo : instruction.getExtraInfoJSON().entrySet())
+                    writeMessage(instructionOut, INSTRUCTION_EXTRA_INFO, propertyOut -> {
+                        propertyOut.writeString(PROPERTY_KEY, extraInfo.getKey());
+                        writeValue(propertyOut, extraInfo.getValue());
+                    });
+            });
+        }
+    }
+
+    private static void writeValue(CodedOutputStream out, Object value) throws IOException {
+        if (value instanceof Double || value instanceof Float)
+            out.writeDouble(DOUBLE_VALUE, ((Number) value).doubleValue());
+        else if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte)
+            out.writeSInt64(LONG_VALUE, ((Number) value).longValue());
+        else if (value instanceof Boolean)
+            out.writeBool(BOOL_VALUE, (Boolean) value);
+        else if (value instanceof String)
+            out.writeString(STRING_VALUE, (String) value);
+        else if (value != null)
+            out.writeString(JSON_VALUE, objectMapper.writeValueAsString(value));
+    }
+
+    private static void writeMessage(CodedOutputStream out, int fieldNumber, MessageWriter writer) throws IOException {
+        ByteString.Output bytes = ByteString.newOutput();
+        CodedOutputStream nestedOut = CodedOutputStream.newInstance(bytes);
+        writer.write(nestedOut);
+        nestedOut.flush();
+        out.writeBytes(fieldNumber, bytes.toByteString());
+    }
+}
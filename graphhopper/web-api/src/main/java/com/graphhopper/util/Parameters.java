@@ -83,6 +83,15 @@ public class Parameters {
             public static final String DISTANCE = ROUND_TRIP + ".distance";
             public static final String SEED = ROUND_TRIP + ".seed";
             public static final String POINTS = ROUND_TRIP + ".points";
+            /**
+             * the number of tours that are calculated with different seeds, the one that comes closest to the
+             * distance with the least overlap is returned
+             */
+            public static final String CANDIDATES = ROUND_TRIP + ".candidates";
+            /**
+             * the number of the best candidates that are returned as alternatives
+             */
+            public static final String MAX_PATHS = ROUND_TRIP + ".max_paths";
             public static final String INIT_MAX_RETRIES = ROUTING_INIT_PREFIX + ROUND_TRIP + ".max_retries";
         }
     }
@@ -114,6 +123,11 @@ public class Parameters {
         public static final String WAY_POINT_MAX_DISTANCE = "way_point_max_distance";
         public static final String INIT_WAY_POINT_MAX_DISTANCE = ROUTING_INIT_PREFIX + "way_point_max_distance";
         public static final String ELEVATION_WAY_POINT_MAX_DISTANCE = "elevation_way_point_max_distance";
+        /**
+         * restrict the points, instructions and path details to the first meters or milliseconds of the route
+         */
+        public static final String OUTPUT_MAX_DISTANCE = "output_max_distance";
+        public static final String OUTPUT_MAX_TIME = "output_max_time";
         /**
          * true or false. If routes at via points should avoid u-turns. (not for CH) See related
          * 'heading' parameter:
@@ -17,10 +17,21 @@
  */
 package com.graphhopper.jackson;
 
-import com.graphhopper.util.Helper;
-import com.graphhopper.util.PointList;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.graphhopper.GHResponse;
+import com.graphhopper.ResponsePath;
+import com.graphhopper.util.*;
+import com.graphhopper.util.details.PathDetail;
 import org.junit.jupiter.api.Test;
 
+import java.io.IOException;
+import java.io.StringWriter;
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
 /**
@@ -79,4 +90,55 @@ public class ResponsePathRepresentationTest {
     public void testEncode1e6() {
         assertEquals("ohdfzAgt}bVoEL", ResponsePathSerializer.encodePolyline(Helper.createPointList(47.827608, 12.123476, 47.827712, 12.123469), false, 1e6));
     }
+
+    @Test
+    public void testEncodeLong() {
+        // longer than the buffers used to encode the polyline
+        PointList list = new PointList(1000, true);
+        Random random = new Random(0);
+        for (int i = 0; i < 1000; i++) {
+            list.add(Helper.round6(47 + random.nextDouble()), Helper.round6(12 + random.nextDouble()), Helper.round2(random.nextDouble() * 1000));
+        }
+        String str = ResponsePathSerializer.encodePolyline(list, true, 1e6);
+        assertEquals(list, ResponsePathDeserializerHelper.decodePolyline(str, list.size(), true, 1e6));
+    }
+
+    @Test
+    public void testWriteJson() throws IOException {
+        ObjectMapper objectMapper = Jackson.newObjectMapper();
+        ResponsePath path = new ResponsePath();
+        PointList points = Helper.createPointList3D(38.5, -120.2, 10, 40.7, -120.95, 1234, 43.252, -126.453, 1234);
+        path.setPoints(points);
+        path.setWaypoints(Helper.createPointList3D(38.5, -120.2, 10));
+        path.setDistance(1234.56789).setTime(123456).setRouteWeight(98.7654321);
+        path.setDescription(List.of("a description"));
+        InstructionList instructions = new InstructionList(null);
+        Instruction instruction = new Instruction(Instruction.CONTINUE_ON_STREET, "street", points.copy(0, 2));
+        instruction.setUseRawName();
+        instructions.add(instruction);
+        FinishInstruction finish = new FinishInstruction("street", points, 2);
+        finish.setUseRawName();
+        instructions.add(finish);
+        path.setInstructions(instructions);
+        PathDetail detail = new PathDetail(50.0);
+        detail.setFirst(0);
+        detail.setLast(2);
+        path.addPathDetails(Map.of("max_speed", List.of(detail)));
+        path.setFare(new BigDecimal("2.5"));
+        GHResponse rsp = new GHResponse();
+        rsp.add(path);
+        rsp.getHints().putObject("visited_nodes.sum", 10);
+        ResponsePathSerializer.Info info = new ResponsePathSerializer.Info(List.of("GraphHopper"), 5, null);
+
+        for (boolean pointsEncoded : new boolean[]{true, false}) {
+            for (boolean elevation : new boolean[]{true, false}) {
+                StringWriter writer = new StringWriter();
+                try (JsonGenerator gen = objectMapper.getFactory().createGenerator(writer)) {
+                    ResponsePathSerializer.writeJson(gen, rsp, info, true, true, elevation, pointsEncoded, 1e5);
+                }
+                String expected = objectMapper.writeValueAsString(ResponsePathSerializer.jsonObject(rsp, info, true, true, elevation, pointsEncoded, 1e5));
+                assertEquals(objectMapper.readTree(expected), objectMapper.readTree(writer.toString()));
+            }
+        }
+    }
 }
@@ -0,0 +1,173 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.protobuf;
+
+import com.graphhopper.GHResponse;
+import com.graphhopper.ResponsePath;
+import com.graphhopper.jackson.ResponsePathSerializer;
+import com.graphhopper.util.*;
+import com.graphhopper.util.details.PathDetail;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ResponsePathProtobufSerializerTest {
+
+    private static ResponsePath createPath(boolean elevation) {
+        PointList points = elevation
+                ? Helper.createPointList3D(43.7312, 7.4179, 12.5, 43.7321, 7.4201, 30, 43.7355, 7.4213, 8.25)
+                : Helper.createPointList(43.7312, 7.4179, 43.7321, 7.4201, 43.7355, 7.4213);
+        ResponsePath path = new ResponsePath();
+        path.setPoints(points);
+        path.setWaypoints(elevation
+                ? Helper.createPointList3D(43.7312, 7.4179, 12.5, 43.7355, 7.4213, 8.25)
+                : Helper.createPointList(43.7312, 7.4179, 43.7355, 7.4213));
+        path.setDistance(512.345).setTime(61_234).setRouteWeight(70.1234567).setAscend(17.5).setDescend(21.75);
+        path.setDescription(List.of("via Boulevard"));
+
+        InstructionList instructions = new InstructionList(null);
+        Instruction continueInstr = new Instruction(Instruction.CONTINUE_ON_STREET, "Boulevard", points.copy(0, 1));
+        continueInstr.setExtraInfo("heading", 45.5);
+        continueInstr.setExtraInfo("street_ref", "D6007");
+        continueInstr.setDistance(200.5).setTime(20_000);
+        RoundaboutInstruction roundabout = new RoundaboutInstruction(Instruction.USE_ROUNDABOUT, "Place", points.copy(1, 2));
+        roundabout.setExitNumber(2).setExited().setDirOfRotation(-1).setRadian(2.5);
+        roundabout.setDistance(311.845).setTime(41_234);
+        FinishInstruction finish = new FinishInstruction("Place", points, 2);
+        for (Instruction instr : List.of(continueInstr, roundabout, finish)) {
+            instr.setUseRawName();
+            instructions.add(instr);
+        }
+        path.setInstructions(instructions);
+
+        PathDetail speed = new PathDetail(50.0);
+        speed.setFirst(0);
+        speed.setLast(2);
+        PathDetail toll = new PathDetail(true);
+        toll.setFirst(0);
+        toll.setLast(1);
+        PathDetail noToll = new PathDetail(null);
+        noToll.setFirst(1);
+        noToll.setLast(2);
+        PathDetail edgeId = new PathDetail(12345678901L);
+        edgeId.setFirst(0);
+        edgeId.setLast(2);
+        PathDetail intersection = new PathDetail(Map.of("out", 1));
+        intersection.setFirst(1);
+        intersection.setLast(2);
+        Map<String, List<PathDetail>> details = new HashMap<>();
+        details.put("max_speed", List.of(speed));
+        details.put("toll", List.of(toll, noToll));
+        details.put("edge_id", List.of(edgeId));
+        details.put("intersection", List.of(intersection));
+        path.addPathDetails(details);
+        return path;
+    }
+
+    private static GHResponse roundTrip(GHResponse rsp, boolean instructions, boolean calcPoints, boolean elevation) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ResponsePathProtobufSerializer.writeTo(out, rsp, new ResponsePathSerializer.Info(List.of("GraphHopper", "OpenStreetMap contributors"), 12, null),
+                instructions, calcPoints, elevation, 1e6);
+        return ResponsePathProtobufDeserializer.readFrom(new ByteArrayInputStream(out.toByteArray()), elevation, true);
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        GHResponse rsp = new GHResponse();
+        rsp.add(createPath(false));
+        rsp.getHints().putObject("visited_nodes.sum", 42L);
+        rsp.getHints().putObject("visited_nodes.average", 21.0);
+
+        GHResponse result = roundTrip(rsp, true, true, false);
+        assertFalse(result.hasErrors());
+        assertEquals(42L, result.getHints().getLong("visited_nodes.sum", 0));
+        assertEquals(21.0, result.getHints().getDouble("visited_nodes.average", 0));
+
+        ResponsePath expected = rsp.getBest();
+        ResponsePath path = result.getBest();
+        assertEquals(expected.getDistance(), path.getDistance());
+        assertEquals(expected.getTime(), path.getTime());
+        assertEquals(expected.getRouteWeight(), path.getRouteWeight());
+        assertEquals(expected.getAscend(), path.getAscend());
+        assertEquals(expected.getDescend(), path.getDescend());
+        assertEquals(expected.getDescription(), path.getDescription());
+        assertEquals(expected.getPoints(), path.getPoints());
+        assertEquals(expected.getWaypoints(), path.getWaypoints());
+        assertEquals(List.of(0, 1), path.getPointsOrder());
+
+        InstructionList instructions = path.getInstructions();
+        assertEquals(3, instructions.size());
+        assertEquals("Boulevard", instructions.get(0).getTurnDescription(null));
+        assertEquals(Instruction.CONTINUE_ON_STREET, instructions.get(0).getSign());
+        assertEquals(45.5, instructions.get(0).getExtraInfoJSON().get("heading"));
+        assertEquals(200.5, instructions.get(0).getDistance());
+        assertEquals(20_000, instructions.get(0).getTime());
+        RoundaboutInstruction roundabout = (RoundaboutInstruction) instructions.get(1);
+        assertEquals(2, roundabout.getExitNumber());
+        assertTrue(roundabout.isExited());
+        assertEquals(((RoundaboutInstruction) expected.getInstructions().get(1)).getTurnAngle(), roundabout.getTurnAngle(), 0.01);
+        assertEquals(Instruction.FINISH, instructions.get(2).getSign());
+
+        Map<String, List<PathDetail>> details = path.getPathDetails();
+        assertEquals(50.0, details.get("max_speed").get(0).getValue());
+        assertEquals(2, details.get("max_speed").get(0).getLast());
+        assertEquals(true, details.get("toll").get(0).getValue());
+        assertNull(details.get("toll").get(1).getValue());
+        assertEquals(1, details.get("toll").get(1).getFirst());
+        assertEquals(12345678901L, details.get("edge_id").get(0).getValue());
+        assertEquals(Map.of("out", 1), details.get("intersection").get(0).getValue());
+    }
+
+    @Test
+    public void testElevation() throws IOException {
+        GHResponse rsp = new GHResponse();
+        rsp.add(createPath(true));
+        ResponsePath path = roundTrip(rsp, true, true, true).getBest();
+        assertTrue(path.getPoints().is3D());
+        assertEquals(rsp.getBest().getPoints(), path.getPoints());
+        assertEquals(rsp.getBest().getWaypoints(), path.getWaypoints());
+    }
+
+    @Test
+    public void testWithoutPoints() throws IOException {
+        GHResponse rsp = new GHResponse();
+        rsp.add(createPath(false));
+        rsp.add(createPath(false).setDistance(600));
+        GHResponse result = roundTrip(rsp, false, false, false);
+        assertEquals(2, result.getAll().size());
+        assertEquals(600, result.getAll().get(1).getDistance());
+        ResponsePath path = result.getBest();
+        assertTrue(path.getPoints().isEmpty());
+        assertThrows(IllegalArgumentException.class, path::getInstructions);
+        assertTrue(path.getPathDetails().isEmpty());
+        assertEquals(rsp.getBest().getWaypoints(), path.getWaypoints());
+    }
+
+    @Test
+    public void testInvalidMultiplier() {
+        GHResponse rsp = new GHResponse();
+        rsp.add(createPath(false));
+        assertThrows(IllegalArgumentException.class, () -> ResponsePathProtobufSerializer.writeTo(new ByteArrayOutputStream(), rsp,
+                new ResponsePathSerializer.Info(List.of(), 0, null), true, true, false, 0.5));
+    }
+}
@@ -18,7 +18,10 @@
 
 package com.graphhopper.http;
 
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
 import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.util.StdDateFormat;
 import com.fasterxml.jackson.datatype.jdk8.Jdk8Module;
 import com.graphhopper.GraphHopper;
@@ -30,7 +33,9 @@ import com.graphhopper.isochrone.algorithm.Triangulator;
 import com.graphhopper.jackson.Jackson;
 import com.graphhopper.matching.MapMatching;
 import com.graphhopper.resources.*;
+import com.graphhopper.routing.RouteResponseCache;
 import com.graphhopper.routing.util.EncodingManager;
+import com.graphhopper.routing.weighting.custom.CustomModelMetrics;
 import com.graphhopper.storage.BaseGraph;
 import com.graphhopper.storage.index.LocationIndex;
 import com.graphhopper.util.PMap;
@@ -41,11 +46,39 @@ import io.dropwizard.core.setup.Bootstrap;
 import io.dropwizard.core.setup.Environment;
 import org.glassfish.hk2.api.Factory;
 import org.glassfish.hk2.utilities.binding.AbstractBinder;
+import org.glassfish.jersey.process.internal.RequestScoped;
+import org.glassfish.jersey.server.CloseableService;
 
 import javax.inject.Inject;
+import javax.inject.Singleton;
 
 public class GraphHopperBundle implements ConfiguredBundle<GraphHopperBundleConfiguration> {
 
+    /**
+     * Provides the current version of the graph to all objects of a request and keeps it open until the response
+     * is written, even if a new version is loaded in the meantime.
+     */
+    static class GraphHopperFactory implements Factory<GraphHopper> {
+
+        @Inject
+        GraphHopperManaged graphHopperManaged;
+
+        @Inject
+        CloseableService closeableService;
+
+        @Override
+        public GraphHopper provide() {
+            GraphHopperManaged.Version version = graphHopperManaged.acquire();
+            closeableService.add(version::release);
+            return version.getGraphHopper();
+        }
+
+        @Override
+        public void dispose(GraphHopper instance) {
+
+        }
+    }
+
     static class TranslationMapFactory implements Factory<TranslationMap> {
 
         @Inject
@@ -94,6 +127,25 @@ public class GraphHopperBundle implements ConfiguredBundle<GraphHopperBundleConf
         }
     }
 
+    static class PtIsochroneCalculatorFactory implements Factory<PtIsochroneCalculator> {
+
+        @Inject
+        GraphHopperGtfs graphHopper;
+
+        @Inject
+        GraphHopperConfig config;
+
+        @Override
+        public PtIsochroneCalculator provide() {
+            return new PtIsochroneCalculator(graphHopper.getGtfsStorage(), config.getInt("gtfs.isochrone_cache_size", 100));
+        }
+
+        @Override
+        public void dispose(PtIsochroneCalculator instance) {
+
+        }
+    }
+
     static class EncodingManagerFactory implements Factory<EncodingManager> {
 
         @Inject
@@ -250,6 +302,9 @@ public class GraphHopperBundle implements ConfiguredBundle<GraphHopperBundleConf
         environment.jersey().register(new MultiExceptionMapper());
         environment.jersey().register(new MultiExceptionGPXMessageBodyWriter());
 
+        // Errors of requests for the binary route response come out as JSON
+        environment.jersey().register(new ProtobufErrorFilter());
+
         // This makes an IllegalArgumentException come out as a MultiException with
         // a single entry.
         environment.jersey().register(new IllegalArgumentExceptionMapper());
@@ -261,7 +316,13 @@ public class GraphHopperBundle implements ConfiguredBundle<GraphHopperBundleConf
             @Override
             protected void configure() {
                 bind(configuration.getGraphHopperConfiguration()).to(GraphHopperConfig.class);
-                bind(graphHopper).to(GraphHopper.class);
+                bind(graphHopperManaged).to(GraphHopperManaged.class);
+                bind(environment.getObjectMapper()).to(ObjectMapper.class);
+                if (graphHopper instanceof GraphHopperGtfs)
+                    // the graph cannot be reloaded for public transit, see GraphHopperManaged.reload
+                    bind(graphHopper).to(GraphHopper.class);
+                else
+                    bindFactory(GraphHopperFactory.class).to(GraphHopper.class).in(RequestScoped.class);
 
                 bind(new JTSTriangulator(graphHopper.getRouterConfig())).to(Triangulator.class);
                 bindFactory(MapMatchingRouterFactoryFactory.class).to(MapMatchingResource.MapMatchingRouterFactory.class);
@@ -291,9 +352,12 @@ public class GraphHopperBundle implements ConfiguredBundle<GraphHopperBundleConf
                 protected void configure() {
                     if (configuration.getGraphHopperConfiguration().getBool("gtfs.free_walk", false)) {
                         bind(PtRouterFreeWalkImpl.class).to(PtRouter.class);
+                    } else if (configuration.getGraphHopperConfiguration().getBool("gtfs.raptor", false)) {
+                        bind(PtRouterRaptorImpl.class).to(PtRouter.class);
                     } else {
                         bind(PtRouterImpl.class).to(PtRouter.class);
                     }
+                    bindFactory(PtIsochroneCalculatorFactory.class).to(PtIsochroneCalculator.class).in(Singleton.class);
                 }
             });
             environment.jersey().register(PtRouteResource.class);
@@ -304,7 +368,23 @@ public class GraphHopperBundle implements ConfiguredBundle<GraphHopperBundleConf
         environment.jersey().register(SPTResource.class);
         environment.jersey().register(I18NResource.class);
         environment.jersey().register(InfoResource.class);
-        environment.healthChecks().register("graphhopper", new GraphHopperHealthCheck(graphHopper));
+        MetricRegistry metrics = environment.metrics();
+        metrics.register(MetricRegistry.name(CustomModelMetrics.class, "compilations"), (Gauge<Long>) CustomModelMetrics::getCompilations);
+        metrics.register(MetricRegistry.name(CustomModelMetrics.class, "compile-millis"), (Gauge<Long>) CustomModelMetrics::getCompileMillis);
+        metrics.register(MetricRegistry.name(CustomModelMetrics.class, "class-cache-hits"), (Gauge<Long>) CustomModelMetrics::getClassCacheHits);
+        metrics.register(MetricRegistry.name(CustomModelMetrics.class, "edge-weight-cache-hits"), (Gauge<Long>) CustomModelMetrics::getEdgeWeightCacheHits);
+        metrics.register(MetricRegistry.name(CustomModelMetrics.class, "edge-weight-cache-misses"), (Gauge<Long>) CustomModelMetrics::getEdgeWeightCacheMisses);
+        metrics.register(MetricRegistry.name(CustomModelMetrics.class, "statements-per-weighting"), (Gauge<Double>) CustomModelMetrics::getStatementsPerWeighting);
+        if (graphHopper.getResponseCache() != null) {
+            // every version of the graph has its own cache
+            metrics.register(MetricRegistry.name(RouteResponseCache.class, "hits"), (Gauge<Long>) () -> graphHopperManaged.getGraphHopper().getResponseCache().getHits());
+            metrics.register(MetricRegistry.name(RouteResponseCache.class, "misses"), (Gauge<Long>) () -> graphHopperManaged.getGraphHopper().getResponseCache().getMisses());
+            metrics.register(MetricRegistry.name(RouteResponseCache.class, "hit-ratio"), (Gauge<Double>) () -> graphHopperManaged.getGraphHopper().getResponseCache().getHitRatio());
+            metrics.register(MetricRegistry.name(RouteResponseCache.class, "size"), (Gauge<Integer>) () -> graphHopperManaged.getGraphHopper().getResponseCache().getSize());
+        }
+        metrics.register(MetricRegistry.name(GraphHopperManaged.class, "version"), (Gauge<Integer>) graphHopperManaged::getVersion);
+        environment.admin().addTask(new ReloadGraphTask(graphHopperManaged));
+        environment.healthChecks().register("graphhopper", new GraphHopperHealthCheck(graphHopperManaged));
         environment.jersey().register(environment.healthChecks());
         environment.jersey().register(HealthCheckResource.class);
     }
@@ -18,30 +18,57 @@
 
 package com.graphhopper.http;
 
+import com.graphhopper.GHRequest;
 import com.graphhopper.GraphHopper;
 import com.graphhopper.GraphHopperConfig;
+import com.graphhopper.config.Profile;
 import com.graphhopper.gtfs.GraphHopperGtfs;
+import com.graphhopper.util.StopWatch;
+import com.graphhopper.util.shapes.BBox;
+import com.graphhopper.util.shapes.GHPoint;
 import io.dropwizard.lifecycle.Managed;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Manages the lifecycle of the GraphHopper instance that serves the requests. While the server is running a new
+ * graph folder can be loaded in the background with {@link #reload(String)}. Every request uses the version it
+ * acquired via {@link #acquire()} until its response is written, so the storages of a replaced version are only
+ * closed once its in-flight requests are done.
+ */
 public class GraphHopperManaged implements Managed {
 
     private final static Logger logger = LoggerFactory.getLogger(GraphHopperManaged.class);
-    private final GraphHopper graphHopper;
+    private final GraphHopperConfig configuration;
+    private volatile Version current;
 
     public GraphHopperManaged(GraphHopperConfig configuration) {
+        this.configuration = configuration;
+        current = new Version(createGraphHopper(configuration), 1);
+    }
+
+    private static GraphHopper createGraphHopper(GraphHopperConfig configuration) {
+        GraphHopper graphHopper;
         if (configuration.has("gtfs.file")) {
             graphHopper = new GraphHopperGtfs(configuration);
         } else {
             graphHopper = new GraphHopper();
         }
         graphHopper.init(configuration);
+        return graphHopper;
     }
 
     @Override
     public void start() {
+        GraphHopper graphHopper = getGraphHopper();
         graphHopper.importOrLoad();
+        logLoaded(graphHopper);
+    }
+
+    private static void logLoaded(GraphHopper graphHopper) {
         logger.info("loaded graph at:{}, data_reader_file:{}, encoded values:{}, {} bytes for edge flags, {}",
                 graphHopper.getGraphHopperLocation(), graphHopper.getOSMFile(),
                 graphHopper.getEncodingManager().toEncodedValuesAsString(),
@@ -49,14 +76,123 @@ public class GraphHopperManaged implements Managed {
                 graphHopper.getBaseGraph().toDetailsString());
     }
 
+    /**
+     * @return the GraphHopper instance of the current version. It might be closed at any time after a reload, use
+     * {@link #acquire()} to use it for longer.
+     */
     public GraphHopper getGraphHopper() {
-        return graphHopper;
+        return current.graphHopper;
+    }
+
+    public int getVersion() {
+        return current.number;
+    }
+
+    /**
+     * @return the current version, which stays open until {@link Version#release()} is called
+     */
+    public Version acquire() {
+        while (true) {
+            Version version = current;
+            if (version.tryAcquire())
+                return version;
+            // the version was replaced and closed in the meantime, the next one is current already
+        }
+    }
+
+    /**
+     * Loads the graph in the given folder, which has to be created with the same profiles, and makes it the current
+     * version once it is loaded and warmed up. The previous version is closed once all requests using it are done.
+     * The requests are served by the previous version while the new one is loading.
+     */
+    public synchronized Version reload(String graphLocation) {
+        if (configuration.has("gtfs.file"))
+            throw new IllegalStateException("Reloading the graph is not supported for public transit");
+        GraphHopperConfig newConfiguration = new GraphHopperConfig(configuration).putObject("graph.location", graphLocation);
+        GraphHopper graphHopper = createGraphHopper(newConfiguration);
+        if (!graphHopper.load()) {
+            graphHopper.close();
+            throw new IllegalArgumentException("Could not load a graph from " + graphLocation);
+        }
+        logLoaded(graphHopper);
+        warmUp(graphHopper, newConfiguration.getInt("graph.reload.warmup_requests", 0));
+
+        Version previous = current;
+        current = new Version(graphHopper, previous.number + 1);
+        logger.info("switched to graph version {} at {}, closing version {} once its requests are done",
+                current.number, graphLocation, previous.number);
+        // the reference of being the current version
+        previous.release();
+        return current;
+    }
+
+    /**
+     * Routes between random locations for every profile, so that e.g. memory mapped storages are read before the
+     * first request arrives.
+     */
+    private static void warmUp(GraphHopper graphHopper, int requests) {
+        if (requests <= 0)
+            return;
+        StopWatch sw = new StopWatch().start();
+        BBox bounds = graphHopper.getBaseGraph().getBounds();
+        Random random = new Random(0);
+        for (Profile profile : graphHopper.getProfiles()) {
+            for (int i = 0; i < requests; i++) {
+                GHRequest request = new GHRequest(randomPoint(bounds, random), randomPoint(bounds, random)).setProfile(profile.getName());
+                graphHopper.route(request);
+            }
+        }
+        logger.info("warmed up graph at {} with {} requests per profile, took: {}", graphHopper.getGraphHopperLocation(),
+                requests, sw.stop().getTimeString());
+    }
+
+    private static GHPoint randomPoint(BBox bounds, Random random) {
+        return new GHPoint(bounds.minLat + random.nextDouble() * (bounds.maxLat - bounds.minLat),
+                bounds.minLon + random.nextDouble() * (bounds.maxLon - bounds.minLon));
     }
 
     @Override
     public void stop() {
-        graphHopper.close();
+        current.graphHopper.close();
     }
 
+    public static class Version {
+        private final GraphHopper graphHopper;
+        private final int number;
+        // the number of requests using this version, plus one as long as it is the current version
+        private final AtomicInteger references = new AtomicInteger(1);
+
+        private Version(GraphHopper graphHopper, int number) {
+            this.graphHopper = graphHopper;
+            this.number = number;
+        }
+
+        private boolean tryAcquire() {
+            while (true) {
+                int count = references.get();
+                if (count == 0)
+                    return false;
+                if (references.compareAndSet(count, count + 1))
+                    return true;
+            }
+        }
+
+        public void release() {
+            int count = references.decrementAndGet();
+            if (count == 0) {
+                graphHopper.close();
+                logger.info("closed graph version {} at {}", number, graphHopper.getGraphHopperLocation());
+            } else if (count < 0) {
+                throw new IllegalStateException("Version " + number + " was released too often");
+            }
+        }
+
+        public GraphHopper getGraphHopper() {
+            return graphHopper;
+        }
 
+        public int getNumber() {
+            return number;
+        }
+    }
 }
@@ -18,15 +18,14 @@
 
 package com.graphhopper.http;
 
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
 import com.conveyal.gtfs.GTFSFeed;
-import com.google.common.cache.CacheBuilder;
-import com.google.common.cache.CacheLoader;
-import com.google.common.cache.LoadingCache;
-import com.google.common.util.concurrent.ListenableFuture;
-import com.google.common.util.concurrent.ListenableFutureTask;
 import com.google.transit.realtime.GtfsRealtime;
 import com.graphhopper.gtfs.GtfsStorage;
 import com.graphhopper.gtfs.RealtimeFeed;
+import com.graphhopper.gtfs.RealtimeOverlay;
 import com.graphhopper.gtfs.Transfers;
 import com.graphhopper.routing.util.EncodingManager;
 import com.graphhopper.storage.BaseGraph;
@@ -34,81 +33,92 @@ import io.dropwizard.lifecycle.Managed;
 import org.apache.hc.client5.http.classic.HttpClient;
 import org.apache.hc.client5.http.classic.methods.HttpGet;
 import org.glassfish.hk2.api.Factory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import javax.inject.Inject;
 import java.io.IOException;
 import java.net.URISyntaxException;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
+/**
+ * Polls the GTFS-realtime feeds once a minute and applies them to a RealtimeOverlay. Every request gets the
+ * RealtimeFeed which is current when it starts, and keeps it until it is done.
+ */
 public class RealtimeFeedLoadingCache implements Factory<RealtimeFeed>, Managed {
 
+    private static final Logger logger = LoggerFactory.getLogger(RealtimeFeedLoadingCache.class);
+
     private final HttpClient httpClient;
     private final BaseGraph baseGraph;
     private final EncodingManager encodingManager;
     private final GtfsStorage gtfsStorage;
     private final RealtimeBundleConfiguration bundleConfiguration;
-    private ExecutorService executor;
-    private LoadingCache<String, RealtimeFeed> cache;
-    private Map<String, Transfers> transfers;
+    private final MetricRegistry metrics;
+    private ScheduledExecutorService executor;
+    private volatile RealtimeOverlay overlay;
 
     @Inject
-    RealtimeFeedLoadingCache(BaseGraph baseGraph, EncodingManager encodingManager, GtfsStorage gtfsStorage, HttpClient httpClient, RealtimeBundleConfiguration bundleConfiguration) {
+    RealtimeFeedLoadingCache(BaseGraph baseGraph, EncodingManager encodingManager, GtfsStorage gtfsStorage, HttpClient httpClient, RealtimeBundleConfiguration bundleConfiguration, MetricRegistry metrics) {
         this.baseGraph = baseGraph;
         this.encodingManager = encodingManager;
         this.gtfsStorage = gtfsStorage;
         this.bundleConfiguration = bundleConfiguration;
         this.httpClient = httpClient;
+        this.metrics = metrics;
     }
 
     @Override
-    public void start() {
-        this.transfers = new HashMap<>();
+    public synchronized void start() {
+        if (overlay != null)
+            return;
+        Map<String, Transfers> transfers = new HashMap<>();
         for (Map.Entry<String, GTFSFeed> entry : this.gtfsStorage.getGtfsFeeds().entrySet()) {
-            this.transfers.put(entry.getKey(), new Transfers(entry.getValue()));
+            transfers.put(entry.getKey(), new Transfers(entry.getValue()));
         }
-        this.executor = Executors.newSingleThreadExecutor();
-        this.cache = CacheBuilder.newBuilder()
-                .maximumSize(1)
-                .refreshAfterWrite(1, TimeUnit.MINUTES)
-                .build(new CacheLoader<String, RealtimeFeed>() {
-                    public RealtimeFeed load(String key) {
-                        return fetchFeedsAndCreateGraph();
-                    }
-
-                    @Override
-                    public ListenableFuture<RealtimeFeed> reload(String key, RealtimeFeed oldValue) {
-                        ListenableFutureTask<RealtimeFeed> task = ListenableFutureTask.create(() -> fetchFeedsAndCreateGraph());
-                        executor.execute(task);
-                        return task;
-                    }
-                });
+        RealtimeOverlay overlay = new RealtimeOverlay(gtfsStorage, transfers);
+        Timer applyTimer = metrics.timer(MetricRegistry.name(RealtimeFeedLoadingCache.class, "apply"));
+        metrics.register(MetricRegistry.name(RealtimeFeedLoadingCache.class, "overlay-size"), (Gauge<Integer>) overlay::getOverlaySize);
+        metrics.register(MetricRegistry.name(RealtimeFeedLoadingCache.class, "changed-trip-updates"), (Gauge<Integer>) overlay::getLastChangedTripUpdates);
+        metrics.register(MetricRegistry.name(RealtimeFeedLoadingCache.class, "version"), (Gauge<Long>) overlay::getVersion);
+        Runnable update = () -> {
+            try {
+                overlay.apply(fetchFeeds());
+                applyTimer.update(overlay.getLastApplyNanos(), TimeUnit.NANOSECONDS);
+            } catch (RuntimeException e) {
+                logger.error("Could not update the realtime feeds", e);
+            }
+        };
+        // the first feeds are applied before any request is served, otherwise the requests of the first minute would
+        // not see any realtime data
+        update.run();
+        this.executor = Executors.newSingleThreadScheduledExecutor();
+        this.executor.scheduleWithFixedDelay(update, 1, 1, TimeUnit.MINUTES);
+        this.overlay = overlay;
     }
 
     @Override
     public RealtimeFeed provide() {
-        try {
-            return cache.get("pups");
-        } catch (ExecutionException | RuntimeException e) {
-            e.printStackTrace();
-            return RealtimeFeed.empty();
-        }
+        if (overlay == null)
+            start();
+        return overlay.getRealtimeFeed();
     }
 
     @Override
     public void dispose(RealtimeFeed instance) {
-        this.executor.shutdown();
     }
 
     @Override
-    public void stop() {
+    public synchronized void stop() {
+        if (executor != null)
+            executor.shutdown();
     }
 
-    private RealtimeFeed fetchFeedsAndCreateGraph() {
+    private Map<String, GtfsRealtime.FeedMessage> fetchFeeds() {
         Map<String, GtfsRealtime.FeedMessage> feedMessageMap = new HashMap<>();
         for (FeedConfiguration configuration : bundleConfiguration.gtfsrealtime().getFeeds()) {
             try {
@@ -119,7 +129,7 @@ public class RealtimeFeedLoadingCache implements Factory<RealtimeFeed>, Managed
                 throw new RuntimeException(e);
             }
         }
-        return RealtimeFeed.fromProtobuf(gtfsStorage, this.transfers, feedMessageMap);
+        return feedMessageMap;
     }
 
 }
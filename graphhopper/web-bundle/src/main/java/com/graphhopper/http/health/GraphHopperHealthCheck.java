@@ -19,24 +19,29 @@
 package com.graphhopper.http.health;
 
 import com.codahale.metrics.health.HealthCheck;
-import com.graphhopper.GraphHopper;
+import com.graphhopper.http.GraphHopperManaged;
 
 public class GraphHopperHealthCheck extends HealthCheck {
 
-    private final GraphHopper graphHopper;
+    private final GraphHopperManaged graphHopperManaged;
 
-    public GraphHopperHealthCheck(GraphHopper graphHopper) {
-        this.graphHopper = graphHopper;
+    public GraphHopperHealthCheck(GraphHopperManaged graphHopperManaged) {
+        this.graphHopperManaged = graphHopperManaged;
     }
 
     @Override
     protected Result check() {
-        if (!graphHopper.getBaseGraph().getBounds().isValid()) {
-            return Result.unhealthy("BaseGraph has invalid bounds.");
+        GraphHopperManaged.Version version = graphHopperManaged.acquire();
+        try {
+            if (!version.getGraphHopper().getBaseGraph().getBounds().isValid()) {
+                return Result.unhealthy("BaseGraph has invalid bounds.");
+            }
+            if (!version.getGraphHopper().getFullyLoaded()) {
+                return Result.unhealthy("GraphHopper is not fully loaded.");
+            }
+            return Result.healthy();
+        } finally {
+            version.release();
         }
-        if (!graphHopper.getFullyLoaded()) {
-            return Result.unhealthy("GraphHopper is not fully loaded.");
-        }
-        return Result.healthy();
     }
 }
@@ -18,9 +18,9 @@
 
 package com.graphhopper.resources;
 
-import com.conveyal.gtfs.model.Stop;
 import com.graphhopper.GraphHopperConfig;
 import com.graphhopper.gtfs.*;
+import com.graphhopper.http.DurationParam;
 import com.graphhopper.http.GHLocationParam;
 import com.graphhopper.http.OffsetDateTimeParam;
 import com.graphhopper.isochrone.algorithm.ContourBuilder;
@@ -53,6 +53,7 @@ import javax.inject.Inject;
 import javax.validation.constraints.NotNull;
 import javax.ws.rs.*;
 import javax.ws.rs.core.MediaType;
+import java.time.Duration;
 import java.time.Instant;
 import java.util.*;
 
@@ -62,20 +63,23 @@ import static com.graphhopper.json.Statement.If;
 public class PtIsochroneResource {
 
     private static final double JTS_TOLERANCE = 0.00001;
+    private static final int MAX_RANGE_TIMES = 288;
 
     private final GraphHopperConfig config;
     private final GtfsStorage gtfsStorage;
     private final EncodingManager encodingManager;
     private final BaseGraph baseGraph;
     private final LocationIndex locationIndex;
+    private final PtIsochroneCalculator isochroneCalculator;
 
     @Inject
-    public PtIsochroneResource(GraphHopperConfig config, GtfsStorage gtfsStorage, EncodingManager encodingManager, BaseGraph baseGraph, LocationIndex locationIndex) {
+    public PtIsochroneResource(GraphHopperConfig config, GtfsStorage gtfsStorage, EncodingManager encodingManager, BaseGraph baseGraph, LocationIndex locationIndex, PtIsochroneCalculator isochroneCalculator) {
         this.config = config;
         this.gtfsStorage = gtfsStorage;
         this.encodingManager = encodingManager;
         this.baseGraph = baseGraph;
         this.locationIndex = locationIndex;
+        this.isochroneCalculator = isochroneCalculator;
     }
 
     public static class Response {
@@ -87,6 +91,10 @@ public class PtIsochroneResource {
         public Info info = new Info();
     }
 
+    /**
+     * With pt.range_duration, there is an isochrone for every departure time from pt.earliest_departure_time to
+     * the end of the range, at intervals of pt.range_interval. They are computed together.
+     */
     @GET
     @Produces({MediaType.APPLICATION_JSON})
     public Response doGet(
@@ -94,10 +102,23 @@ public class PtIsochroneResource {
             @QueryParam("time_limit") @DefaultValue("600") long seconds,
             @QueryParam("reverse_flow") @DefaultValue("false") boolean reverseFlow,
             @QueryParam("pt.earliest_departure_time") @NotNull OffsetDateTimeParam departureTimeParam,
+            @QueryParam("pt.range_duration") DurationParam rangeDurationParam,
+            @QueryParam("pt.range_interval") @DefaultValue("PT5M") DurationParam rangeIntervalParam,
             @QueryParam("pt.blocked_route_types") @DefaultValue("0") int blockedRouteTypes,
             @QueryParam("result") @DefaultValue("multipolygon") String format) {
         Instant initialTime = departureTimeParam.get().toInstant();
         GHLocation location = sourceParam.get();
+        Duration rangeDuration = Optional.ofNullable(rangeDurationParam.get()).orElse(Duration.ZERO);
+        Duration rangeInterval = rangeIntervalParam.get();
+        if (rangeDuration.isNegative())
+            throw new IllegalArgumentException("pt.range_duration must not be negative");
+        if (!rangeDuration.isZero() && (rangeInterval.isNegative() || rangeInterval.isZero()))
+            throw new IllegalArgumentException("pt.range_interval must be positive");
+        int times = rangeDuration.isZero() ? 1 : (int) (rangeDuration.toMillis() / rangeInterval.toMillis()) + 1;
+        if (times > MAX_RANGE_TIMES)
+            throw new IllegalArgumentException("Too many departure times in the range: " + times + ", the maximum is " + MAX_RANGE_TIMES);
+        if (times > 1 && format.equals("triangulation"))
+            throw new IllegalArgumentException("The triangulation can only be shown for a single departure time");
 
         double targetZ = seconds * 1000;
 
@@ -109,116 +130,102 @@ public class PtIsochroneResource {
         DefaultSnapFilter snapFilter = new DefaultSnapFilter(weighting, encodingManager.getBooleanEncodedValue(Subnetwork.key("foot")));
 
         PtLocationSnapper.Result snapResult = new PtLocationSnapper(baseGraph, locationIndex, gtfsStorage).snapAll(Arrays.asList(location), Arrays.asList(snapFilter));
-        GraphExplorer graphExplorer = new GraphExplorer(snapResult.queryGraph, gtfsStorage.getPtGraph(), weighting, gtfsStorage, RealtimeFeed.empty(), reverseFlow, false, false, 5.0, reverseFlow, blockedRouteTypes);
-        MultiCriteriaLabelSetting router = new MultiCriteriaLabelSetting(graphExplorer, reverseFlow, false, false, 0, Collections.emptyList());
+        List<Map<Coordinate, Double>> reachedPlaces = isochroneCalculator.calcReachedPlaces(snapResult.queryGraph, weighting, location, snapResult.nodes.get(0),
+                reverseFlow, blockedRouteTypes, initialTime, rangeInterval, times, Duration.ofSeconds(seconds));
 
-        Map<Coordinate, Double> z1 = new HashMap<>();
-        NodeAccess nodeAccess = snapResult.queryGraph.getNodeAccess();
-
-        for (Label label : router.calcLabels(snapResult.nodes.get(0), initialTime)) {
-            if (!((label.currentTime - initialTime.toEpochMilli()) * (reverseFlow ? -1 : 1) <= targetZ)) {
-                break;
-            }
-            if (label.node.streetNode != -1) {
-                Coordinate nodeCoordinate = new Coordinate(nodeAccess.getLon(label.node.streetNode), nodeAccess.getLat(label.node.streetNode));
-                z1.merge(nodeCoordinate, (double) (label.currentTime - initialTime.toEpochMilli()) * (reverseFlow ? -1 : 1), Math::min);
-            } else if (label.edge != null && (label.edge.getType() == GtfsStorage.EdgeType.EXIT_PT || label.edge.getType() == GtfsStorage.EdgeType.ENTER_PT)) {
-                GtfsStorage.PlatformDescriptor platformDescriptor = label.edge.getPlatformDescriptor();
-                Stop stop = gtfsStorage.getGtfsFeeds().get(platformDescriptor.feed_id).stops.get(platformDescriptor.stop_id);
-                Coordinate nodeCoordinate = new Coordinate(stop.stop_lon, stop.stop_lat);
-                z1.merge(nodeCoordinate, (double) (label.currentTime - initialTime.toEpochMilli()) * (reverseFlow ? -1 : 1), Math::min);
+        Response response = new Response();
+        for (int i = 0; i < times; i++) {
+            Map<Coordinate, Double> z1 = new HashMap<>(reachedPlaces.get(i));
+            Instant time = initialTime.plus(rangeInterval.multipliedBy(i));
+            if (format.equals("multipoint")) {
+                MultiPoint exploredPoints = geometryFactory.createMultiPointFromCoords(z1.keySet().toArray(new Coordinate[0]));
+                response.polygons.add(feature(exploredPoints, i, time));
+            } else {
+                QuadEdgeSubdivision tin = triangulate(snapResult.queryGraph.getNodeAccess(), snapResult, z1, geometryFactory);
+                ReadableTriangulation triangulation = ReadableTriangulation.wrap(tin);
+                ContourBuilder contourBuilder = new ContourBuilder(triangulation);
+                MultiPolygon isoline = contourBuilder.computeIsoline(targetZ, triangulation.getEdges());
+
+                // debugging tool
+                if (format.equals("triangulation")) {
+                    for (Vertex vertex : (Collection<Vertex>) tin.getVertices(true)) {
+                        JsonFeature feature = new JsonFeature();
+                        feature.setGeometry(geometryFactory.createPoint(vertex.getCoordinate()));
+                        HashMap<String, Object> properties = new HashMap<>();
+                        properties.put("z", vertex.getZ());
+                        feature.setProperties(properties);
+                        response.polygons.add(feature);
+                    }
+                    for (QuadEdge edge : (Collection<QuadEdge>) tin.getPrimaryEdges(false)) {
+                        JsonFeature feature = new JsonFeature();
+                        feature.setGeometry(edge.toLineSegment().toGeometry(geometryFactory));
+                        HashMap<String, Object> properties = new HashMap<>();
+                        feature.setProperties(properties);
+                        response.polygons.add(feature);
+                    }
+                    JsonFeature feature = new JsonFeature();
+                    feature.setGeometry(isoline);
+                    HashMap<String, Object> properties = new HashMap<>();
+                    properties.put("z", targetZ);
+                    feature.setProperties(properties);
+                    response.polygons.add(feature);
+                } else {
+                    response.polygons.add(feature(isoline, i, time));
+                }
             }
         }
+        response.info.copyrights.addAll(config.getCopyrights());
+        return response;
+    }
 
-        if (format.equals("multipoint")) {
-            MultiPoint exploredPoints = geometryFactory.createMultiPointFromCoords(z1.keySet().toArray(new Coordinate[0]));
-            return wrap(exploredPoints);
-        } else {
-            MultiPoint exploredPoints = geometryFactory.createMultiPointFromCoords(z1.keySet().toArray(new Coordinate[0]));
-
-            // Get at least all nodes within our bounding box (I think convex hull would be enough.)
-            // I think then we should have all possible encroaching points. (Proof needed.)
-            locationIndex.query(BBox.fromEnvelope(exploredPoints.getEnvelopeInternal()), edgeId -> {
-                EdgeIteratorState edge = snapResult.queryGraph.getEdgeIteratorStateForKey(edgeId * 2);
-                z1.merge(new Coordinate(nodeAccess.getLon(edge.getBaseNode()), nodeAccess.getLat(edge.getBaseNode())), Double.MAX_VALUE, Math::min);
-                z1.merge(new Coordinate(nodeAccess.getLon(edge.getAdjNode()), nodeAccess.getLat(edge.getAdjNode())), Double.MAX_VALUE, Math::min);
-            });
-            exploredPoints = geometryFactory.createMultiPointFromCoords(z1.keySet().toArray(new Coordinate[0]));
-
-            CoordinateList siteCoords = DelaunayTriangulationBuilder.extractUniqueCoordinates(exploredPoints);
-            List<ConstraintVertex> constraintVertices = new ArrayList<>();
-            for (Object siteCoord : siteCoords) {
-                Coordinate coord = (Coordinate) siteCoord;
-                constraintVertices.add(new ConstraintVertex(coord));
-            }
+    private QuadEdgeSubdivision triangulate(NodeAccess nodeAccess, PtLocationSnapper.Result snapResult, Map<Coordinate, Double> z1, GeometryFactory geometryFactory) {
+        MultiPoint exploredPoints = geometryFactory.createMultiPointFromCoords(z1.keySet().toArray(new Coordinate[0]));
+
+        // Get at least all nodes within our bounding box (I think convex hull would be enough.)
+        // I think then we should have all possible encroaching points. (Proof needed.)
+        locationIndex.query(BBox.fromEnvelope(exploredPoints.getEnvelopeInternal()), edgeId -> {
+            EdgeIteratorState edge = snapResult.queryGraph.getEdgeIteratorStateForKey(edgeId * 2);
+            z1.merge(new Coordinate(nodeAccess.getLon(edge.getBaseNode()), nodeAccess.getLat(edge.getBaseNode())), Double.MAX_VALUE, Math::min);
+            z1.merge(new Coordinate(nodeAccess.getLon(edge.getAdjNode()), nodeAccess.getLat(edge.getAdjNode())), Double.MAX_VALUE, Math::min);
+        });
+        exploredPoints = geometryFactory.createMultiPointFromCoords(z1.keySet().toArray(new Coordinate[0]));
+
+        CoordinateList siteCoords = DelaunayTriangulationBuilder.extractUniqueCoordinates(exploredPoints);
+        List<ConstraintVertex> constraintVertices = new ArrayList<>();
+        for (Object siteCoord : siteCoords) {
+            Coordinate coord = (Coordinate) siteCoord;
+            constraintVertices.add(new ConstraintVertex(coord));
+        }
 
-            ConformingDelaunayTriangulator cdt = new ConformingDelaunayTriangulator(constraintVertices, JTS_TOLERANCE);
-            cdt.setConstraints(new ArrayList(), new ArrayList());
-            cdt.formInitialDelaunay();
+        ConformingDelaunayTriangulator cdt = new ConformingDelaunayTriangulator(constraintVertices, JTS_TOLERANCE);
+        cdt.setConstraints(new ArrayList(), new ArrayList());
+        cdt.formInitialDelaunay();
 
-            QuadEdgeSubdivision tin = cdt.getSubdivision();
+        QuadEdgeSubdivision tin = cdt.getSubdivision();
 
-            for (Vertex vertex : (Collection<Vertex>) tin.getVertices(true)) {
-                if (tin.isFrameVertex(vertex)) {
-                    vertex.setZ(Double.MAX_VALUE);
+        for (Vertex vertex : (Collection<Vertex>) tin.getVertices(true)) {
+            if (tin.isFrameVertex(vertex)) {
+                vertex.setZ(Double.MAX_VALUE);
+            } else {
+                Double aDouble = z1.get(vertex.getCoordinate());
+                if (aDouble != null) {
+                    vertex.setZ(aDouble);
                 } else {
-                    Double aDouble = z1.get(vertex.getCoordinate());
-                    if (aDouble != null) {
-                        vertex.setZ(aDouble);
-                    } else {
-                        vertex.setZ(Double.MAX_VALUE);
-                    }
-                }
-            }
-
-            ReadableTriangulation triangulation = ReadableTriangulation.wrap(tin);
-            ContourBuilder contourBuilder = new ContourBuilder(triangulation);
-            MultiPolygon isoline = contourBuilder.computeIsoline(targetZ, triangulation.getEdges());
-
-            // debugging tool
-            if (format.equals("triangulation")) {
-                Response response = new Response();
-                for (Vertex vertex : (Collection<Vertex>) tin.getVertices(true)) {
-                    JsonFeature feature = new JsonFeature();
-                    feature.setGeometry(geometryFactory.createPoint(vertex.getCoordinate()));
-                    HashMap<String, Object> properties = new HashMap<>();
-                    properties.put("z", vertex.getZ());
-                    feature.setProperties(properties);
-                    response.polygons.add(feature);
-                }
-                for (QuadEdge edge : (Collection<QuadEdge>) tin.getPrimaryEdges(false)) {
-                    JsonFeature feature = new JsonFeature();
-                    feature.setGeometry(edge.toLineSegment().toGeometry(geometryFactory));
-                    HashMap<String, Object> properties = new HashMap<>();
-                    feature.setProperties(properties);
-                    response.polygons.add(feature);
+                    vertex.setZ(Double.MAX_VALUE);
                 }
-                JsonFeature feature = new JsonFeature();
-                feature.setGeometry(isoline);
-                HashMap<String, Object> properties = new HashMap<>();
-                properties.put("z", targetZ);
-                feature.setProperties(properties);
-                response.polygons.add(feature);
-                response.info.copyrights.addAll(config.getCopyrights());
-                return response;
-            } else {
-                return wrap(isoline);
             }
         }
-
+        return tin;
     }
 
-    private Response wrap(Geometry isoline) {
+    private JsonFeature feature(Geometry isoline, int bucket, Instant time) {
         JsonFeature feature = new JsonFeature();
         feature.setGeometry(isoline);
         HashMap<String, Object> properties = new HashMap<>();
-        properties.put("bucket", 0);
+        properties.put("bucket", bucket);
+        properties.put("time", time.toString());
         feature.setProperties(properties);
-
-        Response response = new Response();
-        response.polygons.add(feature);
-        response.info.copyrights.addAll(config.getCopyrights());
-        return response;
+        return feature;
     }
 
 }
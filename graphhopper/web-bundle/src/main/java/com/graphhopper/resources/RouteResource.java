@@ -17,6 +17,8 @@
  */
 package com.graphhopper.resources;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.graphhopper.GHRequest;
 import com.graphhopper.GHResponse;
 import com.graphhopper.GraphHopper;
@@ -27,6 +29,7 @@ import com.graphhopper.http.GHRequestTransformer;
 import com.graphhopper.http.ProfileResolver;
 import com.graphhopper.jackson.MultiException;
 import com.graphhopper.jackson.ResponsePathSerializer;
+import com.graphhopper.protobuf.ResponsePathProtobufSerializer;
 import com.graphhopper.util.*;
 import com.graphhopper.util.shapes.GHPoint;
 import io.dropwizard.jersey.params.AbstractParam;
@@ -66,24 +69,27 @@ public class RouteResource {
     private final Boolean hasElevation;
     private final String osmDate;
     private final List<String> snapPreventionsDefault;
+    private final ObjectMapper objectMapper;
 
     @Inject
-    public RouteResource(GraphHopperConfig config, GraphHopper graphHopper, ProfileResolver profileResolver, GHRequestTransformer ghRequestTransformer, @Named("hasElevation") Boolean hasElevation) {
+    public RouteResource(GraphHopperConfig config, GraphHopper graphHopper, ProfileResolver profileResolver, GHRequestTransformer ghRequestTransformer, @Named("hasElevation") Boolean hasElevation, ObjectMapper objectMapper) {
         this.config = config;
         this.graphHopper = graphHopper;
         this.profileResolver = profileResolver;
         this.ghRequestTransformer = ghRequestTransformer;
         this.hasElevation = hasElevation;
+        this.objectMapper = objectMapper;
         this.osmDate = graphHopper.getProperties().getAll().get("datareader.data.date");
         this.snapPreventionsDefault = Arrays.stream(config.getString("routing.snap_preventions_default", "")
                 .split(",")).map(String::trim).filter(s -> !s.isEmpty()).toList();
     }
 
     @GET
-    @Produces({MediaType.APPLICATION_JSON, MediaType.APPLICATION_XML, "application/gpx+xml"})
+    @Produces({MediaType.APPLICATION_JSON, MediaType.APPLICATION_XML, "application/gpx+xml", ResponsePathProtobufSerializer.MEDIA_TYPE})
     public Response doGet(
             @Context HttpServletRequest httpReq,
             @Context UriInfo uriInfo,
+            @Context HttpHeaders httpHeaders,
             @QueryParam(WAY_POINT_MAX_DISTANCE) @DefaultValue("0.5") double minPathPrecision,
             @QueryParam(ELEVATION_WAY_POINT_MAX_DISTANCE) Double minPathElevationPrecision,
             @QueryParam("point") @NotNull List<GHPointParam> pointParams,
@@ -109,6 +115,7 @@ public class RouteResource {
         StopWatch sw = new StopWatch().start();
         List<GHPoint> points = pointParams.stream().map(AbstractParam::get).collect(toList());
         boolean writeGPX = "gpx".equalsIgnoreCase(type);
+        boolean writeProtobuf = isProtobufRequested(type, httpHeaders);
         instructions = writeGPX || instructions;
         if (enableElevation && !hasElevation)
             throw new IllegalArgumentException("Elevation not supported!");
@@ -169,22 +176,22 @@ public class RouteResource {
                     + ", time0: " + Math.round(ghResponse.getBest().getTime() / 60000f) + "min"
                     + ", points0: " + ghResponse.getBest().getPoints().size()
                     + ", debugInfo: " + ghResponse.getDebugInfo());
+            if (writeProtobuf)
+                return protobufSuccessResponse(ghResponse, new ResponsePathSerializer.Info(config.getCopyrights(), Math.round(took), osmDate), instructions, calcPoints, enableElevation, pointsEncodedMultiplier);
             return writeGPX ?
                     gpxSuccessResponseBuilder(ghResponse, timeString, trackName, enableElevation, withRoute, withTrack, withWayPoints, Constants.VERSION).
                             header("X-GH-Took", "" + Math.round(took)).
                             build()
                     :
-                    Response.ok(ResponsePathSerializer.jsonObject(ghResponse, new ResponsePathSerializer.Info(config.getCopyrights(), Math.round(took), osmDate), instructions, calcPoints, enableElevation, pointsEncoded, pointsEncodedMultiplier)).
-                            header("X-GH-Took", "" + Math.round(took)).
-                            type(MediaType.APPLICATION_JSON).
-                            build();
+                    jsonSuccessResponse(ghResponse, new ResponsePathSerializer.Info(config.getCopyrights(), Math.round(took), osmDate), instructions, calcPoints, enableElevation, pointsEncoded, pointsEncodedMultiplier);
         }
     }
 
     @POST
     @Consumes(MediaType.APPLICATION_JSON)
-    @Produces(MediaType.APPLICATION_JSON)
-    public Response doPost(@NotNull GHRequest request, @Context HttpServletRequest httpReq) {
+    @Produces({MediaType.APPLICATION_JSON, ResponsePathProtobufSerializer.MEDIA_TYPE})
+    public Response doPost(@NotNull GHRequest request, @Context HttpServletRequest httpReq, @Context HttpHeaders httpHeaders,
+                           @QueryParam("type") @DefaultValue("json") String type) {
         if (!request.hasSnapPreventions())
             request.setSnapPreventions(snapPreventionsDefault);
 
@@ -223,10 +230,9 @@ public class RouteResource {
                     + ", time0: " + Math.round(ghResponse.getBest().getTime() / 60000f) + "min"
                     + ", points0: " + ghResponse.getBest().getPoints().size()
                     + ", debugInfo: " + ghResponse.getDebugInfo());
-            return Response.ok(ResponsePathSerializer.jsonObject(ghResponse, new ResponsePathSerializer.Info(config.getCopyrights(), Math.round(took), osmDate), instructions, calcPoints, enableElevation, pointsEncoded, pointsEncodedMultiplier)).
-                    header("X-GH-Took", "" + Math.round(took)).
-                    type(MediaType.APPLICATION_JSON).
-                    build();
+            if (isProtobufRequested(type, httpHeaders))
+                return protobufSuccessResponse(ghResponse, new ResponsePathSerializer.Info(config.getCopyrights(), Math.round(took), osmDate), instructions, calcPoints, enableElevation, pointsEncodedMultiplier);
+            return jsonSuccessResponse(ghResponse, new ResponsePathSerializer.Info(config.getCopyrights(), Math.round(took), osmDate), instructions, calcPoints, enableElevation, pointsEncoded, pointsEncodedMultiplier);
         }
     }
 
@@ -238,6 +244,49 @@ public class RouteResource {
         hints.remove("turn_costs");
     }
 
+    /**
+     * The binary response is returned for type=pb or if the client prefers application/x-protobuf over JSON.
+     */
+    static boolean isProtobufRequested(String type, HttpHeaders httpHeaders) {
+        if ("pb".equalsIgnoreCase(type))
+            return true;
+        for (MediaType mediaType : httpHeaders.getAcceptableMediaTypes()) {
+            if (ResponsePathProtobufSerializer.MEDIA_TYPE.equals(mediaType.getType() + "/" + mediaType.getSubtype()))
+                return true;
+            if (mediaType.isCompatible(MediaType.APPLICATION_JSON_TYPE))
+                return false;
+        }
+        return false;
+    }
+
+    private Response jsonSuccessResponse(GHResponse ghRsp, ResponsePathSerializer.Info info, boolean instructions,
+                                         boolean calcPoints, boolean enableElevation, boolean pointsEncoded, double pointsMultiplier) {
+        // the response is streamed, so check the parameters before it is committed
+        if (pointsEncoded && pointsMultiplier < 1)
+            throw new IllegalArgumentException("multiplier cannot be smaller than 1 but was " + pointsMultiplier + " for polyline");
+        StreamingOutput stream = output -> {
+            try (JsonGenerator gen = objectMapper.getFactory().createGenerator(output)) {
+                // Jersey closes the output
+                gen.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+                ResponsePathSerializer.writeJson(gen, ghRsp, info, instructions, calcPoints, enableElevation, pointsEncoded, pointsMultiplier);
+            }
+        };
+        return Response.ok(stream, MediaType.APPLICATION_JSON).
+                header("X-GH-Took", "" + info.took()).
+                build();
+    }
+
+    private static Response protobufSuccessResponse(GHResponse ghRsp, ResponsePathSerializer.Info info, boolean instructions,
+                                                    boolean calcPoints, boolean enableElevation, double pointsMultiplier) {
+        // the response is streamed, so check the parameters before it is committed
+        if (pointsMultiplier < 1)
+            throw new IllegalArgumentException("multiplier cannot be smaller than 1 but was " + pointsMultiplier + " for points");
+        StreamingOutput stream = output -> ResponsePathProtobufSerializer.writeTo(output, ghRsp, info, instructions, calcPoints, enableElevation, pointsMultiplier);
+        return Response.ok(stream, ResponsePathProtobufSerializer.MEDIA_TYPE).
+                header("X-GH-Took", "" + info.took()).
+                build();
+    }
+
     private static Response.ResponseBuilder gpxSuccessResponseBuilder(GHResponse ghRsp, String timeString, String
             trackName, boolean enableElevation, boolean withRoute, boolean withTrack, boolean withWayPoints, String version) {
         if (ghRsp.getAll().size() > 1) {
@@ -0,0 +1,112 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.application;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.graphhopper.GraphHopper;
+import com.graphhopper.GraphHopperConfig;
+import com.graphhopper.application.util.GraphHopperServerTestConfiguration;
+import com.graphhopper.config.CHProfile;
+import com.graphhopper.routing.TestProfiles;
+import com.graphhopper.util.Helper;
+import io.dropwizard.testing.junit5.DropwizardAppExtension;
+import io.dropwizard.testing.junit5.DropwizardExtensionsSupport;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import javax.ws.rs.client.Entity;
+import javax.ws.rs.core.Response;
+import java.io.File;
+import java.util.Collections;
+
+import static com.graphhopper.application.util.TestUtils.clientTarget;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests loading a new graph while the server is running
+ */
+@ExtendWith(DropwizardExtensionsSupport.class)
+public class GraphHopperReloadTest {
+    private static final String DIR = "./target/reload-test-gh/";
+    private static final String NEW_DIR = "./target/reload-test-new-gh/";
+    private static final DropwizardAppExtension<GraphHopperServerConfiguration> app = new DropwizardAppExtension<>(GraphHopperApplication.class, createConfig());
+
+    private static GraphHopperServerConfiguration createConfig() {
+        GraphHopperServerConfiguration config = new GraphHopperServerTestConfiguration();
+        config.getGraphHopperConfiguration().
+                putObject("datareader.file", "../core/files/monaco.osm.gz").
+                putObject("graph.encoded_values", "car_access, car_average_speed").
+                putObject("import.osm.ignored_highways", "").
+                putObject("graph.location", DIR).
+                putObject("graph.reload.warmup_requests", 5).
+                setProfiles(Collections.singletonList(TestProfiles.accessAndSpeed("car"))).
+                setCHProfiles(Collections.singletonList(new CHProfile("car")));
+        return config;
+    }
+
+    @BeforeAll
+    @AfterAll
+    public static void cleanUp() {
+        Helper.removeDir(new File(DIR));
+        Helper.removeDir(new File(NEW_DIR));
+    }
+
+    @Test
+    public void testReload() {
+        assertEquals(7.4, getBBox().get(0).asDouble(), 0.1);
+        assertTrue(route().get("message").asText().startsWith("Point 0 is out of bounds"));
+
+        // there is no graph at this location, so we keep the current one
+        assertEquals(500, reload("./target/reload-test-missing-gh/").getStatus());
+        assertEquals(7.4, getBBox().get(0).asDouble(), 0.1);
+
+        // import the new graph with the same configuration
+        GraphHopperConfig newConfig = new GraphHopperConfig(app.getConfiguration().getGraphHopperConfiguration()).
+                putObject("datareader.file", "../core/files/north-bayreuth.osm.gz").
+                putObject("graph.location", NEW_DIR);
+        new GraphHopper().init(newConfig).importAndClose();
+
+        Response response = reload(NEW_DIR);
+        assertEquals(200, response.getStatus());
+        assertTrue(response.readEntity(String.class).startsWith("loaded graph version 2"));
+
+        assertEquals(11.4, getBBox().get(0).asDouble(), 0.1);
+        JsonNode json = route();
+        assertFalse(json.get("info").has("errors"));
+        assertEquals(350, json.get("paths").get(0).get("distance").asDouble(), 100);
+
+        JsonNode metrics = app.client().target("http://localhost:" + app.getAdminPort() + "/metrics").request().get(JsonNode.class);
+        assertEquals(2, metrics.get("gauges").get("com.graphhopper.http.GraphHopperManaged.version").get("value").asInt());
+    }
+
+    private static Response reload(String graphLocation) {
+        return app.client().target("http://localhost:" + app.getAdminPort() + "/tasks/reload-graph").
+                queryParam("graph.location", graphLocation).request().post(Entity.text(""));
+    }
+
+    private static JsonNode getBBox() {
+        return clientTarget(app, "/info").request().get(JsonNode.class).get("bbox");
+    }
+
+    private static JsonNode route() {
+        return clientTarget(app, "/route?profile=car&point=49.985307,11.50628&point=49.983175,11.50733").
+                request().get().readEntity(JsonNode.class);
+    }
+}
@@ -42,6 +42,7 @@ import java.time.ZoneId;
 import java.util.List;
 
 import static com.graphhopper.application.util.TestUtils.clientTarget;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
@@ -115,6 +116,27 @@ public class PtIsochroneTest {
         assertFalse(isoline.covers(geometryFactory.createPoint(makePrecise(new Coordinate(-116.751677, 36.915682)))));
     }
 
+    @Test
+    public void testRangeIsolines() {
+        LocalDateTime firstTime = LocalDateTime.of(2006, 12, 31, 23, 0, 0);
+        WebTarget webTarget = clientTarget(app, "/isochrone")
+                .queryParam("vehicle", "pt")
+                .queryParam("point", "Stop(NADAV)")
+                .queryParam("pt.earliest_departure_time", firstTime.atZone(zoneId).toInstant())
+                .queryParam("pt.range_duration", "PT1H")
+                .queryParam("pt.range_interval", "PT30M")
+                .queryParam("time_limit", 6 * 60 * 60 + 49 * 60); // exactly the time I should arrive at NANAA when I leave at midnight
+        PtIsochroneResource.Response isochroneResponse = webTarget.request().get(PtIsochroneResource.Response.class);
+        assertEquals(3, isochroneResponse.polygons.size());
+        for (int i = 0; i < 3; i++) {
+            assertEquals(i, isochroneResponse.polygons.get(i).getProperties().get("bucket"));
+            assertEquals(firstTime.plusMinutes(30 * i).atZone(zoneId).toInstant().toString(), isochroneResponse.polygons.get(i).getProperties().get("time"));
+        }
+        // NANAA is only in when I leave at midnight or later
+        assertFalse(isochroneResponse.polygons.get(1).getGeometry().covers(geometryFactory.createPoint(makePrecise(new Coordinate(-116.761472, 36.914944)))));
+        assertTrue(isochroneResponse.polygons.get(2).getGeometry().covers(geometryFactory.createPoint(makePrecise(new Coordinate(-116.761472, 36.914944)))));
+    }
+
     // Snap coordinate to GraphHopper's implicit grid of allowable points.
     // Otherwise, we can't reliably use coordinates from input data in tests.
     private Coordinate makePrecise(Coordinate coordinate) {
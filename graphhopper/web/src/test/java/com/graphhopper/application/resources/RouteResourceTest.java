@@ -26,6 +26,8 @@ import com.graphhopper.application.GraphHopperApplication;
 import com.graphhopper.application.GraphHopperServerConfiguration;
 import com.graphhopper.application.util.GraphHopperServerTestConfiguration;
 import com.graphhopper.config.CHProfile;
+import com.graphhopper.protobuf.ResponsePathProtobufDeserializer;
+import com.graphhopper.protobuf.ResponsePathProtobufSerializer;
 import com.graphhopper.routing.TestProfiles;
 import com.graphhopper.routing.ev.RoadClass;
 import com.graphhopper.routing.ev.RoadClassLink;
@@ -51,6 +53,8 @@ import javax.ws.rs.client.Entity;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.*;
 
 import static com.graphhopper.application.resources.Util.getWithStatus;
@@ -569,6 +573,50 @@ public class RouteResourceTest {
         }
     }
 
+    @Test
+    public void testProtobuf() throws IOException {
+        try (Response response = clientTarget(app, "/route?profile=my_car&" +
+                "point=42.554851,1.536198&point=42.510071,1.548128&type=pb&details=road_class&points_encoded_multiplier=1000000").request().get()) {
+            assertEquals(200, response.getStatus());
+            assertEquals(ResponsePathProtobufSerializer.MEDIA_TYPE, response.getMediaType().toString());
+            GHResponse rsp = ResponsePathProtobufDeserializer.readFrom(response.readEntity(InputStream.class), false, true);
+            ResponsePath path = rsp.getBest();
+            assertTrue(path.getDistance() > 9000, "distance wasn't correct:" + path.getDistance());
+            assertTrue(path.getDistance() < 9500, "distance wasn't correct:" + path.getDistance());
+            assertEquals(42.554839, path.getPoints().getLat(0), 1e-6);
+            assertEquals(1.536374, path.getPoints().getLon(0), 1e-6);
+            assertEquals(2, path.getWaypoints().size());
+            assertFalse(path.getInstructions().isEmpty());
+            assertEquals(path.getPoints().size() - 1, path.getPathDetails().get("road_class").get(path.getPathDetails().get("road_class").size() - 1).getLast());
+        }
+
+        // the Accept header works for POST requests, too
+        String body = "{\"profile\": \"my_car\", \"points\": [[1.536198,42.554851], [1.548128,42.510071]]}";
+        try (Response response = clientTarget(app, "/route").request().accept(ResponsePathProtobufSerializer.MEDIA_TYPE).post(Entity.json(body))) {
+            assertEquals(200, response.getStatus());
+            assertEquals(ResponsePathProtobufSerializer.MEDIA_TYPE, response.getMediaType().toString());
+            GHResponse rsp = ResponsePathProtobufDeserializer.readFrom(response.readEntity(InputStream.class), false, true);
+            JsonNode json = clientTarget(app, "/route").request().post(Entity.json(body), JsonNode.class);
+            assertEquals(json.get("paths").get(0).get("distance").asDouble(), rsp.getBest().getDistance(), 1e-3);
+            assertEquals(json.get("paths").get(0).get("time").asLong(), rsp.getBest().getTime());
+        }
+    }
+
+    @Test
+    public void testProtobufWithError() {
+        try (Response response = clientTarget(app, "/route?profile=my_car&point=42.554851,1.536198&type=pb").request().get()) {
+            assertEquals(400, response.getStatus());
+            assertTrue(response.readEntity(String.class).contains("At least 2 points have to be specified, but was:1"));
+        }
+        String body = "{\"profile\": \"my_car\", \"points\": [[1.536198,42.554851]]}";
+        try (Response response = clientTarget(app, "/route").request().accept(ResponsePathProtobufSerializer.MEDIA_TYPE).post(Entity.json(body))) {
+            assertEquals(400, response.getStatus());
+            assertEquals(MediaType.APPLICATION_JSON_TYPE, response.getMediaType());
+            JsonNode json = response.readEntity(JsonNode.class);
+            assertTrue(json.get("message").asText().contains("At least 2 points have to be specified, but was:1"), json.toString());
+        }
+    }
+
     @Test
     public void testGPXExport() {
         GHRequest req = new GHRequest(42.554851, 1.536198, 42.510071, 1.548128);